@@ -0,0 +1,82 @@
+package analysis;
+
+import graphmodel.Channel;
+import graphmodel.ClockDomain;
+import graphmodel.Component;
+import graphmodel.GlobalSystem;
+import graphmodel.ModelChange;
+import graphmodel.SubSystem;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This rule checks that both ends of every Channel are Clock Domains in the system, and that the Channel is
+ * registered with both of them. A Channel left behind when the Clock Domain at one of its ends was removed or
+ * replaced is reported as dangling.
+ * 
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public class ChannelEndpointRule implements ValidationRule {
+
+	@Override
+	public String getName() {
+		return "Channel Endpoint";
+	}
+
+	@Override
+	public void check(Component comp, GlobalSystem system, List<Diagnostic> problems) {
+		if (!(comp instanceof Channel)) {
+			return;
+		}
+		Channel ch = (Channel) comp;
+		ClockDomain from = ch.getFromClockDomain();
+		ClockDomain to = ch.getToClockDomain();
+
+		if (from == null || to == null) {
+			problems.add(new Diagnostic(Diagnostic.Severity.ERROR, getName(), ch, "Channel " + ch.getName()
+					+ " is not connected at both ends"));
+			return;
+		}
+
+		if (system.getSubSystem(from) == null) {
+			problems.add(new Diagnostic(Diagnostic.Severity.ERROR, getName(), ch, "Channel " + ch.getName()
+					+ " comes from Clock Domain " + from.getName() + ", which is not in the system"));
+		} else if (from.getOutputChannel(ch.getName()) != ch) {
+			problems.add(new Diagnostic(Diagnostic.Severity.ERROR, getName(), ch, "Channel " + ch.getName()
+					+ " is not an output of Clock Domain " + from.getName()));
+		}
+
+		if (system.getSubSystem(to) == null) {
+			problems.add(new Diagnostic(Diagnostic.Severity.ERROR, getName(), ch, "Channel " + ch.getName()
+					+ " leads to Clock Domain " + to.getName() + ", which is not in the system"));
+		} else if (to.getInputChannel(ch.getToName()) != ch) {
+			problems.add(new Diagnostic(Diagnostic.Severity.ERROR, getName(), ch, "Channel " + ch.getName()
+					+ " is not an input of Clock Domain " + to.getName()));
+		}
+	}
+
+	/**
+	 * Adding, removing or replacing a Clock Domain, or a Sub System of them, affects the Channels at those Clock
+	 * Domains
+	 */
+	@Override
+	public void addAffected(ModelChange change, GlobalSystem system, Set<Component> affected) {
+		addChannels(change.getComponent(), affected);
+		addChannels(change.getOldComponent(), affected);
+	}
+
+	private void addChannels(Component comp, Set<Component> affected) {
+		if (comp instanceof ClockDomain) {
+			ClockDomain cd = (ClockDomain) comp;
+			affected.addAll(cd.getInputChannels());
+			affected.addAll(cd.getOutputChannels());
+		} else if (comp instanceof SubSystem) {
+			for (ClockDomain cd : ((SubSystem) comp).getClockDomains()) {
+				addChannels(cd, affected);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,79 @@
+package analysis;
+
+import graphmodel.Component;
+
+/**
+ * This class represents a single problem found in the object model by a ValidationRule.
+ * It records which Component the problem is with, how serious it is, and a message describing it.
+ * 
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public class Diagnostic {
+
+	public enum Severity {
+		// The configuration cannot be used as it is
+		ERROR,
+		// The configuration can be used, but is probably not what was intended
+		WARNING
+	}
+
+	private final Severity severity;
+	private final String rule;
+	private final Component component;
+	private final String message;
+
+	/**
+	 * @param severity - how serious the problem is
+	 * @param rule - name of the rule that found the problem
+	 * @param component - the Component the problem is with
+	 * @param message - description of the problem, to show to the user
+	 */
+	public Diagnostic(Severity severity, String rule, Component component, String message) {
+		this.severity = severity;
+		this.rule = rule;
+		this.component = component;
+		this.message = message;
+	}
+
+	public Severity getSeverity() {
+		return severity;
+	}
+
+	public String getRule() {
+		return rule;
+	}
+
+	public Component getComponent() {
+		return component;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+	/**
+	 * Two Diagnostics are equal if the same rule found the same problem with the same Component.
+	 * Components are compared by identity, as they do not define equality themselves.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof Diagnostic)) {
+			return false;
+		}
+		Diagnostic other = (Diagnostic) obj;
+		return severity == other.severity && component == other.component && rule.equals(other.rule)
+				&& message.equals(other.message);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * (31 * rule.hashCode() + message.hashCode()) + System.identityHashCode(component);
+	}
+
+	@Override
+	public String toString() {
+		return severity + ": " + message;
+	}
+
+}
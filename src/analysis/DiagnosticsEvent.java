@@ -0,0 +1,43 @@
+package analysis;
+
+import graphmodel.Component;
+
+import java.awt.event.ActionEvent;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * This is the event sent to the listeners of a Validator when the Diagnostics it holds have changed.
+ * It lists the Components whose Diagnostics changed, so views only need to update the marks on those.
+ * 
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public class DiagnosticsEvent extends ActionEvent {
+
+	private Set<Component> components;
+
+	/**
+	 * @param source - the Validator whose Diagnostics changed
+	 * @param components - Components whose Diagnostics changed, or null if the whole system was validated again
+	 */
+	public DiagnosticsEvent(Validator source, Set<Component> components) {
+		super(source, 0, Validator.DIAGNOSTICS_CHANGED_EVENT);
+		this.components = components == null ? null : Collections.unmodifiableSet(components);
+	}
+
+	/**
+	 * @return the Components whose Diagnostics changed, or null if the Diagnostics of any Component may have changed
+	 */
+	public Set<Component> getComponents() {
+		return components;
+	}
+
+	/**
+	 * @return the Validator whose Diagnostics changed
+	 */
+	public Validator getValidator() {
+		return (Validator) getSource();
+	}
+
+}
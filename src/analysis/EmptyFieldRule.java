@@ -0,0 +1,81 @@
+package analysis;
+
+import graphmodel.Channel;
+import graphmodel.ClockDomain;
+import graphmodel.Component;
+import graphmodel.GlobalSystem;
+import graphmodel.Link;
+import graphmodel.LinkGroup;
+import graphmodel.ModelChange;
+import graphmodel.Signal;
+import graphmodel.SubSystem;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This rule checks that the fields every Component needs have been filled in: names, implementing classes, and the
+ * interface details of Links.
+ * 
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public class EmptyFieldRule implements ValidationRule {
+
+	@Override
+	public String getName() {
+		return "Empty Field";
+	}
+
+	@Override
+	public void check(Component comp, GlobalSystem system, List<Diagnostic> problems) {
+		if (comp instanceof SubSystem) {
+			checkField(comp, comp.getName(), "Sub System", "name", problems);
+		} else if (comp instanceof ClockDomain) {
+			ClockDomain cd = (ClockDomain) comp;
+			checkField(cd, cd.getName(), "Clock Domain", "name", problems);
+			checkField(cd, cd.getClassName(), "Clock Domain " + cd.getName(), "class", problems);
+
+			// Clock Domains are responsible for their Signals
+			for (Signal s : cd.getInputSignals()) {
+				checkSignal(s, cd, problems);
+			}
+			for (Signal s : cd.getOutputSignals()) {
+				checkSignal(s, cd, problems);
+			}
+		} else if (comp instanceof Channel) {
+			Channel ch = (Channel) comp;
+			checkField(ch, ch.getName(), "Channel", "name on its source Clock Domain", problems);
+			checkField(ch, ch.getToName(), "Channel " + ch.getName(), "name on its destination Clock Domain", problems);
+		} else if (comp instanceof LinkGroup) {
+			LinkGroup group = (LinkGroup) comp;
+			if (group.getLinkType() == null) {
+				problems.add(new Diagnostic(Diagnostic.Severity.ERROR, getName(), group, "Link has no type"));
+			}
+			// Link interfaces are not shown on their own, so their problems are reported on the group
+			for (Link link : group.getLinks()) {
+				checkField(group, link.getClassName(), "Link interface " + link.getName(), "class", problems);
+				checkField(group, link.getLinkInterface(), "Link interface " + link.getName(), "interface", problems);
+			}
+		}
+	}
+
+	private void checkSignal(Signal s, ClockDomain cd, List<Diagnostic> problems) {
+		checkField(s, s.getName(), "Signal in Clock Domain " + cd.getName(), "name", problems);
+		checkField(s, s.getClassName(), "Signal " + s.getName(), "class", problems);
+	}
+
+	private void checkField(Component comp, String value, String owner, String field, List<Diagnostic> problems) {
+		if (value == null || value.trim().isEmpty()) {
+			problems.add(new Diagnostic(Diagnostic.Severity.ERROR, getName(), comp, owner + " has no " + field));
+		}
+	}
+
+	/**
+	 * The fields checked only depend on the Component itself, so no other Components are affected
+	 */
+	@Override
+	public void addAffected(ModelChange change, GlobalSystem system, Set<Component> affected) {
+	}
+
+}
@@ -0,0 +1,73 @@
+package analysis;
+
+import graphmodel.Component;
+import graphmodel.GlobalSystem;
+import graphmodel.Link;
+import graphmodel.LinkGroup;
+import graphmodel.ModelChange;
+import graphmodel.SubSystem;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This rule checks that every Link interface in a Link group belongs to a Sub System in the system, that no Sub
+ * System appears in the same Link group more than once, and that each Link group joins at least two Sub Systems.
+ * 
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public class LinkGroupRule implements ValidationRule {
+
+	@Override
+	public String getName() {
+		return "Link Group";
+	}
+
+	@Override
+	public void check(Component comp, GlobalSystem system, List<Diagnostic> problems) {
+		if (!(comp instanceof LinkGroup)) {
+			return;
+		}
+		LinkGroup group = (LinkGroup) comp;
+		Set<SubSystem> seen = Collections.newSetFromMap(new IdentityHashMap<SubSystem, Boolean>());
+
+		for (Link link : group.getLinks()) {
+			SubSystem sub = link.getSubSystem();
+			if (sub == null) {
+				problems.add(new Diagnostic(Diagnostic.Severity.ERROR, getName(), group, "Link interface "
+						+ link.getName() + " has no Sub System"));
+			} else if (system.getSubSystem(sub.getName()) != sub) {
+				problems.add(new Diagnostic(Diagnostic.Severity.ERROR, getName(), group, "Link interface "
+						+ link.getName() + " refers to Sub System " + sub.getName() + ", which is not in the system"));
+			} else if (!seen.add(sub)) {
+				problems.add(new Diagnostic(Diagnostic.Severity.ERROR, getName(), group, "Sub System "
+						+ sub.getName() + " is in the same Link more than once"));
+			}
+		}
+
+		if (group.getLinks().size() < 2) {
+			problems.add(new Diagnostic(Diagnostic.Severity.WARNING, getName(), group,
+					"Link does not join at least two Sub Systems"));
+		}
+	}
+
+	/**
+	 * Adding, removing or replacing a Sub System affects the Link groups that refer to it
+	 */
+	@Override
+	public void addAffected(ModelChange change, GlobalSystem system, Set<Component> affected) {
+		if (change.getComponent() instanceof SubSystem) {
+			SubSystem sub = (SubSystem) change.getComponent();
+			SubSystem oldSub = (SubSystem) change.getOldComponent();
+			for (LinkGroup group : system.getLinks()) {
+				if (group.containsSubSystem(sub) || (oldSub != null && group.containsSubSystem(oldSub))) {
+					affected.add(group);
+				}
+			}
+		}
+	}
+
+}
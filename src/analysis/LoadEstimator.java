@@ -0,0 +1,527 @@
+package analysis;
+
+import graphmodel.Channel;
+import graphmodel.ClockDomain;
+import graphmodel.Component;
+import graphmodel.GlobalSystem;
+import graphmodel.Link;
+import graphmodel.LinkGroup;
+import graphmodel.ModelChange;
+import graphmodel.ModelChangeEvent;
+import graphmodel.SubSystem;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class estimates how loaded each Link interface, Link group and Sub System will be once a GlobalSystem is
+ * deployed, from how often each Channel between Sub Systems sends and how big its messages are. The load of a Channel
+ * is carried along its route from the RoutingTable, through the interfaces it leaves and enters each Sub System by.
+ *
+ * Loads are in bytes per second. The bandwidth of an interface comes from a "bandwidth", "bw" or "baud" argument, such
+ * as "127.0.0.1:1000 bandwidth=10M", or else from the kind of interface: 100 Mbit/s for TCP and UDP, 12 Mbit/s for
+ * USB, 1 Mbit/s for CAN and 115200 baud for serial. Utilization is load over bandwidth, and anything at or over the
+ * hot threshold is a hot spot:
+ * - a Link interface is as utilized as its own load over its bandwidth
+ * - a Link group shares its medium, so it is as utilized as its whole load over its slowest interface
+ * - a Sub System is as utilized as its busiest interface
+ *
+ * The loads are kept up to date as the model changes. Channels are added up by the pair of Sub Systems they join, so
+ * editing a Channel or Clock Domain only changes the loads along one route, and changing the Link groups only moves
+ * the pairs whose route changed. The RoutingTable must be listening to the model before this is created, so it sees
+ * each change first.
+ *
+ * Listeners are sent LOAD_CHANGED_EVENT whenever the loads change.
+ *
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public class LoadEstimator implements ActionListener {
+
+	public static final String LOAD_CHANGED_EVENT = "Load Changed";
+
+	// Traffic of a Channel with none set, in messages per second and bytes per message
+	public static final double DEFAULT_RATE = 10;
+	public static final int DEFAULT_SIZE = 64;
+
+	// Bandwidth of an interface of an unknown kind, in bytes per second
+	public static final double DEFAULT_BANDWIDTH = 12500000;
+
+	public static final double DEFAULT_HOT_THRESHOLD = 0.8;
+
+	// Bandwidth of each kind of interface, in bytes per second, by its name in upper case
+	private static final Map<String, Double> INTERFACE_BANDWIDTHS = new HashMap<String, Double>();
+
+	private static final Pattern BANDWIDTH_ARGUMENT = Pattern.compile(
+			"(?i)\\b(bandwidth|bw|baud)\\s*=\\s*([0-9]+(?:\\.[0-9]+)?)\\s*([kmg]?)");
+
+	// Loads this small are what is left over from adding and taking away, and count as none
+	private static final double NO_LOAD = 1e-9;
+
+	static {
+		INTERFACE_BANDWIDTHS.put("TCP", 12500000.0);
+		INTERFACE_BANDWIDTHS.put("TCP/IP", 12500000.0);
+		INTERFACE_BANDWIDTHS.put("UDP", 12500000.0);
+		INTERFACE_BANDWIDTHS.put("USB", 1500000.0);
+		INTERFACE_BANDWIDTHS.put("CAN", 125000.0);
+		INTERFACE_BANDWIDTHS.put("SERIAL", 11520.0);
+		INTERFACE_BANDWIDTHS.put("RS232", 11520.0);
+		INTERFACE_BANDWIDTHS.put("UART", 11520.0);
+	}
+
+	private GlobalSystem system;
+	private RoutingTable routingTable;
+
+	// Traffic set for individual Channels, by the name of the Clock Domain they come from and their name there
+	private Map<String, double[]> traffic;
+	private double defaultRate = DEFAULT_RATE;
+	private int defaultSize = DEFAULT_SIZE;
+	private Map<String, Double> bandwidths;
+	private double hotThreshold = DEFAULT_HOT_THRESHOLD;
+
+	// Load of every Channel between Sub Systems, the load between each pair of Sub Systems, and the loads that adds
+	// up to along the routes
+	private Map<Channel, ChannelLoad> channelLoads;
+	private Map<String, PairLoad> pairLoads;
+	private Map<Link, Double> interfaceLoads;
+	private Map<LinkGroup, Double> groupLoads;
+	private Map<String, Double> subSystemLoads;
+
+	private List<ActionListener> listeners;
+
+	/**
+	 * Creates an estimator, and estimates the loads straight away
+	 * @param system - the system to estimate
+	 * @param routingTable - routes of the Channels in the system, already listening to it
+	 */
+	public LoadEstimator(GlobalSystem system, RoutingTable routingTable) {
+		this.system = system;
+		this.routingTable = routingTable;
+		traffic = new HashMap<String, double[]>();
+		bandwidths = new HashMap<String, Double>(INTERFACE_BANDWIDTHS);
+		listeners = new ArrayList<ActionListener>();
+
+		estimateAll();
+		system.addListener(this);
+	}
+
+	/**
+	 * Sets the traffic of a Channel
+	 * @param clockDomain - name of the Clock Domain the Channel comes from
+	 * @param channel - name of the Channel on that Clock Domain
+	 * @param rate - messages sent per second
+	 * @param size - bytes in each message
+	 */
+	public void setTraffic(String clockDomain, String channel, double rate, int size) {
+		traffic.put(trafficKey(clockDomain, channel), new double[] { rate, size });
+
+		ClockDomain cd = system.getClockDomain(clockDomain);
+		if (cd != null) {
+			for (Channel ch : cd.getOutputChannels()) {
+				if (ch.getName().equals(channel)) {
+					estimate(ch);
+				}
+			}
+			fireLoadChanged();
+		}
+	}
+
+	/**
+	 * Sets the traffic of the Channels without any set of their own
+	 * @param rate - messages sent per second
+	 * @param size - bytes in each message
+	 */
+	public void setDefaultTraffic(double rate, int size) {
+		defaultRate = rate;
+		defaultSize = size;
+		estimateAll();
+	}
+
+	/**
+	 * Sets the bandwidth of a kind of interface, for interfaces without a bandwidth in their arguments
+	 * @param linkInterface - the kind of interface, such as "TCP"
+	 * @param bytesPerSecond - its bandwidth
+	 */
+	public void setBandwidth(String linkInterface, double bytesPerSecond) {
+		bandwidths.put(linkInterface.trim().toUpperCase(Locale.ROOT), bytesPerSecond);
+		fireLoadChanged();
+	}
+
+	/**
+	 * @param threshold - utilization at and above which something is a hot spot, 1 being fully utilized
+	 */
+	public void setHotThreshold(double threshold) {
+		hotThreshold = threshold;
+		fireLoadChanged();
+	}
+
+	public double getHotThreshold() {
+		return hotThreshold;
+	}
+
+	/**
+	 * @return the bandwidth of the Link interface in bytes per second, from its arguments or its kind
+	 */
+	public double getBandwidth(Link link) {
+		if (link.getArguments() != null) {
+			Matcher m = BANDWIDTH_ARGUMENT.matcher(link.getArguments());
+			if (m.find()) {
+				double value = Double.parseDouble(m.group(2));
+				String unit = m.group(3).toLowerCase(Locale.ROOT);
+				value *= unit.equals("k") ? 1e3 : unit.equals("m") ? 1e6 : unit.equals("g") ? 1e9 : 1;
+				// A baud rate sends a byte in 10 symbols, bandwidths are in bits
+				return value / (m.group(1).equalsIgnoreCase("baud") ? 10 : 8);
+			}
+		}
+		Double bandwidth = link.getLinkInterface() == null ? null
+				: bandwidths.get(link.getLinkInterface().trim().toUpperCase(Locale.ROOT));
+		return bandwidth != null ? bandwidth : DEFAULT_BANDWIDTH;
+	}
+
+	/**
+	 * @return bytes per second sent and received through the Link interface
+	 */
+	public double getLoad(Link link) {
+		Double load = interfaceLoads.get(link);
+		return load == null ? 0 : load;
+	}
+
+	/**
+	 * @return bytes per second carried across the Link group
+	 */
+	public double getLoad(LinkGroup group) {
+		Double load = groupLoads.get(group);
+		return load == null ? 0 : load;
+	}
+
+	/**
+	 * @return bytes per second sent and received through the interfaces of the named Sub System, including traffic
+	 *         it passes on between others
+	 */
+	public double getLoad(String subSystem) {
+		Double load = subSystemLoads.get(subSystem);
+		return load == null ? 0 : load;
+	}
+
+	/**
+	 * @return bytes per second sent by Channels between Sub Systems that no Link groups join
+	 */
+	public double getUnroutedLoad() {
+		double load = 0;
+		for (PairLoad pair : pairLoads.values()) {
+			if (pair.route == null) {
+				load += pair.load;
+			}
+		}
+		return load;
+	}
+
+	public double getUtilization(Link link) {
+		return getLoad(link) / getBandwidth(link);
+	}
+
+	public double getUtilization(LinkGroup group) {
+		double slowest = Double.MAX_VALUE;
+		for (Link l : group.getLinks()) {
+			slowest = Math.min(slowest, getBandwidth(l));
+		}
+		return group.getLinks().isEmpty() ? 0 : getLoad(group) / slowest;
+	}
+
+	/**
+	 * @return the utilization of the busiest interface of the named Sub System, 0 if it has none
+	 */
+	public double getUtilization(String subSystem) {
+		double busiest = 0;
+		for (LinkGroup group : system.getLinks()) {
+			for (Link l : group.getLinks()) {
+				if (l.getSubSystem() != null && l.getSubSystem().getName().equals(subSystem)) {
+					busiest = Math.max(busiest, getUtilization(l));
+				}
+			}
+		}
+		return busiest;
+	}
+
+	/**
+	 * @return the Link interfaces utilized at or over the hot threshold, busiest first
+	 */
+	public List<Link> getHotInterfaces() {
+		final Map<Link, Double> hot = new IdentityHashMap<Link, Double>();
+		for (LinkGroup group : system.getLinks()) {
+			for (Link l : group.getLinks()) {
+				double utilization = getUtilization(l);
+				if (utilization >= hotThreshold) {
+					hot.put(l, utilization);
+				}
+			}
+		}
+		List<Link> links = new ArrayList<Link>(hot.keySet());
+		Collections.sort(links, new Comparator<Link>() {
+			@Override
+			public int compare(Link a, Link b) {
+				return Double.compare(hot.get(b), hot.get(a));
+			}
+		});
+		return links;
+	}
+
+	/**
+	 * @return the load in bytes per second, written as "12.5 kB/s"
+	 */
+	public static String formatLoad(double bytesPerSecond) {
+		if (bytesPerSecond >= 1e9) {
+			return String.format(Locale.ROOT, "%.1f GB/s", bytesPerSecond / 1e9);
+		} else if (bytesPerSecond >= 1e6) {
+			return String.format(Locale.ROOT, "%.1f MB/s", bytesPerSecond / 1e6);
+		} else if (bytesPerSecond >= 1e3) {
+			return String.format(Locale.ROOT, "%.1f kB/s", bytesPerSecond / 1e3);
+		}
+		return String.format(Locale.ROOT, "%.0f B/s", bytesPerSecond);
+	}
+
+	/**
+	 * Add an ActionListener that is sent LOAD_CHANGED_EVENT whenever the loads change
+	 * @param l - ActionListener object to add
+	 */
+	public void addListener(ActionListener l) {
+		listeners.add(l);
+	}
+
+	/**
+	 * Estimates the loads of the whole system from scratch
+	 */
+	public void estimateAll() {
+		channelLoads = new IdentityHashMap<Channel, ChannelLoad>();
+		pairLoads = new HashMap<String, PairLoad>();
+		interfaceLoads = new IdentityHashMap<Link, Double>();
+		groupLoads = new IdentityHashMap<LinkGroup, Double>();
+		subSystemLoads = new HashMap<String, Double>();
+
+		for (SubSystem sub : system.getSubSystems()) {
+			for (ClockDomain cd : sub.getClockDomains()) {
+				for (Channel ch : cd.getOutputChannels()) {
+					estimate(ch);
+				}
+			}
+		}
+		fireLoadChanged();
+	}
+
+	/**
+	 * This method is fired every time there is a change in the object model. Edited Channels and Clock Domains only
+	 * change the loads of their own Channels, and edited Link groups only move the loads whose route changed. Changes
+	 * to the Sub Systems estimate everything again.
+	 */
+	@Override
+	public void actionPerformed(ActionEvent event) {
+		if (!(event instanceof ModelChangeEvent) || ((ModelChangeEvent) event).getChanges().isEmpty()) {
+			estimateAll();
+			return;
+		}
+
+		boolean changed = false;
+		boolean reroute = false;
+		for (ModelChange change : ((ModelChangeEvent) event).getChanges()) {
+			Component comp = change.getComponent();
+			if (comp instanceof SubSystem) {
+				estimateAll();
+				return;
+			} else if (comp instanceof LinkGroup) {
+				reroute = true;
+			} else if (comp instanceof Channel) {
+				if (change.getOldComponent() != null) {
+					estimate((Channel) change.getOldComponent());
+				}
+				estimate((Channel) comp);
+				changed = true;
+			} else if (comp instanceof ClockDomain) {
+				if (change.getOldComponent() != null) {
+					estimateChannels((ClockDomain) change.getOldComponent());
+				}
+				estimateChannels((ClockDomain) comp);
+				changed = true;
+			}
+		}
+
+		if (reroute) {
+			reroute();
+		}
+		if (changed || reroute) {
+			fireLoadChanged();
+		}
+	}
+
+	private void estimateChannels(ClockDomain cd) {
+		for (Channel ch : cd.getOutputChannels()) {
+			estimate(ch);
+		}
+		for (Channel ch : cd.getInputChannels()) {
+			estimate(ch);
+		}
+	}
+
+	/**
+	 * Takes the Channel's old load off its route, and puts its current load on its current route, if it is still a
+	 * Channel between two Sub Systems in the model
+	 */
+	private void estimate(Channel ch) {
+		ChannelLoad old = channelLoads.remove(ch);
+		if (old != null) {
+			addToPair(old.from, old.to, -old.load, -1);
+		}
+
+		ClockDomain fromCD = ch.getFromClockDomain();
+		ClockDomain toCD = ch.getToClockDomain();
+		if (fromCD == null || toCD == null) {
+			return;
+		}
+		SubSystem from = system.getSubSystem(fromCD);
+		SubSystem to = system.getSubSystem(toCD);
+		if (from == null || to == null || from == to || !fromCD.getOutputChannels().contains(ch)) {
+			return;
+		}
+
+		double[] t = traffic.get(trafficKey(fromCD.getName(), ch.getName()));
+		double load = t != null ? t[0] * t[1] : defaultRate * defaultSize;
+		channelLoads.put(ch, new ChannelLoad(from.getName(), to.getName(), load));
+		addToPair(from.getName(), to.getName(), load, 1);
+	}
+
+	/**
+	 * Adds load between a pair of Sub Systems, and along their route
+	 * @param channels - change in the number of Channels between them
+	 */
+	private void addToPair(String from, String to, double load, int channels) {
+		String key = from + "\n" + to;
+		PairLoad pair = pairLoads.get(key);
+		if (pair == null) {
+			pair = new PairLoad(from, to, routingTable.getRoute(from, to));
+			pairLoads.put(key, pair);
+		}
+		pair.channels += channels;
+		if (pair.channels == 0) {
+			// Take off exactly what is left, so rounding does not build up
+			load = -pair.load;
+			pairLoads.remove(key);
+		}
+		pair.load += load;
+		addAlongRoute(pair.route, load);
+	}
+
+	/**
+	 * Moves the load between each pair of Sub Systems whose route has changed onto its new route
+	 */
+	private void reroute() {
+		for (PairLoad pair : pairLoads.values()) {
+			Route route = routingTable.getRoute(pair.from, pair.to);
+			if (!sameRoute(pair.route, route)) {
+				addAlongRoute(pair.route, -pair.load);
+				addAlongRoute(route, pair.load);
+				pair.route = route;
+			}
+		}
+	}
+
+	private void addAlongRoute(Route route, double load) {
+		if (route == null) {
+			return;
+		}
+		List<Link> interfaces = route.getInterfaces();
+		for (int i = 0; i < route.getNumHops(); i++) {
+			add(groupLoads, route.getHops().get(i), load);
+			add(subSystemLoads, route.getSubSystems().get(i), load);
+			add(subSystemLoads, route.getSubSystems().get(i + 1), load);
+			for (int j = 2 * i; j < 2 * i + 2; j++) {
+				if (interfaces.get(j) != null) {
+					add(interfaceLoads, interfaces.get(j), load);
+				}
+			}
+		}
+	}
+
+	private static <K> void add(Map<K, Double> loads, K key, double load) {
+		Double old = loads.get(key);
+		double sum = (old == null ? 0 : old) + load;
+		if (Math.abs(sum) < NO_LOAD) {
+			loads.remove(key);
+		} else {
+			loads.put(key, sum);
+		}
+	}
+
+	private static boolean sameRoute(Route a, Route b) {
+		if (a == null || b == null) {
+			return a == b;
+		}
+		if (!a.getSubSystems().equals(b.getSubSystems())) {
+			return false;
+		}
+		Iterator<LinkGroup> hops = b.getHops().iterator();
+		for (LinkGroup hop : a.getHops()) {
+			if (hop != hops.next()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static String trafficKey(String clockDomain, String channel) {
+		return clockDomain + "\n" + channel;
+	}
+
+	private void fireLoadChanged() {
+		ActionEvent event = new ActionEvent(this, ActionEvent.ACTION_PERFORMED, LOAD_CHANGED_EVENT);
+		for (ActionListener l : listeners) {
+			l.actionPerformed(event);
+		}
+	}
+
+	/**
+	 * The load of a single Channel, and the Sub Systems it was between when it was estimated
+	 */
+	private static class ChannelLoad {
+
+		final String from;
+		final String to;
+		final double load;
+
+		ChannelLoad(String from, String to, double load) {
+			this.from = from;
+			this.to = to;
+			this.load = load;
+		}
+
+	}
+
+	/**
+	 * The load of all the Channels from one Sub System to another, and the route it was put on
+	 */
+	private static class PairLoad {
+
+		final String from;
+		final String to;
+		Route route;
+		double load = 0;
+		int channels = 0;
+
+		PairLoad(String from, String to, Route route) {
+			this.from = from;
+			this.to = to;
+			this.route = route;
+		}
+
+	}
+
+}
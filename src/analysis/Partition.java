@@ -0,0 +1,254 @@
+package analysis;
+
+import graphmodel.ClockDomain;
+import graphmodel.GlobalSystem;
+import graphmodel.SubSystem;
+import graphmodel.SystemSnapshot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class is an assignment of Clock Domains to Sub Systems proposed by a Partitioner, along with how much Channel
+ * traffic it leaves between Sub Systems and how loaded each Sub System is.
+ *
+ * A Partition does not change the model until apply() is called, so it can be previewed first.
+ *
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public class Partition {
+
+	private SystemSnapshot model;
+	private String[] clockDomains;
+	private String[] subSystems;
+	private Map<String, Integer> clockDomainIndex;
+	private Map<String, Integer> subSystemIndex;
+
+	// Sub System of each Clock Domain in the model and in this Partition, by position
+	private int[] original;
+	private int[] assignment;
+
+	private int[] loads;
+	private int[] counts;
+	private int[] originalCounts;
+	private int[] capacities;
+	private int cutWeight;
+	private int originalCutWeight;
+
+	// The Channel graph between Clock Domains, as adjacency lists packed into arrays
+	private int[] xadj;
+	private int[] adjacent;
+	private int[] edgeWeights;
+
+	Partition(SystemSnapshot model, String[] clockDomains, String[] subSystems, int[] original, int[] assignment,
+			int[] weights, int[] capacities, int[] xadj, int[] adjacent, int[] edgeWeights) {
+		this.model = model;
+		this.clockDomains = clockDomains;
+		this.subSystems = subSystems;
+		this.original = original;
+		this.assignment = assignment;
+		this.capacities = capacities;
+		this.xadj = xadj;
+		this.adjacent = adjacent;
+		this.edgeWeights = edgeWeights;
+
+		clockDomainIndex = new HashMap<String, Integer>(clockDomains.length * 2);
+		for (int i = 0; i < clockDomains.length; i++) {
+			clockDomainIndex.put(clockDomains[i], i);
+		}
+		subSystemIndex = new HashMap<String, Integer>(subSystems.length * 2);
+		for (int i = 0; i < subSystems.length; i++) {
+			subSystemIndex.put(subSystems[i], i);
+		}
+
+		loads = new int[subSystems.length];
+		counts = new int[subSystems.length];
+		originalCounts = new int[subSystems.length];
+		for (int i = 0; i < assignment.length; i++) {
+			loads[assignment[i]] += weights[i];
+			counts[assignment[i]]++;
+			originalCounts[original[i]]++;
+		}
+		cutWeight = cutWeight(assignment);
+		originalCutWeight = cutWeight(original);
+	}
+
+	/**
+	 * @return the model this Partition was made for
+	 */
+	public SystemSnapshot getModel() {
+		return model;
+	}
+
+	/**
+	 * @param clockDomain - name of a Clock Domain
+	 * @return name of the Sub System the Clock Domain is assigned to, or null if it is not in the model
+	 */
+	public String getSubSystem(String clockDomain) {
+		Integer index = clockDomainIndex.get(clockDomain);
+		return index == null ? null : subSystems[assignment[index]];
+	}
+
+	/**
+	 * @return the Clock Domains this Partition moves, by name, with the Sub System each moves to, in the order of
+	 *         the model
+	 */
+	public Map<String, String> getMoves() {
+		Map<String, String> moves = new LinkedHashMap<String, String>();
+		for (int i = 0; i < assignment.length; i++) {
+			if (assignment[i] != original[i]) {
+				moves.put(clockDomains[i], subSystems[assignment[i]]);
+			}
+		}
+		return moves;
+	}
+
+	public int getNumMoves() {
+		int count = 0;
+		for (int i = 0; i < assignment.length; i++) {
+			if (assignment[i] != original[i]) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return the number of Channels between Clock Domains in different Sub Systems with this Partition
+	 */
+	public int getCutWeight() {
+		return cutWeight;
+	}
+
+	/**
+	 * @return the number of Channels between Clock Domains in different Sub Systems in the model as it is
+	 */
+	public int getOriginalCutWeight() {
+		return originalCutWeight;
+	}
+
+	/**
+	 * @return total weight of the Clock Domains assigned to the given Sub System, 0 if it is not in the model
+	 */
+	public int getLoad(String subSystem) {
+		Integer index = subSystemIndex.get(subSystem);
+		return index == null ? 0 : loads[index];
+	}
+
+	/**
+	 * @return the number of Clock Domains assigned to the given Sub System, 0 if it is not in the model
+	 */
+	public int getNumClockDomains(String subSystem) {
+		Integer index = subSystemIndex.get(subSystem);
+		return index == null ? 0 : counts[index];
+	}
+
+	/**
+	 * @return the number of Clock Domains the given Sub System has in the model as it is, 0 if it is not in the model
+	 */
+	public int getOriginalNumClockDomains(String subSystem) {
+		Integer index = subSystemIndex.get(subSystem);
+		return index == null ? 0 : originalCounts[index];
+	}
+
+	/**
+	 * @return the weight of Clock Domains the given Sub System can hold, 0 if it is not in the model
+	 */
+	public int getCapacity(String subSystem) {
+		Integer index = subSystemIndex.get(subSystem);
+		return index == null ? 0 : capacities[index];
+	}
+
+	/**
+	 * @return true if no Sub System is loaded over its capacity
+	 */
+	public boolean isFeasible() {
+		for (int i = 0; i < loads.length; i++) {
+			if (loads[i] > capacities[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param subSystem - name of a Sub System
+	 * @return the number of Channels between the given Sub System and each other Sub System, with this Partition.
+	 *         Sub Systems without any are left out
+	 */
+	public Map<String, Integer> getTraffic(String subSystem) {
+		Integer index = subSystemIndex.get(subSystem);
+		if (index == null) {
+			return Collections.emptyMap();
+		}
+		int[] traffic = new int[subSystems.length];
+		for (int u = 0; u < assignment.length; u++) {
+			if (assignment[u] != index) {
+				continue;
+			}
+			for (int e = xadj[u]; e < xadj[u + 1]; e++) {
+				int other = assignment[adjacent[e]];
+				if (other != index) {
+					traffic[other] += edgeWeights[e];
+				}
+			}
+		}
+		Map<String, Integer> result = new LinkedHashMap<String, Integer>();
+		for (int i = 0; i < traffic.length; i++) {
+			if (traffic[i] > 0) {
+				result.put(subSystems[i], traffic[i]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Moves the Clock Domains in the given system as proposed, in a single update, so the whole move can be undone
+	 * in one step. The system must still have every Clock Domain and Sub System involved.
+	 * @param system - the system this Partition was made for
+	 */
+	public void apply(GlobalSystem system) {
+		// Look everything up first, so a model that has changed is left untouched
+		List<ClockDomain> moved = new ArrayList<ClockDomain>();
+		List<SubSystem> targets = new ArrayList<SubSystem>();
+		for (Map.Entry<String, String> move : getMoves().entrySet()) {
+			ClockDomain cd = system.getClockDomain(move.getKey());
+			SubSystem sub = system.getSubSystem(move.getValue());
+			if (cd == null || sub == null) {
+				throw new RuntimeException("Apply Partition: "
+						+ (cd == null ? "Clock Domain " + move.getKey() : "Sub System " + move.getValue())
+						+ " is no longer in the model");
+			}
+			moved.add(cd);
+			targets.add(sub);
+		}
+
+		system.beginUpdate();
+		try {
+			for (int i = 0; i < moved.size(); i++) {
+				system.moveClockDomain(moved.get(i), targets.get(i));
+			}
+		} finally {
+			system.endUpdate();
+		}
+	}
+
+	private int cutWeight(int[] parts) {
+		int cut = 0;
+		for (int u = 0; u < parts.length; u++) {
+			for (int e = xadj[u]; e < xadj[u + 1]; e++) {
+				if (parts[adjacent[e]] != parts[u]) {
+					cut += edgeWeights[e];
+				}
+			}
+		}
+		// Each Channel is counted from both ends
+		return cut / 2;
+	}
+
+}
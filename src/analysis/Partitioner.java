@@ -0,0 +1,741 @@
+package analysis;
+
+import graphmodel.ChannelSnapshot;
+import graphmodel.ClockDomainSnapshot;
+import graphmodel.SubSystemSnapshot;
+import graphmodel.SystemSnapshot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class proposes an assignment of Clock Domains to Sub Systems that keeps as many Channels as possible inside a
+ * Sub System, since Channels between Sub Systems become network traffic over their Links.
+ *
+ * Each Clock Domain has a weight, by default one more than its number of Signals, and each Sub System a capacity, by
+ * default an even share of the total weight plus the allowed imbalance. The Channel graph is partitioned in the
+ * multilevel manner of METIS:
+ * - the graph is coarsened by repeatedly merging Clock Domains joined by the most Channels
+ * - the coarsest graph is partitioned, either from the current assignment or by growing each Sub System from a
+ *   random Clock Domain
+ * - the partition is projected back through each level, and refined at each level by moving Clock Domains on the
+ *   boundary to the Sub System they have the most Channels to, in the manner of Kernighan-Lin and
+ *   Fiduccia-Mattheyses, as long as capacities allow
+ * Several seeds are tried in parallel, and the best feasible result is kept. Seed 0 always starts from the current
+ * assignment, so the proposal is never worse than the model as it is, and Sub Systems are matched to the parts so
+ * that as few Clock Domains as possible move.
+ *
+ * The Partitioner works on a SystemSnapshot, so it can be run on a worker thread while the model is being edited.
+ *
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public class Partitioner {
+
+	public static final double DEFAULT_IMBALANCE = 0.1;
+	public static final int DEFAULT_SEEDS = 8;
+
+	// Coarsening stops once the graph has this many vertices for each part, or stops shrinking
+	private static final int COARSEST_VERTICES_PER_PART = 20;
+	private static final double MIN_COARSENING = 0.95;
+	private static final int REFINEMENT_PASSES = 8;
+
+	private SystemSnapshot model;
+	private String[] clockDomains;
+	private String[] subSystems;
+	private Map<String, Integer> clockDomainIndex;
+	private Map<String, Integer> subSystemIndex;
+
+	// Current Sub System and weight of each Clock Domain, and capacity of each Sub System. 0 means the default
+	private int[] original;
+	private int[] weights;
+	private int[] capacities;
+
+	private Graph graph;
+
+	private double imbalance = DEFAULT_IMBALANCE;
+	private int seeds = DEFAULT_SEEDS;
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * @param model - the model whose Clock Domains are to be partitioned
+	 */
+	public Partitioner(SystemSnapshot model) {
+		this.model = model;
+
+		List<SubSystemSnapshot> subs = model.getSubSystems();
+		subSystems = new String[subs.size()];
+		subSystemIndex = new HashMap<String, Integer>();
+		List<ClockDomainSnapshot> cds = new ArrayList<ClockDomainSnapshot>();
+		List<Integer> parts = new ArrayList<Integer>();
+		for (int i = 0; i < subs.size(); i++) {
+			subSystems[i] = subs.get(i).getName();
+			subSystemIndex.put(subSystems[i], i);
+			for (ClockDomainSnapshot cd : subs.get(i).getClockDomains()) {
+				cds.add(cd);
+				parts.add(i);
+			}
+		}
+
+		clockDomains = new String[cds.size()];
+		clockDomainIndex = new HashMap<String, Integer>(cds.size() * 2);
+		original = new int[cds.size()];
+		weights = new int[cds.size()];
+		for (int i = 0; i < cds.size(); i++) {
+			ClockDomainSnapshot cd = cds.get(i);
+			clockDomains[i] = cd.getName();
+			clockDomainIndex.put(cd.getName(), i);
+			original[i] = parts.get(i);
+			weights[i] = 1 + cd.getInputSignals().size() + cd.getOutputSignals().size();
+		}
+		capacities = new int[subSystems.length];
+
+		graph = buildGraph(cds);
+	}
+
+	/**
+	 * @param clockDomain - name of the Clock Domain
+	 * @param weight - load the Clock Domain puts on its Sub System
+	 */
+	public void setWeight(String clockDomain, int weight) {
+		Integer index = clockDomainIndex.get(clockDomain);
+		if (index == null) {
+			throw new RuntimeException("Partition: there is no Clock Domain named " + clockDomain);
+		}
+		if (weight < 1) {
+			throw new RuntimeException("Partition: the weight of " + clockDomain + " must be at least 1");
+		}
+		weights[index] = weight;
+	}
+
+	/**
+	 * @param subSystem - name of the Sub System
+	 * @param capacity - total weight of Clock Domains the Sub System can hold, or 0 for the default
+	 */
+	public void setCapacity(String subSystem, int capacity) {
+		Integer index = subSystemIndex.get(subSystem);
+		if (index == null) {
+			throw new RuntimeException("Partition: there is no Sub System named " + subSystem);
+		}
+		capacities[index] = Math.max(0, capacity);
+	}
+
+	/**
+	 * @param imbalance - how far over an even share the default capacity of a Sub System is, as a fraction
+	 */
+	public void setImbalance(double imbalance) {
+		this.imbalance = imbalance;
+	}
+
+	/**
+	 * @param seeds - number of different starting points to try
+	 */
+	public void setSeeds(int seeds) {
+		this.seeds = Math.max(1, seeds);
+	}
+
+	/**
+	 * @param threads - number of threads to try the seeds on
+	 */
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Partitions the Clock Domains
+	 * @return the best assignment found
+	 * @throws InterruptedException if the thread is interrupted, in which case the seeds still running are stopped
+	 */
+	public Partition run() throws InterruptedException {
+		final int[] caps = getCapacities();
+		if (subSystems.length <= 1 || clockDomains.length == 0) {
+			return new Partition(model, clockDomains, subSystems, original, original, weights, caps, graph.xadj,
+					graph.adjacent, graph.edgeWeights);
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, seeds));
+		List<Future<int[]>> futures = new ArrayList<Future<int[]>>();
+		try {
+			for (int i = 0; i < seeds; i++) {
+				final int seed = i;
+				futures.add(pool.submit(new Callable<int[]>() {
+					@Override
+					public int[] call() {
+						return partition(seed, caps);
+					}
+				}));
+			}
+
+			int[] best = null;
+			int bestCut = 0;
+			boolean bestFeasible = false;
+			int bestMoves = 0;
+			for (Future<int[]> future : futures) {
+				int[] parts = future.get();
+				boolean feasible = isFeasible(parts, caps);
+				int cut = graph.cutWeight(parts);
+				int moves = countMoves(parts);
+				if (best == null || (feasible && !bestFeasible)
+						|| (feasible == bestFeasible && (cut < bestCut || (cut == bestCut && moves < bestMoves)))) {
+					best = parts;
+					bestCut = cut;
+					bestFeasible = feasible;
+					bestMoves = moves;
+				}
+			}
+			return new Partition(model, clockDomains, subSystems, original, best, weights, caps, graph.xadj,
+					graph.adjacent, graph.edgeWeights);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Partition: " + e.getCause(), e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * @return the capacity of each Sub System, filling in the defaults
+	 */
+	private int[] getCapacities() {
+		long total = 0;
+		int heaviest = 0;
+		for (int w : weights) {
+			total += w;
+			heaviest = Math.max(heaviest, w);
+		}
+		int share = (int) Math.ceil(total * (1 + imbalance) / Math.max(1, subSystems.length));
+		int[] caps = new int[subSystems.length];
+		for (int i = 0; i < caps.length; i++) {
+			caps[i] = capacities[i] > 0 ? capacities[i] : Math.max(share, heaviest);
+		}
+		return caps;
+	}
+
+	/**
+	 * Runs the whole multilevel partitioning from one seed
+	 * @return the Sub System of each Clock Domain
+	 */
+	private int[] partition(int seed, int[] caps) {
+		Random random = new Random(seed * 0x9E3779B97F4A7C15L + 1);
+		int k = subSystems.length;
+		boolean fromCurrent = seed == 0;
+
+		// Coarsen. Starting from the current assignment, only Clock Domains in the same Sub System are merged, so it
+		// carries over to the coarsest graph exactly
+		int minCap = Integer.MAX_VALUE;
+		for (int c : caps) {
+			minCap = Math.min(minCap, c);
+		}
+		int maxVertexWeight = Math.max(1, minCap / 4);
+		List<Graph> levels = new ArrayList<Graph>();
+		List<int[]> maps = new ArrayList<int[]>();
+		Graph g = graph;
+		int[] restrict = fromCurrent ? original : null;
+		while (g.n > COARSEST_VERTICES_PER_PART * k) {
+			int[] map = new int[g.n];
+			Graph coarse = g.coarsen(random, maxVertexWeight, restrict, map);
+			if (coarse.n > MIN_COARSENING * g.n) {
+				break;
+			}
+			levels.add(g);
+			maps.add(map);
+			if (restrict != null) {
+				int[] coarseRestrict = new int[coarse.n];
+				for (int u = 0; u < g.n; u++) {
+					coarseRestrict[map[u]] = restrict[u];
+				}
+				restrict = coarseRestrict;
+			}
+			g = coarse;
+		}
+
+		// Partition the coarsest graph
+		int[] parts;
+		if (fromCurrent) {
+			parts = restrict.clone();
+		} else {
+			parts = g.grow(random, caps);
+		}
+		int[] loads = g.loads(parts, k);
+		g.balance(parts, loads, caps);
+		g.refine(random, parts, loads, caps);
+
+		// Project back through each level, refining as we go
+		for (int level = levels.size() - 1; level >= 0; level--) {
+			Graph fine = levels.get(level);
+			int[] map = maps.get(level);
+			int[] fineParts = new int[fine.n];
+			for (int u = 0; u < fine.n; u++) {
+				fineParts[u] = parts[map[u]];
+			}
+			parts = fineParts;
+			fine.refine(random, parts, loads, caps);
+		}
+
+		if (!fromCurrent) {
+			parts = relabel(parts, caps);
+		}
+		return parts;
+	}
+
+	/**
+	 * The parts grown from random Clock Domains are numbered arbitrarily, so they are matched to the Sub Systems
+	 * with the most of the same Clock Domains, as far as capacities allow, to keep the number of moves down
+	 */
+	private int[] relabel(int[] parts, int[] caps) {
+		int k = subSystems.length;
+		long[] overlap = new long[k * k];
+		int[] loads = new int[k];
+		for (int u = 0; u < parts.length; u++) {
+			overlap[parts[u] * k + original[u]] += weights[u];
+			loads[parts[u]] += weights[u];
+		}
+
+		// Pairs in order of overlap, packed as overlap and then the pair so they sort together
+		Long[] pairs = new Long[k * k];
+		for (int i = 0; i < pairs.length; i++) {
+			pairs[i] = (overlap[i] << 32) | i;
+		}
+		Arrays.sort(pairs);
+
+		int[] label = new int[k];
+		Arrays.fill(label, -1);
+		boolean[] taken = new boolean[k];
+		for (int i = pairs.length - 1; i >= 0; i--) {
+			int pair = (int) (pairs[i] & 0xFFFFFFFFL);
+			int part = pair / k;
+			int sub = pair % k;
+			if (label[part] == -1 && !taken[sub] && loads[part] <= caps[sub]) {
+				label[part] = sub;
+				taken[sub] = true;
+			}
+		}
+		// Parts that no free Sub System can hold keep their own number if it is free, or take any that is left
+		for (int part = 0; part < k; part++) {
+			if (label[part] == -1 && !taken[part]) {
+				label[part] = part;
+				taken[part] = true;
+			}
+		}
+		int free = 0;
+		for (int part = 0; part < k; part++) {
+			if (label[part] == -1) {
+				while (taken[free]) {
+					free++;
+				}
+				label[part] = free;
+				taken[free] = true;
+			}
+		}
+
+		int[] result = new int[parts.length];
+		for (int u = 0; u < parts.length; u++) {
+			result[u] = label[parts[u]];
+		}
+		return result;
+	}
+
+	private boolean isFeasible(int[] parts, int[] caps) {
+		int[] loads = graph.loads(parts, caps.length);
+		for (int i = 0; i < loads.length; i++) {
+			if (loads[i] > caps[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int countMoves(int[] parts) {
+		int count = 0;
+		for (int u = 0; u < parts.length; u++) {
+			if (parts[u] != original[u]) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Builds the Channel graph, with an edge between two Clock Domains weighted by the number of Channels between
+	 * them in either direction. Channels to Clock Domains that are not in the model are left out
+	 */
+	private Graph buildGraph(List<ClockDomainSnapshot> cds) {
+		int n = cds.size();
+		int[] degree = new int[n];
+		List<int[]> edges = new ArrayList<int[]>();
+		for (int u = 0; u < n; u++) {
+			for (ChannelSnapshot ch : cds.get(u).getOutputChannels()) {
+				Integer v = ch.getToClockDomain() == null ? null : clockDomainIndex.get(ch.getToClockDomain());
+				if (v != null && v != u) {
+					edges.add(new int[] { u, v });
+					degree[u]++;
+					degree[v]++;
+				}
+			}
+		}
+
+		// Lay the edges out by vertex, both ways round
+		int[] start = new int[n + 1];
+		for (int u = 0; u < n; u++) {
+			start[u + 1] = start[u] + degree[u];
+		}
+		int[] fill = Arrays.copyOf(start, n);
+		int[] ends = new int[start[n]];
+		for (int[] e : edges) {
+			ends[fill[e[0]]++] = e[1];
+			ends[fill[e[1]]++] = e[0];
+		}
+
+		// Merge repeated edges into one with their combined weight
+		int[] xadj = new int[n + 1];
+		int[] adjacent = new int[ends.length];
+		int[] edgeWeights = new int[ends.length];
+		int[] position = new int[n];
+		Arrays.fill(position, -1);
+		int count = 0;
+		for (int u = 0; u < n; u++) {
+			xadj[u] = count;
+			for (int e = start[u]; e < start[u + 1]; e++) {
+				int v = ends[e];
+				if (position[v] >= xadj[u]) {
+					edgeWeights[position[v]]++;
+				} else {
+					position[v] = count;
+					adjacent[count] = v;
+					edgeWeights[count] = 1;
+					count++;
+				}
+			}
+		}
+		xadj[n] = count;
+
+		return new Graph(weights, xadj, Arrays.copyOf(adjacent, count), Arrays.copyOf(edgeWeights, count));
+	}
+
+	/**
+	 * A weighted undirected graph, with the adjacency lists packed into arrays: the edges of vertex u are at
+	 * positions xadj[u] up to xadj[u + 1]
+	 */
+	private static class Graph {
+
+		final int n;
+		final int[] vertexWeights;
+		final int[] xadj;
+		final int[] adjacent;
+		final int[] edgeWeights;
+
+		Graph(int[] vertexWeights, int[] xadj, int[] adjacent, int[] edgeWeights) {
+			this.n = vertexWeights.length;
+			this.vertexWeights = vertexWeights;
+			this.xadj = xadj;
+			this.adjacent = adjacent;
+			this.edgeWeights = edgeWeights;
+		}
+
+		int[] loads(int[] parts, int k) {
+			int[] loads = new int[k];
+			for (int u = 0; u < n; u++) {
+				loads[parts[u]] += vertexWeights[u];
+			}
+			return loads;
+		}
+
+		int cutWeight(int[] parts) {
+			int cut = 0;
+			for (int u = 0; u < n; u++) {
+				for (int e = xadj[u]; e < xadj[u + 1]; e++) {
+					if (parts[adjacent[e]] != parts[u]) {
+						cut += edgeWeights[e];
+					}
+				}
+			}
+			return cut / 2;
+		}
+
+		/**
+		 * Merges each vertex with the unmatched neighbour it has the heaviest edge to, visiting the vertices in a
+		 * random order
+		 * @param maxVertexWeight - heaviest vertex the merge may make
+		 * @param restrict - part of each vertex, only vertices in the same part are merged. Null for no restriction
+		 * @param map - filled in with the coarse vertex of each vertex
+		 * @return the coarser graph
+		 */
+		Graph coarsen(Random random, int maxVertexWeight, int[] restrict, int[] map) {
+			int[] match = new int[n];
+			Arrays.fill(match, -1);
+			// The one or two vertices merged into each coarse vertex
+			int[] first = new int[n];
+			int[] second = new int[n];
+			int coarseN = 0;
+			for (int u : permutation(random)) {
+				if (match[u] != -1) {
+					continue;
+				}
+				int best = u;
+				int bestWeight = 0;
+				for (int e = xadj[u]; e < xadj[u + 1]; e++) {
+					int v = adjacent[e];
+					if (v != u && match[v] == -1 && edgeWeights[e] > bestWeight
+							&& vertexWeights[u] + vertexWeights[v] <= maxVertexWeight
+							&& (restrict == null || restrict[u] == restrict[v])) {
+						best = v;
+						bestWeight = edgeWeights[e];
+					}
+				}
+				match[u] = best;
+				match[best] = u;
+				map[u] = coarseN;
+				map[best] = coarseN;
+				first[coarseN] = u;
+				second[coarseN] = best;
+				coarseN++;
+			}
+
+			// Build the coarse adjacency lists, combining the edges of each merged pair
+			int[] coarseWeights = new int[coarseN];
+			int[] coarseXadj = new int[coarseN + 1];
+			int[] coarseAdjacent = new int[adjacent.length];
+			int[] coarseEdgeWeights = new int[adjacent.length];
+			int[] position = new int[coarseN];
+			Arrays.fill(position, -1);
+			int count = 0;
+			for (int c = 0; c < coarseN; c++) {
+				coarseXadj[c] = count;
+				for (int m = 0; m < 2; m++) {
+					int v = m == 0 ? first[c] : second[c];
+					if (m == 1 && v == first[c]) {
+						break;
+					}
+					coarseWeights[c] += vertexWeights[v];
+					for (int e = xadj[v]; e < xadj[v + 1]; e++) {
+						int target = map[adjacent[e]];
+						if (target == c) {
+							continue;
+						}
+						if (position[target] >= coarseXadj[c]) {
+							coarseEdgeWeights[position[target]] += edgeWeights[e];
+						} else {
+							position[target] = count;
+							coarseAdjacent[count] = target;
+							coarseEdgeWeights[count] = edgeWeights[e];
+							count++;
+						}
+					}
+				}
+			}
+			coarseXadj[coarseN] = count;
+			return new Graph(coarseWeights, coarseXadj, Arrays.copyOf(coarseAdjacent, count), Arrays.copyOf(
+					coarseEdgeWeights, count));
+		}
+
+		/**
+		 * Grows each part from a random vertex, adding neighbours breadth first until the part reaches its share
+		 * of the total weight
+		 */
+		int[] grow(Random random, int[] caps) {
+			int k = caps.length;
+			long totalCap = 0;
+			for (int c : caps) {
+				totalCap += c;
+			}
+			long total = 0;
+			for (int w : vertexWeights) {
+				total += w;
+			}
+
+			int[] parts = new int[n];
+			Arrays.fill(parts, -1);
+			int[] order = permutation(random);
+			int next = 0;
+			int[] queue = new int[n];
+			for (int p = 0; p < k; p++) {
+				long target = total * caps[p] / totalCap;
+				long load = 0;
+				int head = 0;
+				int tail = 0;
+				while (load < target) {
+					if (head == tail) {
+						// Start again from a random vertex not yet assigned
+						while (next < n && parts[order[next]] != -1) {
+							next++;
+						}
+						if (next == n) {
+							break;
+						}
+						parts[order[next]] = p;
+						load += vertexWeights[order[next]];
+						queue[tail++] = order[next];
+						continue;
+					}
+					int u = queue[head++];
+					for (int e = xadj[u]; e < xadj[u + 1] && load < target; e++) {
+						int v = adjacent[e];
+						if (parts[v] == -1 && load + vertexWeights[v] <= caps[p]) {
+							parts[v] = p;
+							load += vertexWeights[v];
+							queue[tail++] = v;
+						}
+					}
+				}
+			}
+
+			// Whatever is left goes to the part it has the most edges to, or the least loaded
+			int[] loads = new int[k];
+			for (int u = 0; u < n; u++) {
+				if (parts[u] != -1) {
+					loads[parts[u]] += vertexWeights[u];
+				}
+			}
+			for (int u = 0; u < n; u++) {
+				if (parts[u] != -1) {
+					continue;
+				}
+				int best = -1;
+				int bestEdges = -1;
+				for (int e = xadj[u]; e < xadj[u + 1]; e++) {
+					int p = parts[adjacent[e]];
+					if (p != -1 && edgeWeights[e] > bestEdges && loads[p] + vertexWeights[u] <= caps[p]) {
+						best = p;
+						bestEdges = edgeWeights[e];
+					}
+				}
+				if (best == -1) {
+					best = 0;
+					for (int p = 1; p < k; p++) {
+						if ((long) loads[p] * caps[best] < (long) loads[best] * caps[p]) {
+							best = p;
+						}
+					}
+				}
+				parts[u] = best;
+				loads[best] += vertexWeights[u];
+			}
+			return parts;
+		}
+
+		/**
+		 * Moves vertices out of parts that are over capacity, choosing each time the move that loses the fewest
+		 * edges, until every part fits or nothing more can be moved
+		 */
+		void balance(int[] parts, int[] loads, int[] caps) {
+			int k = caps.length;
+			int[] connection = new int[k];
+			while (true) {
+				int over = -1;
+				for (int p = 0; p < k; p++) {
+					if (loads[p] > caps[p] && (over == -1 || loads[p] - caps[p] > loads[over] - caps[over])) {
+						over = p;
+					}
+				}
+				if (over == -1) {
+					return;
+				}
+
+				int bestVertex = -1;
+				int bestPart = -1;
+				int bestGain = Integer.MIN_VALUE;
+				for (int u = 0; u < n; u++) {
+					if (parts[u] != over) {
+						continue;
+					}
+					for (int e = xadj[u]; e < xadj[u + 1]; e++) {
+						connection[parts[adjacent[e]]] += edgeWeights[e];
+					}
+					for (int p = 0; p < k; p++) {
+						if (p != over && loads[p] + vertexWeights[u] <= caps[p]) {
+							int gain = connection[p] - connection[over];
+							if (gain > bestGain) {
+								bestGain = gain;
+								bestVertex = u;
+								bestPart = p;
+							}
+						}
+					}
+					for (int e = xadj[u]; e < xadj[u + 1]; e++) {
+						connection[parts[adjacent[e]]] = 0;
+					}
+				}
+				if (bestVertex == -1) {
+					// Nothing in the part fits anywhere else
+					return;
+				}
+				parts[bestVertex] = bestPart;
+				loads[over] -= vertexWeights[bestVertex];
+				loads[bestPart] += vertexWeights[bestVertex];
+			}
+		}
+
+		/**
+		 * Moves vertices on the boundary to the neighbouring part they have the most edges to, if that lowers the
+		 * cut, or keeps it the same while evening out the loads, and the part has room for them
+		 */
+		void refine(Random random, int[] parts, int[] loads, int[] caps) {
+			int[] connection = new int[caps.length];
+			for (int pass = 0; pass < REFINEMENT_PASSES; pass++) {
+				int moved = 0;
+				for (int u : permutation(random)) {
+					int own = parts[u];
+					boolean boundary = false;
+					for (int e = xadj[u]; e < xadj[u + 1]; e++) {
+						int p = parts[adjacent[e]];
+						connection[p] += edgeWeights[e];
+						boundary |= p != own;
+					}
+					if (boundary) {
+						int best = own;
+						int bestGain = 0;
+						for (int e = xadj[u]; e < xadj[u + 1]; e++) {
+							int p = parts[adjacent[e]];
+							if (p == own || p == best || loads[p] + vertexWeights[u] > caps[p]) {
+								continue;
+							}
+							int gain = connection[p] - connection[own];
+							if (gain > bestGain || (gain == bestGain && best == own && gain == 0
+									&& loads[p] + vertexWeights[u] < loads[own])) {
+								best = p;
+								bestGain = gain;
+							}
+						}
+						if (best != own) {
+							parts[u] = best;
+							loads[own] -= vertexWeights[u];
+							loads[best] += vertexWeights[u];
+							moved++;
+						}
+					}
+					for (int e = xadj[u]; e < xadj[u + 1]; e++) {
+						connection[parts[adjacent[e]]] = 0;
+					}
+					connection[own] = 0;
+				}
+				if (moved == 0) {
+					return;
+				}
+			}
+		}
+
+		private int[] permutation(Random random) {
+			int[] order = new int[n];
+			for (int i = 0; i < n; i++) {
+				order[i] = i;
+			}
+			for (int i = n - 1; i > 0; i--) {
+				int j = random.nextInt(i + 1);
+				int swap = order[i];
+				order[i] = order[j];
+				order[j] = swap;
+			}
+			return order;
+		}
+
+	}
+
+}
@@ -0,0 +1,96 @@
+package analysis;
+
+import graphmodel.Link;
+import graphmodel.LinkGroup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class is a shortest route between two Sub Systems found by a RoutingTable: the Sub Systems it passes through,
+ * and the Link group it crosses at each hop between them.
+ *
+ * A route from a Sub System to itself has no hops.
+ *
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public class Route {
+
+	private List<String> subSystems;
+	private List<LinkGroup> hops;
+
+	Route(List<String> subSystems, List<LinkGroup> hops) {
+		this.subSystems = Collections.unmodifiableList(subSystems);
+		this.hops = Collections.unmodifiableList(hops);
+	}
+
+	/**
+	 * @return name of the Sub System the route starts from
+	 */
+	public String getFrom() {
+		return subSystems.get(0);
+	}
+
+	/**
+	 * @return name of the Sub System the route ends at
+	 */
+	public String getTo() {
+		return subSystems.get(subSystems.size() - 1);
+	}
+
+	/**
+	 * @return names of the Sub Systems along the route, from the start to the end
+	 */
+	public List<String> getSubSystems() {
+		return subSystems;
+	}
+
+	/**
+	 * @return the Link group crossed at each hop, in order
+	 */
+	public List<LinkGroup> getHops() {
+		return hops;
+	}
+
+	public int getNumHops() {
+		return hops.size();
+	}
+
+	/**
+	 * @return the Link interfaces the route leaves and enters by, two for each hop, in order
+	 */
+	public List<Link> getInterfaces() {
+		List<Link> interfaces = new ArrayList<Link>(hops.size() * 2);
+		for (int i = 0; i < hops.size(); i++) {
+			interfaces.add(getInterface(hops.get(i), subSystems.get(i)));
+			interfaces.add(getInterface(hops.get(i), subSystems.get(i + 1)));
+		}
+		return interfaces;
+	}
+
+	private static Link getInterface(LinkGroup group, String subSystem) {
+		for (Link l : group.getLinks()) {
+			if (l.getSubSystem() != null && l.getSubSystem().getName().equals(subSystem)) {
+				return l;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the route as "SS1 -[TCP]-> SS2 -[TCP]-> SS3", naming the interface each hop leaves by
+	 */
+	@Override
+	public String toString() {
+		StringBuilder route = new StringBuilder(subSystems.get(0));
+		for (int i = 0; i < hops.size(); i++) {
+			Link exit = getInterface(hops.get(i), subSystems.get(i));
+			route.append(" -[").append(exit == null ? "?" : exit.getLinkInterface()).append("]-> ");
+			route.append(subSystems.get(i + 1));
+		}
+		return route.toString();
+	}
+
+}
@@ -0,0 +1,339 @@
+package analysis;
+
+import graphmodel.Channel;
+import graphmodel.ChangeType;
+import graphmodel.ClockDomain;
+import graphmodel.GlobalSystem;
+import graphmodel.Link;
+import graphmodel.LinkGroup;
+import graphmodel.ModelChange;
+import graphmodel.ModelChangeEvent;
+import graphmodel.SubSystem;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class works out which Link groups a Channel between two Sub Systems has to cross, by finding the shortest
+ * route, in hops, between every pair of Sub Systems joined through the Link groups of a GlobalSystem. Every pair of
+ * Sub Systems in a Link group is one hop apart.
+ *
+ * The routes from a Sub System are found together by a breadth first search the first time one of them is asked for,
+ * and kept until the Link groups change. When a Link group is added, only the routes from Sub Systems it brings
+ * closer to something are dropped, and when one is removed, only the routes that crossed it, so the rest are still
+ * there for the next lookup. Sub Systems being added, removed or renamed drops every route.
+ *
+ * Sub Systems are identified by name, since that is how a Link refers to its Sub System in the configuration.
+ *
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public class RoutingTable implements ActionListener {
+
+	private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+	private GlobalSystem system;
+
+	// The Sub System graph: each Sub System by name and number, and the hops from each to its neighbours.
+	// Built when first needed after the Sub Systems change
+	private Map<String, Integer> index;
+	private List<String> names;
+	private List<List<Hop>> hops;
+	private boolean built = false;
+
+	// For each Sub System whose routes have been found: the number of hops to every other, and the Sub System and
+	// Link group each route arrives from. A null row has not been found, or has been dropped
+	private int[][] distance;
+	private int[][] previous;
+	private LinkGroup[][] via;
+
+	/**
+	 * @param system - the system to route Channels in
+	 */
+	public RoutingTable(GlobalSystem system) {
+		this.system = system;
+		system.addListener(this);
+	}
+
+	/**
+	 * @param from - name of the Sub System to start from
+	 * @param to - name of the Sub System to end at
+	 * @return the shortest route, null if either Sub System is not in the model, or no Link groups join them
+	 */
+	public Route getRoute(String from, String to) {
+		build();
+		Integer source = index.get(from);
+		Integer target = index.get(to);
+		if (source == null || target == null) {
+			return null;
+		}
+		findRoutes(source);
+		if (distance[source][target] == UNREACHABLE) {
+			return null;
+		}
+
+		List<String> subSystems = new ArrayList<String>();
+		List<LinkGroup> groups = new ArrayList<LinkGroup>();
+		for (int v = target; v != source; v = previous[source][v]) {
+			subSystems.add(names.get(v));
+			groups.add(via[source][v]);
+		}
+		subSystems.add(names.get(source));
+		Collections.reverse(subSystems);
+		Collections.reverse(groups);
+		return new Route(subSystems, groups);
+	}
+
+	/**
+	 * @return the number of hops on the shortest route between the given Sub Systems, -1 if there is no route
+	 */
+	public int getNumHops(String from, String to) {
+		build();
+		Integer source = index.get(from);
+		Integer target = index.get(to);
+		if (source == null || target == null) {
+			return -1;
+		}
+		findRoutes(source);
+		int hops = distance[source][target];
+		return hops == UNREACHABLE ? -1 : hops;
+	}
+
+	/**
+	 * @param ch - a Channel in the model
+	 * @return the route the Channel takes from the Sub System of the Clock Domain it comes from to the Sub System of
+	 *         the one it goes to, null if either end is not in the model or there is no route. A Channel inside a Sub
+	 *         System has a route with no hops
+	 */
+	public Route getRoute(Channel ch) {
+		SubSystem from = ch.getFromClockDomain() == null ? null : system.getSubSystem(ch.getFromClockDomain());
+		SubSystem to = ch.getToClockDomain() == null ? null : system.getSubSystem(ch.getToClockDomain());
+		if (from == null || to == null) {
+			return null;
+		}
+		return getRoute(from.getName(), to.getName());
+	}
+
+	/**
+	 * Finds the Channels between Sub Systems whose route crosses more than the given number of Link groups, or that
+	 * have no route at all
+	 * @param maxHops - the most hops a Channel is expected to cross
+	 * @return the Channels, in the order of the model
+	 */
+	public List<Channel> getChannelsOver(int maxHops) {
+		List<Channel> channels = new ArrayList<Channel>();
+		for (SubSystem sub : system.getSubSystems()) {
+			for (ClockDomain cd : sub.getClockDomains()) {
+				for (Channel ch : cd.getOutputChannels()) {
+					SubSystem to = ch.getToClockDomain() == null ? null
+							: system.getSubSystem(ch.getToClockDomain());
+					if (to == null || to == sub) {
+						continue;
+					}
+					int hops = getNumHops(sub.getName(), to.getName());
+					if (hops == -1 || hops > maxHops) {
+						channels.add(ch);
+					}
+				}
+			}
+		}
+		return channels;
+	}
+
+	/**
+	 * This method is fired every time there is a change in the object model. Changes to Link groups only drop the
+	 * routes they affect, changes to the Sub Systems drop them all.
+	 */
+	@Override
+	public void actionPerformed(ActionEvent event) {
+		if (!(event instanceof ModelChangeEvent) || ((ModelChangeEvent) event).getChanges().isEmpty()) {
+			built = false;
+			return;
+		}
+
+		for (ModelChange change : ((ModelChangeEvent) event).getChanges()) {
+			if (!built) {
+				return;
+			}
+			if (change.getComponent() instanceof SubSystem) {
+				// An edited Sub System keeping its name keeps its routes, as Links refer to it by name
+				if (change.getType() != ChangeType.CHANGED
+						|| !change.getComponent().getName().equals(change.getOldComponent().getName())) {
+					built = false;
+				}
+			} else if (change.getComponent() instanceof LinkGroup) {
+				if (change.getType() != ChangeType.ADDED) {
+					removeLinkGroup((LinkGroup) (change.getType() == ChangeType.CHANGED ? change.getOldComponent()
+							: change.getComponent()));
+				}
+				if (change.getType() != ChangeType.REMOVED) {
+					addLinkGroup((LinkGroup) change.getComponent());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Builds the Sub System graph from the model, if it is not already up to date, with no routes found yet
+	 */
+	private void build() {
+		if (built) {
+			return;
+		}
+		index = new HashMap<String, Integer>();
+		names = new ArrayList<String>();
+		hops = new ArrayList<List<Hop>>();
+		for (SubSystem sub : system.getSubSystems()) {
+			index.put(sub.getName(), names.size());
+			names.add(sub.getName());
+			hops.add(new ArrayList<Hop>());
+		}
+		distance = new int[names.size()][];
+		previous = new int[names.size()][];
+		via = new LinkGroup[names.size()][];
+		built = true;
+
+		for (LinkGroup group : system.getLinks()) {
+			addLinkGroup(group);
+		}
+	}
+
+	/**
+	 * Adds the hops between every pair of Sub Systems in the Link group, and drops the routes it shortens
+	 */
+	private void addLinkGroup(LinkGroup group) {
+		int[] members = getMembers(group);
+		for (int i = 0; i < members.length; i++) {
+			for (int j = i + 1; j < members.length; j++) {
+				hops.get(members[i]).add(new Hop(members[j], group));
+				hops.get(members[j]).add(new Hop(members[i], group));
+			}
+		}
+
+		// A route gets shorter if the group joins a Sub System to one more than a hop further away
+		for (int s = 0; s < distance.length; s++) {
+			if (distance[s] == null) {
+				continue;
+			}
+			int nearest = UNREACHABLE;
+			int furthest = 0;
+			for (int m : members) {
+				nearest = Math.min(nearest, distance[s][m]);
+				furthest = Math.max(furthest, distance[s][m]);
+			}
+			if (nearest != UNREACHABLE && furthest > nearest + 1) {
+				dropRoutes(s);
+			}
+		}
+	}
+
+	/**
+	 * Removes the hops through the Link group, and drops the routes that crossed it
+	 */
+	private void removeLinkGroup(LinkGroup group) {
+		for (int m : getMembers(group)) {
+			List<Hop> list = hops.get(m);
+			for (int i = list.size() - 1; i >= 0; i--) {
+				if (list.get(i).group == group) {
+					list.remove(i);
+				}
+			}
+		}
+
+		for (int s = 0; s < via.length; s++) {
+			if (via[s] == null) {
+				continue;
+			}
+			for (LinkGroup g : via[s]) {
+				if (g == group) {
+					dropRoutes(s);
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the numbers of the different Sub Systems in the model that the Link group joins
+	 */
+	private int[] getMembers(LinkGroup group) {
+		int[] members = new int[group.getLinks().size()];
+		int count = 0;
+		for (Link l : group.getLinks()) {
+			Integer m = l.getSubSystem() == null ? null : index.get(l.getSubSystem().getName());
+			boolean repeated = false;
+			for (int i = 0; i < count && m != null; i++) {
+				repeated |= members[i] == m;
+			}
+			if (m != null && !repeated) {
+				members[count++] = m;
+			}
+		}
+		return Arrays.copyOf(members, count);
+	}
+
+	private void dropRoutes(int source) {
+		distance[source] = null;
+		previous[source] = null;
+		via[source] = null;
+	}
+
+	/**
+	 * Finds the routes from the given Sub System to every other, by a breadth first search, unless they are already
+	 * known
+	 */
+	private void findRoutes(int source) {
+		if (distance[source] != null) {
+			return;
+		}
+		int n = names.size();
+		int[] dist = new int[n];
+		int[] prev = new int[n];
+		LinkGroup[] groups = new LinkGroup[n];
+		Arrays.fill(dist, UNREACHABLE);
+		Arrays.fill(prev, -1);
+
+		int[] queue = new int[n];
+		int head = 0;
+		int tail = 0;
+		dist[source] = 0;
+		queue[tail++] = source;
+		while (head < tail) {
+			int u = queue[head++];
+			for (Hop hop : hops.get(u)) {
+				if (dist[hop.to] == UNREACHABLE) {
+					dist[hop.to] = dist[u] + 1;
+					prev[hop.to] = u;
+					groups[hop.to] = hop.group;
+					queue[tail++] = hop.to;
+				}
+			}
+		}
+
+		distance[source] = dist;
+		previous[source] = prev;
+		via[source] = groups;
+	}
+
+	/**
+	 * A hop from one Sub System to another through a Link group
+	 */
+	private static class Hop {
+
+		final int to;
+		final LinkGroup group;
+
+		Hop(int to, LinkGroup group) {
+			this.to = to;
+			this.group = group;
+		}
+
+	}
+
+}
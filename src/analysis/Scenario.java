@@ -0,0 +1,156 @@
+package analysis;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class holds the assumptions a Simulator runs a model under: how long each Clock Domain tick takes, how often
+ * each Clock Domain is released to tick, how the Sub Systems schedule them, and how long a Channel message takes to
+ * cross a Link.
+ *
+ * Times are in microseconds. Anything not set for a particular Clock Domain or Sub System falls back to the defaults:
+ * - a tick costs a base time, plus a time for each Signal and Channel of the Clock Domain
+ * - a Clock Domain is released once each default period, and has priority 0
+ * - a Sub System uses a priority scheduler if the name of its scheduler class mentions "priority", and round robin
+ *   otherwise
+ *
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public class Scenario {
+
+	public static final long DEFAULT_DURATION = 1000000;
+	public static final long DEFAULT_PERIOD = 1000;
+	public static final long DEFAULT_BASE_COST = 5;
+	public static final long DEFAULT_SIGNAL_COST = 1;
+	public static final long DEFAULT_CHANNEL_COST = 2;
+	public static final long DEFAULT_HOP_LATENCY = 100;
+
+	/**
+	 * How a Sub System chooses which of its released Clock Domains ticks next. Ticks are never interrupted.
+	 * - ROUND_ROBIN takes them in the order they were released
+	 * - PRIORITY takes the highest priority first, and those of equal priority in the order they were released
+	 */
+	public enum Policy {
+		ROUND_ROBIN, PRIORITY
+	}
+
+	private String name;
+	private long duration = DEFAULT_DURATION;
+	private long period = DEFAULT_PERIOD;
+	private long baseCost = DEFAULT_BASE_COST;
+	private long signalCost = DEFAULT_SIGNAL_COST;
+	private long channelCost = DEFAULT_CHANNEL_COST;
+	private long hopLatency = DEFAULT_HOP_LATENCY;
+
+	// Settings for individual Clock Domains and Sub Systems, by name
+	private Map<String, Long> costs = new HashMap<String, Long>();
+	private Map<String, Long> periods = new HashMap<String, Long>();
+	private Map<String, Integer> priorities = new HashMap<String, Integer>();
+	private Map<String, Policy> policies = new HashMap<String, Policy>();
+
+	/**
+	 * @param name - name to report the results under
+	 */
+	public Scenario(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @param duration - simulated time to run for
+	 */
+	public void setDuration(long duration) {
+		this.duration = duration;
+	}
+
+	public long getDuration() {
+		return duration;
+	}
+
+	/**
+	 * @param period - time between releases of the Clock Domains without a period of their own
+	 */
+	public void setDefaultPeriod(long period) {
+		this.period = period;
+	}
+
+	/**
+	 * Sets how the cost of a tick is estimated for the Clock Domains without a cost of their own
+	 * @param base - cost of every tick
+	 * @param perSignal - cost added for each input and output Signal
+	 * @param perChannel - cost added for each input and output Channel
+	 */
+	public void setDefaultCost(long base, long perSignal, long perChannel) {
+		baseCost = base;
+		signalCost = perSignal;
+		channelCost = perChannel;
+	}
+
+	/**
+	 * @param hopLatency - time a Channel message takes to cross each Link group on its route
+	 */
+	public void setHopLatency(long hopLatency) {
+		this.hopLatency = hopLatency;
+	}
+
+	public long getHopLatency() {
+		return hopLatency;
+	}
+
+	public void setCost(String clockDomain, long cost) {
+		costs.put(clockDomain, cost);
+	}
+
+	public void setPeriod(String clockDomain, long period) {
+		periods.put(clockDomain, period);
+	}
+
+	/**
+	 * @param priority - priority of the Clock Domain under a PRIORITY scheduler, higher first
+	 */
+	public void setPriority(String clockDomain, int priority) {
+		priorities.put(clockDomain, priority);
+	}
+
+	public void setPolicy(String subSystem, Policy policy) {
+		policies.put(subSystem, policy);
+	}
+
+	/**
+	 * @return the cost of a tick of the named Clock Domain, at least 1
+	 */
+	public long getCost(String clockDomain, int numSignals, int numChannels) {
+		Long cost = costs.get(clockDomain);
+		return Math.max(1, cost != null ? cost : baseCost + signalCost * numSignals + channelCost * numChannels);
+	}
+
+	/**
+	 * @return the time between releases of the named Clock Domain, at least 1
+	 */
+	public long getPeriod(String clockDomain) {
+		Long p = periods.get(clockDomain);
+		return Math.max(1, p != null ? p : period);
+	}
+
+	public int getPriority(String clockDomain) {
+		Integer priority = priorities.get(clockDomain);
+		return priority != null ? priority : 0;
+	}
+
+	/**
+	 * @return the policy of the named Sub System, from its scheduler class unless one has been set
+	 */
+	public Policy getPolicy(String subSystem, String schedulerClass) {
+		Policy policy = policies.get(subSystem);
+		if (policy != null) {
+			return policy;
+		}
+		return schedulerClass != null && schedulerClass.toLowerCase().contains("priority") ? Policy.PRIORITY
+				: Policy.ROUND_ROBIN;
+	}
+
+}
@@ -0,0 +1,199 @@
+package analysis;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class is what a Simulator measured running a model under a Scenario: how busy each Sub System was, and how
+ * long the messages on each Channel took to get through. Times are in microseconds of simulated time, apart from the
+ * wall time the simulation itself took.
+ *
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public class SimulationResult {
+
+	private String name;
+	private long duration;
+	private long wallTime;
+
+	private String[] subSystems;
+	private Map<String, Integer> subSystemIndex = new HashMap<String, Integer>();
+	private long[] busy;
+	private long[] ticks;
+	private long[] overruns;
+
+	// Channels by the name of the Clock Domain they come from and their own name
+	private Map<String, Integer> channelIndex = new HashMap<String, Integer>();
+	private long[] messages;
+	private long[] latencySum;
+	private long[] latencyMax;
+	private List<String> unroutable;
+
+	SimulationResult(String name, long duration, long wallTime, String[] subSystems, long[] busy, long[] ticks,
+			long[] overruns, String[] clockDomains, int[] channelFrom, String[] channelNames, long[] messages,
+			long[] latencySum, long[] latencyMax, List<String> unroutable) {
+		this.name = name;
+		this.duration = duration;
+		this.wallTime = wallTime;
+		this.subSystems = subSystems;
+		this.busy = busy;
+		this.ticks = ticks;
+		this.overruns = overruns;
+		this.messages = messages;
+		this.latencySum = latencySum;
+		this.latencyMax = latencyMax;
+		this.unroutable = Collections.unmodifiableList(unroutable);
+		for (int s = 0; s < subSystems.length; s++) {
+			subSystemIndex.put(subSystems[s], s);
+		}
+		for (int i = 0; i < channelNames.length; i++) {
+			channelIndex.put(clockDomains[channelFrom[i]] + "." + channelNames[i], i);
+		}
+	}
+
+	/**
+	 * @return name of the Scenario simulated
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return simulated time the model was run for
+	 */
+	public long getDuration() {
+		return duration;
+	}
+
+	/**
+	 * @return nanoseconds the simulation took to run
+	 */
+	public long getWallTime() {
+		return wallTime;
+	}
+
+	/**
+	 * @return names of the Sub Systems, in the order of the model
+	 */
+	public List<String> getSubSystems() {
+		return Collections.unmodifiableList(Arrays.asList(subSystems));
+	}
+
+	/**
+	 * @return the fraction of the time the named Sub System spent ticking its Clock Domains, 0 if it is not in the
+	 *         model
+	 */
+	public double getOccupancy(String subSystem) {
+		Integer s = subSystemIndex.get(subSystem);
+		return s == null || duration == 0 ? 0 : (double) busy[s] / duration;
+	}
+
+	/**
+	 * @return the number of ticks the named Sub System finished
+	 */
+	public long getTicks(String subSystem) {
+		Integer s = subSystemIndex.get(subSystem);
+		return s == null ? 0 : ticks[s];
+	}
+
+	/**
+	 * @return the number of releases the Clock Domains of the named Sub System missed, because they had not yet
+	 *         ticked since the last one
+	 */
+	public long getOverruns(String subSystem) {
+		Integer s = subSystemIndex.get(subSystem);
+		return s == null ? 0 : overruns[s];
+	}
+
+	/**
+	 * @return the number of ticks every Sub System finished together
+	 */
+	public long getTicks() {
+		long total = 0;
+		for (long t : ticks) {
+			total += t;
+		}
+		return total;
+	}
+
+	/**
+	 * @return the number of ticks simulated for each second of wall time
+	 */
+	public double getTicksPerSecond() {
+		return wallTime == 0 ? 0 : getTicks() * 1e9 / wallTime;
+	}
+
+	/**
+	 * @param clockDomain - name of the Clock Domain the Channel comes from
+	 * @param channel - name of the Channel
+	 * @return the number of messages received on the Channel
+	 */
+	public long getMessages(String clockDomain, String channel) {
+		Integer i = channelIndex.get(clockDomain + "." + channel);
+		return i == null ? 0 : messages[i];
+	}
+
+	/**
+	 * @return the mean time from sending a message on the Channel to receiving it, -1 if none were received
+	 */
+	public double getMeanLatency(String clockDomain, String channel) {
+		Integer i = channelIndex.get(clockDomain + "." + channel);
+		return i == null || messages[i] == 0 ? -1 : (double) latencySum[i] / messages[i];
+	}
+
+	/**
+	 * @return the longest time from sending a message on the Channel to receiving it, -1 if none were received
+	 */
+	public long getMaxLatency(String clockDomain, String channel) {
+		Integer i = channelIndex.get(clockDomain + "." + channel);
+		return i == null || messages[i] == 0 ? -1 : latencyMax[i];
+	}
+
+	/**
+	 * @return the number of messages received on every Channel together
+	 */
+	public long getMessages() {
+		long total = 0;
+		for (long m : messages) {
+			total += m;
+		}
+		return total;
+	}
+
+	/**
+	 * @return the mean latency of every message received, -1 if there were none
+	 */
+	public double getMeanLatency() {
+		long sum = 0;
+		for (long l : latencySum) {
+			sum += l;
+		}
+		long total = getMessages();
+		return total == 0 ? -1 : (double) sum / total;
+	}
+
+	/**
+	 * @return the longest latency of any message received, -1 if there were none
+	 */
+	public long getMaxLatency() {
+		long max = -1;
+		for (int i = 0; i < messages.length; i++) {
+			if (messages[i] > 0) {
+				max = Math.max(max, latencyMax[i]);
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * @return the Channels between Sub Systems that no Link groups join, as "ClockDomain.Channel"
+	 */
+	public List<String> getUnroutableChannels() {
+		return unroutable;
+	}
+
+}
@@ -0,0 +1,536 @@
+package analysis;
+
+import graphmodel.ChannelSnapshot;
+import graphmodel.ClockDomainSnapshot;
+import graphmodel.LinkGroupSnapshot;
+import graphmodel.SubSystemSnapshot;
+import graphmodel.SystemSnapshot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class predicts how a model behaves at run time, by simulating the ticks of its Clock Domains on their Sub
+ * Systems under the assumptions of a Scenario.
+ *
+ * Each Sub System is a single processor. Each of its Clock Domains is released to tick once every period, and the
+ * Sub System's scheduler picks which released Clock Domain ticks next, running each tick to the end. A Clock Domain
+ * released again before its last release has ticked misses that release, which is counted as an overrun.
+ *
+ * Channels are rendezvous: at the end of a tick, a Clock Domain sends on each output Channel that is free, the
+ * message takes the hop latency for each Link group on its route to arrive, and it is received at the end of the
+ * first tick of the receiving Clock Domain to start after it arrived. The Channel is free again once the receipt has
+ * travelled back. The latency of a Channel is from the end of the sending tick to the end of the receiving one.
+ * Channels between Sub Systems that no Link groups join never deliver, and are reported instead.
+ *
+ * The model is compiled into arrays once, so a Simulator can run any number of Scenarios, at the same time on
+ * different threads. Each run keeps its events in a binary heap of primitive arrays, so it allocates nothing per
+ * tick.
+ *
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public class Simulator {
+
+	// Kinds of event, kept in the low bit of each event with the Clock Domain or Sub System number above it
+	private static final int RELEASE = 0;
+	private static final int COMPLETE = 1;
+
+	// Sub Systems
+	private String[] subSystems;
+	private String[] schedulers;
+	// The Clock Domains of each Sub System are numbered together, from first[s] up to first[s + 1]
+	private int[] first;
+
+	// Clock Domains
+	private String[] clockDomains;
+	private int[] subSystemOf;
+	private int[] numSignals;
+	private int[] numChannels;
+
+	// Channels, and the Channels into and out of each Clock Domain, packed into arrays. Channels are numbered in order
+	// of the Clock Domain they come from, so those out of Clock Domain c are numbered from outStart[c] up to
+	// outStart[c + 1], and only those into each Clock Domain need a list of their own
+	private String[] channelNames;
+	private int[] channelFrom;
+	private int[] channelTo;
+	private int[] channelHops;
+	private int[] outStart;
+	private int[] inStart;
+	private int[] inChannels;
+
+	/**
+	 * @param model - the model to simulate
+	 */
+	public Simulator(SystemSnapshot model) {
+		List<SubSystemSnapshot> subs = model.getSubSystems();
+		subSystems = new String[subs.size()];
+		schedulers = new String[subs.size()];
+		first = new int[subs.size() + 1];
+		Map<String, Integer> subSystemIndex = new HashMap<String, Integer>();
+		List<ClockDomainSnapshot> cds = new ArrayList<ClockDomainSnapshot>();
+		for (int s = 0; s < subs.size(); s++) {
+			subSystems[s] = subs.get(s).getName();
+			schedulers[s] = subs.get(s).getSchedulerClass();
+			subSystemIndex.put(subSystems[s], s);
+			first[s] = cds.size();
+			cds.addAll(subs.get(s).getClockDomains());
+		}
+		first[subs.size()] = cds.size();
+
+		int n = cds.size();
+		clockDomains = new String[n];
+		subSystemOf = new int[n];
+		numSignals = new int[n];
+		numChannels = new int[n];
+		Map<String, Integer> clockDomainIndex = new HashMap<String, Integer>(n * 2);
+		for (int s = 0; s < subs.size(); s++) {
+			for (int c = first[s]; c < first[s + 1]; c++) {
+				ClockDomainSnapshot cd = cds.get(c);
+				clockDomains[c] = cd.getName();
+				clockDomainIndex.put(cd.getName(), c);
+				subSystemOf[c] = s;
+				numSignals[c] = cd.getInputSignals().size() + cd.getOutputSignals().size();
+				numChannels[c] = cd.getInputChannels().size() + cd.getOutputChannels().size();
+			}
+		}
+
+		// Channels whose destination is in the model, numbered in order of the Clock Domain they come from
+		List<String> names = new ArrayList<String>();
+		List<int[]> ends = new ArrayList<int[]>();
+		outStart = new int[n + 1];
+		int[] inDegree = new int[n];
+		for (int c = 0; c < n; c++) {
+			outStart[c] = ends.size();
+			for (ChannelSnapshot ch : cds.get(c).getOutputChannels()) {
+				Integer to = ch.getToClockDomain() == null ? null : clockDomainIndex.get(ch.getToClockDomain());
+				if (to != null) {
+					names.add(ch.getName());
+					ends.add(new int[] { c, to });
+					inDegree[to]++;
+				}
+			}
+		}
+		outStart[n] = ends.size();
+
+		int m = ends.size();
+		channelNames = names.toArray(new String[m]);
+		channelFrom = new int[m];
+		channelTo = new int[m];
+		inStart = new int[n + 1];
+		for (int c = 0; c < n; c++) {
+			inStart[c + 1] = inStart[c] + inDegree[c];
+		}
+		inChannels = new int[m];
+		int[] fill = Arrays.copyOf(inStart, n);
+		for (int i = 0; i < m; i++) {
+			channelFrom[i] = ends.get(i)[0];
+			channelTo[i] = ends.get(i)[1];
+			inChannels[fill[channelTo[i]]++] = i;
+		}
+
+		int[][] hops = hopCounts(model, subSystemIndex);
+		channelHops = new int[m];
+		for (int i = 0; i < m; i++) {
+			channelHops[i] = hops[subSystemOf[channelFrom[i]]][subSystemOf[channelTo[i]]];
+		}
+	}
+
+	/**
+	 * @return the number of Link groups between every pair of Sub Systems on the shortest route, -1 if there is none
+	 */
+	private static int[][] hopCounts(SystemSnapshot model, Map<String, Integer> subSystemIndex) {
+		int k = subSystemIndex.size();
+		List<List<Integer>> neighbours = new ArrayList<List<Integer>>();
+		for (int s = 0; s < k; s++) {
+			neighbours.add(new ArrayList<Integer>());
+		}
+		for (LinkGroupSnapshot group : model.getLinkGroups()) {
+			List<Integer> members = new ArrayList<Integer>();
+			for (String name : group.getInvolvedSubSystems()) {
+				Integer s = subSystemIndex.get(name);
+				if (s != null && !members.contains(s)) {
+					members.add(s);
+				}
+			}
+			for (int a : members) {
+				for (int b : members) {
+					if (a != b) {
+						neighbours.get(a).add(b);
+					}
+				}
+			}
+		}
+
+		int[][] hops = new int[k][k];
+		int[] queue = new int[k];
+		for (int source = 0; source < k; source++) {
+			Arrays.fill(hops[source], -1);
+			hops[source][source] = 0;
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = source;
+			while (head < tail) {
+				int u = queue[head++];
+				for (int v : neighbours.get(u)) {
+					if (hops[source][v] == -1) {
+						hops[source][v] = hops[source][u] + 1;
+						queue[tail++] = v;
+					}
+				}
+			}
+		}
+		return hops;
+	}
+
+	/**
+	 * Simulates the model under the given Scenario
+	 * @return the occupancy, ticks and Channel latencies measured
+	 */
+	public SimulationResult run(Scenario scenario) {
+		return new Run(scenario).simulate();
+	}
+
+	/**
+	 * Simulates the model under each of the given Scenarios, spread across a pool of threads
+	 * @param threads - number of threads to use
+	 * @return the results, in the order of the Scenarios
+	 * @throws InterruptedException if the thread is interrupted, in which case the runs not yet finished are stopped
+	 */
+	public List<SimulationResult> runAll(List<Scenario> scenarios, int threads) throws InterruptedException {
+		List<Callable<SimulationResult>> runs = new ArrayList<Callable<SimulationResult>>();
+		for (final Scenario scenario : scenarios) {
+			runs.add(new Callable<SimulationResult>() {
+				@Override
+				public SimulationResult call() {
+					return run(scenario);
+				}
+			});
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, scenarios.size())));
+		try {
+			List<SimulationResult> results = new ArrayList<SimulationResult>();
+			for (Future<SimulationResult> future : pool.invokeAll(runs)) {
+				results.add(future.get());
+			}
+			return results;
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Simulate: " + e.getCause(), e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * The state of a single simulation
+	 */
+	private class Run {
+
+		private Scenario scenario;
+
+		// Per Clock Domain: the cost and period of its ticks, its priority, the order it was last released in, and
+		// whether it is waiting to tick or ticking
+		private long[] cost;
+		private long[] period;
+		private int[] priority;
+		private long[] releasedAs;
+		private boolean[] pending;
+
+		// Per Sub System: whether it uses a priority scheduler, the Clock Domain ticking and when it started, and the
+		// released Clock Domains waiting, kept in the part of the queue array from first[s] as a ring for round
+		// robin or as a heap for priority
+		private boolean[] byPriority;
+		private int[] running;
+		private long[] tickStart;
+		private int[] queue;
+		private int[] queueHead;
+		private int[] queueSize;
+
+		// Per Channel: the latency each way, when the message in flight was sent and arrives, and when the Channel
+		// is free to send again
+		private long[] delay;
+		private long[] sentAt;
+		private long[] arrivesAt;
+		private long[] freeAt;
+
+		// Events, as a binary heap ordered by time
+		private long[] eventTimes;
+		private int[] events;
+		private int numEvents = 0;
+
+		private long releases = 0;
+
+		// Measurements
+		private long[] busy;
+		private long[] ticks;
+		private long[] overruns;
+		private long[] messages;
+		private long[] latencySum;
+		private long[] latencyMax;
+
+		Run(Scenario scenario) {
+			this.scenario = scenario;
+			int n = clockDomains.length;
+			int k = subSystems.length;
+			int m = channelFrom.length;
+
+			cost = new long[n];
+			period = new long[n];
+			priority = new int[n];
+			releasedAs = new long[n];
+			pending = new boolean[n];
+			for (int c = 0; c < n; c++) {
+				cost[c] = scenario.getCost(clockDomains[c], numSignals[c], numChannels[c]);
+				period[c] = scenario.getPeriod(clockDomains[c]);
+				priority[c] = scenario.getPriority(clockDomains[c]);
+			}
+
+			byPriority = new boolean[k];
+			running = new int[k];
+			tickStart = new long[k];
+			queue = new int[n];
+			queueHead = new int[k];
+			queueSize = new int[k];
+			for (int s = 0; s < k; s++) {
+				byPriority[s] = scenario.getPolicy(subSystems[s], schedulers[s]) == Scenario.Policy.PRIORITY;
+				running[s] = -1;
+			}
+
+			delay = new long[m];
+			sentAt = new long[m];
+			arrivesAt = new long[m];
+			freeAt = new long[m];
+			for (int i = 0; i < m; i++) {
+				delay[i] = channelHops[i] < 0 ? -1 : channelHops[i] * scenario.getHopLatency();
+				arrivesAt[i] = Long.MAX_VALUE;
+			}
+
+			eventTimes = new long[n + k + 1];
+			events = new int[n + k + 1];
+
+			busy = new long[k];
+			ticks = new long[k];
+			overruns = new long[k];
+			messages = new long[m];
+			latencySum = new long[m];
+			latencyMax = new long[m];
+		}
+
+		SimulationResult simulate() {
+			long started = System.nanoTime();
+			long duration = scenario.getDuration();
+			for (int c = 0; c < clockDomains.length; c++) {
+				push(0, c << 1 | RELEASE);
+			}
+
+			while (numEvents > 0 && eventTimes[0] < duration) {
+				long time = eventTimes[0];
+				int event = events[0];
+				pop();
+				if ((event & 1) == RELEASE) {
+					release(event >>> 1, time);
+				} else {
+					complete(event >>> 1, time);
+				}
+			}
+
+			// Count the ticks still running as busy up to the end
+			for (int s = 0; s < subSystems.length; s++) {
+				if (running[s] != -1) {
+					busy[s] += duration - tickStart[s];
+				}
+			}
+
+			List<String> unroutable = new ArrayList<String>();
+			for (int i = 0; i < delay.length; i++) {
+				if (delay[i] < 0) {
+					unroutable.add(clockDomains[channelFrom[i]] + "." + channelNames[i]);
+				}
+			}
+			return new SimulationResult(scenario.getName(), duration, System.nanoTime() - started, subSystems, busy,
+					ticks, overruns, clockDomains, channelFrom, channelNames, messages, latencySum, latencyMax,
+					unroutable);
+		}
+
+		private void release(int cd, long time) {
+			push(time + period[cd], cd << 1 | RELEASE);
+			int s = subSystemOf[cd];
+			if (pending[cd]) {
+				overruns[s]++;
+				return;
+			}
+			pending[cd] = true;
+			releasedAs[cd] = releases++;
+			enqueue(s, cd);
+			if (running[s] == -1) {
+				dispatch(s, time);
+			}
+		}
+
+		private void dispatch(int s, long time) {
+			int cd = dequeue(s);
+			running[s] = cd;
+			tickStart[s] = time;
+			push(time + cost[cd], s << 1 | COMPLETE);
+		}
+
+		private void complete(int s, long time) {
+			int cd = running[s];
+			long start = tickStart[s];
+			busy[s] += time - start;
+			ticks[s]++;
+
+			// Receive the messages that arrived before the tick started
+			for (int j = inStart[cd]; j < inStart[cd + 1]; j++) {
+				int ch = inChannels[j];
+				if (arrivesAt[ch] <= start) {
+					long latency = time - sentAt[ch];
+					messages[ch]++;
+					latencySum[ch] += latency;
+					latencyMax[ch] = Math.max(latencyMax[ch], latency);
+					arrivesAt[ch] = Long.MAX_VALUE;
+					freeAt[ch] = time + delay[ch];
+				}
+			}
+
+			// Send on the Channels that are free
+			for (int ch = outStart[cd]; ch < outStart[cd + 1]; ch++) {
+				if (delay[ch] >= 0 && arrivesAt[ch] == Long.MAX_VALUE && freeAt[ch] <= time) {
+					sentAt[ch] = time;
+					arrivesAt[ch] = time + delay[ch];
+					// Not free until it has been received
+					freeAt[ch] = Long.MAX_VALUE;
+				}
+			}
+
+			pending[cd] = false;
+			running[s] = -1;
+			if (queueSize[s] > 0) {
+				dispatch(s, time);
+			}
+		}
+
+		/**
+		 * Adds a released Clock Domain to the queue of its Sub System
+		 */
+		private void enqueue(int s, int cd) {
+			int base = first[s];
+			int capacity = first[s + 1] - base;
+			if (!byPriority[s]) {
+				queue[base + (queueHead[s] + queueSize[s]) % capacity] = cd;
+				queueSize[s]++;
+				return;
+			}
+
+			// Sift up the heap
+			int i = queueSize[s]++;
+			while (i > 0) {
+				int parent = (i - 1) / 2;
+				if (!before(cd, queue[base + parent])) {
+					break;
+				}
+				queue[base + i] = queue[base + parent];
+				i = parent;
+			}
+			queue[base + i] = cd;
+		}
+
+		/**
+		 * Takes the next Clock Domain to tick from the queue of its Sub System
+		 */
+		private int dequeue(int s) {
+			int base = first[s];
+			int capacity = first[s + 1] - base;
+			if (!byPriority[s]) {
+				int cd = queue[base + queueHead[s]];
+				queueHead[s] = (queueHead[s] + 1) % capacity;
+				queueSize[s]--;
+				return cd;
+			}
+
+			int top = queue[base];
+			int size = --queueSize[s];
+			if (size > 0) {
+				// Sift the last one down from the top
+				int last = queue[base + size];
+				int i = 0;
+				while (true) {
+					int child = 2 * i + 1;
+					if (child >= size) {
+						break;
+					}
+					if (child + 1 < size && before(queue[base + child + 1], queue[base + child])) {
+						child++;
+					}
+					if (!before(queue[base + child], last)) {
+						break;
+					}
+					queue[base + i] = queue[base + child];
+					i = child;
+				}
+				queue[base + i] = last;
+			}
+			return top;
+		}
+
+		/**
+		 * @return true if Clock Domain a should tick before b under a priority scheduler
+		 */
+		private boolean before(int a, int b) {
+			return priority[a] > priority[b] || (priority[a] == priority[b] && releasedAs[a] < releasedAs[b]);
+		}
+
+		private void push(long time, int event) {
+			int i = numEvents++;
+			while (i > 0) {
+				int parent = (i - 1) / 2;
+				if (eventTimes[parent] <= time) {
+					break;
+				}
+				eventTimes[i] = eventTimes[parent];
+				events[i] = events[parent];
+				i = parent;
+			}
+			eventTimes[i] = time;
+			events[i] = event;
+		}
+
+		private void pop() {
+			int size = --numEvents;
+			if (size == 0) {
+				return;
+			}
+			long time = eventTimes[size];
+			int event = events[size];
+			int i = 0;
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= size) {
+					break;
+				}
+				if (child + 1 < size && eventTimes[child + 1] < eventTimes[child]) {
+					child++;
+				}
+				if (eventTimes[child] >= time) {
+					break;
+				}
+				eventTimes[i] = eventTimes[child];
+				events[i] = events[child];
+				i = child;
+			}
+			eventTimes[i] = time;
+			events[i] = event;
+		}
+
+	}
+
+}
@@ -0,0 +1,57 @@
+package analysis;
+
+import graphmodel.ClockDomain;
+import graphmodel.Component;
+import graphmodel.GlobalSystem;
+import graphmodel.ModelChange;
+import graphmodel.Signal;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This rule checks that no two Signals of a Clock Domain have the same name, whether they are inputs or outputs.
+ * The names of Sub Systems, Clock Domains and Channels are already kept unique by the GlobalSystem.
+ * 
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public class UniqueSignalNameRule implements ValidationRule {
+
+	@Override
+	public String getName() {
+		return "Unique Signal Name";
+	}
+
+	@Override
+	public void check(Component comp, GlobalSystem system, List<Diagnostic> problems) {
+		if (comp instanceof ClockDomain) {
+			ClockDomain cd = (ClockDomain) comp;
+			Set<String> names = new HashSet<String>();
+			checkSignals(cd, cd.getInputSignals(), names, problems);
+			checkSignals(cd, cd.getOutputSignals(), names, problems);
+		}
+	}
+
+	private void checkSignals(ClockDomain cd, List<Signal> signals, Set<String> names, List<Diagnostic> problems) {
+		for (Signal s : signals) {
+			// Signals without names are reported by the EmptyFieldRule
+			if (!s.getName().isEmpty() && !names.add(s.getName())) {
+				problems.add(new Diagnostic(Diagnostic.Severity.ERROR, getName(), s, "Clock Domain " + cd.getName()
+						+ " has more than one Signal named " + s.getName()));
+			}
+		}
+	}
+
+	/**
+	 * A Signal change affects the Clock Domain it is in
+	 */
+	@Override
+	public void addAffected(ModelChange change, GlobalSystem system, Set<Component> affected) {
+		if (change.getComponent() instanceof Signal && change.getParent() != null) {
+			affected.add(change.getParent());
+		}
+	}
+
+}
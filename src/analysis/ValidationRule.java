@@ -0,0 +1,46 @@
+package analysis;
+
+import graphmodel.Component;
+import graphmodel.GlobalSystem;
+import graphmodel.ModelChange;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This interface defines a rule that a SystemJ configuration should follow.
+ * 
+ * Rules are checked one Component at a time, so that after a change only the Components it could have affected need
+ * to be checked again. The Components checked are Sub Systems, Clock Domains, Channels and Link groups. A Clock Domain
+ * is responsible for its Signals, so a rule may report problems with the Signals of the Clock Domain being checked.
+ * 
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public interface ValidationRule {
+
+	/**
+	 * @return the name of this rule, which is recorded in the Diagnostics it reports
+	 */
+	String getName();
+
+	/**
+	 * Checks the given Component against this rule. Components this rule does not concern are ignored.
+	 * 
+	 * @param comp - Sub System, Clock Domain, Channel or Link group to check
+	 * @param system - the system the Component is in
+	 * @param problems - list to add a Diagnostic to for every problem found
+	 */
+	void check(Component comp, GlobalSystem system, List<Diagnostic> problems);
+
+	/**
+	 * Adds the Components whose result for this rule could be changed by the given change, other than the changed
+	 * Component itself and the Components inside it, which are always checked again.
+	 * 
+	 * @param change - change made to the model
+	 * @param system - the system the change was made to
+	 * @param affected - set to add the Components to check again to
+	 */
+	void addAffected(ModelChange change, GlobalSystem system, Set<Component> affected);
+
+}
@@ -0,0 +1,301 @@
+package analysis;
+
+import graphmodel.Channel;
+import graphmodel.ChangeType;
+import graphmodel.ClockDomain;
+import graphmodel.Component;
+import graphmodel.GlobalSystem;
+import graphmodel.LinkGroup;
+import graphmodel.ModelChange;
+import graphmodel.ModelChangeEvent;
+import graphmodel.Signal;
+import graphmodel.SubSystem;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class checks a GlobalSystem against a set of ValidationRules, and keeps the Diagnostics found up to date as
+ * the model changes.
+ *
+ * Rules are checked one Component at a time. When the model changes, only the changed Components, the Components
+ * inside them, and the Components the rules say are affected by the change are checked again, so the cost of
+ * validating after an edit depends on the size of the edit rather than the size of the model. A new or cleared model
+ * is validated from scratch.
+ *
+ * Listeners are sent a DiagnosticsEvent whenever the Diagnostics change.
+ *
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public class Validator implements ActionListener {
+
+	public static final String DIAGNOSTICS_CHANGED_EVENT = "Diagnostics Changed";
+
+	private GlobalSystem system;
+	private List<ValidationRule> rules;
+
+	// Diagnostics found when checking each Component, and the same Diagnostics by the Component they are about.
+	// These differ for Clock Domains, which report the problems with their Signals
+	private Map<Component, List<Diagnostic>> bySubject;
+	private Map<Component, List<Diagnostic>> byComponent;
+
+	private List<ActionListener> listeners;
+
+	/**
+	 * Creates a Validator with the default rules, and validates the system straight away
+	 * @param system - the system to validate
+	 */
+	public Validator(GlobalSystem system) {
+		this.system = system;
+		rules = new ArrayList<ValidationRule>();
+		rules.add(new EmptyFieldRule());
+		rules.add(new UniqueSignalNameRule());
+		rules.add(new ChannelEndpointRule());
+		rules.add(new LinkGroupRule());
+
+		bySubject = new IdentityHashMap<Component, List<Diagnostic>>();
+		byComponent = new IdentityHashMap<Component, List<Diagnostic>>();
+		listeners = new ArrayList<ActionListener>();
+
+		validateAll();
+		system.addListener(this);
+	}
+
+	/**
+	 * Adds another rule, and validates the whole system again so it is applied
+	 * @param rule - rule to add
+	 */
+	public void addRule(ValidationRule rule) {
+		rules.add(rule);
+		validateAll();
+	}
+
+	/**
+	 * @return every Diagnostic currently found in the system
+	 */
+	public List<Diagnostic> getDiagnostics() {
+		List<Diagnostic> all = new ArrayList<Diagnostic>();
+		for (List<Diagnostic> diagnostics : byComponent.values()) {
+			all.addAll(diagnostics);
+		}
+		return all;
+	}
+
+	/**
+	 * @param comp - Component in question
+	 * @return the Diagnostics about the given Component, empty if there are none
+	 */
+	public List<Diagnostic> getDiagnostics(Component comp) {
+		List<Diagnostic> diagnostics = byComponent.get(comp);
+		if (diagnostics == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(diagnostics);
+	}
+
+	/**
+	 * @return the number of Components with at least one Diagnostic
+	 */
+	public int getNumProblemComponents() {
+		return byComponent.size();
+	}
+
+	/**
+	 * Add an ActionListener that is sent a DiagnosticsEvent whenever the Diagnostics change
+	 * @param l - ActionListener object to add
+	 */
+	public void addListener(ActionListener l) {
+		listeners.add(l);
+	}
+
+	/**
+	 * Checks every Component in the system from scratch
+	 */
+	public void validateAll() {
+		bySubject.clear();
+		byComponent.clear();
+
+		for (SubSystem sub : system.getSubSystems()) {
+			check(sub, null);
+			for (ClockDomain cd : sub.getClockDomains()) {
+				check(cd, null);
+				for (Channel ch : cd.getOutputChannels()) {
+					check(ch, null);
+				}
+				// Input Channels from Clock Domains that are not in the system are not outputs of any checked above
+				for (Channel ch : cd.getInputChannels()) {
+					if (system.getSubSystem(ch.getFromClockDomain()) == null) {
+						check(ch, null);
+					}
+				}
+			}
+		}
+		for (LinkGroup group : system.getLinks()) {
+			check(group, null);
+		}
+
+		fireDiagnosticsChanged(null);
+	}
+
+	/**
+	 * This method is fired every time there is a change in the object model. Only the Components affected by the
+	 * changes are checked again.
+	 */
+	@Override
+	public void actionPerformed(ActionEvent event) {
+		if (!(event instanceof ModelChangeEvent) || ((ModelChangeEvent) event).getChanges().isEmpty()) {
+			validateAll();
+			return;
+		}
+
+		Set<Component> affected = newIdentitySet();
+		Set<Component> changed = newIdentitySet();
+
+		for (ModelChange change : ((ModelChangeEvent) event).getChanges()) {
+			if (change.getType() == ChangeType.REMOVED) {
+				forget(change.getComponent(), changed);
+			} else if (change.getType() == ChangeType.CHANGED) {
+				forget(change.getOldComponent(), changed);
+			}
+
+			if (change.getComponent() instanceof Signal) {
+				// Signals are checked along with their Clock Domain
+				if (change.getParent() != null) {
+					affected.add(change.getParent());
+				}
+			} else if (change.getType() != ChangeType.REMOVED) {
+				addWithContents(change.getComponent(), affected);
+			}
+
+			for (ValidationRule rule : rules) {
+				rule.addAffected(change, system, affected);
+			}
+		}
+
+		for (Component comp : affected) {
+			check(comp, changed);
+		}
+
+		if (!changed.isEmpty()) {
+			fireDiagnosticsChanged(changed);
+		}
+	}
+
+	/**
+	 * Adds the Component to the set, along with the Clock Domains inside it if it is a Sub System
+	 */
+	private void addWithContents(Component comp, Set<Component> affected) {
+		affected.add(comp);
+		if (comp instanceof SubSystem) {
+			affected.addAll(((SubSystem) comp).getClockDomains());
+		}
+	}
+
+	/**
+	 * Drops the Diagnostics found when checking the given Component and the Components inside it, as they are no
+	 * longer in the system
+	 */
+	private void forget(Component comp, Set<Component> changed) {
+		List<Diagnostic> none = Collections.emptyList();
+		setDiagnostics(comp, none, changed);
+		if (comp instanceof SubSystem) {
+			for (ClockDomain cd : ((SubSystem) comp).getClockDomains()) {
+				setDiagnostics(cd, none, changed);
+			}
+		}
+	}
+
+	/**
+	 * Checks the given Component against every rule, if it is still in the system
+	 * @param changed - set to add the Components whose Diagnostics changed to, or null if they are not needed
+	 */
+	private void check(Component comp, Set<Component> changed) {
+		List<Diagnostic> problems = new ArrayList<Diagnostic>();
+		if (isInSystem(comp)) {
+			for (ValidationRule rule : rules) {
+				rule.check(comp, system, problems);
+			}
+		}
+		setDiagnostics(comp, problems, changed);
+	}
+
+	/**
+	 * Replaces the Diagnostics found when checking the given Component, keeping the lookup by Component in step
+	 */
+	private void setDiagnostics(Component subject, List<Diagnostic> problems, Set<Component> changed) {
+		List<Diagnostic> old = bySubject.get(subject);
+		if (old == null) {
+			old = Collections.emptyList();
+		}
+		if (old.equals(problems)) {
+			return;
+		}
+
+		for (Diagnostic d : old) {
+			List<Diagnostic> list = byComponent.get(d.getComponent());
+			list.remove(d);
+			if (list.isEmpty()) {
+				byComponent.remove(d.getComponent());
+			}
+			if (changed != null) {
+				changed.add(d.getComponent());
+			}
+		}
+
+		for (Diagnostic d : problems) {
+			List<Diagnostic> list = byComponent.get(d.getComponent());
+			if (list == null) {
+				list = new ArrayList<Diagnostic>(1);
+				byComponent.put(d.getComponent(), list);
+			}
+			list.add(d);
+			if (changed != null) {
+				changed.add(d.getComponent());
+			}
+		}
+
+		if (problems.isEmpty()) {
+			bySubject.remove(subject);
+		} else {
+			bySubject.put(subject, problems);
+		}
+	}
+
+	/**
+	 * @return true if the given Component is part of the system. A Channel is part of the system while either of
+	 *         its ends is
+	 */
+	private boolean isInSystem(Component comp) {
+		if (comp instanceof SubSystem) {
+			return system.getSubSystem(comp.getName()) == comp;
+		} else if (comp instanceof ClockDomain) {
+			return system.getSubSystem((ClockDomain) comp) != null;
+		} else if (comp instanceof Channel) {
+			Channel ch = (Channel) comp;
+			return (ch.getFromClockDomain() != null && system.getSubSystem(ch.getFromClockDomain()) != null)
+					|| (ch.getToClockDomain() != null && system.getSubSystem(ch.getToClockDomain()) != null);
+		} else if (comp instanceof LinkGroup) {
+			return system.getLinks().contains(comp);
+		}
+		return false;
+	}
+
+	private void fireDiagnosticsChanged(Set<Component> changed) {
+		DiagnosticsEvent event = new DiagnosticsEvent(this, changed);
+		for (ActionListener l : listeners) {
+			l.actionPerformed(event);
+		}
+	}
+
+	private static Set<Component> newIdentitySet() {
+		return Collections.newSetFromMap(new IdentityHashMap<Component, Boolean>());
+	}
+
+}
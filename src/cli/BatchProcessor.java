@@ -0,0 +1,388 @@
+package cli;
+
+import analysis.Diagnostic;
+import analysis.Validator;
+import graphmodel.Channel;
+import graphmodel.ClockDomain;
+import graphmodel.GlobalSystem;
+import graphmodel.LinkGroup;
+import graphmodel.SubSystem;
+import graphmodel.XMLModelReader;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.mxgraph.io.mxGraphMlCodec;
+import com.mxgraph.util.mxXmlUtils;
+import com.mxgraph.view.mxGraph;
+
+/**
+ * This class validates, normalizes and converts SystemJ XML configuration files from the command line, without
+ * opening the editor.
+ *
+ * Each file is read into its own GlobalSystem and checked by its own Validator, so the files are independent of each
+ * other and are spread across a pool of worker threads, one per core by default. The results are printed in the order
+ * the files were given, followed by a summary of how many files and bytes were processed and how fast.
+ *
+ * Usage: BatchProcessor [options] file-or-directory...
+ *   -o DIR        write output files to DIR instead of next to each input file. A file found in a directory
+ *                 keeps its path under that directory, so files with the same name do not overwrite each other
+ *   --normalize   write the configuration back out as XML, to NAME.normalized.xml
+ *   --graphml     write the Sub System, Clock Domain, Channel and Link structure as GraphML, to NAME.graphml
+ *   -j N          use N worker threads
+ *   -q            only print files with problems, and the summary
+ *
+ * Directories are searched for .xml files. If two input files would still write the same output file, the
+ * arguments are rejected. The exit code is 0 if every file was read and had no errors, 1 if any
+ * file had errors or could not be read, and 2 if the arguments were wrong.
+ *
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public class BatchProcessor {
+
+	private static final String USAGE = "Usage: BatchProcessor [-o DIR] [--normalize] [--graphml] [-j N] [-q] "
+			+ "file-or-directory...";
+
+	private List<File> inputs = new ArrayList<File>();
+	// The path of each input file under the directory it was found in, or its name if it was given itself
+	private Map<File, String> relativePaths = new HashMap<File, String>();
+	// The name of each input file's output in the output directory, without the extension
+	private Map<File, File> outputBases = new HashMap<File, File>();
+	private File outputDir;
+	private boolean normalize;
+	private boolean graphml;
+	private boolean quiet;
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	public static void main(String[] args) {
+		// The GraphML conversion uses mxGraph, which must not try to open a display
+		System.setProperty("java.awt.headless", "true");
+
+		BatchProcessor processor = new BatchProcessor();
+		try {
+			processor.parseArguments(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+		}
+		System.exit(processor.run() ? 0 : 1);
+	}
+
+	/**
+	 * Reads the command line options and input files
+	 * @throws IllegalArgumentException if an option is not recognised, no input files are given, or two input files
+	 *         would write to the same output file
+	 */
+	private void parseArguments(String[] args) {
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (arg.equals("-o") && i + 1 < args.length) {
+				outputDir = new File(args[++i]);
+			} else if (arg.equals("-j") && i + 1 < args.length) {
+				try {
+					threads = Integer.parseInt(args[++i]);
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("Invalid thread count: " + args[i]);
+				}
+				if (threads < 1) {
+					throw new IllegalArgumentException("Invalid thread count: " + args[i]);
+				}
+			} else if (arg.equals("--normalize")) {
+				normalize = true;
+			} else if (arg.equals("--graphml")) {
+				graphml = true;
+			} else if (arg.equals("-q")) {
+				quiet = true;
+			} else if (arg.startsWith("-")) {
+				throw new IllegalArgumentException("Unknown option: " + arg);
+			} else {
+				addInput(new File(arg), null);
+			}
+		}
+
+		if (inputs.isEmpty()) {
+			throw new IllegalArgumentException("No input files");
+		}
+		if (outputDir != null && !outputDir.isDirectory() && !outputDir.mkdirs()) {
+			throw new IllegalArgumentException("Cannot create output directory: " + outputDir);
+		}
+		if (outputDir != null) {
+			setOutputBases();
+		}
+	}
+
+	/**
+	 * Adds the given file, or the .xml files under it if it is a directory
+	 * @param path - path of the file under the directory given on the command line, or null if it was given itself
+	 */
+	private void addInput(File file, String path) {
+		if (file.isDirectory()) {
+			File[] children = file.listFiles();
+			if (children != null) {
+				Arrays.sort(children);
+				for (File child : children) {
+					if (child.isDirectory() || child.getName().toLowerCase().endsWith(".xml")) {
+						addInput(child, path == null ? child.getName() : path + File.separator + child.getName());
+					}
+				}
+			}
+		} else {
+			inputs.add(file);
+			relativePaths.put(file, path == null ? file.getName() : path);
+		}
+	}
+
+	/**
+	 * Works out where in the output directory the output of each input file is written, and creates the directories
+	 * needed. Files found in a directory keep their path under it.
+	 * @throws IllegalArgumentException if two input files would write to the same output file
+	 */
+	private void setOutputBases() {
+		Map<File, File> byOutput = new HashMap<File, File>();
+		for (File input : inputs) {
+			File base = new File(outputDir, removeExtension(relativePaths.get(input)));
+			File other = byOutput.put(base, input);
+			if (other != null) {
+				throw new IllegalArgumentException("Output files of " + other + " and " + input
+						+ " would have the same name: " + base);
+			}
+			outputBases.put(input, base);
+
+			File dir = base.getParentFile();
+			if (!dir.isDirectory() && !dir.mkdirs()) {
+				throw new IllegalArgumentException("Cannot create output directory: " + dir);
+			}
+		}
+	}
+
+	/**
+	 * Processes every input file across the worker threads, and prints the results and summary
+	 * @return true if every file was read and had no errors
+	 */
+	private boolean run() {
+		long start = System.nanoTime();
+
+		ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, inputs.size()));
+		List<Future<Result>> futures = new ArrayList<Future<Result>>();
+		for (File file : inputs) {
+			futures.add(pool.submit(new FileTask(file)));
+		}
+		pool.shutdown();
+
+		int failed = 0;
+		int withErrors = 0;
+		int problems = 0;
+		long bytes = 0;
+		for (Future<Result> future : futures) {
+			Result result;
+			try {
+				result = future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				pool.shutdownNow();
+				System.err.println("Interrupted");
+				return false;
+			} catch (ExecutionException e) {
+				// Tasks catch their own exceptions, so this is an error in the processor itself
+				throw new RuntimeException("Batch Process: " + e.getCause(), e.getCause());
+			}
+
+			bytes += result.bytes;
+			if (result.error != null) {
+				failed++;
+			} else {
+				problems += result.diagnostics.size();
+				if (result.hasErrors()) {
+					withErrors++;
+				}
+			}
+			print(result);
+		}
+
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format("%d files, %d failed, %d with errors, %d problems, %.1f MB in %.2f s "
+				+ "(%.1f files/s, %.1f MB/s, %d threads)", inputs.size(), failed, withErrors, problems,
+				bytes / 1e6, seconds, inputs.size() / seconds, bytes / 1e6 / seconds,
+				Math.min(threads, inputs.size())));
+
+		return failed == 0 && withErrors == 0;
+	}
+
+	private void print(Result result) {
+		if (result.error != null) {
+			System.out.println(result.file + ": FAILED: " + result.error.replace("\n", " "));
+		} else if (!result.diagnostics.isEmpty()) {
+			System.out.println(result.file + ": " + result.diagnostics.size() + " problems");
+			for (Diagnostic d : result.diagnostics) {
+				System.out.println("  " + d);
+			}
+		} else if (!quiet) {
+			System.out.println(result.file + ": OK");
+		}
+	}
+
+	/**
+	 * @return the file to write the output with the given extension to, for the given input file
+	 */
+	private File getOutputFile(File input, String extension) {
+		if (outputDir != null) {
+			return new File(outputBases.get(input).getPath() + extension);
+		}
+		return new File(removeExtension(input.getAbsolutePath()) + extension);
+	}
+
+	/**
+	 * @return the path without the extension of the file name at the end of it, if it has one
+	 */
+	private static String removeExtension(String path) {
+		int dot = path.lastIndexOf('.');
+		if (dot > path.lastIndexOf(File.separatorChar) + 1) {
+			return path.substring(0, dot);
+		}
+		return path;
+	}
+
+	/**
+	 * Writes the system back out as a SystemJ XML configuration
+	 */
+	private static void writeNormalized(GlobalSystem system, File file) throws IOException {
+		Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+		try {
+			system.writeXMLFile(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes the structure of the system as GraphML. Sub Systems are nodes containing their Clock Domains, Channels
+	 * are edges between Clock Domains, and each Link group is a set of edges between the Sub Systems it joins
+	 */
+	private static void writeGraphML(GlobalSystem system, File file) throws IOException {
+		mxGraph graph = new mxGraph();
+		Object parent = graph.getDefaultParent();
+		Map<ClockDomain, Object> cdCells = new HashMap<ClockDomain, Object>();
+		Map<SubSystem, Object> ssCells = new HashMap<SubSystem, Object>();
+
+		graph.getModel().beginUpdate();
+		try {
+			for (SubSystem sub : system.getSubSystems()) {
+				Object ssCell = graph.insertVertex(parent, "SS:" + sub.getName(), sub.getName(), 0, 0, 0, 0);
+				ssCells.put(sub, ssCell);
+				for (ClockDomain cd : sub.getClockDomains()) {
+					cdCells.put(cd, graph.insertVertex(ssCell, "CD:" + cd.getName(), cd.getName(), 0, 0, 0, 0));
+				}
+			}
+
+			for (SubSystem sub : system.getSubSystems()) {
+				for (ClockDomain cd : sub.getClockDomains()) {
+					for (Channel ch : cd.getOutputChannels()) {
+						Object to = cdCells.get(ch.getToClockDomain());
+						if (to != null) {
+							graph.insertEdge(parent, null, ch.getName(), cdCells.get(cd), to);
+						}
+					}
+				}
+			}
+
+			for (LinkGroup group : system.getLinks()) {
+				List<SubSystem> involved = group.getInvolvedSubSystems();
+				for (int i = 0; i < involved.size(); i++) {
+					for (int j = i + 1; j < involved.size(); j++) {
+						Object from = ssCells.get(involved.get(i));
+						Object to = ssCells.get(involved.get(j));
+						if (from != null && to != null) {
+							graph.insertEdge(parent, null, group.getTypeAsString(), from, to);
+						}
+					}
+				}
+			}
+		} finally {
+			graph.getModel().endUpdate();
+		}
+
+		Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+		try {
+			out.write(mxXmlUtils.getXml(mxGraphMlCodec.encode(graph)));
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Reads, validates and writes out a single file, in its own GlobalSystem
+	 */
+	private class FileTask implements Callable<Result> {
+
+		private File file;
+
+		FileTask(File file) {
+			this.file = file;
+		}
+
+		@Override
+		public Result call() {
+			Result result = new Result(file);
+			result.bytes = file.length();
+			try {
+				XMLModelReader reader = new XMLModelReader();
+				reader.read(file);
+
+				GlobalSystem system = new GlobalSystem();
+				system.constructModel(reader);
+				result.diagnostics = new Validator(system).getDiagnostics();
+
+				if (normalize) {
+					writeNormalized(system, getOutputFile(file, ".normalized.xml"));
+				}
+				if (graphml) {
+					writeGraphML(system, getOutputFile(file, ".graphml"));
+				}
+			} catch (Exception e) {
+				result.error = e.getMessage() != null ? e.getMessage() : e.toString();
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * The outcome of processing a single file
+	 */
+	private static class Result {
+
+		private File file;
+		private long bytes;
+		private List<Diagnostic> diagnostics;
+		private String error;
+
+		Result(File file) {
+			this.file = file;
+		}
+
+		boolean hasErrors() {
+			for (Diagnostic d : diagnostics) {
+				if (d.getSeverity() == Diagnostic.Severity.ERROR) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,134 @@
+package cli;
+
+import graphmodel.GlobalSystem;
+import graphmodel.MergeConflict;
+import graphmodel.ModelDiff;
+import graphmodel.ModelEdit;
+import graphmodel.ModelMerge;
+import graphmodel.SystemSnapshot;
+import graphmodel.XMLModelReader;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class compares and merges SystemJ XML configuration files from the command line, using ModelDiff and
+ * ModelMerge. Unlike comparing the files as text, elements are matched by name, so the order they are written in
+ * makes no difference.
+ *
+ * Usage:
+ *   DiffTool FROM TO                        print the edits that turn FROM into TO, one on each line
+ *   DiffTool --merge BASE OURS THEIRS [-o OUT]
+ *                                           merge the changes made in OURS and THEIRS since BASE, print the
+ *                                           conflicts, and write the merged configuration to OUT, or to the
+ *                                           standard output
+ *
+ * Edits are printed as "+ path" for an added element, "- path" for a removed one, and "~ path attribute: old -> new"
+ * for a changed attribute. Conflicts are printed starting with "!", and are resolved by keeping OURS. Like diff, the
+ * exit code is 0 if the files are the same or merged without conflicts, 1 if they differ or had conflicts, and 2 if
+ * the arguments were wrong or a file could not be read.
+ *
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public class DiffTool {
+
+	private static final String USAGE = "Usage: DiffTool FROM TO\n"
+			+ "       DiffTool --merge BASE OURS THEIRS [-o OUT]";
+
+	public static void main(String[] args) {
+		boolean merge = false;
+		File output = null;
+		List<File> files = new ArrayList<File>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--merge")) {
+				merge = true;
+			} else if (args[i].equals("-o") && i + 1 < args.length) {
+				output = new File(args[++i]);
+			} else if (args[i].startsWith("-")) {
+				usage("Unknown option: " + args[i]);
+			} else {
+				files.add(new File(args[i]));
+			}
+		}
+		if (files.size() != (merge ? 3 : 2) || (output != null && !merge)) {
+			usage("Wrong number of files");
+		}
+
+		List<SystemSnapshot> models = new ArrayList<SystemSnapshot>();
+		for (File file : files) {
+			try {
+				models.add(read(file));
+			} catch (Exception e) {
+				System.err.println(file + ": " + (e.getMessage() != null ? e.getMessage() : e.toString()));
+				System.exit(2);
+			}
+		}
+
+		if (merge) {
+			System.exit(merge(models.get(0), models.get(1), models.get(2), output) ? 0 : 1);
+		} else {
+			ModelDiff diff = new ModelDiff(models.get(0), models.get(1));
+			for (ModelEdit edit : diff.getEdits()) {
+				System.out.println(edit);
+			}
+			System.exit(diff.isEmpty() ? 0 : 1);
+		}
+	}
+
+	private static void usage(String message) {
+		System.err.println(message);
+		System.err.println(USAGE);
+		System.exit(2);
+	}
+
+	/**
+	 * Reads a configuration file into a system of its own
+	 * @return snapshot of the model read
+	 */
+	private static SystemSnapshot read(File file) throws Exception {
+		XMLModelReader reader = new XMLModelReader();
+		reader.read(file);
+		GlobalSystem system = new GlobalSystem();
+		system.constructModel(reader);
+		return system.getSnapshot();
+	}
+
+	/**
+	 * Merges the models, prints the conflicts to the standard error and writes the merged configuration
+	 * @return true if there were no conflicts
+	 */
+	private static boolean merge(SystemSnapshot base, SystemSnapshot ours, SystemSnapshot theirs, File output) {
+		ModelMerge merge = new ModelMerge(base, ours, theirs);
+		for (MergeConflict conflict : merge.getConflicts()) {
+			System.err.println(conflict);
+		}
+
+		GlobalSystem merged = new GlobalSystem();
+		merged.restoreSnapshot(merge.getResult());
+		try {
+			Writer out = new BufferedWriter(output == null ? new OutputStreamWriter(System.out, "UTF-8")
+					: new OutputStreamWriter(new FileOutputStream(output), "UTF-8"));
+			try {
+				merged.writeXMLFile(out);
+			} finally {
+				if (output == null) {
+					out.flush();
+				} else {
+					out.close();
+				}
+			}
+		} catch (IOException e) {
+			System.err.println((output == null ? "Output" : output.toString()) + ": " + e.getMessage());
+			System.exit(2);
+		}
+		return !merge.hasConflicts();
+	}
+
+}
@@ -0,0 +1,155 @@
+package cli;
+
+import analysis.Scenario;
+import analysis.SimulationResult;
+import analysis.Simulator;
+import graphmodel.GlobalSystem;
+import graphmodel.SubSystemSnapshot;
+import graphmodel.XMLModelReader;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class simulates a SystemJ XML configuration file from the command line, using Simulator, and prints how busy
+ * each Sub System would be and how long its Channel messages would take.
+ *
+ * Usage:
+ *   SimulateTool FILE [options]
+ *     -t TIME          simulated time to run for, in microseconds
+ *     -p PERIOD        time between the releases of each Clock Domain, may be given more than once
+ *     -l LATENCY       time a Channel message takes to cross each Link group, may be given more than once
+ *     -s POLICY        scheduler of every Sub System, rr or priority, instead of going by its scheduler class
+ *     -j THREADS       number of scenarios to run at the same time
+ *
+ * A scenario is run for every combination of the periods and latencies given, and the results printed in that
+ * order. The exit code is 0 if no Clock Domain missed a release and every Channel has a route, 1 otherwise, and 2 if
+ * the arguments were wrong or the file could not be read.
+ *
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public class SimulateTool {
+
+	private static final String USAGE = "Usage: SimulateTool FILE [-t TIME] [-p PERIOD]... [-l LATENCY]... "
+			+ "[-s rr|priority] [-j THREADS]";
+
+	public static void main(String[] args) {
+		File file = null;
+		long duration = Scenario.DEFAULT_DURATION;
+		List<Long> periods = new ArrayList<Long>();
+		List<Long> latencies = new ArrayList<Long>();
+		Scenario.Policy policy = null;
+		int threads = Runtime.getRuntime().availableProcessors();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				boolean hasValue = i + 1 < args.length;
+				if (args[i].equals("-t") && hasValue) {
+					duration = Long.parseLong(args[++i]);
+				} else if (args[i].equals("-p") && hasValue) {
+					periods.add(Long.parseLong(args[++i]));
+				} else if (args[i].equals("-l") && hasValue) {
+					latencies.add(Long.parseLong(args[++i]));
+				} else if (args[i].equals("-s") && hasValue) {
+					String name = args[++i];
+					if (name.equals("rr")) {
+						policy = Scenario.Policy.ROUND_ROBIN;
+					} else if (name.equals("priority")) {
+						policy = Scenario.Policy.PRIORITY;
+					} else {
+						usage("Unknown scheduler: " + name);
+					}
+				} else if (args[i].equals("-j") && hasValue) {
+					threads = Integer.parseInt(args[++i]);
+				} else if (args[i].startsWith("-") || file != null) {
+					usage("Unknown option: " + args[i]);
+				} else {
+					file = new File(args[i]);
+				}
+			}
+		} catch (NumberFormatException e) {
+			usage("Not a number: " + e.getMessage());
+		}
+		if (file == null) {
+			usage("No file given");
+		}
+		if (periods.isEmpty()) {
+			periods.add(Scenario.DEFAULT_PERIOD);
+		}
+		if (latencies.isEmpty()) {
+			latencies.add(Scenario.DEFAULT_HOP_LATENCY);
+		}
+
+		GlobalSystem system = new GlobalSystem();
+		try {
+			XMLModelReader reader = new XMLModelReader();
+			reader.read(file);
+			system.constructModel(reader);
+		} catch (Exception e) {
+			System.err.println(file + ": " + (e.getMessage() != null ? e.getMessage() : e.toString()));
+			System.exit(2);
+		}
+
+		List<Scenario> scenarios = new ArrayList<Scenario>();
+		for (long period : periods) {
+			for (long latency : latencies) {
+				Scenario scenario = new Scenario("period " + period + ", hop latency " + latency);
+				scenario.setDuration(duration);
+				scenario.setDefaultPeriod(period);
+				scenario.setHopLatency(latency);
+				if (policy != null) {
+					for (SubSystemSnapshot sub : system.getSnapshot().getSubSystems()) {
+						scenario.setPolicy(sub.getName(), policy);
+					}
+				}
+				scenarios.add(scenario);
+			}
+		}
+
+		List<SimulationResult> results = null;
+		try {
+			results = new Simulator(system.getSnapshot()).runAll(scenarios, threads);
+		} catch (InterruptedException e) {
+			System.exit(2);
+		}
+
+		boolean ok = true;
+		for (SimulationResult result : results) {
+			ok &= print(result);
+		}
+		System.exit(ok ? 0 : 1);
+	}
+
+	private static void usage(String message) {
+		System.err.println(message);
+		System.err.println(USAGE);
+		System.exit(2);
+	}
+
+	/**
+	 * Prints the occupancy of each Sub System, and the latency of the Channel messages
+	 * @return true if no Clock Domain missed a release and every Channel has a route
+	 */
+	private static boolean print(SimulationResult result) {
+		boolean ok = result.getUnroutableChannels().isEmpty();
+		System.out.println(result.getName() + ":");
+		for (String sub : result.getSubSystems()) {
+			long overruns = result.getOverruns(sub);
+			ok &= overruns == 0;
+			System.out.println(String.format("  %-20s %6.1f%% busy, %d ticks, %d overruns", sub,
+					result.getOccupancy(sub) * 100, result.getTicks(sub), overruns));
+		}
+		if (result.getMessages() > 0) {
+			System.out.println(String.format("  Channel latency: mean %.1f, max %d, over %d messages",
+					result.getMeanLatency(), result.getMaxLatency(), result.getMessages()));
+		}
+		for (String ch : result.getUnroutableChannels()) {
+			System.out.println("  ! No route for " + ch);
+		}
+		System.out.println(String.format("  %d ticks in %.3fs, %.0f ticks/s", result.getTicks(),
+				result.getWallTime() / 1e9, result.getTicksPerSecond()));
+		return ok;
+	}
+
+}
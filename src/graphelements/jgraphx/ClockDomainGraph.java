@@ -2,19 +2,31 @@ package graphelements.jgraphx;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Hashtable;
-
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import analysis.Route;
+import analysis.RoutingTable;
+import graphmodel.ChangeType;
 import graphmodel.Channel;
 import graphmodel.ClockDomain;
 import graphmodel.Component;
 import graphmodel.GlobalSystem;
+import graphmodel.IOType;
+import graphmodel.ModelChange;
+import graphmodel.ModelChangeEvent;
 import graphmodel.Signal;
+import graphmodel.SubSystem;
 
-import com.mxgraph.layout.mxFastOrganicLayout;
 import com.mxgraph.model.mxCell;
+import com.mxgraph.model.mxGeometry;
 import com.mxgraph.model.mxGraphModel;
-import com.mxgraph.view.mxGraph;
+import com.mxgraph.model.mxIGraphModel;
 import com.mxgraph.view.mxStylesheet;
 
 /**
@@ -24,22 +36,36 @@ import com.mxgraph.view.mxStylesheet;
  * - Input/Output Signals
  * - Channels
  * 
- * Inherited from mxGraph so that specific constraints can be added, and to set the cell styles of all the
+ * Inherited from ComponentGraph so that specific constraints can be added, and to set the cell styles of all the
  * components possible in this view.
  * 
+ * The graph follows the changes made to the object model as they happen. Only the cells of the Clock Domains
+ * concerned, and their Signals and Channels, are added, removed or relabelled, all in one update of the graph
+ * model, so everything else keeps its position. New Clock Domains are placed next to the Clock Domains they
+ * share Channels with, or else the other Clock Domains of their Sub System. The whole graph is only rebuilt and
+ * laid out again when a new model is created, or the model reports a change without saying what it was. When a
+ * model is loaded along with a saved DiagramLayout, its Clock Domains are put back where they were instead.
+ * 
  * @author Chanisha Somatilaka, rsom024
  *
  */
-public class ClockDomainGraph extends mxGraph implements ActionListener {
+public class ClockDomainGraph extends ComponentGraph implements ActionListener {
 
+	// Routes of the Channels between Sub Systems, shown in their tooltips. May be null
+	private RoutingTable routingTable;
+
+	/**
+	 * Creates a graph showing the default system
+	 */
 	public ClockDomainGraph() {
-		super();
+		this(GlobalSystem.getInstance());
+	}
 
-		// Set constraints on the mxGraph
-		this.setAllowDanglingEdges(true);
-		this.setMultigraph(true);
-		this.setDisconnectOnMove(false);
-		this.setCellsEditable(false);
+	/**
+	 * @param system - the object model to show in this graph
+	 */
+	public ClockDomainGraph(GlobalSystem system) {
+		super(system);
 
 		// Set styles of all the components
 		mxStylesheet styleSheet = getStylesheet();
@@ -48,8 +74,8 @@ public class ClockDomainGraph extends mxGraph implements ActionListener {
 		styleSheet.putCellStyle(DrawComponent.SIGNAL_NAME, DrawComponent.SIGNAL_VIEW);
 		setStylesheet(styleSheet);
 		
-		// Add this graph as a listener to the global object model
-		GlobalSystem.getInstance().addListener(this);
+		// Add this graph as a listener to its object model
+		system.addListener(this);
 
 	}
 
@@ -58,16 +84,18 @@ public class ClockDomainGraph extends mxGraph implements ActionListener {
 	 * current state of the global object model.
 	 * It will only add the existing Clock Domains, Channels and Signals to this graph.
 	 * 
-	 * TODO: Placement of the components is hard coded, so will be arranged in a grid. Investigate automatic
-	 * layout. There are libraries within JGraphX that look to deal with this, but need to be investigated more thoroughly.
+	 * If a saved layout has been set, the Clock Domains are put where it has them, and only the ones it does not
+	 * have are placed, beside the others. Otherwise the whole graph is laid out automatically, in the background.
 	 * 
 	 */
 	public void createGraph() {
 		// Clear the existing model
-		GlobalSystem system = GlobalSystem.getInstance();
 		mxGraphModel m = (mxGraphModel)this.getModel();
+		cancelLayout();
 		m.clear();
 
+		// Clock Domains the saved layout has no position for, or null to lay out the whole graph
+		List<Object> unplaced = null;
 		this.getModel().beginUpdate();
 
 		try {
@@ -109,17 +137,9 @@ public class ClockDomainGraph extends mxGraph implements ActionListener {
 
 			// put in Channels once Clock Domains have been created
 			
-			// Get all Clock Domain cells
-			Hashtable<ClockDomain, mxCell> clockDomainCells = new Hashtable<ClockDomain, mxCell>();
-
-			for (Object obj : getChildVertices(getDefaultParent())) {
-				mxCell cdCell = (mxCell)obj;
-				clockDomainCells.put((ClockDomain)cdCell.getValue(), cdCell);
-			}
-
 			// Iterate through all the Clock Domain cells
-			for (mxCell cdCell : clockDomainCells.values()) {
-				ClockDomain cdFrom = (ClockDomain)cdCell.getValue();
+			for (ClockDomain cdFrom : system.getAllClockDomains()) {
+				mxCell cdCell = (mxCell)getCell(cdFrom);
 				//Get all output channels from this Clock Domain. 
 				// Only output Channels needed as it contains where the Channels are going to
 				Collection<Channel> channels = cdFrom.getOutputChannels();
@@ -128,7 +148,7 @@ public class ClockDomainGraph extends mxGraph implements ActionListener {
 				int yOffset = 0;
 				for (Channel ch : channels) {
 					// Get destination Clock Domain cell
-					mxCell cdToCell = clockDomainCells.get(ch.getToClockDomain());	
+					mxCell cdToCell = (mxCell)getCell(ch.getToClockDomain());
 					ClockDomain cdTo = (ClockDomain)cdToCell.getValue();
 					DrawComponent.drawChannel(this, ch, cdCell, cdToCell, yOffset, cdTo.getNumInputChannels());
 					
@@ -136,48 +156,80 @@ public class ClockDomainGraph extends mxGraph implements ActionListener {
 				}
 			}
 
+			// Put the Clock Domains back where they were saved, if they were, in the same update as drawing them
+			unplaced = restoreLayout();
+			if (unplaced != null) {
+				placeClockDomains(unplaced);
+			}
+
 		} finally {
 
 
 			this.getModel().endUpdate();
 			
-			// TODO: Put layout code here. Experiment with layout
-			mxFastOrganicLayout layout = new mxFastOrganicLayout(this);
-			layout.execute(getDefaultParent());
+			// Only lay out the whole graph if no positions were saved
+			if (unplaced == null) {
+				startLayout();
+			}
 		}
 		refresh();
 	}
 
 	/**
-	 * Determines that any cell that is a vertex can be moved, but not edges.
+	 * Places Clock Domains that had no saved position beside the ones that did, in one update
+	 * 
+	 * @param cells - cells of the Clock Domains to place
 	 */
-	@Override
-	public boolean isCellMovable(Object cell) {
-		return !getModel().isEdge(cell);
+	private void placeClockDomains(List<Object> cells) {
+		Set<Object> unplaced = newIdentitySet();
+		unplaced.addAll(cells);
+		List<Object> placed = new ArrayList<Object>();
+
+		getModel().beginUpdate();
+		try {
+			for (Object cell : cells) {
+				unplaced.remove(cell);
+				ClockDomain cd = (ClockDomain) getComponent(cell);
+				double[] position = findPosition(cd, placed, unplaced);
+				setPosition(cd, position[0], position[1]);
+				placed.add(cell);
+			}
+		} finally {
+			getModel().endUpdate();
+		}
 	}
 
 	/**
-	 * This method is called whenever a component on the graph is being edited.
-	 * It exchanges the cell value with the new component on the specified graph view
-	 * 
-	 * @param compCell - the graph cell to change
-	 * @param comp - the object model component to change the cell's value to
+	 * @param routingTable - routes of the Channels between Sub Systems, to show in their tooltips
 	 */
-	public void changeComponent(mxCell compCell, Component comp) {
-		this.getModel().beginUpdate();
+	public void setRoutingTable(RoutingTable routingTable) {
+		this.routingTable = routingTable;
+	}
 
-		try {
-			// set the cell's value to the new Component
-			compCell.setValue(comp);
-		} finally {
-			this.getModel().endUpdate();
+	/**
+	 * The tooltip of a Channel between Sub Systems shows the Link groups it crosses
+	 */
+	@Override
+	public String getToolTipForCell(Object cell) {
+		Object value = getModel().getValue(cell);
+		if (routingTable == null || !(value instanceof Channel)) {
+			return super.getToolTipForCell(cell);
 		}
-		refresh();
+
+		Channel ch = (Channel) value;
+		Route route = routingTable.getRoute(ch);
+		if (route == null) {
+			return ch.getName() + ": no route between its Sub Systems";
+		} else if (route.getNumHops() == 0) {
+			return super.getToolTipForCell(cell);
+		}
+		return ch.getName() + ": " + route + " (" + route.getNumHops() + (route.getNumHops() == 1 ? " hop)" : " hops)");
 	}
 
 	/**
 	 * This method listens to the state of the global object model. If a new model has been created, then
-	 * create a new graph in sync with the model.
+	 * create a new graph in sync with the model. If it has been cleared, then clear the graph. Otherwise apply
+	 * the changes made to it.
 	 */
 	@Override
 	public void actionPerformed(ActionEvent event) {
@@ -185,11 +237,291 @@ public class ClockDomainGraph extends mxGraph implements ActionListener {
 		if (command.equals(GlobalSystem.MODEL_CREATED_EVENT)) {
 			createGraph();
 		} else if (command.equals(GlobalSystem.MODEL_CLEARED_EVENT)) {
-			// TODO: Clear the model 
+			((mxGraphModel) getModel()).clear();
+			refresh();
+		} else if (event instanceof ModelChangeEvent) {
+			List<ModelChange> changes = ((ModelChangeEvent) event).getChanges();
+			if (changes.isEmpty()) {
+				// Not known what changed, so draw it all again
+				createGraph();
+			} else {
+				applyChanges(changes);
+			}
+		}
+	}
+
+	/**
+	 * Brings the cells of the Clock Domains affected by the given changes, and their Signals and Channels, in line
+	 * with the model, in one update
+	 */
+	private void applyChanges(List<ModelChange> changes) {
+		// Clock Domains whose cells may need adding, removing or updating, in the order they were changed
+		Set<ClockDomain> affected = new LinkedHashSet<ClockDomain>();
+
+		getModel().beginUpdate();
+		try {
+			for (ModelChange change : changes) {
+				Component comp = change.getComponent();
+				Component old = change.getOldComponent();
+				if (change.getType() == ChangeType.CHANGED && old != null && old != comp) {
+					replace(old, comp);
+				}
+
+				if (comp instanceof SubSystem) {
+					if (old instanceof SubSystem) {
+						affected.addAll(((SubSystem) old).getClockDomains());
+					}
+					affected.addAll(((SubSystem) comp).getClockDomains());
+				} else if (comp instanceof ClockDomain) {
+					affected.add((ClockDomain) comp);
+				} else if (change.getParent() instanceof ClockDomain) {
+					// A Signal, or a Channel from the parent
+					affected.add((ClockDomain) change.getParent());
+				}
+			}
+
+			// Remove the Clock Domains that have gone, then add the new ones, so they can be placed beside the
+			// ones already there, then bring all their Signals and Channels up to date
+			List<ClockDomain> present = new ArrayList<ClockDomain>();
+			for (ClockDomain cd : affected) {
+				if (system.getSubSystem(cd) == null) {
+					removeClockDomain(cd);
+				} else {
+					present.add(cd);
+				}
+			}
+			List<Object> placed = new ArrayList<Object>();
+			for (ClockDomain cd : present) {
+				if (getCell(cd) == null) {
+					double[] position = findPosition(cd, placed, Collections.emptySet());
+					placed.add(DrawComponent.drawClockDomain(this, (mxCell) getDefaultParent(), cd, position[0],
+							position[1]));
+				}
+			}
+			for (ClockDomain cd : present) {
+				updateSignals(cd);
+				updateChannels(cd);
+			}
+		} finally {
+			getModel().endUpdate();
+		}
+	}
+
+	/**
+	 * Gives the cells of an edited Component to the Component that replaced it, so they keep their place
+	 */
+	private void replace(Component old, Component comp) {
+		if (getCell(comp) != null) {
+			return;
+		}
+		for (Object cell : new ArrayList<Object>(getCells(old))) {
+			getModel().setValue(cell, comp);
+			// The label on the destination side of a Channel is its own cell
+			if (comp instanceof Channel && getModel().getChildCount(cell) > 0) {
+				getModel().setValue(getModel().getChildAt(cell, 0), ((Channel) comp).getToName());
+			}
+		}
+	}
+
+	/**
+	 * Removes the cell of a Clock Domain no longer in the model, along with the Channels drawn to and from it
+	 */
+	private void removeClockDomain(ClockDomain cd) {
+		Object cell = getCell(cd);
+		if (cell == null) {
+			return;
+		}
+		List<Object> cells = new ArrayList<Object>();
+		for (Object edge : getChannelCells(cell)) {
+			addChannelCells(edge, cells);
+		}
+		cells.add(cell);
+		removeCells(cells.toArray(), false);
+	}
+
+	/**
+	 * Removes the Signals drawn on a Clock Domain that it no longer has, and draws the ones it has that are not
+	 */
+	private void updateSignals(ClockDomain cd) {
+		mxIGraphModel model = getModel();
+		Object cell = getCell(cd);
+		Set<Signal> signals = newIdentitySet();
+		signals.addAll(cd.getInputSignals());
+		signals.addAll(cd.getOutputSignals());
+
+		List<Object> removed = new ArrayList<Object>();
+		for (int i = 0; i < model.getChildCount(cell); i++) {
+			Object child = model.getChildAt(cell, i);
+			Object value = model.getValue(child);
+			if (value instanceof Signal && !signals.contains(value)) {
+				// Remove the Signal along with its port
+				removed.add(child);
+				removed.add(model.getTerminal(child, ((Signal) value).getType() != IOType.INPUT));
+			}
+		}
+		removeCells(removed.toArray(), false);
+
+		drawSignals(cd.getInputSignals(), (mxCell) cell);
+		drawSignals(cd.getOutputSignals(), (mxCell) cell);
+	}
+
+	private void drawSignals(List<Signal> signals, mxCell clockDomain) {
+		for (int i = 0; i < signals.size(); i++) {
+			if (getCell(signals.get(i)) == null) {
+				DrawComponent.drawSignal(this, signals.get(i), clockDomain, i);
+			}
+		}
+	}
+
+	/**
+	 * Removes the Channels drawn to or from a Clock Domain that it no longer has, and draws the ones it has that
+	 * are not, if the Clock Domain at the other end is drawn
+	 */
+	private void updateChannels(ClockDomain cd) {
+		Object cell = getCell(cd);
+		Set<Channel> channels = newIdentitySet();
+		channels.addAll(cd.getInputChannels());
+		channels.addAll(cd.getOutputChannels());
+
+		List<Object> removed = new ArrayList<Object>();
+		for (Object edge : getChannelCells(cell)) {
+			if (!channels.contains(getModel().getValue(edge))) {
+				addChannelCells(edge, removed);
+			}
+		}
+		removeCells(removed.toArray(), false);
+
+		List<Channel> outputs = cd.getOutputChannels();
+		for (int i = 0; i < outputs.size(); i++) {
+			Channel ch = outputs.get(i);
+			mxCell to = ch.getToClockDomain() == null ? null : (mxCell) getCell(ch.getToClockDomain());
+			if (getCell(ch) == null && to != null) {
+				DrawComponent.drawChannel(this, ch, (mxCell) cell, to, i,
+						ch.getToClockDomain().getInputChannels().indexOf(ch));
+			}
+		}
+		for (Channel ch : cd.getInputChannels()) {
+			ClockDomain fromCD = ch.getFromClockDomain();
+			mxCell from = fromCD == null ? null : (mxCell) getCell(fromCD);
+			if (getCell(ch) == null && from != null) {
+				DrawComponent.drawChannel(this, ch, from, (mxCell) cell, fromCD.getOutputChannels().indexOf(ch),
+						cd.getInputChannels().indexOf(ch));
+			}
 		}
-		
 	}
 
+	/**
+	 * @return the Channel edges attached to the ports of a Clock Domain cell
+	 */
+	private List<Object> getChannelCells(Object clockDomain) {
+		mxIGraphModel model = getModel();
+		List<Object> edges = new ArrayList<Object>();
+		for (int i = 0; i < model.getChildCount(clockDomain); i++) {
+			Object port = model.getChildAt(clockDomain, i);
+			for (int j = 0; j < model.getEdgeCount(port); j++) {
+				Object edge = model.getEdgeAt(port, j);
+				if (model.getValue(edge) instanceof Channel && !edges.contains(edge)) {
+					edges.add(edge);
+				}
+			}
+		}
+		return edges;
+	}
 
+	/**
+	 * Adds a Channel edge and the ports at both its ends to the list of cells
+	 */
+	private void addChannelCells(Object edge, List<Object> cells) {
+		if (!cells.contains(edge)) {
+			cells.add(edge);
+			cells.add(getModel().getTerminal(edge, true));
+			cells.add(getModel().getTerminal(edge, false));
+		}
+	}
+
+	/**
+	 * Finds a free place for a new Clock Domain, beside the Clock Domains it shares Channels with, or else the
+	 * others in its Sub System, or else to the right of the graph
+	 * 
+	 * @param placed - cells of the other Clock Domains placed in the same update, to keep clear of
+	 * @param unplaced - cells of Clock Domains still to be placed, which are not yet where they will be
+	 * @return the x and y coordinates to draw it at
+	 */
+	private double[] findPosition(ClockDomain cd, List<Object> placed, Set<?> unplaced) {
+		List<Object> neighbours = new ArrayList<Object>();
+		for (Channel ch : cd.getOutputChannels()) {
+			addNeighbour(ch.getToClockDomain(), neighbours, unplaced);
+		}
+		for (Channel ch : cd.getInputChannels()) {
+			addNeighbour(ch.getFromClockDomain(), neighbours, unplaced);
+		}
+		if (neighbours.isEmpty()) {
+			for (ClockDomain sibling : system.getSubSystem(cd).getClockDomains()) {
+				addNeighbour(sibling, neighbours, unplaced);
+			}
+		}
+
+		double x = 0;
+		double y = 0;
+		if (neighbours.isEmpty()) {
+			// Start a new column to the right of everything drawn
+			x = 50 - 2 * DrawComponent.CLOCK_DOMAIN_WIDTH;
+			y = 50;
+			for (Object cell : getChildVertices(getDefaultParent())) {
+				if (!unplaced.contains(cell)) {
+					x = Math.max(x, getCellGeometry(cell).getX());
+				}
+			}
+			x += 2 * DrawComponent.CLOCK_DOMAIN_WIDTH;
+		} else {
+			for (Object cell : neighbours) {
+				x += getCellGeometry(cell).getX();
+				y += getCellGeometry(cell).getY();
+			}
+			x /= neighbours.size();
+			y /= neighbours.size();
+		}
+
+		// Step around the spot until the Clock Domain does not overlap its neighbours or the others just placed
+		List<Object> nearby = new ArrayList<Object>(neighbours);
+		nearby.addAll(placed);
+		double dx = 2 * DrawComponent.CLOCK_DOMAIN_WIDTH;
+		double dy = 2 * DrawComponent.CLOCK_DOMAIN_HEIGHT;
+		for (int ring = 0; ring < 100; ring++) {
+			for (int i = -ring; i <= ring; i++) {
+				for (int j = -ring; j <= ring; j++) {
+					if (Math.max(Math.abs(i), Math.abs(j)) == ring && isFree(x + i * dx, y + j * dy, nearby)) {
+						return new double[] { x + i * dx, y + j * dy };
+					}
+				}
+			}
+		}
+		return new double[] { x, y };
+	}
+
+	private void addNeighbour(ClockDomain cd, List<Object> neighbours, Set<?> unplaced) {
+		Object cell = cd == null ? null : getCell(cd);
+		if (cell != null && !neighbours.contains(cell) && !unplaced.contains(cell)) {
+			neighbours.add(cell);
+		}
+	}
+
+	/**
+	 * @return true if a Clock Domain at the given coordinates would not overlap any of the given cells
+	 */
+	private boolean isFree(double x, double y, List<Object> cells) {
+		for (Object cell : cells) {
+			mxGeometry geo = getCellGeometry(cell);
+			if (Math.abs(geo.getX() - x) < DrawComponent.CLOCK_DOMAIN_WIDTH * 1.5
+					&& Math.abs(geo.getY() - y) < DrawComponent.CLOCK_DOMAIN_HEIGHT * 1.5) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static <T> Set<T> newIdentitySet() {
+		return Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+	}
 
 }
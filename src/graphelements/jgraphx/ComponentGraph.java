@@ -0,0 +1,282 @@
+package graphelements.jgraphx;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import graphmodel.Component;
+import graphmodel.GlobalSystem;
+
+import com.mxgraph.model.mxCell;
+import com.mxgraph.model.mxGeometry;
+import com.mxgraph.model.mxGraphModel.mxChildChange;
+import com.mxgraph.model.mxGraphModel.mxRootChange;
+import com.mxgraph.model.mxGraphModel.mxValueChange;
+import com.mxgraph.model.mxIGraphModel;
+import com.mxgraph.swing.mxGraphComponent;
+import com.mxgraph.util.mxEvent;
+import com.mxgraph.util.mxEventObject;
+import com.mxgraph.util.mxEventSource.mxIEventListener;
+import com.mxgraph.view.mxGraph;
+
+/**
+ * This class is the base of the graphs that draw the object model, SubSystemGraph and ClockDomainGraph. It sets the
+ * constraints they share, and keeps an index from each Component of the model to the cells it is drawn as, so a
+ * Component's cells are found without searching the graph.
+ *
+ * The index follows every change made through the graph model as it is executed, including cells added or removed
+ * with their children, cells given another Component as their value and the whole graph being cleared, so it is up
+ * to date even in the middle of an update. Components are matched by identity, as an edited Component is replaced
+ * by a new object that may be equal to the old one. The Component of a cell is simply its value.
+ *
+ * Most Components are drawn as one cell, but a Link group is drawn as an edge between every pair of its Sub Systems.
+ *
+ * Graphs are laid out automatically on a background thread by a LayoutWorker, one at a time.
+ *
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public abstract class ComponentGraph extends mxGraph {
+
+	// The object model shown in this graph
+	protected GlobalSystem system;
+
+	// The cells each Component is drawn as, in the order they were added
+	private Map<Component, List<Object>> cells = new IdentityHashMap<Component, List<Object>>();
+
+	// Layout to restore the next time the graph is created, if any
+	private DiagramLayout savedLayout;
+
+	// The component this graph is shown in, if any, and the layout running on it
+	private mxGraphComponent graphComponent;
+	private LayoutWorker layoutWorker;
+
+	/**
+	 * @param system - the object model to show in this graph
+	 */
+	public ComponentGraph(GlobalSystem system) {
+		super();
+		this.system = system;
+
+		// Set constraints on the mxGraph
+		this.setAllowDanglingEdges(true);
+		this.setMultigraph(true);
+		this.setDisconnectOnMove(false);
+		this.setCellsEditable(false);
+
+		// Keep the index up to date with each change as it is made
+		getModel().addListener(mxEvent.EXECUTE, new mxIEventListener() {
+			@Override
+			public void invoke(Object sender, mxEventObject event) {
+				Object change = event.getProperty("change");
+				if (change instanceof mxChildChange) {
+					mxChildChange childChange = (mxChildChange) change;
+					if (childChange.getParent() == null) {
+						unindex(childChange.getChild());
+					} else if (childChange.getPrevious() == null) {
+						index(childChange.getChild());
+					}
+				} else if (change instanceof mxValueChange) {
+					mxValueChange valueChange = (mxValueChange) change;
+					remove(valueChange.getPrevious(), valueChange.getCell());
+					add(valueChange.getValue(), valueChange.getCell());
+				} else if (change instanceof mxRootChange) {
+					cells.clear();
+					index(((mxRootChange) change).getRoot());
+				}
+			}
+		});
+		index(getModel().getRoot());
+	}
+
+	/**
+	 * @return the object model shown in this graph
+	 */
+	public GlobalSystem getSystem() {
+		return system;
+	}
+
+	/**
+	 * @return the first cell the Component is drawn as, null if it is not in this graph
+	 */
+	public Object getCell(Component comp) {
+		List<Object> list = cells.get(comp);
+		return list == null ? null : list.get(0);
+	}
+
+	/**
+	 * @return every cell the Component is drawn as, empty if it is not in this graph
+	 */
+	public List<Object> getCells(Component comp) {
+		List<Object> list = cells.get(comp);
+		if (list == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(list);
+	}
+
+	/**
+	 * @return the Component the cell is drawn for, null if it is not drawn for one
+	 */
+	public Component getComponent(Object cell) {
+		Object value = getModel().getValue(cell);
+		return value instanceof Component ? (Component) value : null;
+	}
+
+	/**
+	 * Selects the cells of the given Component, or clears the selection if it is not in this graph
+	 * @return true if the Component was selected
+	 */
+	public boolean selectComponent(Component comp) {
+		List<Object> list = cells.get(comp);
+		if (list == null) {
+			clearSelection();
+			return false;
+		}
+		setSelectionCells(list.toArray());
+		return true;
+	}
+
+	/**
+	 * Moves the cell of a Component already in this graph
+	 * 
+	 * @param comp - the Component to move
+	 * @param x - x coordinate to move it to
+	 * @param y - y coordinate to move it to
+	 */
+	public void setPosition(Component comp, double x, double y) {
+		Object cell = getCell(comp);
+		if (cell == null) {
+			return;
+		}
+		mxGeometry geo = (mxGeometry) getCellGeometry(cell).clone();
+		geo.setX(x);
+		geo.setY(y);
+		getModel().setGeometry(cell, geo);
+	}
+
+	/**
+	 * Sets a layout to restore when the graph is next created for a new model, in place of laying it out again.
+	 * It is only used once.
+	 *
+	 * @param layout - layout saved along with the model, or null to lay the next graph out as usual
+	 */
+	public void setSavedLayout(DiagramLayout layout) {
+		savedLayout = layout;
+	}
+
+	/**
+	 * Restores the layout set with setSavedLayout(), if there is one, to the cells just drawn, then forgets it.
+	 *
+	 * @return the vertices the layout had no position for, which still need to be placed, or null if there was no
+	 *         layout or it had no positions for this graph, so the whole graph needs laying out
+	 */
+	protected List<Object> restoreLayout() {
+		DiagramLayout layout = savedLayout;
+		savedLayout = null;
+		return layout == null ? null : layout.restore(this);
+	}
+
+	/**
+	 * @param graphComponent - the component this graph is shown in, which layouts are animated in
+	 */
+	public void setGraphComponent(mxGraphComponent graphComponent) {
+		this.graphComponent = graphComponent;
+	}
+
+	/**
+	 * Starts laying out the top level cells of the graph in the background, cancelling any layout still running.
+	 * The cells are moved once it has finished, unless they have been moved by then.
+	 */
+	protected void startLayout() {
+		cancelLayout();
+		layoutWorker = new LayoutWorker(this, graphComponent);
+		layoutWorker.execute();
+	}
+
+	/**
+	 * Cancels the layout running on the graph, if there is one, leaving the cells where they are
+	 */
+	public void cancelLayout() {
+		if (layoutWorker != null) {
+			layoutWorker.cancel(true);
+			layoutWorker = null;
+		}
+	}
+
+	/**
+	 * Determines that any cell that is a vertex can be moved, but not edges.
+	 */
+	@Override
+	public boolean isCellMovable(Object cell) {
+		return !getModel().isEdge(cell);
+	}
+
+	/**
+	 * This method is called whenever a component on the graph is being edited.
+	 * It exchanges the cell value with the new component on the specified graph view
+	 *
+	 * @param compCell - the graph cell to change
+	 * @param comp - the object model component to change the cell's value to
+	 */
+	public void changeComponent(mxCell compCell, Component comp) {
+		this.getModel().beginUpdate();
+
+		try {
+			// set the cell's value to the new Component, through the model so the index follows it
+			getModel().setValue(compCell, comp);
+		} finally {
+			this.getModel().endUpdate();
+		}
+		refresh();
+	}
+
+	/**
+	 * Adds the cell and all the cells inside it to the index
+	 */
+	private void index(Object cell) {
+		mxIGraphModel model = getModel();
+		add(model.getValue(cell), cell);
+		for (int i = 0; i < model.getChildCount(cell); i++) {
+			index(model.getChildAt(cell, i));
+		}
+	}
+
+	/**
+	 * Removes the cell and all the cells inside it from the index
+	 */
+	private void unindex(Object cell) {
+		mxIGraphModel model = getModel();
+		remove(model.getValue(cell), cell);
+		for (int i = 0; i < model.getChildCount(cell); i++) {
+			unindex(model.getChildAt(cell, i));
+		}
+	}
+
+	private void add(Object value, Object cell) {
+		if (!(value instanceof Component)) {
+			return;
+		}
+		List<Object> list = cells.get(value);
+		if (list == null) {
+			list = new ArrayList<Object>(1);
+			cells.put((Component) value, list);
+		}
+		if (!list.contains(cell)) {
+			list.add(cell);
+		}
+	}
+
+	private void remove(Object value, Object cell) {
+		if (!(value instanceof Component)) {
+			return;
+		}
+		List<Object> list = cells.get(value);
+		if (list != null && list.remove(cell) && list.isEmpty()) {
+			cells.remove(value);
+		}
+	}
+
+}
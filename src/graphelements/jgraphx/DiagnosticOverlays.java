@@ -0,0 +1,156 @@
+package graphelements.jgraphx;
+
+import analysis.Diagnostic;
+import analysis.DiagnosticsEvent;
+import analysis.Validator;
+import graphmodel.Component;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.List;
+import java.util.Set;
+
+import com.mxgraph.model.mxGraphModel.mxChildChange;
+import com.mxgraph.model.mxICell;
+import com.mxgraph.swing.mxGraphComponent;
+import com.mxgraph.util.mxEvent;
+import com.mxgraph.util.mxEventObject;
+import com.mxgraph.util.mxEventSource.mxIEventListener;
+import com.mxgraph.util.mxUndoableEdit.mxUndoableChange;
+
+/**
+ * This class marks the cells of a graph whose Components have problems found by a Validator. Each such cell gets
+ * a warning overlay, with the problems listed in its tooltip.
+ *
+ * The marks are updated when the Validator reports that the Diagnostics of some Components have changed, and when
+ * cells are added to the graph, so cells drawn after their Component was validated are marked too.
+ *
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public class DiagnosticOverlays implements ActionListener, mxIEventListener {
+
+	private mxGraphComponent canvas;
+	private Validator validator;
+
+	/**
+	 * @param canvas - the graph component to mark cells on
+	 * @param validator - the Validator whose Diagnostics are shown
+	 */
+	public DiagnosticOverlays(mxGraphComponent canvas, Validator validator) {
+		this.canvas = canvas;
+		this.validator = validator;
+
+		validator.addListener(this);
+		canvas.getGraph().getModel().addListener(mxEvent.CHANGE, this);
+		updateCells(null);
+	}
+
+	/**
+	 * Called by the Validator when the Diagnostics change
+	 */
+	@Override
+	public void actionPerformed(ActionEvent event) {
+		if (event instanceof DiagnosticsEvent) {
+			updateCells(((DiagnosticsEvent) event).getComponents());
+		}
+	}
+
+	/**
+	 * Called by the graph model when it changes. Marks any cells that were added
+	 */
+	@Override
+	public void invoke(Object sender, mxEventObject event) {
+		List<?> changes = (List<?>) event.getProperty("changes");
+		if (changes == null) {
+			return;
+		}
+		for (Object change : changes) {
+			if (change instanceof mxChildChange && ((mxChildChange) change).getParent() != null) {
+				updateCell(((mxChildChange) change).getChild());
+			}
+		}
+	}
+
+	/**
+	 * Updates the marks on the cells of the given Components
+	 * @param components - Components whose Diagnostics changed, or null to update every cell
+	 */
+	private void updateCells(Set<Component> components) {
+		// Only the cells of the given Components need updating, and the graph knows which they are
+		if (components != null && canvas.getGraph() instanceof ComponentGraph) {
+			ComponentGraph graph = (ComponentGraph) canvas.getGraph();
+			for (Component comp : components) {
+				for (Object cell : graph.getCells(comp)) {
+					updateCell(cell);
+				}
+			}
+			return;
+		}
+		for (Object cell : canvas.getGraph().getChildCells(canvas.getGraph().getDefaultParent())) {
+			updateCellAndChildren((mxICell) cell, components);
+		}
+	}
+
+	private void updateCellAndChildren(mxICell cell, Set<Component> components) {
+		if (components == null || components.contains(cell.getValue())) {
+			updateCell(cell);
+		}
+		for (int i = 0; i < cell.getChildCount(); i++) {
+			updateCellAndChildren(cell.getChildAt(i), components);
+		}
+	}
+
+	/**
+	 * Sets the warning on a single cell from the Diagnostics of its Component, or removes it if there are none
+	 */
+	private void updateCell(Object cell) {
+		Object value = ((mxICell) cell).getValue();
+		if (!(value instanceof Component)) {
+			return;
+		}
+
+		List<Diagnostic> diagnostics = validator.getDiagnostics((Component) value);
+		if (diagnostics.isEmpty()) {
+			if (canvas.getCellOverlays(cell) != null) {
+				canvas.setCellWarning(cell, null);
+			}
+		} else {
+			StringBuilder warning = new StringBuilder("<html>");
+			for (Diagnostic d : diagnostics) {
+				warning.append(escapeHTML(d.toString())).append("<br>");
+			}
+			warning.append("</html>");
+			canvas.setCellWarning(cell, warning.toString());
+		}
+	}
+
+	/**
+	 * @return the text with the characters that have a meaning in HTML replaced, so names such as "a<b" are shown
+	 *         as they are
+	 */
+	private static String escapeHTML(String text) {
+		StringBuilder escaped = new StringBuilder(text.length());
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			switch (c) {
+			case '<':
+				escaped.append("&lt;");
+				break;
+			case '>':
+				escaped.append("&gt;");
+				break;
+			case '&':
+				escaped.append("&amp;");
+				break;
+			case '"':
+				escaped.append("&quot;");
+				break;
+			default:
+				escaped.append(c);
+			}
+		}
+		return escaped.toString();
+	}
+
+}
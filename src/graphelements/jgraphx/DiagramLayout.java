@@ -0,0 +1,336 @@
+package graphelements.jgraphx;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import graphmodel.Channel;
+import graphmodel.ClockDomain;
+import graphmodel.Component;
+import graphmodel.LinkGroup;
+import graphmodel.SubSystem;
+
+import com.mxgraph.model.mxGeometry;
+import com.mxgraph.model.mxIGraphModel;
+import com.mxgraph.util.mxPoint;
+import com.mxgraph.util.mxRectangle;
+
+/**
+ * This class holds where the cells of the graphs were placed, so a model that is loaded again is shown as it was
+ * left rather than being laid out from scratch. It is saved next to the model file, in a file with the same name
+ * and LAYOUT_EXTENSION added.
+ *
+ * Only the cells at the top level of each graph are kept: the position, size and collapsed state of the Sub Systems
+ * and Clock Domains, and the bends of the Channels and Link groups. The cells inside them are placed relative to
+ * them when they are drawn. Each cell is kept under the path of its Component in the model, so it is found again
+ * whatever order the model is loaded in:
+ * - "SubSystem:name" and "ClockDomain:name", as their names are unique in the model
+ * - "Channel:clockdomain.name", by the Clock Domain the Channel comes from
+ * - "LinkGroup:index:from-to", by the position of the Link group in the model and the Sub Systems of the edge
+ *
+ * The file is plain text with one cell on each line, its fields separated by tabs:
+ *   V  graph  path  x  y  width  height  collapsed
+ *   E  graph  path  x1  y1  x2  y2 ...
+ * where graph is the name of the graph class, collapsed is 1 or 0, and an edge lists the coordinates of its bends.
+ * Lines starting with "#" and lines of any other kind are skipped.
+ *
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public class DiagramLayout {
+
+	public static final String LAYOUT_EXTENSION = ".layout";
+
+	private static final String HEADER = "# SystemJ GUI diagram layout 1";
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	// The geometry kept for each cell, by the name of its graph and then the path of its Component
+	private Map<String, Map<String, CellLayout>> graphs = new HashMap<String, Map<String, CellLayout>>();
+
+	/**
+	 * @param modelFile - XML configuration or snapshot file of a model
+	 * @return the file the layout of the model is saved in
+	 */
+	public static File getLayoutFile(File modelFile) {
+		return new File(modelFile.getPath() + LAYOUT_EXTENSION);
+	}
+
+	/**
+	 * @return true if no cells are kept
+	 */
+	public boolean isEmpty() {
+		return graphs.isEmpty();
+	}
+
+	/**
+	 * Keeps the geometry of the top level cells of the graph, replacing any kept for it before
+	 */
+	public void save(ComponentGraph graph) {
+		mxIGraphModel model = graph.getModel();
+		Map<LinkGroup, Integer> linkGroups = indexLinkGroups(graph);
+		Map<String, CellLayout> cells = new LinkedHashMap<String, CellLayout>();
+
+		Object parent = graph.getDefaultParent();
+		for (int i = 0; i < model.getChildCount(parent); i++) {
+			Object cell = model.getChildAt(parent, i);
+			String path = getPath(model, cell, linkGroups);
+			mxGeometry geo = model.getGeometry(cell);
+			if (path == null || geo == null) {
+				continue;
+			}
+
+			CellLayout layout = new CellLayout();
+			if (model.isVertex(cell)) {
+				layout.bounds = new mxRectangle(geo);
+				layout.collapsed = model.isCollapsed(cell);
+				// Keep the size the cell is expanded to, which it is folded from again when it is restored
+				if (layout.collapsed && geo.getAlternateBounds() != null) {
+					layout.bounds.setWidth(geo.getAlternateBounds().getWidth());
+					layout.bounds.setHeight(geo.getAlternateBounds().getHeight());
+				}
+			} else if (geo.getPoints() != null && !geo.getPoints().isEmpty()) {
+				layout.points = new ArrayList<mxPoint>();
+				for (mxPoint point : geo.getPoints()) {
+					layout.points.add((mxPoint) point.clone());
+				}
+			} else {
+				continue;
+			}
+			cells.put(path, layout);
+		}
+		graphs.put(getName(graph), cells);
+	}
+
+	/**
+	 * Moves the top level cells of the graph kept in this layout back to where they were, in one update, and gives
+	 * the edges back their bends.
+	 *
+	 * @return the vertices with no position kept, in the order they are in the graph, or null if no vertex had one
+	 */
+	public List<Object> restore(ComponentGraph graph) {
+		Map<String, CellLayout> cells = graphs.get(getName(graph));
+		mxIGraphModel model = graph.getModel();
+		Object parent = graph.getDefaultParent();
+		List<Object> unplaced = new ArrayList<Object>();
+		boolean restored = false;
+		if (cells == null) {
+			cells = new HashMap<String, CellLayout>();
+		}
+
+		Map<LinkGroup, Integer> linkGroups = indexLinkGroups(graph);
+		model.beginUpdate();
+		try {
+			for (int i = 0; i < model.getChildCount(parent); i++) {
+				Object cell = model.getChildAt(parent, i);
+				String path = getPath(model, cell, linkGroups);
+				CellLayout layout = path == null ? null : cells.get(path);
+				if (model.isEdge(cell)) {
+					if (layout != null && layout.points != null) {
+						mxGeometry geo = (mxGeometry) model.getGeometry(cell).clone();
+						geo.setPoints(layout.points);
+						model.setGeometry(cell, geo);
+					}
+				} else if (!model.isVertex(cell)) {
+					continue;
+				} else if (layout == null || layout.bounds == null) {
+					unplaced.add(cell);
+				} else {
+					restoreVertex(graph, cell, layout);
+					restored = true;
+				}
+			}
+		} finally {
+			model.endUpdate();
+		}
+		return restored ? unplaced : null;
+	}
+
+	private void restoreVertex(ComponentGraph graph, Object cell, CellLayout layout) {
+		mxIGraphModel model = graph.getModel();
+		mxGeometry geo = (mxGeometry) model.getGeometry(cell).clone();
+		geo.setX(layout.bounds.getX());
+		geo.setY(layout.bounds.getY());
+		geo.setWidth(layout.bounds.getWidth());
+		geo.setHeight(layout.bounds.getHeight());
+		model.setGeometry(cell, geo);
+
+		if (layout.collapsed && !model.isCollapsed(cell)) {
+			// Folding works out the collapsed size, which is kept at the same place
+			graph.foldCells(true, false, new Object[] { cell });
+			geo = (mxGeometry) model.getGeometry(cell).clone();
+			geo.setX(layout.bounds.getX());
+			geo.setY(layout.bounds.getY());
+			model.setGeometry(cell, geo);
+		}
+	}
+
+	/**
+	 * Reads a layout saved by write(). If the file does not exist, the layout is empty.
+	 */
+	public static DiagramLayout read(File file) throws IOException {
+		DiagramLayout diagram = new DiagramLayout();
+		BufferedReader in;
+		try {
+			in = Files.newBufferedReader(file.toPath(), UTF8);
+		} catch (NoSuchFileException e) {
+			return diagram;
+		}
+
+		try {
+			String line;
+			int lineNumber = 0;
+			while ((line = in.readLine()) != null) {
+				lineNumber++;
+				String[] fields = line.split("\t");
+				boolean vertex = fields[0].equals("V");
+				if (!vertex && !fields[0].equals("E")) {
+					continue;
+				}
+				if (fields.length < 3 || (vertex && fields.length < 8) || (!vertex && fields.length % 2 == 0)) {
+					throw new IOException("Read Layout: line " + lineNumber + " of " + file.getName()
+							+ " has the wrong number of fields");
+				}
+
+				CellLayout layout = new CellLayout();
+				try {
+					if (vertex) {
+						layout.bounds = new mxRectangle(Double.parseDouble(fields[3]), Double.parseDouble(fields[4]),
+								Double.parseDouble(fields[5]), Double.parseDouble(fields[6]));
+						layout.collapsed = fields[7].equals("1");
+					} else {
+						layout.points = new ArrayList<mxPoint>();
+						for (int i = 3; i < fields.length; i += 2) {
+							layout.points.add(new mxPoint(Double.parseDouble(fields[i]),
+									Double.parseDouble(fields[i + 1])));
+						}
+					}
+				} catch (NumberFormatException e) {
+					throw new IOException("Read Layout: line " + lineNumber + " of " + file.getName()
+							+ " has a coordinate that is not a number");
+				}
+				diagram.getCells(fields[1]).put(fields[2], layout);
+			}
+		} finally {
+			in.close();
+		}
+		return diagram;
+	}
+
+	/**
+	 * Writes the layout to the given file, replacing it
+	 */
+	public void write(File file) throws IOException {
+		Writer out = Files.newBufferedWriter(file.toPath(), UTF8);
+		try {
+			out.append(HEADER).append('\n');
+			for (Map.Entry<String, Map<String, CellLayout>> graph : graphs.entrySet()) {
+				for (Map.Entry<String, CellLayout> cell : graph.getValue().entrySet()) {
+					CellLayout layout = cell.getValue();
+					out.append(layout.bounds != null ? "V" : "E").append('\t').append(graph.getKey()).append('\t')
+							.append(cell.getKey());
+					if (layout.bounds != null) {
+						appendNumber(out, layout.bounds.getX());
+						appendNumber(out, layout.bounds.getY());
+						appendNumber(out, layout.bounds.getWidth());
+						appendNumber(out, layout.bounds.getHeight());
+						out.append('\t').append(layout.collapsed ? '1' : '0');
+					} else {
+						for (mxPoint point : layout.points) {
+							appendNumber(out, point.getX());
+							appendNumber(out, point.getY());
+						}
+					}
+					out.append('\n');
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes a tab and the number, without a fraction if it is whole, as most coordinates are
+	 */
+	private static void appendNumber(Writer out, double value) throws IOException {
+		out.append('\t');
+		if (value == Math.rint(value) && Math.abs(value) < Long.MAX_VALUE) {
+			out.append(Long.toString((long) value));
+		} else {
+			out.append(Double.toString(value));
+		}
+	}
+
+	private Map<String, CellLayout> getCells(String graph) {
+		Map<String, CellLayout> cells = graphs.get(graph);
+		if (cells == null) {
+			cells = new LinkedHashMap<String, CellLayout>();
+			graphs.put(graph, cells);
+		}
+		return cells;
+	}
+
+	private static String getName(ComponentGraph graph) {
+		return graph.getClass().getSimpleName();
+	}
+
+	/**
+	 * @return the position of each Link group in the model shown in the graph
+	 */
+	private static Map<LinkGroup, Integer> indexLinkGroups(ComponentGraph graph) {
+		Map<LinkGroup, Integer> index = new IdentityHashMap<LinkGroup, Integer>();
+		for (LinkGroup links : graph.getSystem().getLinks()) {
+			index.put(links, index.size());
+		}
+		return index;
+	}
+
+	/**
+	 * @return the path of the Component a top level cell is drawn for, or null if it cannot be kept
+	 */
+	private static String getPath(mxIGraphModel model, Object cell, Map<LinkGroup, Integer> linkGroups) {
+		Object value = model.getValue(cell);
+		if (value instanceof SubSystem) {
+			return "SubSystem:" + ((SubSystem) value).getName();
+		} else if (value instanceof ClockDomain) {
+			return "ClockDomain:" + ((ClockDomain) value).getName();
+		} else if (value instanceof Channel) {
+			ClockDomain from = ((Channel) value).getFromClockDomain();
+			return from == null ? null : "Channel:" + from.getName() + "." + ((Channel) value).getName();
+		} else if (value instanceof LinkGroup) {
+			Integer index = linkGroups.get(value);
+			String from = getTerminalName(model, cell, true);
+			String to = getTerminalName(model, cell, false);
+			return index == null || from == null || to == null ? null : "LinkGroup:" + index + ":" + from + "-" + to;
+		}
+		return null;
+	}
+
+	/**
+	 * @return the name of the Component whose port the edge is attached to at the given end, null if it has none
+	 */
+	private static String getTerminalName(mxIGraphModel model, Object edge, boolean source) {
+		Object port = model.getTerminal(edge, source);
+		Object value = port == null ? null : model.getValue(model.getParent(port));
+		return value instanceof Component ? ((Component) value).getName() : null;
+	}
+
+	/**
+	 * The geometry kept for one cell. A vertex has bounds, an edge has bends instead.
+	 */
+	private static class CellLayout {
+		mxRectangle bounds;
+		boolean collapsed;
+		List<mxPoint> points;
+	}
+
+}
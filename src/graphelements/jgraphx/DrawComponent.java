@@ -6,7 +6,6 @@ package graphelements.jgraphx;
 
 import graphmodel.Channel;
 import graphmodel.ClockDomain;
-import graphmodel.Component;
 import graphmodel.GlobalSystem;
 import graphmodel.IOType;
 import graphmodel.Link;
@@ -132,73 +131,27 @@ public class DrawComponent {
 		return vertex;
 	}
 	
-	// under working
-	// robert
-
-	
-	public static void remvoeClockDomain(mxGraph graph, mxCell Clockdomian){
-		System.out.println ("in removeclockdomain");
-		Object[] removedcell = graph.removeCells();
-		
-		//Object[] removedcell = graph.getSelectionCells();
+	/**
+	 * Removes the Clock Domains selected in the graph from the model. The graph follows the model, so their cells
+	 * are removed along with them.
+	 *
+	 * @param graph - mxGraph the Clock Domains are selected in
+	 * @param system - model the Clock Domains are removed from
+	 */
+	public static void removeSelectedClockDomains(mxGraph graph, GlobalSystem system){
+		Object[] removedcell = graph.getSelectionCells();
 		
-		for ( Object obj :  removedcell){
-			if (obj instanceof mxCell){
-				System.out.println(obj);
-				mxCell rtemp = (mxCell)obj;
-				System.out.println (rtemp.getAttribute("Name"));
-				System.out.println (rtemp.getId());
-				if (rtemp.getValue() instanceof Component) {
-					Component selectedComponent = (Component) rtemp.getValue();
-					System.out.println("component is " + selectedComponent);	
-					if (selectedComponent instanceof ClockDomain) {
-						ClockDomain cd = (ClockDomain)selectedComponent;
-						System.out.println(cd.getClassName() );
-						//System.out.println(cd. );
-						// what if there is same cd name in 2 sub system
-						GlobalSystem.getInstance().removeClockDomain(cd);
-						//for ( SubSystem temp : allsubsys){
-						//	GlobalSystem.getInstance().removeClockDomain(cd,temp);
-							
-							/*List<ClockDomain> allclcDomain = temp.getClockDomains();					
-							for (ClockDomain tempclc : allclcDomain){
-								if (tempclc == cd){
-									System.out.print("found cd " );
-									System.out.println(cd);
-									System.out.println(temp);
-								}
-							}*/ // this should not need to be used
-						//}
-						List<SubSystem> allsubsysdisplay = GlobalSystem.getInstance().getSubSystems();
-						for ( SubSystem temp : allsubsysdisplay){
-							List<ClockDomain> allclcDomain = temp.getClockDomains();					
-							for (ClockDomain tempclc : allclcDomain){
-								
-									System.out.print("found cd " );
-									System.out.println(tempclc);
-									System.out.println(temp);
-								
-							}
-							
-							
-						}
-						
-						
-					}
+		// Remove all the Clock Domains from the model as one batch, so the views are only refreshed once
+		system.beginUpdate();
+		try {
+			for (Object obj : removedcell) {
+				if (obj instanceof mxCell && ((mxCell) obj).getValue() instanceof ClockDomain) {
+					system.removeClockDomain((ClockDomain) ((mxCell) obj).getValue());
 				}
-				
-			}
-			else
-			{
-				System.out.println("find " +  obj);
 			}
-			
+		} finally {
+			system.endUpdate();
 		}
-		
-		
-		
-		System.out.println ("this has been removed " + removedcell);
-		
 	}
 
 	/**
@@ -0,0 +1,280 @@
+package graphelements.jgraphx;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.JOptionPane;
+import javax.swing.SwingWorker;
+
+import com.mxgraph.layout.mxFastOrganicLayout;
+import com.mxgraph.model.mxGeometry;
+import com.mxgraph.model.mxGraphModel.mxChildChange;
+import com.mxgraph.model.mxGraphModel.mxGeometryChange;
+import com.mxgraph.model.mxGraphModel.mxRootChange;
+import com.mxgraph.model.mxGraphModel.mxTerminalChange;
+import com.mxgraph.model.mxIGraphModel;
+import com.mxgraph.swing.mxGraphComponent;
+import com.mxgraph.swing.util.mxMorphing;
+import com.mxgraph.util.mxEvent;
+import com.mxgraph.util.mxEventObject;
+import com.mxgraph.util.mxEventSource.mxIEventListener;
+import com.mxgraph.view.mxGraph;
+
+/**
+ * This class lays out the top level cells of a ComponentGraph with mxFastOrganicLayout on a background thread, so
+ * the window stays responsive while large graphs are laid out.
+ *
+ * When it is created, on the event dispatch thread, it takes a copy of where the top level vertices are and which of
+ * them are joined by edges. Edges are drawn between ports inside the vertices, so each end is taken to be the top
+ * level vertex the port is in. The layout is run on a separate graph built from that copy, so the graph being shown
+ * is not touched until the layout has finished. The new positions are then applied in one update of its model.
+ *
+ * For small graphs, the positions are also applied every few iterations while the layout runs, and the final ones
+ * are animated with mxMorphing, if the graph has a component to animate in. Larger graphs are not, as every update
+ * of the graph revalidates all of it.
+ *
+ * If the vertices are moved, added or removed while the layout is running, it is cancelled and its result thrown
+ * away, so the user's changes are not undone by it. Changes to the styles and labels of cells do not cancel it.
+ *
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public class LayoutWorker extends SwingWorker<double[][], double[][]> implements mxIEventListener {
+
+	// Largest graph shown moving as it is laid out
+	private static final int ANIMATE_LIMIT = 300;
+	// Iterations of the layout between each time the positions are shown
+	private static final int PUBLISH_INTERVAL = 10;
+	// Number of times two vertices are compared in the whole layout, beyond which fewer iterations are run
+	private static final double MAX_COMPARISONS = 1e9;
+	private static final int MORPH_STEPS = 10;
+	private static final int MORPH_DELAY = 20;
+
+	private ComponentGraph graph;
+	private mxGraphComponent graphComponent;
+	// True to show the positions as the layout runs
+	private boolean progressive;
+
+	// The top level vertices, their bounds as x, y, width and height, and the pairs of them joined by an edge
+	private Object[] cells;
+	private double[][] bounds;
+	private int[][] edges;
+
+	// True while positions are being applied by this worker, so the changes it makes do not cancel it
+	private boolean applying = false;
+	private boolean finished = false;
+
+	/**
+	 * Takes a copy of the top level cells of the graph to lay out. Must be called on the event dispatch thread.
+	 *
+	 * @param graph - the graph to lay out
+	 * @param graphComponent - component the graph is shown in, to animate the layout in. May be null
+	 */
+	public LayoutWorker(ComponentGraph graph, mxGraphComponent graphComponent) {
+		this.graph = graph;
+		this.graphComponent = graphComponent;
+
+		mxIGraphModel model = graph.getModel();
+		Object parent = graph.getDefaultParent();
+		cells = graph.getChildVertices(parent);
+		bounds = new double[cells.length][];
+		Map<Object, Integer> index = new IdentityHashMap<Object, Integer>();
+		for (int i = 0; i < cells.length; i++) {
+			mxGeometry geo = model.getGeometry(cells[i]);
+			bounds[i] = new double[] { geo.getX(), geo.getY(), geo.getWidth(), geo.getHeight() };
+			index.put(cells[i], i);
+		}
+
+		Object[] edgeCells = graph.getChildEdges(parent);
+		int[][] pairs = new int[edgeCells.length][];
+		int numEdges = 0;
+		for (Object edge : edgeCells) {
+			Integer source = index.get(getTopLevel(model.getTerminal(edge, true), parent));
+			Integer target = index.get(getTopLevel(model.getTerminal(edge, false), parent));
+			if (source != null && target != null && !source.equals(target)) {
+				pairs[numEdges++] = new int[] { source, target };
+			}
+		}
+		edges = new int[numEdges][];
+		System.arraycopy(pairs, 0, edges, 0, numEdges);
+
+		progressive = cells.length <= ANIMATE_LIMIT;
+		model.addListener(mxEvent.CHANGE, this);
+	}
+
+	/**
+	 * @return the cell inside the parent that contains the given cell, or null if it is not inside the parent
+	 */
+	private Object getTopLevel(Object cell, Object parent) {
+		mxIGraphModel model = graph.getModel();
+		while (cell != null && model.getParent(cell) != parent) {
+			cell = model.getParent(cell);
+		}
+		return cell;
+	}
+
+	/**
+	 * Lays out a copy of the vertices and edges on the background thread
+	 * @return the new x and y coordinates of each vertex, or null if the layout was cancelled
+	 */
+	@Override
+	protected double[][] doInBackground() throws Exception {
+		mxGraph detached = new mxGraph();
+		Object parent = detached.getDefaultParent();
+		final Object[] copies = new Object[cells.length];
+		detached.getModel().beginUpdate();
+		try {
+			for (int i = 0; i < cells.length; i++) {
+				copies[i] = detached.insertVertex(parent, null, null, bounds[i][0], bounds[i][1], bounds[i][2],
+						bounds[i][3]);
+			}
+			for (int[] edge : edges) {
+				detached.insertEdge(parent, null, null, copies[edge[0]], copies[edge[1]]);
+			}
+		} finally {
+			detached.getModel().endUpdate();
+		}
+
+		mxFastOrganicLayout layout = new mxFastOrganicLayout(detached) {
+			@Override
+			protected void reduceTemperature() {
+				super.reduceTemperature();
+				if (isCancelled()) {
+					allowedToRun = false;
+				} else if (progressive && (int) iteration % PUBLISH_INTERVAL == 0) {
+					// The layout keeps the centre of each vertex it moves
+					double[][] positions = getPositions();
+					for (int i = 0; i < copies.length; i++) {
+						Integer k = indices.get(copies[i]);
+						if (k != null) {
+							positions[i][0] = cellLocation[k][0] - bounds[i][2] / 2;
+							positions[i][1] = cellLocation[k][1] - bounds[i][3] / 2;
+						}
+					}
+					publish(positions);
+				}
+			}
+		};
+		// The layout compares every pair of vertices on each iteration, so run fewer on large graphs
+		double n = Math.max(cells.length, 1);
+		layout.setMaxIterations(Math.max(10, Math.min(20 * Math.sqrt(n), MAX_COMPARISONS / (n * n))));
+		layout.execute(parent);
+		if (isCancelled()) {
+			return null;
+		}
+
+		double[][] positions = getPositions();
+		for (int i = 0; i < copies.length; i++) {
+			mxGeometry geo = detached.getModel().getGeometry(copies[i]);
+			positions[i][0] = geo.getX();
+			positions[i][1] = geo.getY();
+		}
+		return positions;
+	}
+
+	/**
+	 * @return the positions the vertices started at
+	 */
+	private double[][] getPositions() {
+		double[][] positions = new double[cells.length][];
+		for (int i = 0; i < cells.length; i++) {
+			positions[i] = new double[] { bounds[i][0], bounds[i][1] };
+		}
+		return positions;
+	}
+
+	/**
+	 * Shows the latest positions published while the layout is running
+	 */
+	@Override
+	protected void process(List<double[][]> chunks) {
+		if (!finished && !isCancelled()) {
+			apply(chunks.get(chunks.size() - 1), false);
+		}
+	}
+
+	/**
+	 * Applies the final positions once the layout has finished, unless it was cancelled. If the layout failed, the
+	 * user is told and the cells are left where they were.
+	 */
+	@Override
+	protected void done() {
+		finished = true;
+		graph.getModel().removeListener(this);
+		if (isCancelled()) {
+			return;
+		}
+
+		try {
+			double[][] positions = get();
+			if (positions != null) {
+				apply(positions, progressive && graphComponent != null);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			// The cells are left where they were
+			e.getCause().printStackTrace();
+			JOptionPane.showMessageDialog(graphComponent, "Could not lay out the diagram:\n" + e.getCause(), "Layout",
+					JOptionPane.WARNING_MESSAGE);
+		}
+	}
+
+	/**
+	 * Moves the vertices still in the graph to the given positions, in one update
+	 *
+	 * @param morph - true to animate the vertices to their new positions
+	 */
+	private void apply(double[][] positions, boolean morph) {
+		final mxIGraphModel model = graph.getModel();
+		applying = true;
+		model.beginUpdate();
+		try {
+			for (int i = 0; i < cells.length; i++) {
+				if (model.getParent(cells[i]) != null) {
+					mxGeometry geo = (mxGeometry) model.getGeometry(cells[i]).clone();
+					geo.setX(positions[i][0]);
+					geo.setY(positions[i][1]);
+					model.setGeometry(cells[i], geo);
+				}
+			}
+		} finally {
+			if (morph) {
+				// The update is ended once the vertices have been animated to where the model now has them
+				mxMorphing morphing = new mxMorphing(graphComponent, MORPH_STEPS, 1.2, MORPH_DELAY);
+				morphing.addListener(mxEvent.DONE, new mxIEventListener() {
+					@Override
+					public void invoke(Object sender, mxEventObject event) {
+						model.endUpdate();
+						applying = false;
+					}
+				});
+				morphing.startAnimation();
+			} else {
+				model.endUpdate();
+				applying = false;
+			}
+		}
+	}
+
+	/**
+	 * Cancels the layout when vertices are moved, added or removed by anything other than this worker
+	 */
+	@Override
+	public void invoke(Object sender, mxEventObject event) {
+		if (applying) {
+			return;
+		}
+		List<?> changes = (List<?>) event.getProperty("changes");
+		for (Object change : changes) {
+			if (change instanceof mxGeometryChange || change instanceof mxChildChange
+					|| change instanceof mxTerminalChange || change instanceof mxRootChange) {
+				cancel(true);
+				return;
+			}
+		}
+	}
+
+}
@@ -3,21 +3,28 @@ package graphelements.jgraphx;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import analysis.LoadEstimator;
+import analysis.Partition;
+import graphmodel.ChangeType;
 import graphmodel.ClockDomain;
 import graphmodel.Component;
 import graphmodel.GlobalSystem;
+import graphmodel.Link;
 import graphmodel.LinkGroup;
+import graphmodel.ModelChange;
+import graphmodel.ModelChangeEvent;
 import graphmodel.SubSystem;
 
-import com.mxgraph.layout.mxFastOrganicLayout;
 import com.mxgraph.model.mxCell;
 import com.mxgraph.model.mxGraphModel;
-import com.mxgraph.swing.mxGraphComponent;
-import com.mxgraph.view.mxGraph;
+import com.mxgraph.util.mxConstants;
 import com.mxgraph.view.mxStylesheet;
 
 /**
@@ -27,30 +34,46 @@ import com.mxgraph.view.mxStylesheet;
  * An additional element is added to each Sub System denoting how many Clock
  * Domains are contained within it.
  * 
- * Inherited from mxGraph so that specific constraints can be added, and to set
- * the cell styles of all the components possible in this view.
- * 
- * TODO: This and ClockDomainViewGraph have some similar functionality. Abstract
- * base class maybe?
+ * Inherited from ComponentGraph so that specific constraints can be added,
+ * and to set the cell styles of all the components possible in this view.
  * 
  * @author Chanisha Somatilaka, rsom024
  * 
  */
-public class SubSystemGraph extends mxGraph implements ActionListener {
+public class SubSystemGraph extends ComponentGraph implements ActionListener {
 
 	// Label on the cell added to the Sub System denoting how many Clock Domains
-	// it has.
+	// it has. Also the style of that cell
 	private static final String CLOCK_DOMAIN_NUM = "Num. CD's: ";
-	private static int[] oldclockdomiansize = new int[10] ; // this might need to be a int array;
-	Map<String, Integer> oldclockdomain = new HashMap<String, Integer>();
+
+	// Style of the edges showing the Channels left between Sub Systems by a
+	// previewed Partition
+	private static final String PARTITION_PREVIEW = "Partition Preview";
+
+	// The Partition being previewed, if any, and the edges drawn for it
+	private Partition partitionPreview;
+	private Set<Object> previewCells = new HashSet<Object>();
+
+	// Colour of the Sub Systems and Links that are hot spots
+	private static final String HOT_SPOT_COLOR = "#CC0000";
+
+	// Estimated loads, if any, and the cells currently marked as hot spots
+	private LoadEstimator loadEstimator;
+	private Set<Object> hotCells = new HashSet<Object>();
+
+	/**
+	 * Creates a graph showing the default system
+	 */
 	public SubSystemGraph() {
-		super();
+		this(GlobalSystem.getInstance());
+	}
 
-		// Set constraints on the mxGraph
-		this.setAllowDanglingEdges(true);
-		this.setMultigraph(true);
-		this.setDisconnectOnMove(false);
-		this.setCellsEditable(false);
+	/**
+	 * @param system
+	 *            - the object model to show in this graph
+	 */
+	public SubSystemGraph(GlobalSystem system) {
+		super(system);
 
 		// Set styles of all the components
 		mxStylesheet styleSheet = getStylesheet();
@@ -62,114 +85,403 @@ public class SubSystemGraph extends mxGraph implements ActionListener {
 		// same as a Clock Domain
 		styleSheet.putCellStyle(SubSystemGraph.CLOCK_DOMAIN_NUM,
 				DrawComponent.CLOCK_DOMAIN_VIEW);
+		// Previewed traffic is drawn as straight dashed lines, so it is not
+		// mistaken for a Link
+		Hashtable<String, Object> preview = new Hashtable<String, Object>(
+				DrawComponent.LINK_VIEW);
+		preview.remove(mxConstants.STYLE_EDGE);
+		preview.remove(mxConstants.STYLE_LABEL_POSITION);
+		preview.put(mxConstants.STYLE_DASHED, true);
+		preview.put(mxConstants.STYLE_STROKEWIDTH, 1.5);
+		preview.put(mxConstants.STYLE_STROKECOLOR, "#3366CC");
+		preview.put(mxConstants.STYLE_FONTCOLOR, "#3366CC");
+		styleSheet.putCellStyle(PARTITION_PREVIEW, preview);
 		setStylesheet(styleSheet);
 
 		// By default, there is one Sub System. Add this to the graph
 		// TODO: Give default Sub System name SS1? Something to think about
-		SubSystem s = GlobalSystem.getInstance().getSubSystem("SS1");
-		GlobalSystem.getInstance().addListener(this);
+		SubSystem s = system.getSubSystem("SS1");
+		system.addListener(this);
 
-		this.insertVertex(getDefaultParent(), s.toString(), s, 10, 10,
-				DrawComponent.SUBSYSTEM_WIDTH, DrawComponent.SUBSYSTEM_HEIGHT,
-				DrawComponent.SUBSYSTEM_NAME);
+		if (s != null) {
+			drawSubSystem(s, 10, 10);
+		}
 
 	}
 
 	/**
-	 * Determines that any cell that is a vertex can be moved, but not edges.
+	 * The edges of a Partition preview are not part of the model, so they
+	 * cannot be selected
 	 */
 	@Override
-	public boolean isCellMovable(Object cell) {
-		return !getModel().isEdge(cell);
+	public boolean isCellSelectable(Object cell) {
+		return !previewCells.contains(cell) && super.isCellSelectable(cell);
 	}
 
 	/**
-	 * This method is called whenever a component on the graph is being edited.
-	 * It exchanges the cell value with the new component on the specified graph
-	 * view
+	 * While a Partition is previewed, each Sub System is labelled with how
+	 * its number of Clock Domains would change
+	 */
+	@Override
+	public String getLabel(Object cell) {
+		String label = super.getLabel(cell);
+		Object value = getModel().getValue(cell);
+		if (partitionPreview != null && value instanceof SubSystem) {
+			String name = ((SubSystem) value).getName();
+			label += "\nCD's: "
+					+ partitionPreview.getOriginalNumClockDomains(name)
+					+ " -> " + partitionPreview.getNumClockDomains(name);
+		}
+		return label;
+	}
+
+	/**
+	 * While a Partition is previewed, the tooltip of each Sub System shows
+	 * its proposed load and the Channels it would have to each other Sub
+	 * System. Otherwise, if loads are estimated, the tooltips of Sub Systems
+	 * and Links show their traffic and utilization
+	 */
+	@Override
+	public String getToolTipForCell(Object cell) {
+		Object value = getModel().getValue(cell);
+		StringBuilder tip = new StringBuilder("<html>");
+		if (partitionPreview != null && value instanceof SubSystem) {
+			String name = ((SubSystem) value).getName();
+			tip.append(name).append("<br>Load: ")
+					.append(partitionPreview.getLoad(name)).append(" / ")
+					.append(partitionPreview.getCapacity(name));
+			for (Map.Entry<String, Integer> traffic : partitionPreview
+					.getTraffic(name).entrySet()) {
+				tip.append("<br>Channels to ").append(traffic.getKey())
+						.append(": ").append(traffic.getValue());
+			}
+		} else if (loadEstimator != null && value instanceof SubSystem) {
+			String name = ((SubSystem) value).getName();
+			tip.append(name).append("<br>Traffic: ")
+					.append(LoadEstimator.formatLoad(loadEstimator.getLoad(name)))
+					.append("<br>Busiest interface: ")
+					.append(Math.round(loadEstimator.getUtilization(name) * 100))
+					.append("%");
+		} else if (loadEstimator != null && value instanceof LinkGroup) {
+			LinkGroup group = (LinkGroup) value;
+			tip.append("Traffic: ")
+					.append(LoadEstimator.formatLoad(loadEstimator.getLoad(group)))
+					.append("<br>Utilization: ")
+					.append(Math.round(loadEstimator.getUtilization(group) * 100))
+					.append("%");
+		} else {
+			return super.getToolTipForCell(cell);
+		}
+		tip.append("</html>");
+		return tip.toString();
+	}
+
+	/**
+	 * Shows the estimated loads on this graph. Sub Systems and Links utilized
+	 * over the estimator's hot threshold are drawn in red, and kept up to
+	 * date as the estimate changes.
 	 * 
-	 * @param compCell
-	 *            - the graph cell to change
-	 * @param comp
-	 *            - the object model component to change the cell's value to
+	 * @param loadEstimator
+	 *            - the estimated loads of the model shown in this graph
 	 */
-	public void changeComponent(mxCell compCell, Component comp) {
-		this.getModel().beginUpdate();
+	public void setLoadEstimator(LoadEstimator loadEstimator) {
+		this.loadEstimator = loadEstimator;
+		loadEstimator.addListener(this);
+		updateHotSpots();
+	}
+
+	/**
+	 * Marks the Sub Systems and Links that are hot spots, and unmarks the ones
+	 * that no longer are
+	 */
+	private void updateHotSpots() {
+		if (loadEstimator == null) {
+			return;
+		}
+		double threshold = loadEstimator.getHotThreshold();
+		List<Object> hot = new ArrayList<Object>();
+		List<Object> cooled = new ArrayList<Object>();
+		for (Object cell : getChildCells(getDefaultParent())) {
+			Object value = getModel().getValue(cell);
+			boolean isHot;
+			if (value instanceof SubSystem) {
+				isHot = loadEstimator.getUtilization(((SubSystem) value)
+						.getName()) >= threshold;
+			} else if (value instanceof LinkGroup) {
+				isHot = loadEstimator.getUtilization((LinkGroup) value) >= threshold;
+			} else {
+				continue;
+			}
+			if (isHot && hotCells.add(cell)) {
+				hot.add(cell);
+			} else if (!isHot && hotCells.remove(cell)) {
+				cooled.add(cell);
+			}
+		}
+		if (hot.isEmpty() && cooled.isEmpty()) {
+			return;
+		}
 
+		getModel().beginUpdate();
 		try {
-			// set the cell's value to the new Component
-			compCell.setValue(comp);
+			setCellStyles(mxConstants.STYLE_STROKECOLOR, HOT_SPOT_COLOR,
+					hot.toArray());
+			setCellStyles(mxConstants.STYLE_FONTCOLOR, HOT_SPOT_COLOR,
+					hot.toArray());
+			setCellStyles(mxConstants.STYLE_STROKECOLOR, null, cooled.toArray());
+			setCellStyles(mxConstants.STYLE_FONTCOLOR, null, cooled.toArray());
 		} finally {
-			this.getModel().endUpdate();
+			getModel().endUpdate();
 		}
+	}
+
+	/**
+	 * Shows a proposed Partition on this graph, without changing the model.
+	 * The Sub Systems are labelled with their proposed number of Clock
+	 * Domains, and joined by dashed edges labelled with the number of
+	 * Channels that would be left between them. Any earlier preview is
+	 * cleared first.
+	 * 
+	 * @param partition
+	 *            - the Partition to preview
+	 */
+	public void previewPartition(Partition partition) {
+		clearPartitionPreview();
+		partitionPreview = partition;
+
+		getModel().beginUpdate();
+		try {
+			// Each pair is drawn once, from the Sub System that comes first
+			Set<String> drawn = new HashSet<String>();
+			for (SubSystem s : system.getSubSystems()) {
+				drawn.add(s.getName());
+				for (Map.Entry<String, Integer> traffic : partition
+						.getTraffic(s.getName()).entrySet()) {
+					Object from = getCell(s);
+					SubSystem toSub = system.getSubSystem(traffic.getKey());
+					Object to = toSub == null ? null : getCell(toSub);
+					if (from != null && to != null
+							&& !drawn.contains(traffic.getKey())) {
+						previewCells.add(insertEdge(getDefaultParent(), null,
+								String.valueOf(traffic.getValue()), from, to,
+								PARTITION_PREVIEW));
+					}
+				}
+			}
+		} finally {
+			getModel().endUpdate();
+		}
+		refresh();
+	}
+
+	/**
+	 * Removes the Partition preview, if there is one
+	 */
+	public void clearPartitionPreview() {
+		if (partitionPreview == null) {
+			return;
+		}
+		partitionPreview = null;
+		removeCells(previewCells.toArray());
+		previewCells.clear();
 		refresh();
+	}
 
+	/**
+	 * @return the Partition being previewed, or null if there is none
+	 */
+	public Partition getPartitionPreview() {
+		return partitionPreview;
 	}
 
-//$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$$
-	//need to fix
-	// you should not add vertex subsystem if there is not sub system has been added.
-	
 	/**
-	 * When any change is made in the global object model, refresh this display.
-	 * This method deals with the addition of other Clock Domains in the global
-	 * object model, so updates the count for each Sub System
+	 * Draws a Sub System, along with the cell inside it denoting how many
+	 * Clock Domains it has
+	 * 
+	 * @param sub
+	 *            - Sub System to draw
+	 * @param x
+	 *            - x coordinate to draw it at
+	 * @param y
+	 *            - y coordinate to draw it at
+	 * @return the cell of the Sub System
 	 */
-	@Override
-	public void refresh() {
-		List<SubSystem> subs = GlobalSystem.getInstance().getSubSystems();
-		int oldsize =0 ;			
-		for (SubSystem s : subs) {
-			
-			System.out.println(s.getClockDomains());
-			//oldclockdomiansize //add at 19/12/2013
-			try {
-				oldsize = oldclockdomain.get(s.getName());
+	public mxCell drawSubSystem(SubSystem sub, double x, double y) {
+		getModel().beginUpdate();
+		mxCell cell;
+		try {
+			cell = DrawComponent.drawSubSystem(this, sub, (int) x, (int) y);
+			mxCell badge = (mxCell) insertVertex(cell, null, CLOCK_DOMAIN_NUM
+					+ sub.getNumClockDomains(), 0, 0,
+					DrawComponent.CLOCK_DOMAIN_WIDTH,
+					DrawComponent.CLOCK_DOMAIN_HEIGHT, CLOCK_DOMAIN_NUM);
+			badge.getGeometry().setRelative(true);
+		} finally {
+			getModel().endUpdate();
+		}
+		return cell;
+	}
+
+	/**
+	 * Updates the cell inside a Sub System denoting how many Clock Domains it
+	 * has, if it is drawn and the number has changed
+	 */
+	private void updateBadge(SubSystem sub) {
+		Object cell = getCell(sub);
+		if (cell == null) {
+			return;
+		}
+		String label = CLOCK_DOMAIN_NUM + sub.getNumClockDomains();
+		for (int i = 0; i < getModel().getChildCount(cell); i++) {
+			Object child = getModel().getChildAt(cell, i);
+			if (CLOCK_DOMAIN_NUM.equals(getModel().getStyle(child))) {
+				if (!label.equals(getModel().getValue(child))) {
+					getModel().setValue(child, label);
+				}
+				return;
 			}
-			catch(NullPointerException e)
-			{
-				System.err.println(e.getMessage());
-				System.out.println(" the old clock domain is null");
-				
+		}
+	}
+
+	/**
+	 * Applies the changes made to the object model. Only the Sub Systems
+	 * and Link groups concerned are updated, all in one update: new Sub
+	 * Systems are drawn to the right of the others, removed ones are taken
+	 * away along with their Links, new Link groups are drawn between their
+	 * Sub Systems and removed ones taken away, edited Components keep their
+	 * cells, and the Clock Domain count
+	 * of each Sub System that gained or lost Clock Domains is updated in
+	 * place.
+	 */
+	private void applyChanges(List<ModelChange> changes) {
+		Set<SubSystem> affected = new LinkedHashSet<SubSystem>();
+
+		getModel().beginUpdate();
+		try {
+			for (ModelChange change : changes) {
+				Component comp = change.getComponent();
+				Component old = change.getOldComponent();
+				if (change.getType() == ChangeType.CHANGED && old != null
+						&& old != comp && getCell(comp) == null) {
+					// Keep the cells where they are, showing the edited Component
+					for (Object cell : new ArrayList<Object>(getCells(old))) {
+						getModel().setValue(cell, comp);
+					}
+				}
+
+				if (comp instanceof SubSystem) {
+					SubSystem sub = (SubSystem) comp;
+					if (change.getType() == ChangeType.REMOVED) {
+						if (system.getSubSystem(sub.getName()) != sub) {
+							removeSubSystem(sub);
+						}
+					} else {
+						if (getCell(sub) == null) {
+							drawSubSystem(sub, getNextX(), 50);
+						}
+						affected.add(sub);
+					}
+				} else if (comp instanceof ClockDomain
+						&& change.getParent() instanceof SubSystem) {
+					affected.add((SubSystem) change.getParent());
+				} else if (comp instanceof LinkGroup) {
+					if (change.getType() == ChangeType.REMOVED) {
+						removeLinkGroup((LinkGroup) comp);
+					} else if (change.getType() == ChangeType.CHANGED
+							&& old != comp) {
+						// The edited group can link other Sub Systems, so
+						// draw it again
+						removeLinkGroup((LinkGroup) comp);
+						drawLinkGroup((LinkGroup) comp);
+					} else if (change.getType() == ChangeType.ADDED
+							&& getCell(comp) == null) {
+						drawLinkGroup((LinkGroup) comp);
+					}
+				}
 			}
-			//new size of the subsystem
-			int newsize = s.getClockDomains().size();
-			
-			if (newsize > oldsize) { //this is always bigger then 0??
-				// add a cell updating the number
-				mxCell c = (mxCell) insertVertex(getSubSystem(s),
-						CLOCK_DOMAIN_NUM,
-						CLOCK_DOMAIN_NUM + s.getNumClockDomains(), 0, 0,
-						DrawComponent.CLOCK_DOMAIN_WIDTH,
-						DrawComponent.CLOCK_DOMAIN_HEIGHT, CLOCK_DOMAIN_NUM);
-				c.getGeometry().setRelative(true);
+
+			for (SubSystem sub : affected) {
+				updateBadge(sub);
 			}
-			
-			else if (newsize< oldsize){
-				 List<ClockDomain> templist = s.getClockDomains();
-				 System.out.println("printing clockdomain");
-				 if (newsize != -1 ) //not empty				 
-					 {
-					 // System.out.println(newsize);
-					 mxCell[] temparray = new mxCell[2];
-					 temparray[0] = (mxCell) getSubSystem(s).getChildAt((newsize));
-					 removeCells(temparray); // this one only work in a array
-					//remove selection cell not working
-					 /*System.out.println(getSubSystem(s).getChildCount());
-					 System.out.println("printing child");
-					 System.out.println(getSubSystem(s).getChildAt((newsize -1 ) ));
-					 */
-					 				   
-				 }
-				 else{
-					 System.out.println(" there is no more ClockDomain left");
-				 }
-			
+		} finally {
+			getModel().endUpdate();
+		}
+	}
+
+	/**
+	 * Removes the cell of a Sub System, along with the Links drawn to it and
+	 * the ports at both their ends
+	 */
+	private void removeSubSystem(SubSystem sub) {
+		Object cell = getCell(sub);
+		if (cell == null) {
+			return;
+		}
+		List<Object> cells = new ArrayList<Object>();
+		for (int i = 0; i < getModel().getChildCount(cell); i++) {
+			Object port = getModel().getChildAt(cell, i);
+			for (int j = 0; j < getModel().getEdgeCount(port); j++) {
+				Object edge = getModel().getEdgeAt(port, j);
+				if (!cells.contains(edge)) {
+					cells.add(edge);
+					cells.add(getModel().getTerminal(edge, true));
+					cells.add(getModel().getTerminal(edge, false));
+				}
 			}
-			
-			oldclockdomain.put(s.getName(),  s.getClockDomains().size() ); // TUDO check if this one may cause more problem when repeated name
 		}
-		super.refresh();
+		cells.add(cell);
+		removeCells(cells.toArray(), false);
+	}
+
+	/**
+	 * Draws the Links of a Link group between the Sub Systems used in it.
+	 * Nothing is drawn for a group of fewer than 2 Links, or one using a Sub
+	 * System that is not drawn
+	 */
+	private void drawLinkGroup(LinkGroup l) {
+		if (l.getLinks().size() < 2) {
+			return;
+		}
+		for (Link link : l.getLinks()) {
+			if (link.getSubSystem() == null
+					|| getCell(link.getSubSystem()) == null) {
+				return;
+			}
+		}
+		DrawComponent.drawLinkGroup(this, l, getSubSystemCells(l));
+	}
+
+	/**
+	 * Removes the edges drawn for a Link group, along with the ports at both
+	 * their ends
+	 */
+	private void removeLinkGroup(LinkGroup l) {
+		List<Object> cells = new ArrayList<Object>();
+		for (Object edge : getCells(l)) {
+			cells.add(edge);
+			for (Object port : new Object[] {
+					getModel().getTerminal(edge, true),
+					getModel().getTerminal(edge, false) }) {
+				if (port != null) {
+					cells.add(port);
+				}
+			}
+		}
+		if (!cells.isEmpty()) {
+			removeCells(cells.toArray(), false);
+		}
+	}
+
+	/**
+	 * @return the x coordinate to the right of every Sub System drawn
+	 */
+	private double getNextX() {
+		double x = 50;
+		for (Object cell : getChildVertices(getDefaultParent())) {
+			x = Math.max(x, getCellGeometry(cell).getX()
+					+ DrawComponent.SUBSYSTEM_WIDTH + 50);
+		}
+		return x;
 	}
 
 	/**
@@ -177,17 +489,24 @@ public class SubSystemGraph extends mxGraph implements ActionListener {
 	 * it based on the current state of the global object model. It will only
 	 * add the existing Sub Systems and Links to this graph.
 	 * 
-	 * TODO: Placement of the components is hard coded, so will be arranged in a
-	 * grid. Investigate automatic layout. There are libraries within JGraphX
-	 * that look to deal with this, but need to be investigated more thoroughly.
+	 * If a saved layout has been set, the Sub Systems are put where it has
+	 * them, and only the ones it does not have are placed, to the right of the
+	 * others. Otherwise the whole graph is laid out automatically, in the
+	 * background.
 	 * 
 	 */
-	private void createGraph() {
-		// Clear the existing model
-		GlobalSystem system = GlobalSystem.getInstance();
+	public void createGraph() {
+		// Clear the existing model, along with any Partition preview
 		mxGraphModel m = (mxGraphModel) this.getModel();
+		cancelLayout();
 		m.clear();
+		partitionPreview = null;
+		previewCells.clear();
+		hotCells.clear();
 
+		// Sub Systems the saved layout has no position for, or null to lay
+		// out the whole graph
+		List<Object> unplaced = null;
 		m.beginUpdate();
 
 		try {
@@ -198,7 +517,7 @@ public class SubSystemGraph extends mxGraph implements ActionListener {
 
 			// Add in all the Subsystems
 			for (SubSystem s : system.getSubSystems()) {
-				DrawComponent.drawSubSystem(this, s, x, y);
+				drawSubSystem(s, x, y);
 				// Place the next Sub System one Sub System + 50 width away
 				x += DrawComponent.SUBSYSTEM_WIDTH + 50;
 
@@ -211,64 +530,86 @@ public class SubSystemGraph extends mxGraph implements ActionListener {
 			}
 
 			// Add Links after adding all the Sub Systems
-			for (LinkGroup l : GlobalSystem.getInstance().getLinks()) {
-				// get the cells of the corresponding Sub Systems used in the
-				// Link
-				ArrayList<mxCell> subSystems = new ArrayList<mxCell>();
-
-				// For all the Sub System cells, if the given Link contains it,
-				// add the cell to a list to pass
-				// into the drawLinkGroup method
-				for (Object cell : getChildVertices(getDefaultParent())) {
-					mxCell sub = (mxCell) cell;
-					SubSystem s = (SubSystem) sub.getValue();
-
-					if (l.containsSubSystem(s)) {
-						subSystems.add(sub);
-					}
-
-				}
+			for (LinkGroup l : system.getLinks()) {
+				drawLinkGroup(l);
+			}
 
-				// Don't need to draw Links that are less than 2
-				// TODO: Is this correct?
-				if (l.getLinks().size() >= 2) {
-					DrawComponent.drawLinkGroup(this, l, subSystems);
-				}
+			// Put the Sub Systems back where they were saved, if they were, in
+			// the same update as drawing them
+			unplaced = restoreLayout();
+			if (unplaced != null) {
+				placeSubSystems(unplaced);
 			}
 
 		} finally {
 
 			m.endUpdate();
 
-			mxFastOrganicLayout layout = new mxFastOrganicLayout(this);
-			// layout.setUseBoundingBox(true);
-			// layout.setDisableEdgeStyle(false);
-			layout.execute(getDefaultParent());
+			// Only lay out the whole graph if no positions were saved
+			if (unplaced == null) {
+				startLayout();
+			}
 		}
+		updateHotSpots();
 		refresh();
 	}
 
+	/**
+	 * Places Sub Systems that had no saved position in a row to the right of
+	 * the ones that did, in one update
+	 * 
+	 * @param cells
+	 *            - cells of the Sub Systems to place
+	 */
+	private void placeSubSystems(List<Object> cells) {
+		Set<Object> unplaced = new HashSet<Object>(cells);
+		double x = 50;
+		for (Object cell : getChildVertices(getDefaultParent())) {
+			if (!unplaced.contains(cell)) {
+				x = Math.max(x, getCellGeometry(cell).getX()
+						+ getCellGeometry(cell).getWidth() + 50);
+			}
+		}
+
+		getModel().beginUpdate();
+		try {
+			for (Object cell : cells) {
+				setPosition(getComponent(cell), x, 50);
+				x += getCellGeometry(cell).getWidth() + 50;
+			}
+		} finally {
+			getModel().endUpdate();
+		}
+	}
+
 	/**
 	 * This method retrieves the corresponding graph cell to the Sub System
 	 * given
 	 * 
 	 * @param sub
 	 *            - Sub System object from the object model
-	 * @return mxcell encapsulating that object
+	 * @return mxcell encapsulating that object, or null if it is not drawn
 	 */
 	public mxCell getSubSystem(SubSystem sub) {
-		mxCell cell = null;
-
-		// Iterate through all the Sub System cells
-		for (Object c : getChildVertices(getDefaultParent())) {
-			cell = (mxCell) c;
-			// retrieve the Sub System associated with that cell
-			SubSystem cellSub = (SubSystem) cell.getValue();
-			if (cellSub == sub) {
-				break;
+		return (mxCell) getCell(sub);
+	}
+
+	/**
+	 * @param links
+	 *            - group of Links
+	 * @return the cells of the Sub Systems used in the Link group, once each,
+	 *         in the order of its Links
+	 */
+	public List<mxCell> getSubSystemCells(LinkGroup links) {
+		List<mxCell> subSystems = new ArrayList<mxCell>();
+		for (Link link : links.getLinks()) {
+			mxCell sub = link.getSubSystem() == null ? null
+					: getSubSystem(link.getSubSystem());
+			if (sub != null && !subSystems.contains(sub)) {
+				subSystems.add(sub);
 			}
 		}
-		return cell;
+		return subSystems;
 	}
 
 	/**
@@ -276,17 +617,28 @@ public class SubSystemGraph extends mxGraph implements ActionListener {
 	 * model has been created, then create a new graph in sync with the model.
 	 * 
 	 * But also, if any change is made to the model (ie if Clock Domains are
-	 * added), then update the display.
+	 * added), then update the display of just the Sub Systems concerned.
 	 */
 	@Override
 	public void actionPerformed(ActionEvent event) {
-		if (event.getActionCommand().equals(GlobalSystem.MODEL_CREATED_EVENT)) {
-			System.out.println(event.getActionCommand());
+		if (event.getActionCommand().equals(LoadEstimator.LOAD_CHANGED_EVENT)) {
+			updateHotSpots();
+		} else if (event.getActionCommand().equals(GlobalSystem.MODEL_CREATED_EVENT)) {
 			createGraph();
-		}
-
-		else {
+		} else if (event.getActionCommand().equals(GlobalSystem.MODEL_CLEARED_EVENT)) {
+			((mxGraphModel) getModel()).clear();
+			partitionPreview = null;
+			previewCells.clear();
+			hotCells.clear();
 			refresh();
+		} else if (event instanceof ModelChangeEvent) {
+			List<ModelChange> changes = ((ModelChangeEvent) event).getChanges();
+			if (changes.isEmpty()) {
+				// Not known what changed, so draw it all again
+				createGraph();
+			} else {
+				applyChanges(changes);
+			}
 		}
 
 	}
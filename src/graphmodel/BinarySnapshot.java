@@ -0,0 +1,419 @@
+package graphmodel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class saves and loads the whole object model in a compact binary form, which is much quicker to read back
+ * than the XML configuration file.
+ *
+ * The layout of a snapshot is:
+ * - the magic bytes "SJSS" and the format version
+ * - a table of every distinct String in the model (names, class names, parameters), each stored once
+ * - the Signal schemas, each a list of parameter keys
+ * - the Sub Systems, each with its Clock Domains and their Signals, referring to Strings by their position in the table
+ *   and to schemas by their position in the list of schemas
+ * - the Channels, referring to their Clock Domains by position in the order they were written
+ * - the order of the input Channels of each Clock Domain, referring to Channels by position
+ * - the Link groups, referring to Sub Systems by position
+ *
+ * All counts and references are written as variable length integers, so small numbers take a single byte.
+ * Snapshots are read through a memory mapped buffer, so the file is not copied before it is decoded.
+ *
+ * Like XMLModelReader, the objects read are not added to any GlobalSystem. Once read() returns, they can be
+ * retrieved with getSubSystems() and getLinkGroups().
+ *
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public class BinarySnapshot {
+
+	private static final byte[] MAGIC = { 'S', 'J', 'S', 'S' };
+	// Version 1 saved the Class of each Signal apart from its parameters, in place of the schemas. It is no longer
+	// read
+	private static final int VERSION = 2;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private List<SubSystem> subSystems;
+	private List<LinkGroup> linkGroups;
+
+	public BinarySnapshot() {
+		subSystems = new ArrayList<SubSystem>();
+		linkGroups = new ArrayList<LinkGroup>();
+	}
+
+	/**
+	 * @return the Sub Systems read, in the order they were saved
+	 */
+	public List<SubSystem> getSubSystems() {
+		return subSystems;
+	}
+
+	/**
+	 * @return the Link groups read, in the order they were saved
+	 */
+	public List<LinkGroup> getLinkGroups() {
+		return linkGroups;
+	}
+
+	// WRITING
+
+	/**
+	 * Writes a snapshot of the given Sub Systems and Link groups to the stream. The stream is not closed.
+	 * Throws an IOException if a Channel leads to or from a Clock Domain that is not being saved, as it could not be
+	 * restored.
+	 *
+	 * @param subSystems
+	 *            - Sub Systems to save, along with everything they contain
+	 * @param linkGroups
+	 *            - Link groups to save
+	 * @param out
+	 *            - where to write the snapshot
+	 */
+	public static void write(List<SubSystem> subSystems, List<LinkGroup> linkGroups, OutputStream out)
+			throws IOException {
+		// The body is written first, as the String table in front of it is only complete once everything is seen
+		Map<String, Integer> strings = new HashMap<String, Integer>();
+		List<String> stringTable = new ArrayList<String>();
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+		Map<SignalSchema, Integer> schemaIds = new IdentityHashMap<SignalSchema, Integer>();
+		List<SignalSchema> schemas = new ArrayList<SignalSchema>();
+		Map<SubSystem, Integer> subSystemIds = new IdentityHashMap<SubSystem, Integer>();
+		Map<ClockDomain, Integer> clockDomainIds = new IdentityHashMap<ClockDomain, Integer>();
+		List<ClockDomain> clockDomains = new ArrayList<ClockDomain>();
+
+		writeInt(body, subSystems.size());
+		for (SubSystem sub : subSystems) {
+			subSystemIds.put(sub, subSystemIds.size());
+			writeString(body, sub.name, strings, stringTable);
+			writeString(body, sub.getSchedulerClass(), strings, stringTable);
+			body.write(Boolean.valueOf(sub.getLocal()).booleanValue() ? 1 : 0);
+
+			writeInt(body, sub.getNumClockDomains());
+			for (ClockDomain cd : sub.getClockDomains()) {
+				clockDomainIds.put(cd, clockDomains.size());
+				clockDomains.add(cd);
+				writeString(body, cd.name, strings, stringTable);
+				writeString(body, cd.getClassName(), strings, stringTable);
+				writeSignals(body, cd.getInputSignals(), schemaIds, schemas, strings, stringTable);
+				writeSignals(body, cd.getOutputSignals(), schemaIds, schemas, strings, stringTable);
+			}
+		}
+
+		// Channels in the order of the output Channels of each Clock Domain. Channels leading out of the saved
+		// model cannot be restored, so they are reported rather than left out
+		Map<Channel, Integer> channelIds = new IdentityHashMap<Channel, Integer>();
+		List<Channel> channels = new ArrayList<Channel>();
+		for (ClockDomain cd : clockDomains) {
+			for (Channel ch : cd.getOutputChannels()) {
+				if (ch.getFromClockDomain() != cd || !clockDomainIds.containsKey(ch.getToClockDomain())) {
+					throw new IOException("Write Snapshot: Channel " + cd.name + "." + ch.name
+							+ " does not lead to a Clock Domain in the model");
+				}
+				channelIds.put(ch, channels.size());
+				channels.add(ch);
+			}
+		}
+		writeInt(body, channels.size());
+		for (Channel ch : channels) {
+			writeInt(body, clockDomainIds.get(ch.getFromClockDomain()));
+			writeInt(body, clockDomainIds.get(ch.getToClockDomain()));
+			writeString(body, ch.name, strings, stringTable);
+			writeString(body, ch.getToName(), strings, stringTable);
+		}
+
+		// The input Channels of a Clock Domain can be in a different order to the output Channels they come from
+		for (ClockDomain cd : clockDomains) {
+			List<Integer> inputs = new ArrayList<Integer>();
+			for (Channel ch : cd.getInputChannels()) {
+				Integer id = channelIds.get(ch);
+				if (id == null || ch.getToClockDomain() != cd) {
+					throw new IOException("Write Snapshot: input Channel " + cd.name + "." + ch.getToName()
+							+ " does not come from a Clock Domain in the model");
+				}
+				inputs.add(id);
+			}
+			writeInt(body, inputs.size());
+			for (Integer id : inputs) {
+				writeInt(body, id);
+			}
+		}
+
+		writeInt(body, linkGroups.size());
+		for (LinkGroup group : linkGroups) {
+			writeString(body, group.getLinkType() == null ? "" : group.getLinkType().getCode(), strings, stringTable);
+			writeInt(body, group.getLinks().size());
+			for (Link link : group.getLinks()) {
+				// 0 marks a Link interface without a Sub System, so the ids are shifted up by one
+				Integer id = subSystemIds.get(link.getSubSystem());
+				writeInt(body, id == null ? 0 : id + 1);
+				writeString(body, link.getClassName(), strings, stringTable);
+				writeString(body, link.getLinkInterface(), strings, stringTable);
+				writeString(body, link.getArguments(), strings, stringTable);
+			}
+		}
+
+		// The schemas only refer to Strings, so they are written to their own buffer once the body is done
+		ByteArrayOutputStream schemaTable = new ByteArrayOutputStream();
+		writeInt(schemaTable, schemas.size());
+		for (SignalSchema schema : schemas) {
+			writeInt(schemaTable, schema.size());
+			for (int i = 0; i < schema.size(); i++) {
+				writeString(schemaTable, schema.getKey(i), strings, stringTable);
+			}
+		}
+
+		// Now write out the header, the String table, the schemas and then the body
+		out.write(MAGIC);
+		writeInt(out, VERSION);
+		writeInt(out, stringTable.size());
+		for (String s : stringTable) {
+			byte[] bytes = s.getBytes(UTF8);
+			writeInt(out, bytes.length);
+			out.write(bytes);
+		}
+		schemaTable.writeTo(out);
+		body.writeTo(out);
+	}
+
+	/**
+	 * Writes the Signals of a Clock Domain, each as its name, its schema and the values of its parameters.
+	 * The Type is not written at all, as it is known from which list the Signal is in.
+	 */
+	private static void writeSignals(OutputStream out, List<Signal> signals, Map<SignalSchema, Integer> schemaIds,
+			List<SignalSchema> schemas, Map<String, Integer> strings, List<String> stringTable) throws IOException {
+		writeInt(out, signals.size());
+		for (Signal s : signals) {
+			writeString(out, s.name, strings, stringTable);
+
+			SignalSchema schema = s.getSchema();
+			Integer id = schemaIds.get(schema);
+			if (id == null) {
+				id = schemas.size();
+				schemaIds.put(schema, id);
+				schemas.add(schema);
+			}
+			writeInt(out, id);
+			for (int i = 0; i < schema.size(); i++) {
+				writeString(out, s.getParameter(i), strings, stringTable);
+			}
+		}
+	}
+
+	/**
+	 * Writes a reference to the given String, adding it to the String table if it is not there yet
+	 */
+	private static void writeString(OutputStream out, String s, Map<String, Integer> strings,
+			List<String> stringTable) throws IOException {
+		if (s == null) {
+			s = "";
+		}
+		Integer id = strings.get(s);
+		if (id == null) {
+			id = stringTable.size();
+			strings.put(s, id);
+			stringTable.add(s);
+		}
+		writeInt(out, id);
+	}
+
+	/**
+	 * Writes a non-negative int 7 bits at a time, lowest bits first, with the top bit of each byte set if more
+	 * bytes follow
+	 */
+	private static void writeInt(OutputStream out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	// READING
+
+	/**
+	 * Reads the snapshot saved in the given file. Throws an IOException if the file is not a snapshot, was written
+	 * by another version of this format, or is damaged.
+	 *
+	 * @param file
+	 *            - the snapshot file
+	 */
+	public void read(File file) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileChannel channel = in.getChannel();
+			read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads a snapshot from the given buffer, starting at its current position
+	 *
+	 * @param buffer
+	 *            - buffer holding the snapshot
+	 */
+	public void read(ByteBuffer buffer) throws IOException {
+		try {
+			for (byte b : MAGIC) {
+				if (buffer.get() != b) {
+					throw new IOException("Read Snapshot: not a SystemJ model snapshot");
+				}
+			}
+			int version = readInt(buffer);
+			if (version != VERSION) {
+				throw new IOException("Read Snapshot: snapshot version " + version + " is not supported");
+			}
+
+			String[] strings = new String[readCount(buffer, "Strings")];
+			byte[] bytes = new byte[64];
+			for (int i = 0; i < strings.length; i++) {
+				int length = readCount(buffer, "bytes in a String");
+				if (length > bytes.length) {
+					bytes = new byte[Math.max(length, bytes.length * 2)];
+				}
+				buffer.get(bytes, 0, length);
+				strings[i] = new String(bytes, 0, length, UTF8);
+			}
+
+			SignalSchema[] schemas = new SignalSchema[readCount(buffer, "Signal schemas")];
+			for (int i = 0; i < schemas.length; i++) {
+				String[] keys = new String[readCount(buffer, "parameters in a Signal schema")];
+				for (int j = 0; j < keys.length; j++) {
+					keys[j] = strings[readInt(buffer)];
+				}
+				schemas[i] = SignalSchema.of(keys);
+			}
+
+			readBody(buffer, strings, schemas);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Read Snapshot: snapshot is truncated", e);
+		} catch (IndexOutOfBoundsException e) {
+			throw new IOException("Read Snapshot: snapshot refers to something that does not exist", e);
+		} catch (NegativeArraySizeException e) {
+			throw new IOException("Read Snapshot: snapshot is damaged", e);
+		} catch (RuntimeException e) {
+			// Such as two Clock Domains or Channels with the same name, which the model rejects
+			throw new IOException("Read Snapshot: snapshot is damaged: " + e.getMessage(), e);
+		}
+	}
+
+	private void readBody(ByteBuffer buffer, String[] strings, SignalSchema[] schemas) throws IOException {
+		List<ClockDomain> clockDomains = new ArrayList<ClockDomain>();
+
+		int numSubSystems = readCount(buffer, "Sub Systems");
+		for (int i = 0; i < numSubSystems; i++) {
+			String name = strings[readInt(buffer)];
+			String schedulerClass = strings[readInt(buffer)];
+			boolean local = buffer.get() != 0;
+			SubSystem sub = new SubSystem(name, schedulerClass, Boolean.toString(local));
+
+			int numClockDomains = readCount(buffer, "Clock Domains");
+			for (int j = 0; j < numClockDomains; j++) {
+				ClockDomain cd = new ClockDomain(strings[readInt(buffer)], strings[readInt(buffer)]);
+				readSignals(buffer, strings, schemas, cd, IOType.INPUT);
+				readSignals(buffer, strings, schemas, cd, IOType.OUTPUT);
+				sub.addClockDomain(cd);
+				clockDomains.add(cd);
+			}
+			subSystems.add(sub);
+		}
+
+		Channel[] channels = new Channel[readCount(buffer, "Channels")];
+		for (int i = 0; i < channels.length; i++) {
+			ClockDomain from = clockDomains.get(readInt(buffer));
+			ClockDomain to = clockDomains.get(readInt(buffer));
+			channels[i] = new Channel(strings[readInt(buffer)], strings[readInt(buffer)], from, to);
+			from.addOutputChannel(channels[i]);
+		}
+		for (ClockDomain cd : clockDomains) {
+			int numInputs = readCount(buffer, "input Channels");
+			for (int i = 0; i < numInputs; i++) {
+				cd.addInputChannel(channels[readInt(buffer)]);
+			}
+		}
+
+		int numLinkGroups = readCount(buffer, "Link groups");
+		for (int i = 0; i < numLinkGroups; i++) {
+			LinkGroup group = new LinkGroup(LinkType.getLinkType(strings[readInt(buffer)]));
+			int numLinks = readCount(buffer, "Link interfaces");
+			for (int j = 0; j < numLinks; j++) {
+				int id = readInt(buffer);
+				SubSystem sub = id == 0 ? null : subSystems.get(id - 1);
+				group.addLink(new Link(sub, strings[readInt(buffer)], strings[readInt(buffer)],
+						strings[readInt(buffer)]));
+			}
+			linkGroups.add(group);
+		}
+	}
+
+	/**
+	 * Reads the Signals of a Clock Domain, each as its name, its schema and the values of its parameters
+	 */
+	private void readSignals(ByteBuffer buffer, String[] strings, SignalSchema[] schemas, ClockDomain cd,
+			IOType type) throws IOException {
+		int numSignals = readCount(buffer, "Signals");
+		for (int i = 0; i < numSignals; i++) {
+			String name = strings[readInt(buffer)];
+
+			SignalSchema schema = schemas[readInt(buffer)];
+			String[] values = new String[schema.size()];
+			for (int j = 0; j < values.length; j++) {
+				values[j] = strings[readInt(buffer)];
+			}
+			Signal s = new Signal(name, type, schema, values);
+
+			if (type.equals(IOType.INPUT)) {
+				cd.addInputSignal(s);
+			} else {
+				cd.addOutputSignal(s);
+			}
+		}
+	}
+
+	/**
+	 * Reads the number of entries that follow. Every entry takes at least a byte, so a count larger than what is
+	 * left of the buffer can only come from a damaged snapshot, and is rejected before anything is made that size.
+	 *
+	 * @param what
+	 *            - what is being counted, for the error message
+	 */
+	private static int readCount(ByteBuffer buffer, String what) throws IOException {
+		int count = readInt(buffer);
+		if (count < 0 || count > buffer.remaining()) {
+			throw new IOException("Read Snapshot: snapshot is damaged: it claims " + count + " " + what + ", but only "
+					+ buffer.remaining() + " bytes are left");
+		}
+		return count;
+	}
+
+	/**
+	 * Reads an int written by writeInt()
+	 */
+	private static int readInt(ByteBuffer buffer) {
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = buffer.get();
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0 && shift < 35);
+		return value;
+	}
+
+}
@@ -0,0 +1,10 @@
+package graphmodel;
+
+/**
+ * This enum is used to define the kinds of change that can be made to a Component in the object model
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public enum ChangeType {
+	ADDED, REMOVED, CHANGED;
+}
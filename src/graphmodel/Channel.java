@@ -82,9 +82,22 @@ public class Channel extends Component {
 	 * So this method doesn't do anything
 	 */
 	@Override
-	public String generateXML() {
+	public void writeXML(Appendable out) {
 		// XML generation for the channels provided in the Clock Domain implementation
-		return null;
+	}
+
+	/**
+	 * Method inherited from Component. A Channel is repointed by the Clock Domains at its ends without its own caches
+	 * being cleared, so a new copy is made every time rather than keeping the last one
+	 */
+	@Override
+	public ChannelSnapshot getSnapshot() {
+		return createSnapshot();
+	}
+	
+	@Override
+	protected ChannelSnapshot createSnapshot() {
+		return new ChannelSnapshot(this);
 	}
 
 	/**
@@ -101,7 +114,16 @@ public class Channel extends Component {
 	 * @param to - name of Channel on destination Clock Domain side
 	 */
 	public void setToName(String to) {
+		String oldToName = toName;
 		toName = to;
+		// Keep the destination Clock Domain's channel index in step with the new name
+		if (this.to != null) {
+			this.to.renameInputChannel(this, oldToName);
+		}
+		// The source Clock Domain writes the destination name in its XML too
+		if (from != null) {
+			from.invalidateCaches();
+		}
 	}
 
 
@@ -0,0 +1,53 @@
+package graphmodel;
+
+/**
+ * This class is an immutable copy of a Channel. The Clock Domains at either end are referred to by name, so a Channel
+ * copy stays valid when the Clock Domains at its ends change.
+ *
+ * As with Channel, the name is the name of the Channel on the source Clock Domain.
+ *
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public final class ChannelSnapshot extends ComponentSnapshot {
+
+	private final String fromClockDomain;
+	private final String toClockDomain;
+	private final String toName;
+
+	ChannelSnapshot(Channel ch) {
+		super(ch.getName());
+		this.fromClockDomain = ch.getFromClockDomain() == null ? null : ch.getFromClockDomain().getName();
+		this.toClockDomain = ch.getToClockDomain() == null ? null : ch.getToClockDomain().getName();
+		this.toName = ch.getToName();
+	}
+
+	ChannelSnapshot(String name, String fromClockDomain, String toClockDomain, String toName) {
+		super(name);
+		this.fromClockDomain = fromClockDomain;
+		this.toClockDomain = toClockDomain;
+		this.toName = toName;
+	}
+
+	/**
+	 * @return name of the source Clock Domain, or null if the Channel had none
+	 */
+	public String getFromClockDomain() {
+		return fromClockDomain;
+	}
+
+	/**
+	 * @return name of the destination Clock Domain, or null if the Channel had none
+	 */
+	public String getToClockDomain() {
+		return toClockDomain;
+	}
+
+	/**
+	 * @return the name of this Channel on the destination Clock Domain
+	 */
+	public String getToName() {
+		return toName;
+	}
+
+}
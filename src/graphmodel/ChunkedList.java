@@ -0,0 +1,205 @@
+package graphmodel;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * This class is an immutable list held in chunks of up to CHUNK_SIZE elements, used by the snapshots for lists that
+ * can grow large, such as the Clock Domains of a Sub System.
+ *
+ * Replacing, adding or removing an element makes a new list that copies only the chunk the element is in and the
+ * array of chunks, and shares every other chunk with the list it was made from. So a snapshot taken after editing one
+ * Clock Domain among thousands costs a chunk and a reference to each chunk, rather than a copy of the whole list.
+ *
+ * Chunks lose elements as they are removed, so they can hold fewer than CHUNK_SIZE, but never none.
+ *
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+final class ChunkedList<T> extends AbstractList<T> implements RandomAccess {
+
+	static final int CHUNK_SIZE = 64;
+
+	// The chunks in order, and the position in the list of the first element of each
+	private final Object[][] chunks;
+	private final int[] starts;
+	private final int size;
+
+	private ChunkedList(Object[][] chunks, int[] starts, int size) {
+		this.chunks = chunks;
+		this.starts = starts;
+		this.size = size;
+	}
+
+	/**
+	 * @return a list of the given elements, in full chunks
+	 */
+	static <T> ChunkedList<T> of(List<? extends T> elements) {
+		if (elements instanceof ChunkedList) {
+			@SuppressWarnings("unchecked")
+			ChunkedList<T> list = (ChunkedList<T>) elements;
+			return list;
+		}
+		int numChunks = (elements.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		Object[][] chunks = new Object[numChunks][];
+		int[] starts = new int[numChunks];
+		for (int c = 0; c < numChunks; c++) {
+			starts[c] = c * CHUNK_SIZE;
+			chunks[c] = elements.subList(starts[c], Math.min(starts[c] + CHUNK_SIZE, elements.size())).toArray();
+		}
+		return new ChunkedList<T>(chunks, starts, elements.size());
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T get(int index) {
+		int c = chunkOf(index);
+		return (T) chunks[c][index - starts[c]];
+	}
+
+	/**
+	 * @return the number of chunks the list is held in
+	 */
+	int getNumChunks() {
+		return chunks.length;
+	}
+
+	/**
+	 * @return the chunk at the given position, which is shared with other lists and must not be changed
+	 */
+	Object[] getChunk(int c) {
+		return chunks[c];
+	}
+
+	/**
+	 * @return a copy of this list with the element at the given position replaced
+	 */
+	ChunkedList<T> with(int index, T element) {
+		int c = chunkOf(index);
+		Object[] chunk = chunks[c].clone();
+		chunk[index - starts[c]] = element;
+		Object[][] newChunks = chunks.clone();
+		newChunks[c] = chunk;
+		return new ChunkedList<T>(newChunks, starts, size);
+	}
+
+	/**
+	 * @return a copy of this list with the element added to the end
+	 */
+	ChunkedList<T> withAdded(T element) {
+		int last = chunks.length - 1;
+		if (last >= 0 && chunks[last].length < CHUNK_SIZE) {
+			Object[] chunk = new Object[chunks[last].length + 1];
+			System.arraycopy(chunks[last], 0, chunk, 0, chunks[last].length);
+			chunk[chunk.length - 1] = element;
+			Object[][] newChunks = chunks.clone();
+			newChunks[last] = chunk;
+			return new ChunkedList<T>(newChunks, starts, size + 1);
+		}
+
+		Object[][] newChunks = new Object[chunks.length + 1][];
+		System.arraycopy(chunks, 0, newChunks, 0, chunks.length);
+		newChunks[chunks.length] = new Object[] { element };
+		int[] newStarts = new int[starts.length + 1];
+		System.arraycopy(starts, 0, newStarts, 0, starts.length);
+		newStarts[starts.length] = size;
+		return new ChunkedList<T>(newChunks, newStarts, size + 1);
+	}
+
+	/**
+	 * @return a copy of this list with the element at the given position removed
+	 */
+	ChunkedList<T> without(int index) {
+		int c = chunkOf(index);
+		Object[] chunk = chunks[c];
+		int offset = index - starts[c];
+
+		if (chunk.length == 1) {
+			// The chunk is dropped, so no chunk is left empty
+			Object[][] newChunks = new Object[chunks.length - 1][];
+			int[] newStarts = new int[starts.length - 1];
+			System.arraycopy(chunks, 0, newChunks, 0, c);
+			System.arraycopy(chunks, c + 1, newChunks, c, chunks.length - c - 1);
+			System.arraycopy(starts, 0, newStarts, 0, c);
+			for (int i = c + 1; i < starts.length; i++) {
+				newStarts[i - 1] = starts[i] - 1;
+			}
+			return new ChunkedList<T>(newChunks, newStarts, size - 1);
+		}
+
+		Object[] newChunk = new Object[chunk.length - 1];
+		System.arraycopy(chunk, 0, newChunk, 0, offset);
+		System.arraycopy(chunk, offset + 1, newChunk, offset, chunk.length - offset - 1);
+		Object[][] newChunks = chunks.clone();
+		newChunks[c] = newChunk;
+		int[] newStarts = starts.clone();
+		for (int i = c + 1; i < newStarts.length; i++) {
+			newStarts[i]--;
+		}
+		return new ChunkedList<T>(newChunks, newStarts, size - 1);
+	}
+
+	/**
+	 * @return the position of the chunk holding the element at the given position in the list
+	 */
+	private int chunkOf(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		int low = 0;
+		int high = starts.length - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (starts[mid] <= index) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Walks the chunks in order, rather than looking each element up by position
+	 */
+	@Override
+	public Iterator<T> iterator() {
+		return new Iterator<T>() {
+			private int chunk = 0;
+			private int offset = 0;
+
+			@Override
+			public boolean hasNext() {
+				return chunk < chunks.length;
+			}
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public T next() {
+				if (chunk >= chunks.length) {
+					throw new NoSuchElementException();
+				}
+				T element = (T) chunks[chunk][offset++];
+				if (offset == chunks[chunk].length) {
+					chunk++;
+					offset = 0;
+				}
+				return element;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+}
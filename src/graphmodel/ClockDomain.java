@@ -2,8 +2,11 @@ package graphmodel;
 
 import graphelements.jgraphx.DrawComponent;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -23,6 +26,11 @@ public class ClockDomain extends Component {
 	private List<Signal> outputSignals;
 	private List<Channel> inputChannels;
 	private List<Channel> outputChannels;
+	
+	// Channels keyed by the name they have on this Clock Domain's side, so channel endpoints can be resolved without scanning.
+	// Input Channels are keyed by their destination name, output Channels by their source name
+	private Map<String, Channel> inputChannelIndex;
+	private Map<String, Channel> outputChannelIndex;
 
 	private String className;
 	
@@ -33,6 +41,8 @@ public class ClockDomain extends Component {
 		
 		inputChannels = new ArrayList<Channel>();
 		outputChannels = new ArrayList<Channel>();
+		inputChannelIndex = new HashMap<String, Channel>();
+		outputChannelIndex = new HashMap<String, Channel>();
 		
 		this.className = className;
 	}
@@ -41,34 +51,145 @@ public class ClockDomain extends Component {
 	
 	protected void addInputSignal(Signal s) {
 		inputSignals.add(s);
+		s.setOwner(this);
 	}
 	
 	protected void removeInputSignal(Signal s) {
-		inputSignals.remove(s);
+		if (inputSignals.remove(s)) {
+			s.releaseOwner(this);
+		}
 	}
 	
 	protected void addOutputSignal(Signal s) {
 		outputSignals.add(s);
+		s.setOwner(this);
 	}
 	
 	protected void removeOutputSignal(Signal s) {
-		outputSignals.remove(s);
+		if (outputSignals.remove(s)) {
+			s.releaseOwner(this);
+		}
+	}
+	
+	/**
+	 * Replaces a Signal in place, keeping its position in its list
+	 * @param oldS - Signal currently in this Clock Domain
+	 * @param newS - Signal of the same type to put in its place
+	 * @return the position of the new Signal in its list, or -1 if the old Signal is not in this Clock Domain
+	 */
+	protected int replaceSignal(Signal oldS, Signal newS) {
+		List<Signal> signals = oldS.getType().equals(IOType.INPUT) ? inputSignals : outputSignals;
+		int index = signals.indexOf(oldS);
+		if (index != -1) {
+			signals.set(index, newS);
+			oldS.releaseOwner(this);
+			newS.setOwner(this);
+		}
+		return index;
 	}
 	
 	protected void addInputChannel(Channel c) {
+		if (inputChannelIndex.containsKey(c.getToName())) {
+			throw new RuntimeException("Add Channel: Clock Domain " + this.name + " already has an input Channel named " + c.getToName());
+		}
 		inputChannels.add(c);
+		inputChannelIndex.put(c.getToName(), c);
+		// Channels are written by the Clock Domain itself, so its own XML changes
+		invalidateCaches();
 	}
 	
 	protected void removeInputChannel(Channel ch) {
-		inputChannels.remove(ch);
+		if (inputChannels.remove(ch)) {
+			if (inputChannelIndex.get(ch.getToName()) == ch) {
+				inputChannelIndex.remove(ch.getToName());
+			}
+			invalidateCaches();
+		}
 	}
 	
 	protected void addOutputChannel(Channel c) {
+		if (outputChannelIndex.containsKey(c.name)) {
+			throw new RuntimeException("Add Channel: Clock Domain " + this.name + " already has an output Channel named " + c.name);
+		}
 		outputChannels.add(c);
+		outputChannelIndex.put(c.name, c);
+		invalidateCaches();
 	}
 	
 	protected void removeOutputChannel(Channel c) {
-		outputChannels.remove(c);
+		if (outputChannels.remove(c)) {
+			if (outputChannelIndex.get(c.name) == c) {
+				outputChannelIndex.remove(c.name);
+			}
+			invalidateCaches();
+		}
+	}
+	
+	/**
+	 * Replaces an input Channel in place, keeping its position in the list
+	 * @param oldCh - Channel currently going into this Clock Domain
+	 * @param newCh - Channel to put in its place
+	 */
+	protected void replaceInputChannel(Channel oldCh, Channel newCh) {
+		Channel existing = inputChannelIndex.get(newCh.getToName());
+		if (existing != null && existing != oldCh) {
+			throw new RuntimeException("Change Component: Clock Domain " + this.name + " already has an input Channel named " + newCh.getToName());
+		}
+		int index = inputChannels.indexOf(oldCh);
+		if (index != -1) {
+			inputChannels.set(index, newCh);
+			inputChannelIndex.remove(oldCh.getToName());
+			inputChannelIndex.put(newCh.getToName(), newCh);
+			invalidateCaches();
+		}
+	}
+	
+	/**
+	 * Replaces an output Channel in place, keeping its position in the list
+	 * @param oldCh - Channel currently coming out of this Clock Domain
+	 * @param newCh - Channel to put in its place
+	 */
+	protected void replaceOutputChannel(Channel oldCh, Channel newCh) {
+		Channel existing = outputChannelIndex.get(newCh.name);
+		if (existing != null && existing != oldCh) {
+			throw new RuntimeException("Change Component: Clock Domain " + this.name + " already has an output Channel named " + newCh.name);
+		}
+		int index = outputChannels.indexOf(oldCh);
+		if (index != -1) {
+			outputChannels.set(index, newCh);
+			outputChannelIndex.remove(oldCh.name);
+			outputChannelIndex.put(newCh.name, newCh);
+			invalidateCaches();
+		}
+	}
+	
+	/**
+	 * Called by a Channel going into this Clock Domain when its destination name is changed, so the index stays in step
+	 */
+	protected void renameInputChannel(Channel ch, String oldToName) {
+		if (inputChannelIndex.get(oldToName) == ch) {
+			inputChannelIndex.remove(oldToName);
+			inputChannelIndex.put(ch.getToName(), ch);
+			invalidateCaches();
+		}
+	}
+	
+	/**
+	 * This method returns the input Channel with the given name on this Clock Domain's side, or null if there is none
+	 * @param toName
+	 * @return
+	 */
+	public Channel getInputChannel(String toName) {
+		return inputChannelIndex.get(toName);
+	}
+	
+	/**
+	 * This method returns the output Channel with the given name on this Clock Domain's side, or null if there is none
+	 * @param name
+	 * @return
+	 */
+	public Channel getOutputChannel(String name) {
+		return outputChannelIndex.get(name);
 	}
 	
 	
@@ -123,29 +244,74 @@ public class ClockDomain extends Component {
 	 * - Output Channels
 	 */
 	@Override
-	public String generateXML() {
-		StringBuilder result = new StringBuilder("<ClockDomain Name=\"" + this.name + "\" Class=\"" + this.className + "\">\n");
+	public void writeXML(Appendable out) throws IOException {
+		out.append("<ClockDomain Name=\"");
+		writeAttributeValue(out, this.name);
+		out.append("\" Class=\"");
+		writeAttributeValue(out, this.className);
+		out.append("\">\n");
 		
 			for (Signal s : inputSignals) {
-				result.append("            " + s.generateXML() + "\n");
+				out.append("            ");
+				s.writeXML(out);
+				out.append("\n");
 			}
 		
 			for (Signal s : outputSignals) {
-				result.append("            " + s.generateXML() + "\n");
+				out.append("            ");
+				s.writeXML(out);
+				out.append("\n");
 			}
 			
 			for (Channel ch : inputChannels) {
-				result.append("            <iChannel Name=\"" + ch.getToName() + "\" From=\"" + ch.getFromClockDomain().name + "." + ch.name  + "\" />\n");
+				out.append("            <iChannel Name=\"");
+				writeAttributeValue(out, ch.getToName());
+				out.append("\" From=\"");
+				writeAttributeValue(out, ch.getFromClockDomain().name + "." + ch.name);
+				out.append("\" />\n");
 			}
 		
 			for (Channel ch: outputChannels) {
-				result.append("            <oChannel Name=\"" + ch.name + "\" To=\"" + ch.getToClockDomain().name + "." + ch.getToName()  + "\" />\n");
+				out.append("            <oChannel Name=\"");
+				writeAttributeValue(out, ch.name);
+				out.append("\" To=\"");
+				writeAttributeValue(out, ch.getToClockDomain().name + "." + ch.getToName());
+				out.append("\" />\n");
 			}
 		
 		
-		result.append("        </ClockDomain>");
-		return result.toString();
-		
+		out.append("        </ClockDomain>");
+	}
+	
+	@Override
+	public ClockDomainSnapshot getSnapshot() {
+		return (ClockDomainSnapshot) super.getSnapshot();
+	}
+	
+	/**
+	 * Copies this Clock Domain, sharing the copies of its Signals that have not changed. Channels are copied here,
+	 * as they are written in this Clock Domain's XML, which is cleared whenever they change
+	 */
+	@Override
+	protected ClockDomainSnapshot createSnapshot() {
+		return new ClockDomainSnapshot(name, className, snapshotSignals(inputSignals), snapshotSignals(outputSignals),
+				snapshotChannels(inputChannels), snapshotChannels(outputChannels));
+	}
+	
+	private static List<SignalSnapshot> snapshotSignals(List<Signal> signals) {
+		List<SignalSnapshot> copies = new ArrayList<SignalSnapshot>(signals.size());
+		for (Signal s : signals) {
+			copies.add(s.getSnapshot());
+		}
+		return SystemSnapshot.freeze(copies);
+	}
+	
+	private static List<ChannelSnapshot> snapshotChannels(List<Channel> channels) {
+		List<ChannelSnapshot> copies = new ArrayList<ChannelSnapshot>(channels.size());
+		for (Channel ch : channels) {
+			copies.add(ch.getSnapshot());
+		}
+		return SystemSnapshot.freeze(copies);
 	}
 	
 	/**
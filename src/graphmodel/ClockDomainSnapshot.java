@@ -0,0 +1,50 @@
+package graphmodel;
+
+import java.util.List;
+
+/**
+ * This class is an immutable copy of a Clock Domain, with its Signals and Channels.
+ *
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public final class ClockDomainSnapshot extends ComponentSnapshot {
+
+	private final String className;
+	private final List<SignalSnapshot> inputSignals;
+	private final List<SignalSnapshot> outputSignals;
+	private final List<ChannelSnapshot> inputChannels;
+	private final List<ChannelSnapshot> outputChannels;
+
+	ClockDomainSnapshot(String name, String className, List<SignalSnapshot> inputSignals,
+			List<SignalSnapshot> outputSignals, List<ChannelSnapshot> inputChannels,
+			List<ChannelSnapshot> outputChannels) {
+		super(name);
+		this.className = className;
+		this.inputSignals = inputSignals;
+		this.outputSignals = outputSignals;
+		this.inputChannels = inputChannels;
+		this.outputChannels = outputChannels;
+	}
+
+	public String getClassName() {
+		return className;
+	}
+
+	public List<SignalSnapshot> getInputSignals() {
+		return inputSignals;
+	}
+
+	public List<SignalSnapshot> getOutputSignals() {
+		return outputSignals;
+	}
+
+	public List<ChannelSnapshot> getInputChannels() {
+		return inputChannels;
+	}
+
+	public List<ChannelSnapshot> getOutputChannels() {
+		return outputChannels;
+	}
+
+}
@@ -1,5 +1,6 @@
 package graphmodel;
 
+import java.io.IOException;
 import java.io.Serializable;
 
 /**
@@ -15,6 +16,13 @@ public abstract class Component implements Serializable {
 	
 	protected String name;
 	
+	// XML of this Component as last generated, or null once it or anything written inside it has changed
+	private transient String xml;
+	// Immutable copy of this Component as last taken, or null once it or anything inside it has changed
+	private transient ComponentSnapshot snapshot;
+	// Component whose XML includes this one's, so a change here also clears the cached XML there
+	private transient Component owner;
+	
 	public Component(String name) {
 		this.name = name;
 	}
@@ -28,10 +36,147 @@ public abstract class Component implements Serializable {
 	}
 	
 	/**
-	 * Method for sub classes to implement: their own XML generation logic
+	 * Method for sub classes to implement: their own XML generation logic.
+	 * The XML is written straight to the given output, so a whole system can be saved without building it up as Strings.
+	 * @param out - where to write the XML representation
+	 */
+	public abstract void writeXML(Appendable out) throws IOException;
+	
+	/**
+	 * This method returns the XML representation of this Component as a String
+	 * @return String with XML representation contained
+	 */
+	public String generateXML() {
+		StringBuilder result = new StringBuilder();
+		try {
+			writeXML(result);
+		} catch (IOException e) {
+			// StringBuilder never throws IOException
+			throw new RuntimeException(e);
+		}
+		return result.toString();
+	}
+	
+	/**
+	 * This method returns the XML representation of this Component, as generateXML() does, but keeps the result
+	 * so it is only generated again after this Component or something inside it has changed.
+	 * It is meant for views that show the XML and only patch in what changed. Containers write their contents with
+	 * writeXML(), so saving a model streams it without keeping a copy of the XML of each level.
 	 * @return String with XML representation contained
 	 */
-	public abstract String generateXML();
+	public String getXML() {
+		if (xml == null) {
+			xml = generateXML();
+		}
+		return xml;
+	}
+	
+	/**
+	 * This method returns an immutable copy of this Component and everything inside it, which can be read on any
+	 * thread while this Component carries on being edited. The copy is kept until this Component or something inside
+	 * it changes, so the copies of unchanged Components are shared between successive snapshots of the model.
+	 * Must only be called on the thread that edits the model.
+	 * @return immutable copy of this Component
+	 */
+	public ComponentSnapshot getSnapshot() {
+		if (snapshot == null) {
+			snapshot = createSnapshot();
+		}
+		return snapshot;
+	}
+	
+	/**
+	 * Method for sub classes to implement: makes a new immutable copy of this Component. Contained Components should
+	 * be copied through their getSnapshot(), so unchanged ones are shared.
+	 * @return new immutable copy of this Component
+	 */
+	protected abstract ComponentSnapshot createSnapshot();
+	
+	/**
+	 * Sets the cached copy of this Component to one taken earlier, for a Component that has just been rebuilt from
+	 * that copy. This keeps the copy shared with the snapshot it came from.
+	 * @param copy - copy this Component is now the same as
+	 */
+	void setSnapshot(ComponentSnapshot copy) {
+		snapshot = copy;
+	}
+	
+	/**
+	 * Clears the cached XML and snapshot of this Component and of every Component it is written inside.
+	 * Must be called by any change that alters the XML this Component generates.
+	 */
+	protected void invalidateCaches() {
+		Component changed = null;
+		for (Component c = this; c != null; c = c.owner) {
+			c.xml = null;
+			c.snapshot = null;
+			if (changed != null) {
+				c.contentsChanged(changed);
+			}
+			changed = c;
+		}
+	}
+	
+	/**
+	 * Called when a Component written inside this one has changed, before this one's caches are cleared as well.
+	 * Containers can override it to copy only what changed the next time a snapshot is taken.
+	 * @param child - the Component directly inside this one that changed, or that contains what changed
+	 */
+	protected void contentsChanged(Component child) {
+	}
+	
+	/**
+	 * Sets the Component whose XML includes this one's, and clears that Component's cached XML
+	 * @param owner - containing Component, or null if this Component is no longer contained in one
+	 */
+	protected void setOwner(Component owner) {
+		this.owner = owner;
+		if (owner != null) {
+			owner.invalidateCaches();
+		}
+	}
+	
+	/**
+	 * Called by a container when it lets go of this Component, so later changes to it are not passed on
+	 * @param owner - the container letting go
+	 */
+	protected void releaseOwner(Component owner) {
+		if (this.owner == owner) {
+			this.owner = null;
+		}
+		owner.invalidateCaches();
+	}
+	
+	/**
+	 * @return the Component whose XML includes this one's, or null if it is not contained in one
+	 */
+	Component getOwner() {
+		return owner;
+	}
+	
+	/**
+	 * Writes the given attribute value, escaping the characters that cannot appear inside a quoted XML attribute
+	 * @param out - where to write the value
+	 * @param value - attribute value to write
+	 */
+	protected static void writeAttributeValue(Appendable out, String value) throws IOException {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '&':
+				out.append("&amp;");
+				break;
+			case '<':
+				out.append("&lt;");
+				break;
+			case '"':
+				out.append("&quot;");
+				break;
+			default:
+				out.append(c);
+			}
+		}
+	}
 	
 	/**
 	 * Method for each class to return the name of the construct they are representing
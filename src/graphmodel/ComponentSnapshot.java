@@ -0,0 +1,34 @@
+package graphmodel;
+
+/**
+ * This class is the base of the immutable copies of the Components of a model, taken with Component.getSnapshot()
+ * or GlobalSystem.getSnapshot().
+ *
+ * A snapshot never changes once it is made, so it can be read on any thread without locking while the model it was
+ * taken from carries on being edited. Snapshots of unchanged Components are shared between successive snapshots of a
+ * model, so Components are compared by identity to tell whether they changed between two snapshots.
+ *
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public abstract class ComponentSnapshot {
+
+	private final String name;
+
+	ComponentSnapshot(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @return the name of the Component this is a copy of
+	 */
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+}
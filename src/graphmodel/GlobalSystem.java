@@ -2,26 +2,32 @@ package graphmodel;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.Hashtable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import java.util.Map;
+import java.util.Set;
 
 /**
- * This class is a Singleton instance representing the overall system model. All
- * the methods in the classes are protected, so they can only be accessed by
- * this GloablSystem instance. This ensures that there is only one instance of
- * GlobalSystem, and therefore only one object model that all the other views
- * must be consistent with.
+ * This class represents an overall system model. All the methods in the
+ * Component classes that change them are protected, so they can only be
+ * accessed through a GlobalSystem. This ensures that every change goes through
+ * the system, and that all the views of that system stay consistent with it.
+ * 
+ * There can be any number of independent systems, such as one per open window
+ * or one per worker thread in a batch run. Each view is bound to the system
+ * passed to its constructor. getInstance() returns the default system, which
+ * is used by views created without one. A system is not thread safe: it, its
+ * Components and its views must only be used by one thread at a time, which
+ * for a system shown in a window is the event dispatch thread.
  * 
  * The GlobalSystem instance contains a list of SubSystem objects, and list of
  * LinkGroup objects. Within each SubSystem object is a list of ClockDomain
@@ -36,68 +42,242 @@ import org.w3c.dom.NodeList;
  */
 public class GlobalSystem {
 
-	// Names of events for the listeners to this model
+	// Names of events for the listeners to this model. MODEL_CHANGED_EVENT is
+	// sent as a ModelChangeEvent, which lists the Components that changed
 	public static final String MODEL_CHANGED_EVENT = "Model Changed";
 	public static final String MODEL_CREATED_EVENT = "Model Created";
 	public static final String MODEL_CLEARED_EVENT = "Model Cleared";
 
+	// The parts of the XML around the Link groups and Sub Systems
+	private static final String XML_HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<System>\n    <Interconnection>\n";
+	private static final String LINK_INDENT = "        ";
+	private static final String INTERCONNECTION_END = "    </Interconnection>\n";
+	private static final String SUBSYSTEM_INDENT = "    ";
+	private static final String XML_FOOTER = "</System>";
+
 	private List<SubSystem> subSystems;
 	private List<LinkGroup> links;
 
+	// Name indexes kept in step with the lists above, so that lookups by name
+	// and resolving Channel endpoints do not have to scan the whole model.
+	// Clock Domain names are unique across the whole system, as Channels
+	// refer to them without their Sub System.
+	private Map<String, SubSystem> subSystemIndex;
+	private Map<String, ClockDomain> clockDomainIndex;
+	private Map<ClockDomain, SubSystem> clockDomainParents;
+
 	// List of action listeners for changes in this model
 	private List<ActionListener> listeners;
 
-	// Keeps track of the single instance
-	private static GlobalSystem system = null;
+	// Nesting level of beginUpdate()/endUpdate() calls. While it is above 0,
+	// notifications are held back and sent as one when the outermost update
+	// ends.
+	private int updateLevel = 0;
+	private List<ModelChange> pendingChanges;
+	// Set if the model was cleared or created during the current update, in
+	// which case the listeners are sent that instead of the individual changes
+	private String pendingReset;
+	// Set if a change without any details was made during the current update
+	private boolean pendingUnknownChange;
+
+	// The last snapshot taken of this system, returned again if nothing has
+	// changed since, and the version the next new snapshot will have
+	private SystemSnapshot lastSnapshot;
+	private long nextVersion;
+
+	// The default system, created when it is first asked for
+	private static GlobalSystem defaultSystem = null;
 
-	public static GlobalSystem getInstance() {
-		// Ensures that system is only instantiated once
-		if (system == null) {
-			system = new GlobalSystem();
+	/**
+	 * @return the default system, used by views that are not given a system of
+	 *         their own
+	 */
+	public static synchronized GlobalSystem getInstance() {
+		if (defaultSystem == null) {
+			defaultSystem = new GlobalSystem();
 		}
-		return system;
+		return defaultSystem;
 	}
 
 	/**
-	 * Constructor is private so that it cannot be called outside this class, so
-	 * controls the number of instancess
+	 * Creates a new system, independent of every other system including the
+	 * default one returned by getInstance(). It starts with the single empty
+	 * Sub System SS1.
 	 */
-	private GlobalSystem() {
+	public GlobalSystem() {
 		subSystems = new ArrayList<SubSystem>();
 		links = new ArrayList<LinkGroup>();
 
+		subSystemIndex = new HashMap<String, SubSystem>();
+		clockDomainIndex = new HashMap<String, ClockDomain>();
+		clockDomainParents = new IdentityHashMap<ClockDomain, SubSystem>();
+
 		SubSystem sub = new SubSystem("SS1", "", "");
-		subSystems.add(sub);
+		attachSubSystem(sub);
 
 		listeners = new ArrayList<ActionListener>();
+		pendingChanges = new ArrayList<ModelChange>();
+	}
+
+	/**
+	 * Starts a batch of changes to the model. Notifications are held back until
+	 * the matching endUpdate() call, and are then sent to the listeners as a
+	 * single event. Calls can be nested, in which case the event is sent when
+	 * the outermost batch ends. Call endUpdate() in a finally block:
+	 * 
+	 * <pre>
+	 * system.beginUpdate();
+	 * try {
+	 * 	// make changes
+	 * } finally {
+	 * 	system.endUpdate();
+	 * }
+	 * </pre>
+	 */
+	public void beginUpdate() {
+		updateLevel++;
+	}
+
+	/**
+	 * Ends a batch of changes started by beginUpdate(). When the outermost
+	 * batch ends, the listeners are sent one event covering all the changes
+	 * made during it:
+	 * - MODEL_CREATED_EVENT if the model was created, or was cleared and then
+	 *   changed, as the views need to be rebuilt
+	 * - MODEL_CLEARED_EVENT if the model was cleared and left empty
+	 * - otherwise a ModelChangeEvent listing every change, in order
+	 */
+	public void endUpdate() {
+		updateLevel--;
+
+		if (updateLevel == 0) {
+			String reset = pendingReset;
+			boolean unknownChange = pendingUnknownChange;
+			List<ModelChange> changes = pendingChanges;
+
+			pendingReset = null;
+			pendingUnknownChange = false;
+			pendingChanges = new ArrayList<ModelChange>();
+
+			if (reset != null) {
+				dispatch(new ActionEvent(this, 0, reset));
+			} else if (unknownChange) {
+				dispatch(new ModelChangeEvent(this, new ArrayList<ModelChange>()));
+			} else if (!changes.isEmpty()) {
+				dispatch(new ModelChangeEvent(this, changes));
+			}
+		}
+	}
+
+	/**
+	 * @return true if changes are currently being batched by beginUpdate()
+	 */
+	public boolean isUpdating() {
+		return updateLevel > 0;
 	}
 
 	// ADD/DELETE SUB SYSTEMS
 
+	/**
+	 * Adds a Sub System, along with any Clock Domains it already contains, to
+	 * the system. Throws a RuntimeException if the Sub System name or any of
+	 * its Clock Domain names are already in use.
+	 * 
+	 * @param c
+	 *            - Sub System to add
+	 */
 	public void addSubSystem(SubSystem c) {
-		subSystems.add(c);
+		attachSubSystem(c);
 
 		// A change is made, so notify all listeners
-		notifyListeners(MODEL_CHANGED_EVENT);
+		fireChange(new ModelChange(ChangeType.ADDED, c, null,
+				subSystems.size() - 1));
 	}
 
 	public void deleteSubSystem(SubSystem c) {
-		subSystems.remove(c);
+		if (subSystemIndex.get(c.name) == c) {
+			int index = subSystems.indexOf(c);
+			subSystems.remove(index);
+			subSystemIndex.remove(c.name);
+			unindexClockDomains(c);
+
+			// A change is made, so notify all listeners
+			fireChange(new ModelChange(ChangeType.REMOVED, c, null, index));
+		}
+	}
 
-		// A change is made, so notify all listeners
-		notifyListeners(MODEL_CHANGED_EVENT);
+	/**
+	 * Adds the Sub System to the list and to the name indexes, checking every
+	 * name before anything is changed so a rejected Sub System leaves the
+	 * model untouched
+	 */
+	private void attachSubSystem(SubSystem sub) {
+		if (subSystemIndex.containsKey(sub.name)) {
+			throw new RuntimeException("Add Sub System: a Sub System named "
+					+ sub.name + " already exists");
+		}
+		for (ClockDomain cd : sub.getClockDomains()) {
+			checkClockDomainName(cd, null);
+		}
+
+		subSystems.add(sub);
+		subSystemIndex.put(sub.name, sub);
+		indexClockDomains(sub);
+	}
+
+	/**
+	 * Adds the Clock Domain to the Sub System and to the name indexes
+	 */
+	private void attachClockDomain(ClockDomain cd, SubSystem sub) {
+		checkClockDomainName(cd, null);
+		sub.addClockDomain(cd);
+		clockDomainIndex.put(cd.name, cd);
+		clockDomainParents.put(cd, sub);
+	}
+
+	/**
+	 * Throws a RuntimeException if the name of the given Clock Domain is
+	 * already used by a Clock Domain other than the one it is replacing
+	 */
+	private void checkClockDomainName(ClockDomain cd, ClockDomain replacing) {
+		ClockDomain existing = clockDomainIndex.get(cd.name);
+		if (existing != null && existing != replacing) {
+			throw new RuntimeException("Add Clock Domain: a Clock Domain named "
+					+ cd.name + " already exists in Sub System "
+					+ clockDomainParents.get(existing).name);
+		}
+	}
+
+	private void indexClockDomains(SubSystem sub) {
+		for (ClockDomain cd : sub.getClockDomains()) {
+			clockDomainIndex.put(cd.name, cd);
+			clockDomainParents.put(cd, sub);
+		}
+	}
+
+	private void unindexClockDomains(SubSystem sub) {
+		for (ClockDomain cd : sub.getClockDomains()) {
+			if (clockDomainIndex.get(cd.name) == cd) {
+				clockDomainIndex.remove(cd.name);
+			}
+			clockDomainParents.remove(cd);
+		}
 	}
 
 	// ADD/DELETE GROUPS OF LINKS
 
 	public void addLinkGroup(LinkGroup l) {
 		links.add(l);
-		notifyListeners(MODEL_CHANGED_EVENT);
+		fireChange(new ModelChange(ChangeType.ADDED, l, null, links.size() - 1));
 	}
 
 	public void deleteLinkGroup(LinkGroup l) {
-		links.remove(l);
-		notifyListeners(MODEL_CHANGED_EVENT);
+		int index = links.indexOf(l);
+		if (index != -1) {
+			links.remove(index);
+			fireChange(new ModelChange(ChangeType.REMOVED, l, null, index));
+		}
 	}
 
 	/**
@@ -117,23 +297,69 @@ public class GlobalSystem {
 	 * @return String containing full XML structure
 	 */
 	public String createXMLFile() {
+		StringBuilder result = new StringBuilder();
+		try {
+			writeXMLFile(result);
+		} catch (IOException e) {
+			// StringBuilder never throws IOException
+			throw new RuntimeException(e);
+		}
+		return result.toString();
+	}
 
-		StringBuilder result = new StringBuilder(
-				"<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<System>\n");
-		result.append("    <Interconnection>\n");
+	/**
+	 * This method writes the full XML structure of the object model straight
+	 * to the given output, in the same form as createXMLFile(). Each Component
+	 * writes its XML with writeXML(), so the document is streamed without
+	 * building or keeping it as Strings.
+	 * 
+	 * @param out
+	 *            - where to write the XML, such as a buffered file Writer
+	 */
+	public void writeXMLFile(Appendable out) throws IOException {
+		out.append(XML_HEADER);
+		for (LinkGroup l : links) {
+			out.append(LINK_INDENT);
+			l.writeXML(out);
+		}
+		out.append(INTERCONNECTION_END);
+		for (SubSystem c : subSystems) {
+			out.append(SUBSYSTEM_INDENT);
+			c.writeXML(out);
+		}
+		out.append(XML_FOOTER);
+	}
+
+	/**
+	 * This method returns the full XML structure of the object model as the
+	 * list of parts that createXMLFile() joins together: the cached XML of
+	 * each Link group and Clock Domain, with the tags of the Sub Systems and
+	 * the indentation around them. A Component that has not changed since the
+	 * last call gives the same String object again, and so do the parts around
+	 * them, so a view can find what changed by comparing the parts by
+	 * identity, and only has to replace the XML of the Clock Domains that
+	 * changed.
+	 * 
+	 * @return the parts of the XML, in order
+	 */
+	public List<String> getXMLParts() {
+		List<String> parts = new ArrayList<String>(2 * links.size() + 3
+				* (clockDomainIndex.size() + subSystems.size()) + 3);
+		parts.add(XML_HEADER);
 
 		for (LinkGroup l : links) {
-			result.append("        " + l.generateXML());
+			parts.add(LINK_INDENT);
+			parts.add(l.getXML());
 		}
 
-		result.append("    </Interconnection>\n");
+		parts.add(INTERCONNECTION_END);
 
 		for (SubSystem c : subSystems) {
-			result.append("    " + c.generateXML());
+			parts.add(SUBSYSTEM_INDENT);
+			c.addXMLParts(parts);
 		}
-		result.append("</System>");
-		return result.toString();
-
+		parts.add(XML_FOOTER);
+		return parts;
 	}
 
 	/**
@@ -152,7 +378,16 @@ public class GlobalSystem {
 	 * the graphical representation of the model, then the new component that is
 	 * created in its place will replace the old one.
 	 * 
-	 * TODO: Finish implementing for the rest of the Component types
+	 * Clock Domains, Sub Systems, Channels, Signals and Link groups can be
+	 * changed. The replacement keeps the place of the old Component in its
+	 * list, and the name indexes are updated along with it. A Channel keeps
+	 * the Clock Domains of the one it replaces, and a Signal must stay an
+	 * input or an output, as it was.
+	 * 
+	 * A RuntimeException is thrown, and the model left as it was, if the
+	 * Components are of different types or of any other type, if the old
+	 * Component is not in the model, or if the new name clashes with another
+	 * Component of the same type.
 	 * 
 	 * @param oldComp
 	 *            - Component that has been edited
@@ -163,40 +398,121 @@ public class GlobalSystem {
 	 *            Domains, 2 Sub Systems, 2 Channels, etc
 	 */
 	public void changeComponent(Component oldComp, Component newComp) {
+		if (oldComp.getClass() != newComp.getClass()) {
+			throw new RuntimeException(
+					"Change Component: Components must be of the same type");
+		}
+
+		Component parent = null;
+		int index = -1;
 
 		if (oldComp instanceof ClockDomain) {
-			if (!(newComp instanceof ClockDomain)) {
-				throw new RuntimeException(
-						"Change Component: Components must be of the same type");
-			}
 			ClockDomain oldCD = (ClockDomain) oldComp;
 			ClockDomain newCD = (ClockDomain) newComp;
 
-			for (SubSystem s : subSystems) {
-				s.replaceClockDomain(oldCD, newCD);
+			SubSystem s = clockDomainParents.get(oldCD);
+			if (s == null) {
+				throw new RuntimeException("Change Component: Clock Domain "
+						+ oldCD.name + " is not in the model");
 			}
+			checkClockDomainName(newCD, oldCD);
+			s.replaceClockDomain(oldCD, newCD);
+			parent = s;
+			index = s.getClockDomains().indexOf(newCD);
+
+			clockDomainIndex.remove(oldCD.name);
+			clockDomainParents.remove(oldCD);
+			clockDomainIndex.put(newCD.name, newCD);
+			clockDomainParents.put(newCD, s);
 		} else if (oldComp instanceof SubSystem) {
-			if (!(newComp instanceof SubSystem)) {
-				throw new RuntimeException(
-						"Change Component: Components must be of the same type");
-			}
-
 			SubSystem oldSub = (SubSystem) oldComp;
 			SubSystem newSub = (SubSystem) newComp;
 
-			int index = subSystems.indexOf(oldSub);
+			index = subSystems.indexOf(oldSub);
+			if (index == -1) {
+				throw new RuntimeException("Change Component: Sub System "
+						+ oldSub.name + " is not in the model");
+			}
+			SubSystem existing = subSystemIndex.get(newSub.name);
+			if (existing != null && existing != oldSub) {
+				throw new RuntimeException("Change Component: a Sub System named "
+						+ newSub.name + " already exists");
+			}
+			for (ClockDomain cd : newSub.getClockDomains()) {
+				checkClockDomainName(cd, oldSub.getClockDomain(cd.name));
+			}
+
 			subSystems.set(index, newSub);
-		} else if (newComp instanceof Channel) {
-			if (!(newComp instanceof Channel)) {
+
+			subSystemIndex.remove(oldSub.name);
+			unindexClockDomains(oldSub);
+			subSystemIndex.put(newSub.name, newSub);
+			indexClockDomains(newSub);
+		} else if (oldComp instanceof Channel) {
+			Channel oldCh = (Channel) oldComp;
+			Channel newCh = (Channel) newComp;
+
+			// The edited Channel is created without its Clock Domains, so
+			// carry them over from the Channel it replaces
+			ClockDomain from = oldCh.getFromClockDomain();
+			ClockDomain to = oldCh.getToClockDomain();
+			if (from == null || to == null
+					|| !from.getOutputChannels().contains(oldCh)
+					|| !to.getInputChannels().contains(oldCh)) {
+				throw new RuntimeException("Change Component: Channel "
+						+ oldCh.name + " is not connected to two Clock Domains");
+			}
+			newCh.setFromClockDomain(from);
+			newCh.setToClockDomain(to);
+
+			// If the destination rejects the name, undo the source side so
+			// the model is left as it was
+			from.replaceOutputChannel(oldCh, newCh);
+			try {
+				to.replaceInputChannel(oldCh, newCh);
+			} catch (RuntimeException e) {
+				from.replaceOutputChannel(newCh, oldCh);
+				throw e;
+			}
+			parent = from;
+			index = from.getOutputChannels().indexOf(newCh);
+		} else if (oldComp instanceof Signal) {
+			Signal oldS = (Signal) oldComp;
+			Signal newS = (Signal) newComp;
+
+			if (!oldS.getType().equals(newS.getType())) {
+				throw new RuntimeException("Change Component: Signal "
+						+ oldS.name
+						+ " cannot be changed between input and output");
+			}
+			Component owner = oldS.getOwner();
+			if (!(owner instanceof ClockDomain)
+					|| !clockDomainParents.containsKey(owner)) {
+				throw new RuntimeException("Change Component: Signal "
+						+ oldS.name + " is not in the model");
+			}
+			parent = owner;
+			index = ((ClockDomain) owner).replaceSignal(oldS, newS);
+		} else if (oldComp instanceof LinkGroup) {
+			for (int i = 0; i < links.size() && index == -1; i++) {
+				if (links.get(i) == oldComp) {
+					index = i;
+				}
+			}
+			if (index == -1) {
 				throw new RuntimeException(
-						"Change Component: Components must be of the same type");
+						"Change Component: the Link group is not in the model");
 			}
-
-			// TODO: Finish implementation.
+			links.set(index, (LinkGroup) newComp);
+		} else {
+			throw new RuntimeException("Change Component: "
+					+ oldComp.getClass().getSimpleName()
+					+ " cannot be changed");
 		}
 
 		// When edit it made, notify the listeners
-		notifyListeners(MODEL_CHANGED_EVENT);
+		fireChange(new ModelChange(ChangeType.CHANGED, newComp, oldComp, parent,
+				index));
 	}
 
 	/**
@@ -208,8 +524,62 @@ public class GlobalSystem {
 	 *            present within Global System
 	 */
 	public void notifyListeners(String command) {
+		if (updateLevel > 0) {
+			// Remember the notification until the end of the update
+			if (command.equals(MODEL_CHANGED_EVENT)) {
+				if (pendingReset == null) {
+					pendingUnknownChange = true;
+				} else {
+					pendingReset = MODEL_CREATED_EVENT;
+				}
+			} else {
+				// The whole model is replaced, so earlier changes do not matter
+				pendingReset = command;
+				pendingChanges.clear();
+				pendingUnknownChange = false;
+			}
+			return;
+		}
+
+		if (command.equals(MODEL_CHANGED_EVENT)) {
+			// No details of what changed are known, so send an empty list
+			dispatch(new ModelChangeEvent(this, new ArrayList<ModelChange>()));
+		} else {
+			dispatch(new ActionEvent(this, 0, command));
+		}
+	}
+
+	/**
+	 * This method notifies all registered listeners of a single change made
+	 * to the model, through a ModelChangeEvent. During an update the change is
+	 * held back until the update ends.
+	 * 
+	 * @param change
+	 *            - description of the change made
+	 */
+	private void fireChange(ModelChange change) {
+		if (updateLevel > 0) {
+			if (pendingReset == null) {
+				pendingChanges.add(change);
+			} else {
+				// Changes after the model was cleared mean the views have to
+				// be rebuilt from what is now there
+				pendingReset = MODEL_CREATED_EVENT;
+			}
+			return;
+		}
+
+		List<ModelChange> changes = new ArrayList<ModelChange>(1);
+		changes.add(change);
+		dispatch(new ModelChangeEvent(this, changes));
+	}
+
+	/**
+	 * Sends the given event to every registered listener
+	 */
+	private void dispatch(ActionEvent event) {
 		for (ActionListener l : listeners) {
-			l.actionPerformed(new ActionEvent(this, 0, command));
+			l.actionPerformed(event);
 		}
 	}
 
@@ -268,19 +638,88 @@ public class GlobalSystem {
 	 *            - Sub System that contains this Clock Domain
 	 */
 	public void addClockDomain(ClockDomain cd, SubSystem sub) {
-		if (subSystems.contains(sub)) {
-			sub.addClockDomain(cd);
-		}
+		if (subSystemIndex.get(sub.name) == sub) {
+			attachClockDomain(cd, sub);
 
-		notifyListeners(MODEL_CHANGED_EVENT);
+			fireChange(new ModelChange(ChangeType.ADDED, cd, sub, sub
+					.getClockDomains().size() - 1));
+		}
 	}
 	
 	public void removeClockDomain(ClockDomain cd){
-		List<SubSystem> Sublist = getSubSystems(); 
-		for (SubSystem tempsub : Sublist){
-			tempsub.removeClockDomain(cd);	
+		SubSystem sub = clockDomainParents.remove(cd);
+		if (sub != null) {
+			int index = sub.getClockDomains().indexOf(cd);
+			sub.removeClockDomain(cd);
+			clockDomainIndex.remove(cd.name);
+
+			fireChange(new ModelChange(ChangeType.REMOVED, cd, sub, index));
+		}
+	}
+
+	/**
+	 * This method moves a Clock Domain into another Sub System, keeping its
+	 * Signals and Channels. Listeners are sent a single ModelChangeEvent, with
+	 * the Clock Domain removed from its old Sub System and added to the end
+	 * of the new one
+	 * 
+	 * @param cd
+	 *            - Clock Domain to move
+	 * @param to
+	 *            - Sub System to move it to
+	 */
+	public void moveClockDomain(ClockDomain cd, SubSystem to) {
+		SubSystem from = clockDomainParents.get(cd);
+		if (from == null) {
+			throw new RuntimeException("Move Clock Domain: " + cd.name
+					+ " is not in the model");
+		}
+		if (subSystemIndex.get(to.name) != to) {
+			throw new RuntimeException("Move Clock Domain: Sub System "
+					+ to.name + " is not in the model");
+		}
+		if (from == to) {
+			return;
+		}
+
+		beginUpdate();
+		try {
+			int index = from.getClockDomains().indexOf(cd);
+			from.removeClockDomain(cd);
+			fireChange(new ModelChange(ChangeType.REMOVED, cd, from, index));
+
+			to.addClockDomain(cd);
+			clockDomainParents.put(cd, to);
+			fireChange(new ModelChange(ChangeType.ADDED, cd, to, to
+					.getClockDomains().size() - 1));
+		} finally {
+			endUpdate();
 		}
-		notifyListeners(MODEL_CHANGED_EVENT);
+	}
+
+	/**
+	 * This method returns the Clock Domain with the given name, whichever Sub
+	 * System it is in
+	 * 
+	 * @param name
+	 *            - name of the Clock Domain
+	 * @return ClockDomain with the given name, null if no Clock Domain with
+	 *         this name exists
+	 */
+	public ClockDomain getClockDomain(String name) {
+		return clockDomainIndex.get(name);
+	}
+
+	/**
+	 * This method returns the Sub System that contains the given Clock Domain
+	 * 
+	 * @param cd
+	 *            - Clock Domain in question
+	 * @return the containing SubSystem, null if the Clock Domain is not part
+	 *         of this system
+	 */
+	public SubSystem getSubSystem(ClockDomain cd) {
+		return clockDomainParents.get(cd);
 	}
 	
 
@@ -294,23 +733,19 @@ public class GlobalSystem {
 	 *            - Clock Domain that contains this Signal
 	 */
 	public void addSignal(Signal s, ClockDomain cd) {
-		for (SubSystem sub : subSystems) {
-			if (sub.containsClockDomain(cd)) {
-				// Add this Signal to the corresponding list according to its
-				// type
-				if (s.getType().equals(IOType.INPUT)) {
-					cd.addInputSignal(s);
-				} else {
-					cd.addOutputSignal(s);
-				}
-
-				notifyListeners(MODEL_CHANGED_EVENT);
-				// Once the correct Clock Domain is found, and the Signal added,
-				// there is no need to continue iterating through the Sub
-				// Systems
-				return;
-
+		if (clockDomainParents.containsKey(cd)) {
+			// Add this Signal to the corresponding list according to its
+			// type
+			int index;
+			if (s.getType().equals(IOType.INPUT)) {
+				cd.addInputSignal(s);
+				index = cd.getNumInputSignals() - 1;
+			} else {
+				cd.addOutputSignal(s);
+				index = cd.getNumOutputSignals() - 1;
 			}
+
+			fireChange(new ModelChange(ChangeType.ADDED, s, cd, index));
 		}
 	}
 
@@ -337,11 +772,19 @@ public class GlobalSystem {
 		ch.setFromClockDomain(cdFrom);
 		ch.setToClockDomain(cdTo);
 
-		// Add references to the Channel for the corresponding Clock Domains
+		// Add references to the Channel for the corresponding Clock Domains.
+		// If the destination rejects the name, undo the source side so the
+		// model is left as it was
 		cdFrom.addOutputChannel(ch);
-		cdTo.addInputChannel(ch);
+		try {
+			cdTo.addInputChannel(ch);
+		} catch (RuntimeException e) {
+			cdFrom.removeOutputChannel(ch);
+			throw e;
+		}
 
-		notifyListeners(MODEL_CHANGED_EVENT);
+		fireChange(new ModelChange(ChangeType.ADDED, ch, cdFrom, cdFrom
+				.getNumOutputChannels() - 1));
 	}
 
 	/**
@@ -351,275 +794,511 @@ public class GlobalSystem {
 	public void clearModel() {
 		subSystems.clear();
 		links.clear();
+		subSystemIndex.clear();
+		clockDomainIndex.clear();
+		clockDomainParents.clear();
 
 		notifyListeners(MODEL_CLEARED_EVENT);
 	}
 
 	/**
 	 * This method constructs an object model of the SystemJ system provided a
-	 * SystemJ XML configuration file. The resulting model will be saved as the
-	 * new instance for the GlobalSystem
+	 * SystemJ XML configuration file. The resulting model replaces the
+	 * current model of this system
+	 * 
+	 * The file is read in a single pass by XMLModelReader. If it cannot be
+	 * read, or its names clash, the existing model is left untouched. The
+	 * model is replaced within a single update, so listeners only receive one
+	 * MODEL_CREATED_EVENT.
 	 * 
 	 * @param file
 	 *            - the File object representing the SystemJ XML configuration
 	 *            file
 	 */
 	public void constructModel(File file) {
-		DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-		Document doc = null;
+		XMLModelReader reader = new XMLModelReader();
 
 		try {
-			// Using factory get an instance of document builder
-			DocumentBuilder db = dbf.newDocumentBuilder();
-			// parse using builder to get DOM representation of the XML file
-			doc = db.parse(file);
-
+			reader.read(file);
+			constructModel(reader);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
+	}
 
-		// clear model first before reconstructing
-		system.clearModel();
-
-		Element rootNode = doc.getDocumentElement();
-		// Retrieve the Sub System XML nodes
-		NodeList subSystems = rootNode.getElementsByTagName("SubSystem");
-
-		// Iterate through all the Sub System XML tags
-		for (int i = 0; i < subSystems.getLength(); i++) {
-
-			
-			
-			
-			Element el = (Element) subSystems.item(i);
-
-			// Retrieve the <Name> and <Scheduler> Tags from the Sub System XML
-			// tag
-			String name = el.getAttribute("Name");
-			String local = el.getAttribute("Local");
-			NodeList scheduler = el.getElementsByTagName("Scheduler");
-			String schedulerClass = "";
-			// the <Scheduler> tag is optional, so if it does exist, then
-			// retrieve the corresponding class from it.
-			if (scheduler.getLength() == 1) {
-				Element e = (Element) scheduler.item(0);
-				schedulerClass = e.getAttribute("Class");
-
-				// If a <Scheduler> tag is present, then all Clock Domains are
-				// now enclosed in this tag. So make it the new node that is
-				// referred to throughout to get the
-				// Clock Domain information
-				el = e;
-			}
-
-			// Create a new SubSystem object with the name and Scheduler class
-			// information
-			SubSystem sub = new SubSystem(name, schedulerClass, local);
-
-			
-			// Once all the Clock Domains have been added, then add this Sub
-						// System to the overall system and move onto the next Sub System
-						system.addSubSystem(sub);
-			
-			// Get a list of the contained Clock Domain XML nodes
-			List<Node> clockDomains = getNodesAsElementList(el.getChildNodes());
-
-			// Iterate through all the nodes
-			for (Node n : clockDomains) {
-				Element el2 = (Element) n;
-				name = el2.getAttribute("Name");
-				String className = el2.getAttribute("Class");
-
-				// Create a new Clock Domain with the extracted Name and Class
-				// fields
-				ClockDomain cd = new ClockDomain(name, className);
-
-				// Add in input and output signals
-				List<Node> inputSignals = getNodesAsElementList(el2
-						.getElementsByTagName("iSignal"));
-				List<Node> outputSignals = getNodesAsElementList(el2
-						.getElementsByTagName("oSignal"));
-
-				for (Node sig : inputSignals) {
-					NamedNodeMap map = sig.getAttributes();
-					Hashtable<String, String> sigParameters = new Hashtable<String, String>();
-
-					// Iterate through all the parameters found in the XML file,
-					// and add them to the Hashtable
-					for (int index = 0; index < map.getLength(); index++) {
-						Node param = map.item(index);
-						if (param.getNodeName().equals("Name")) {
-							name = param.getNodeValue();
-						} else if (param.getNodeName().equals("Class")) {
-							className = param.getNodeValue();
-						} else {
-							sigParameters.put(param.getNodeName(),
-									param.getNodeValue());
-						}
-					}
+	/**
+	 * This method replaces the model with the Sub Systems and Link groups read
+	 * by the given reader. It allows a file to be read on another thread, and
+	 * the finished model then swapped in on the thread that owns this model.
+	 * If two Sub Systems or two Clock Domains read have the same name, an
+	 * IOException is thrown and the existing model is left untouched.
+	 * 
+	 * @param reader
+	 *            - XMLModelReader that has finished reading a configuration
+	 */
+	public void constructModel(XMLModelReader reader) throws IOException {
+		installModel(reader.getSubSystems(), reader.getLinkGroups());
+	}
 
-					// Once all the parameters have been retrieved, create the
-					// Signal object, and add it to the current Clock Domain
-					Signal inputSig = new Signal(name, className, IOType.INPUT,
-							sigParameters);
-					cd.addInputSignal(inputSig);
-				}
+	/**
+	 * This method saves the whole model to the given file as a binary
+	 * snapshot, which can be loaded back much faster than the XML file. See
+	 * BinarySnapshot for the layout of the file.
+	 * 
+	 * @param file
+	 *            - the file to save the snapshot to
+	 */
+	public void saveSnapshot(File file) throws IOException {
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+		try {
+			BinarySnapshot.write(subSystems, links, out);
+		} finally {
+			out.close();
+		}
+	}
 
-				// Do the same for the output Signals
-				for (Node sig : outputSignals) {
-					NamedNodeMap map = sig.getAttributes();
-					Hashtable<String, String> sigParameters = new Hashtable<String, String>();
-
-					for (int index = 0; index < map.getLength(); index++) {
-						Node param = map.item(index);
-						if (param.getNodeName().equals("Name")) {
-							name = param.getNodeValue();
-						} else if (param.getNodeName().equals("Class")) {
-							className = param.getNodeValue();
-						} else {
-							sigParameters.put(param.getNodeName(),
-									param.getNodeValue());
-						}
-					}
-					Signal outputSig = new Signal(name, className,
-							IOType.OUTPUT, sigParameters);
-					cd.addOutputSignal(outputSig);
-				}
+	/**
+	 * This method replaces the model with the one saved in the given binary
+	 * snapshot. If the snapshot cannot be read, the existing model is left
+	 * untouched and the IOException is passed on.
+	 * 
+	 * @param file
+	 *            - snapshot file written by saveSnapshot()
+	 */
+	public void loadSnapshot(File file) throws IOException {
+		BinarySnapshot snapshot = new BinarySnapshot();
+		snapshot.read(file);
+		installModel(snapshot.getSubSystems(), snapshot.getLinkGroups());
+	}
 
-				// Once all the Signals have been added to the Clock Domain, add
-				// this Clock Domain to the current Sub System
-				
-				//addClockDomain(cd,sub);
-				sub.addClockDomain(cd);
+	/**
+	 * Replaces the model with the given Sub Systems and Link groups within a
+	 * single update, so listeners only receive one MODEL_CREATED_EVENT. The
+	 * names are checked before the model is cleared, so if any clash the
+	 * existing model and its Links are left untouched.
+	 */
+	private void installModel(List<SubSystem> newSubSystems,
+			List<LinkGroup> newLinks) throws IOException {
+		checkNames(newSubSystems);
+
+		beginUpdate();
+		try {
+			// clear model first before reconstructing
+			clearModel();
+
+			for (SubSystem sub : newSubSystems) {
+				addSubSystem(sub);
 			}
 
+			// Links are added after all Sub Systems have been added
+			links.addAll(newLinks);
 
+			// Once the model is created, notify all the listeners
+			notifyListeners(MODEL_CREATED_EVENT);
+		} finally {
+			endUpdate();
 		}
 
-		// Links and Channels are added after all Sub Systems and Clock Domains
-		// have been created
+	}
+
+	/**
+	 * Throws an IOException if two of the given Sub Systems, or two of their
+	 * Clock Domains, have the same name
+	 */
+	private static void checkNames(List<SubSystem> newSubSystems)
+			throws IOException {
+		Set<String> subNames = new HashSet<String>();
+		Set<String> cdNames = new HashSet<String>();
+		for (SubSystem sub : newSubSystems) {
+			if (!subNames.add(sub.name)) {
+				throw new IOException("Construct Model: a Sub System named "
+						+ sub.name + " appears more than once");
+			}
+			for (ClockDomain cd : sub.getClockDomains()) {
+				if (!cdNames.add(cd.name)) {
+					throw new IOException(
+							"Construct Model: a Clock Domain named " + cd.name
+									+ " appears more than once");
+				}
+			}
+		}
+	}
+
+	/**
+	 * This method returns an immutable copy of the whole model, which can be
+	 * handed to a worker thread for analysis while this system carries on being
+	 * edited. Only the Components that changed since the last snapshot are
+	 * copied; the copies of the rest are shared with it. If nothing has changed,
+	 * the last snapshot is returned again. Must only be called on the thread
+	 * that edits this system.
+	 * 
+	 * @return snapshot of the current model
+	 */
+	public SystemSnapshot getSnapshot() {
+		List<SubSystemSnapshot> subCopies = new ArrayList<SubSystemSnapshot>(
+				subSystems.size());
+		for (SubSystem sub : subSystems) {
+			subCopies.add(sub.getSnapshot());
+		}
+		List<LinkGroupSnapshot> linkCopies = new ArrayList<LinkGroupSnapshot>(
+				links.size());
+		for (LinkGroup l : links) {
+			linkCopies.add(l.getSnapshot());
+		}
 
-		// Retrieve all the Clock Domains present in the whole system
-		List<ClockDomain> allClockDomains = new ArrayList<ClockDomain>();
-		for (SubSystem s : this.subSystems) {
-			allClockDomains.addAll(s.getClockDomains());
+		// The copies of unchanged Components are the same objects as last time
+		if (lastSnapshot == null
+				|| !sameElements(subCopies, lastSnapshot.getSubSystems())
+				|| !sameElements(linkCopies, lastSnapshot.getLinkGroups())) {
+			lastSnapshot = new SystemSnapshot(nextVersion++,
+					SystemSnapshot.freeze(subCopies),
+					SystemSnapshot.freeze(linkCopies));
 		}
+		return lastSnapshot;
+	}
 
-		// Using the Clock Domain nodes, get all the output Channels. This
-		// provides all information for both sides of the connection.
-		List<Node> clockDomainNodes = getNodesAsElementList(rootNode
-				.getElementsByTagName("ClockDomain"));
-		for (Node n : clockDomainNodes) {
-			Element el = (Element) n;
-			// Get all output Channels from this Clock Domain node
-			List<Node> channelNodes = getNodesAsElementList(el
-					.getElementsByTagName("oChannel"));
-			String cdName = el.getAttribute("Name");
-			ClockDomain fromCD = null;
+	/**
+	 * This method brings the model back to the state recorded in an earlier
+	 * snapshot of this system, as done by undo and redo.
+	 * 
+	 * Sub Systems, Clock Domains and Link groups whose current copy is the one
+	 * in the snapshot are kept as they are, and only the rest are rebuilt from
+	 * the snapshot, so the cost follows the difference between the two states
+	 * rather than the size of the model. Listeners are sent a single
+	 * ModelChangeEvent listing the Sub Systems and Link groups that were
+	 * added, removed or replaced.
+	 * 
+	 * Snapshots of other systems, or made by ModelMerge, can be restored as
+	 * well. Nothing in them is shared with this system, so everything that
+	 * differs is rebuilt.
+	 * 
+	 * @param target
+	 *            - snapshot taken earlier by getSnapshot() on this system
+	 */
+	public void restoreSnapshot(SystemSnapshot target) {
+		if (getSnapshot() == target) {
+			return;
+		}
 
-			// Retrieve the corresponding Clock Domain object based on the name
-			// of the Clock Domain found in the XML node
-			// This will be the source Clock Domain
-			for (SubSystem s : this.subSystems) {
-				if (s.getClockDomain(cdName) != null) {
-					fromCD = s.getClockDomain(cdName);
-					break;
+		beginUpdate();
+		try {
+			List<SubSystem> oldSubs = new ArrayList<SubSystem>(subSystems);
+			List<SubSystem> newSubs = new ArrayList<SubSystem>();
+			// Clock Domains rebuilt from the snapshot, and their copies, so
+			// their Channels can be connected once every Clock Domain exists
+			List<ClockDomain> rebuilt = new ArrayList<ClockDomain>();
+			List<ClockDomainSnapshot> rebuiltCopies = new ArrayList<ClockDomainSnapshot>();
+
+			for (SubSystemSnapshot copy : target.getSubSystems()) {
+				SubSystem live = subSystemIndex.get(copy.getName());
+				if (live != null && live.getSnapshot() == copy) {
+					newSubs.add(live);
+				} else {
+					newSubs.add(restoreSubSystem(copy, rebuilt, rebuiltCopies));
 				}
 			}
 
-			for (Node n2 : channelNodes) {
-				Element e = (Element) n2;
-				String fromName = e.getAttribute("Name");
-				// Destination clock domain and Channel name are in the format
-				// ClockDomain.ChannelName, so split into two to get info
-				String toClockDomainName = e.getAttribute("To").split("\\.")[0];
-				String toChannelName = e.getAttribute("To").split("\\.")[1];
-				ClockDomain toCD = null;
-
-				// Retrieve the destination ClockDomain object based on the name
-				// provided
-				for (SubSystem s : this.subSystems) {
-					if (s.getClockDomain(toClockDomainName) != null) {
-						toCD = s.getClockDomain(toClockDomainName);
-						break;
-					}
+			Set<SubSystem> kept = newIdentitySet(newSubs);
+			for (SubSystem sub : oldSubs) {
+				if (!kept.contains(sub)) {
+					subSystemIndex.remove(sub.name);
+					unindexClockDomains(sub);
 				}
-
-				// If both Clock Domain names in the XML provide link to
-				// existing Clock Domains, then create the Channel object, and
-				// add it to both Clock Domains
-				if (toCD != null && fromCD != null) {
-					Channel ch = new Channel(fromName, toChannelName, fromCD,
-							toCD);
-					fromCD.addOutputChannel(ch);
-					toCD.addInputChannel(ch);
+			}
+			Set<SubSystem> previous = newIdentitySet(oldSubs);
+			for (SubSystem sub : newSubs) {
+				if (!previous.contains(sub)) {
+					subSystemIndex.put(sub.name, sub);
+					indexClockDomains(sub);
 				}
-
 			}
+			subSystems.clear();
+			subSystems.addAll(newSubs);
+
+			restoreChannels(rebuilt, rebuiltCopies);
+
+			List<LinkGroup> oldLinks = new ArrayList<LinkGroup>(links);
+			Set<LinkGroup> repointed = newIdentitySet(new ArrayList<LinkGroup>());
+			List<LinkGroup> newLinks = restoreLinkGroups(target, repointed);
+			links.clear();
+			links.addAll(newLinks);
+
+			// The rebuilt parts of the model now match the snapshot, so its
+			// copies are kept to be shared with the snapshots taken after this
+			List<SubSystemSnapshot> subCopies = target.getSubSystems();
+			for (int i = 0; i < newSubs.size(); i++) {
+				if (!previous.contains(newSubs.get(i))) {
+					setSnapshots(newSubs.get(i), subCopies.get(i));
+				}
+			}
+			lastSnapshot = target;
 
+			fireRestoreChanges(oldSubs, newSubs, null);
+			fireRestoreChanges(oldLinks, newLinks, repointed);
+		} finally {
+			endUpdate();
 		}
+	}
 
-		// Construct Links
+	/**
+	 * Rebuilds a Sub System from its copy, keeping the live Clock Domains
+	 * whose copies are unchanged
+	 */
+	private SubSystem restoreSubSystem(SubSystemSnapshot copy,
+			List<ClockDomain> rebuilt, List<ClockDomainSnapshot> rebuiltCopies) {
+		SubSystem sub = new SubSystem(copy.getName(), copy.getSchedulerClass(),
+				Boolean.toString(copy.isLocal()));
+
+		for (ClockDomainSnapshot cdCopy : copy.getClockDomains()) {
+			ClockDomain live = clockDomainIndex.get(cdCopy.getName());
+			if (live != null && live.getSnapshot() == cdCopy) {
+				sub.addClockDomain(live);
+			} else {
+				ClockDomain cd = new ClockDomain(cdCopy.getName(),
+						cdCopy.getClassName());
+				for (SignalSnapshot s : cdCopy.getInputSignals()) {
+					cd.addInputSignal(restoreSignal(s));
+				}
+				for (SignalSnapshot s : cdCopy.getOutputSignals()) {
+					cd.addOutputSignal(restoreSignal(s));
+				}
+				sub.addClockDomain(cd);
+				rebuilt.add(cd);
+				rebuiltCopies.add(cdCopy);
+			}
+		}
+		return sub;
+	}
 
-		// All items in the <Link> tag correspond to a group of related links,
-		// or communicating Sub Systems
-		NodeList links = rootNode.getElementsByTagName("Link");
+	private static void setSnapshots(SubSystem sub, SubSystemSnapshot copy) {
+		for (int i = 0; i < copy.getClockDomains().size(); i++) {
+			ClockDomain cd = sub.getClockDomains().get(i);
+			ClockDomainSnapshot cdCopy = copy.getClockDomains().get(i);
+			for (int j = 0; j < cdCopy.getInputSignals().size(); j++) {
+				cd.getInputSignals().get(j).setSnapshot(
+						cdCopy.getInputSignals().get(j));
+			}
+			for (int j = 0; j < cdCopy.getOutputSignals().size(); j++) {
+				cd.getOutputSignals().get(j).setSnapshot(
+						cdCopy.getOutputSignals().get(j));
+			}
+			cd.setSnapshot(cdCopy);
+		}
+		sub.setSnapshot(copy);
+	}
 
-		for (int i = 0; i < links.getLength(); i++) {
-			Element l = (Element) links.item(i);
-			LinkGroup link = new LinkGroup(LinkType.getLinkType(l
-					.getAttribute("Type")));
+	private static void setSnapshots(LinkGroup group, LinkGroupSnapshot copy) {
+		for (int i = 0; i < copy.getLinks().size(); i++) {
+			group.getLinks().get(i).setSnapshot(copy.getLinks().get(i));
+		}
+		group.setSnapshot(copy);
+	}
 
-			NodeList interfaces = l.getElementsByTagName("Interface");
+	private static Signal restoreSignal(SignalSnapshot copy) {
+		return new Signal(copy.getName(), copy.getType(), copy.getSchema(),
+				copy.getValues().clone());
+	}
 
-			// Iterate through all Link Interface nodes and create the
-			// corresponding Link object
-			for (int index = 0; index < interfaces.getLength(); index++) {
-				Element n = (Element) interfaces.item(index);
-				SubSystem sub = getSubSystem(n.getAttribute("SubSystem"));
-				String className = n.getAttribute("Class");
-				String physInterface = n.getAttribute("Interface");
-				String args = n.getAttribute("Args");
+	/**
+	 * Connects the Channels of the rebuilt Clock Domains. A Channel that also
+	 * ends at a kept Clock Domain is already in that Clock Domain's lists, so
+	 * the same Channel object is reused and pointed at the rebuilt end
+	 */
+	private void restoreChannels(List<ClockDomain> rebuilt,
+			List<ClockDomainSnapshot> rebuiltCopies) {
+		Set<ClockDomain> rebuiltSet = newIdentitySet(rebuilt);
+		Map<String, ClockDomain> standIns = new HashMap<String, ClockDomain>();
+
+		// Output Channels first, so the input Channels can find them
+		for (int i = 0; i < rebuilt.size(); i++) {
+			ClockDomain cd = rebuilt.get(i);
+			for (ChannelSnapshot copy : rebuiltCopies.get(i).getOutputChannels()) {
+				ClockDomain to = resolveClockDomain(copy.getToClockDomain(),
+						standIns);
+				Channel ch = null;
+				if (to != null && !rebuiltSet.contains(to)) {
+					ch = to.getInputChannel(copy.getToName());
+					if (ch != null && !ch.name.equals(copy.getName())) {
+						ch = null;
+					}
+				}
+				if (ch == null) {
+					ch = new Channel(copy.getName(), copy.getToName(), cd, to);
+				} else {
+					ch.setFromClockDomain(cd);
+				}
+				cd.addOutputChannel(ch);
+			}
+		}
 
-				Link linkInterface = new Link(sub, className, physInterface,
-						args);
-				link.addLink(linkInterface);
+		for (int i = 0; i < rebuilt.size(); i++) {
+			ClockDomain cd = rebuilt.get(i);
+			for (ChannelSnapshot copy : rebuiltCopies.get(i).getInputChannels()) {
+				ClockDomain from = resolveClockDomain(
+						copy.getFromClockDomain(), standIns);
+				Channel ch = null;
+				if (from != null) {
+					ch = from.getOutputChannel(copy.getName());
+					if (ch != null && !copy.getToName().equals(ch.getToName())) {
+						ch = null;
+					}
+				}
+				if (ch == null) {
+					ch = new Channel(copy.getName(), copy.getToName(), from, cd);
+				} else {
+					ch.setToClockDomain(cd);
+				}
+				cd.addInputChannel(ch);
 			}
+		}
+	}
 
-			this.links.add(link);
+	/**
+	 * @return the Clock Domain with the given name. A Channel can still refer
+	 *         to a Clock Domain that was removed from the model, in which case
+	 *         it gets one that is not in the model either
+	 */
+	private ClockDomain resolveClockDomain(String name,
+			Map<String, ClockDomain> standIns) {
+		if (name == null) {
+			return null;
 		}
+		ClockDomain cd = clockDomainIndex.get(name);
+		if (cd == null) {
+			cd = standIns.get(name);
+			if (cd == null) {
+				cd = new ClockDomain(name, "");
+				standIns.put(name, cd);
+			}
+		}
+		return cd;
+	}
 
-		// Once the model is created, notify all the listeners
-		notifyListeners(MODEL_CREATED_EVENT);
+	/**
+	 * @return the Link groups of the snapshot, keeping the live groups whose
+	 *         copies are unchanged. Kept groups whose interfaces pointed at a
+	 *         Sub System that has been rebuilt are pointed at the new one, and
+	 *         added to the given set
+	 */
+	private List<LinkGroup> restoreLinkGroups(SystemSnapshot target,
+			Set<LinkGroup> repointed) {
+		Map<LinkGroupSnapshot, LinkGroup> live = new IdentityHashMap<LinkGroupSnapshot, LinkGroup>();
+		for (LinkGroup l : links) {
+			live.put(l.getSnapshot(), l);
+		}
 
+		List<LinkGroup> result = new ArrayList<LinkGroup>();
+		for (LinkGroupSnapshot copy : target.getLinkGroups()) {
+			LinkGroup group = live.remove(copy);
+			if (group != null) {
+				for (Link i : group.getLinks()) {
+					SubSystem current = i.getSubSystem() == null ? null
+							: subSystemIndex.get(i.getSubSystem().name);
+					if (current != null && current != i.getSubSystem()) {
+						i.setSubSystem(current);
+						repointed.add(group);
+					}
+				}
+				if (repointed.contains(group)) {
+					setSnapshots(group, copy);
+				}
+			} else {
+				group = new LinkGroup(copy.getLinkType());
+				for (LinkSnapshot i : copy.getLinks()) {
+					SubSystem sub = null;
+					if (i.getSubSystem() != null) {
+						sub = subSystemIndex.get(i.getSubSystem());
+						if (sub == null) {
+							// The interface named a Sub System that was not
+							// in the model, so it gets one that is not either
+							sub = new SubSystem(i.getSubSystem(), "", "false");
+						}
+					}
+					group.addLink(new Link(sub, i.getClassName(), i
+							.getLinkInterface(), i.getArguments()));
+				}
+				setSnapshots(group, copy);
+			}
+			result.add(group);
+		}
+		return result;
 	}
 
 	/**
-	 * For Document parsing, the list of nodes is generated as a NodeList
-	 * object. For easier iteration, this NodeList object is then parsed into a
-	 * list of Node objects, so can then iterate throughout them with a for loop
-	 * In addition, sometimes the NodeList object contains blank #text fields
-	 * that need to be skipped to retrieve the proper objects relating to the
-	 * file.
+	 * Fires the changes made by restoring a snapshot to one of the lists of
+	 * the system. A Sub System that was not kept is reported as replaced if
+	 * one with the same name takes its place, and as removed otherwise.
+	 * Removals are reported first, from the end of the old list, then the
+	 * rest in the order of the new list
 	 * 
-	 * @param nodes
-	 *            - NodeList object representing the list of nodes to parse
-	 * @return List of Node objects representing the XML nodes
+	 * @param changedInPlace
+	 *            - kept Components that were changed in place, or null
 	 */
-	private List<Node> getNodesAsElementList(NodeList nodes) {
+	private <T extends Component> void fireRestoreChanges(List<T> oldList,
+			List<T> newList, Set<T> changedInPlace) {
+		Set<T> inNew = newIdentitySet(newList);
+		Set<T> inOld = newIdentitySet(oldList);
+
+		// Sub Systems that were not kept, by name, so they can be matched with
+		// their replacements. Link groups have no name, so are never matched
+		Map<String, T> replaced = new HashMap<String, T>();
+		for (T comp : oldList) {
+			if (!inNew.contains(comp) && comp instanceof SubSystem) {
+				replaced.put(comp.name, comp);
+			}
+		}
+		Set<String> newNames = new HashSet<String>();
+		for (T comp : newList) {
+			if (!inOld.contains(comp)) {
+				newNames.add(comp.name);
+			}
+		}
 
-		List<Node> actualNodes = new ArrayList<Node>();
-		for (int i = 0; i < nodes.getLength(); i++) {
-			Node n = nodes.item(i);
+		for (int i = oldList.size() - 1; i >= 0; i--) {
+			T comp = oldList.get(i);
+			if (!inNew.contains(comp)
+					&& (replaced.get(comp.name) != comp || !newNames
+							.contains(comp.name))) {
+				fireChange(new ModelChange(ChangeType.REMOVED, comp, null, i));
+			}
+		}
 
-			// Nodes will just have blank spaces, so skip these
-			if (n.getNodeName().equals("#text")) {
-				continue;
+		for (int i = 0; i < newList.size(); i++) {
+			T comp = newList.get(i);
+			if (!inOld.contains(comp)) {
+				T old = comp instanceof SubSystem ? replaced.get(comp.name) : null;
+				if (old != null) {
+					fireChange(new ModelChange(ChangeType.CHANGED, comp, old,
+							null, i));
+				} else {
+					fireChange(new ModelChange(ChangeType.ADDED, comp, null, i));
+				}
+			} else if (changedInPlace != null && changedInPlace.contains(comp)) {
+				fireChange(new ModelChange(ChangeType.CHANGED, comp, comp, null,
+						i));
 			}
-			actualNodes.add(n);
 		}
+	}
 
-		return actualNodes;
+	private static <T> Set<T> newIdentitySet(List<T> contents) {
+		Set<T> set = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+		set.addAll(contents);
+		return set;
+	}
+
+	/**
+	 * @return true if both lists hold the same objects in the same order
+	 */
+	private static boolean sameElements(List<?> a, List<?> b) {
+		if (a.size() != b.size()) {
+			return false;
+		}
+		for (int i = 0; i < a.size(); i++) {
+			if (a.get(i) != b.get(i)) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	/**
@@ -632,12 +1311,7 @@ public class GlobalSystem {
 	 *         name exists
 	 */
 	public SubSystem getSubSystem(String name) {
-		for (SubSystem s : subSystems) {
-			if (s.name.equals(name)) {
-				return s;
-			}
-		}
-		return null;
+		return subSystemIndex.get(name);
 	}
 
 }
@@ -2,6 +2,8 @@ package graphmodel;
 
 import graphelements.jgraphx.DrawComponent;
 
+import java.io.IOException;
+
 /**
  * This class represents an individual Link interface of a Sub System.
  * This is represented in the XML by the <Interface> tag. 
@@ -36,6 +38,15 @@ public class Link extends Component {
 		return subSystem;
 	}
 	
+	/**
+	 * This method sets the Sub System this interface belongs to. Used when the Sub System is only known once the
+	 * whole configuration file has been read
+	 */
+	protected void setSubSystem(SubSystem subSystem) {
+		this.subSystem = subSystem;
+		invalidateCaches();
+	}
+	
 	public String getLinkInterface() {
 		return linkInterface;
 	}
@@ -57,12 +68,16 @@ public class Link extends Component {
 	 * - Arguments needed
 	 */
 	@Override
-	public String generateXML() {
-		
-		String result = "<Interface SubSystem=\"" + subSystem.name + "\" Class=\"" + className
-				+ "\" Interface=\"" + linkInterface + "\" Args=\"" + args + "\"/>"; 
-		
-		return result;
+	public void writeXML(Appendable out) throws IOException {
+		out.append("<Interface SubSystem=\"");
+		writeAttributeValue(out, subSystem.name);
+		out.append("\" Class=\"");
+		writeAttributeValue(out, className);
+		out.append("\" Interface=\"");
+		writeAttributeValue(out, linkInterface);
+		out.append("\" Args=\"");
+		writeAttributeValue(out, args);
+		out.append("\"/>");
 	}
 
 	/**
@@ -74,6 +89,16 @@ public class Link extends Component {
 		return s == subSystem;
 	}
 	
+	@Override
+	public LinkSnapshot getSnapshot() {
+		return (LinkSnapshot) super.getSnapshot();
+	}
+	
+	@Override
+	protected LinkSnapshot createSnapshot() {
+		return new LinkSnapshot(this);
+	}
+	
 	@Override
 	public String getTypeAsString() {
 		return DrawComponent.INTERFACE_NAME;
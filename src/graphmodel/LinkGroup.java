@@ -2,6 +2,7 @@ package graphmodel;
 
 import graphelements.jgraphx.DrawComponent;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -34,6 +35,7 @@ public class LinkGroup extends Component {
 	 */
 	public void addLink(Link i) {
 		links.add(i);
+		i.setOwner(this);
 	}
 	
 	/**
@@ -47,7 +49,9 @@ public class LinkGroup extends Component {
 	
 	
 	public void removeLink(Link i) {
-		links.remove(i);
+		if (links.remove(i)) {
+			i.releaseOwner(this);
+		}
 	}
 	
 	/**
@@ -67,14 +71,15 @@ public class LinkGroup extends Component {
 	
 	
 	@Override
-	public String generateXML() {
-		StringBuilder result = new StringBuilder("<Link Type=\"" + this.type.code + "\">\n");
+	public void writeXML(Appendable out) throws IOException {
+		out.append("<Link Type=\"").append(this.type.code).append("\">\n");
 		
 		for (Link i : links) {
-			result.append("            " + i.generateXML() + "\n");
+			out.append("            ");
+			i.writeXML(out);
+			out.append("\n");
 		}
-		result.append("        </Link>\n");
-		return result.toString();		
+		out.append("        </Link>\n");
 	}
 	
 	/**
@@ -104,6 +109,20 @@ public class LinkGroup extends Component {
 		return links;
 	}
 	
+	@Override
+	public LinkGroupSnapshot getSnapshot() {
+		return (LinkGroupSnapshot) super.getSnapshot();
+	}
+	
+	@Override
+	protected LinkGroupSnapshot createSnapshot() {
+		List<LinkSnapshot> copies = new ArrayList<LinkSnapshot>(links.size());
+		for (Link i : links) {
+			copies.add(i.getSnapshot());
+		}
+		return new LinkGroupSnapshot(type, SystemSnapshot.freeze(copies));
+	}
+	
 	@Override
 	public String getTypeAsString() {
 		return DrawComponent.LINK_NAME;
@@ -0,0 +1,42 @@
+package graphmodel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class is an immutable copy of a group of Links.
+ *
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public final class LinkGroupSnapshot extends ComponentSnapshot {
+
+	private final LinkType type;
+	private final List<LinkSnapshot> links;
+
+	LinkGroupSnapshot(LinkType type, List<LinkSnapshot> links) {
+		super("");
+		this.type = type;
+		this.links = links;
+	}
+
+	public LinkType getLinkType() {
+		return type;
+	}
+
+	public List<LinkSnapshot> getLinks() {
+		return links;
+	}
+
+	/**
+	 * @return the names of the Sub Systems joined by this group, in the order of their interfaces
+	 */
+	public List<String> getInvolvedSubSystems() {
+		List<String> subSystems = new ArrayList<String>(links.size());
+		for (LinkSnapshot l : links) {
+			subSystems.add(l.getSubSystem());
+		}
+		return subSystems;
+	}
+
+}
@@ -0,0 +1,52 @@
+package graphmodel;
+
+/**
+ * This class is an immutable copy of a single Link interface. The Sub System is referred to by name.
+ *
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public final class LinkSnapshot extends ComponentSnapshot {
+
+	private final String subSystem;
+	private final String className;
+	private final String linkInterface;
+	private final String args;
+
+	LinkSnapshot(Link link) {
+		super(link.getName());
+		this.subSystem = link.getSubSystem() == null ? null : link.getSubSystem().getName();
+		this.className = link.getClassName();
+		this.linkInterface = link.getLinkInterface();
+		this.args = link.getArguments();
+	}
+
+	LinkSnapshot(String subSystem, String className, String linkInterface, String args) {
+		// Named like the Link it copies
+		super(linkInterface + ", " + args);
+		this.subSystem = subSystem;
+		this.className = className;
+		this.linkInterface = linkInterface;
+		this.args = args;
+	}
+
+	/**
+	 * @return name of the Sub System this interface belongs to, or null if it has none
+	 */
+	public String getSubSystem() {
+		return subSystem;
+	}
+
+	public String getClassName() {
+		return className;
+	}
+
+	public String getLinkInterface() {
+		return linkInterface;
+	}
+
+	public String getArguments() {
+		return args;
+	}
+
+}
@@ -0,0 +1,65 @@
+package graphmodel;
+
+/**
+ * This class describes a place where both sides of a ModelMerge changed the same thing in different ways. The merged
+ * model keeps our side of every conflict.
+ *
+ * A conflict is either over an attribute of an element, or over a whole element that one side removed while the
+ * other changed it, or that both sides added with different contents that could not be merged. For a whole element
+ * the attribute is null, and each value is "added", "changed" or "removed", or null for a base that did not have it.
+ *
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public final class MergeConflict {
+
+	private final String path;
+	private final String attribute;
+	private final String baseValue;
+	private final String oursValue;
+	private final String theirsValue;
+
+	MergeConflict(String path, String attribute, String baseValue, String oursValue, String theirsValue) {
+		this.path = path;
+		this.attribute = attribute;
+		this.baseValue = baseValue;
+		this.oursValue = oursValue;
+		this.theirsValue = theirsValue;
+	}
+
+	/**
+	 * @return path of the element in conflict, as described in ModelDiff
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * @return the attribute in conflict, null if the conflict is over the whole element
+	 */
+	public String getAttribute() {
+		return attribute;
+	}
+
+	public String getBaseValue() {
+		return baseValue;
+	}
+
+	public String getOursValue() {
+		return oursValue;
+	}
+
+	public String getTheirsValue() {
+		return theirsValue;
+	}
+
+	@Override
+	public String toString() {
+		if (attribute == null) {
+			return "! " + path + ": ours " + oursValue + ", theirs " + theirsValue;
+		}
+		return "! " + path + " " + attribute + ": base " + baseValue + ", ours " + oursValue + ", theirs "
+				+ theirsValue;
+	}
+
+}
@@ -0,0 +1,75 @@
+package graphmodel;
+
+/**
+ * This class describes a single change made to the object model: which Component was added, removed or changed,
+ * the Component that contains it, and where it sits within that container.
+ * 
+ * The parent of a Sub System or Link group is null, as they sit directly in the GlobalSystem.
+ * The parent of a Clock Domain is its Sub System, the parent of a Signal is its Clock Domain, and the parent of
+ * a Channel is the Clock Domain it comes from.
+ * 
+ * The index is the position of the Component within its parent's list of that kind of Component, for example the
+ * Clock Domain's input Signals for an input Signal. For a removal, it is the position the Component had before it
+ * was removed.
+ * 
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public class ModelChange {
+
+	private ChangeType type;
+	private Component component;
+	private Component oldComponent;
+	private Component parent;
+	private int index;
+
+	public ModelChange(ChangeType type, Component component, Component parent, int index) {
+		this(type, component, null, parent, index);
+	}
+
+	/**
+	 * Constructor for a CHANGED change, where an existing Component has been replaced by an edited one
+	 */
+	public ModelChange(ChangeType type, Component component, Component oldComponent, Component parent, int index) {
+		this.type = type;
+		this.component = component;
+		this.oldComponent = oldComponent;
+		this.parent = parent;
+		this.index = index;
+	}
+
+	public ChangeType getType() {
+		return type;
+	}
+
+	/**
+	 * @return the Component that was added or removed, or the edited Component that replaced the old one
+	 */
+	public Component getComponent() {
+		return component;
+	}
+
+	/**
+	 * @return the Component that was replaced for a CHANGED change, null otherwise
+	 */
+	public Component getOldComponent() {
+		return oldComponent;
+	}
+
+	/**
+	 * @return the Component containing the changed Component, null for Sub Systems and Link groups
+	 */
+	public Component getParent() {
+		return parent;
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	@Override
+	public String toString() {
+		return type + " " + component.getTypeAsString() + " " + component + " at " + index + " in " + parent;
+	}
+
+}
@@ -0,0 +1,41 @@
+package graphmodel;
+
+import java.awt.event.ActionEvent;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This is the event sent to the listeners of the GlobalSystem when Components are added, removed or changed.
+ * Its action command is GlobalSystem.MODEL_CHANGED_EVENT, so listeners that only check the command keep working,
+ * while listeners that want to update themselves incrementally can retrieve the list of changes that were made.
+ * 
+ * MODEL_CREATED_EVENT and MODEL_CLEARED_EVENT are still sent as plain ActionEvents, as they replace the whole model.
+ * 
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public class ModelChangeEvent extends ActionEvent {
+
+	private List<ModelChange> changes;
+
+	public ModelChangeEvent(GlobalSystem source, List<ModelChange> changes) {
+		super(source, 0, GlobalSystem.MODEL_CHANGED_EVENT);
+		this.changes = Collections.unmodifiableList(changes);
+	}
+
+	/**
+	 * @return the changes made to the model, in the order they were made. An empty list means the details of the
+	 * change are not known, so listeners should refresh completely
+	 */
+	public List<ModelChange> getChanges() {
+		return changes;
+	}
+
+	/**
+	 * @return the GlobalSystem that was changed
+	 */
+	public GlobalSystem getSystem() {
+		return (GlobalSystem) getSource();
+	}
+
+}
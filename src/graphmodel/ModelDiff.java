@@ -0,0 +1,428 @@
+package graphmodel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class compares two models and lists the differences between them as an edit script of ModelEdits, which
+ * turns the first model into the second.
+ *
+ * Elements are matched by their path rather than by their position, so the order of Signals, parameters and the
+ * other lists in the XML files makes no difference. Paths are made of the following parts joined with "/":
+ * - the name of a Sub System
+ * - the name of a Clock Domain inside it
+ * - "in:" or "out:" followed by the name of an input or output Signal of that Clock Domain
+ * - "ch-out:" followed by the name of an output Channel on its source Clock Domain, or "ch-in:" followed by the name
+ *   of an input Channel on its destination Clock Domain
+ * - "link:" followed by the type of a Link group and the interfaces in it, each written as SubSystem.interface,
+ *   and then one of those interfaces
+ * For example "SS1/CD2/in:speed" is the input Signal "speed" of Clock Domain "CD2" in Sub System "SS1".
+ *
+ * Each level is matched through a hash map, so comparing takes time in proportion to the size of the models. Copies
+ * shared between two snapshots of the same system are skipped without being looked into, so comparing two versions
+ * from a ModelHistory only takes time in proportion to the edits between them.
+ *
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public class ModelDiff {
+
+	static final String INPUT_SIGNAL = "in:";
+	static final String OUTPUT_SIGNAL = "out:";
+	static final String OUTPUT_CHANNEL = "ch-out:";
+	static final String INPUT_CHANNEL = "ch-in:";
+	static final String LINK_GROUP = "link:";
+
+	static final String SCHEDULER_ATTRIBUTE = "Scheduler";
+	static final String LOCAL_ATTRIBUTE = "Local";
+	static final String CLASS_ATTRIBUTE = "Class";
+	static final String TO_ATTRIBUTE = "To";
+	static final String FROM_ATTRIBUTE = "From";
+	static final String ARGS_ATTRIBUTE = "Args";
+
+	private List<ModelEdit> edits;
+
+	// Set when only whether the two sides differ is wanted, so comparing stops at the first difference
+	private boolean firstOnly;
+
+	/**
+	 * Compares the current models of two systems. Must be called on the thread that edits them
+	 * @param from - system holding the model the edit script starts from
+	 * @param to - system holding the model the edit script ends at
+	 */
+	public ModelDiff(GlobalSystem from, GlobalSystem to) {
+		this(from.getSnapshot(), to.getSnapshot());
+	}
+
+	/**
+	 * Compares two snapshots, which can be of different systems
+	 * @param from - model the edit script starts from
+	 * @param to - model the edit script ends at
+	 */
+	public ModelDiff(SystemSnapshot from, SystemSnapshot to) {
+		edits = new ArrayList<ModelEdit>();
+		if (from != to) {
+			compareSubSystems(from.getSubSystems(), to.getSubSystems());
+			compareLinkGroups(from.getLinkGroups(), to.getLinkGroups());
+		}
+	}
+
+	private ModelDiff() {
+		edits = new ArrayList<ModelEdit>();
+		firstOnly = true;
+	}
+
+	/**
+	 * @return the edit script, in the order the elements are found in the two models
+	 */
+	public List<ModelEdit> getEdits() {
+		return Collections.unmodifiableList(edits);
+	}
+
+	/**
+	 * @return true if the two models are the same
+	 */
+	public boolean isEmpty() {
+		return edits.isEmpty();
+	}
+
+	/**
+	 * @return the edit script, one edit on each line
+	 */
+	@Override
+	public String toString() {
+		StringBuilder out = new StringBuilder();
+		for (ModelEdit edit : edits) {
+			out.append(edit).append('\n');
+		}
+		return out.toString();
+	}
+
+	/**
+	 * @return true if the two copies, either of which can be null, describe the same element. They must be copies
+	 *         of the same kind of Component, found at the same path
+	 */
+	static boolean sameContent(ComponentSnapshot a, ComponentSnapshot b) {
+		if (a == b) {
+			return true;
+		}
+		if (a == null || b == null) {
+			return false;
+		}
+
+		ModelDiff diff = new ModelDiff();
+		if (a instanceof SubSystemSnapshot) {
+			diff.compareSubSystem((SubSystemSnapshot) a, (SubSystemSnapshot) b);
+		} else if (a instanceof ClockDomainSnapshot) {
+			diff.compareClockDomain("", (ClockDomainSnapshot) a, (ClockDomainSnapshot) b);
+		} else if (a instanceof SignalSnapshot) {
+			diff.compareSignal("", (SignalSnapshot) a, (SignalSnapshot) b);
+		} else if (a instanceof ChannelSnapshot) {
+			ChannelSnapshot ch = (ChannelSnapshot) a;
+			ChannelSnapshot other = (ChannelSnapshot) b;
+			return equal(ch.getName(), other.getName()) && equal(ch.getToName(), other.getToName())
+					&& equal(ch.getFromClockDomain(), other.getFromClockDomain())
+					&& equal(ch.getToClockDomain(), other.getToClockDomain());
+		} else if (a instanceof LinkGroupSnapshot) {
+			diff.compareLinkGroup("", (LinkGroupSnapshot) a, (LinkGroupSnapshot) b);
+		} else if (a instanceof LinkSnapshot) {
+			diff.compareLink("", (LinkSnapshot) a, (LinkSnapshot) b);
+		}
+		return diff.edits.isEmpty();
+	}
+
+	// COMPARING EACH LEVEL
+
+	private void compareSubSystems(List<SubSystemSnapshot> from, List<SubSystemSnapshot> to) {
+		Map<String, SubSystemSnapshot> toIndex = byName(to);
+		for (SubSystemSnapshot sub : from) {
+			SubSystemSnapshot other = toIndex.get(sub.getName());
+			if (other == null) {
+				add(ChangeType.REMOVED, sub.getName(), sub);
+			} else {
+				compareSubSystem(sub, other);
+			}
+		}
+		Map<String, SubSystemSnapshot> fromIndex = byName(from);
+		for (SubSystemSnapshot sub : to) {
+			if (!fromIndex.containsKey(sub.getName())) {
+				add(ChangeType.ADDED, sub.getName(), sub);
+			}
+		}
+	}
+
+	private void compareSubSystem(SubSystemSnapshot from, SubSystemSnapshot to) {
+		if (from == to) {
+			return;
+		}
+		String path = from.getName();
+		compareAttribute(path, SCHEDULER_ATTRIBUTE, from.getSchedulerClass(), to.getSchedulerClass(), to);
+		compareAttribute(path, LOCAL_ATTRIBUTE, Boolean.toString(from.isLocal()), Boolean.toString(to.isLocal()), to);
+
+		Map<String, ClockDomainSnapshot> toIndex = byName(to.getClockDomains());
+		for (ClockDomainSnapshot cd : from.getClockDomains()) {
+			if (done()) {
+				return;
+			}
+			ClockDomainSnapshot other = toIndex.get(cd.getName());
+			if (other == null) {
+				add(ChangeType.REMOVED, path(path, cd.getName()), cd);
+			} else {
+				compareClockDomain(path(path, cd.getName()), cd, other);
+			}
+		}
+		Map<String, ClockDomainSnapshot> fromIndex = byName(from.getClockDomains());
+		for (ClockDomainSnapshot cd : to.getClockDomains()) {
+			if (!fromIndex.containsKey(cd.getName())) {
+				add(ChangeType.ADDED, path(path, cd.getName()), cd);
+			}
+		}
+	}
+
+	private void compareClockDomain(String path, ClockDomainSnapshot from, ClockDomainSnapshot to) {
+		if (from == to) {
+			return;
+		}
+		compareAttribute(path, CLASS_ATTRIBUTE, from.getClassName(), to.getClassName(), to);
+		compareSignals(path, INPUT_SIGNAL, from.getInputSignals(), to.getInputSignals());
+		compareSignals(path, OUTPUT_SIGNAL, from.getOutputSignals(), to.getOutputSignals());
+		compareChannels(path, true, from.getOutputChannels(), to.getOutputChannels());
+		compareChannels(path, false, from.getInputChannels(), to.getInputChannels());
+	}
+
+	private void compareSignals(String path, String prefix, List<SignalSnapshot> from, List<SignalSnapshot> to) {
+		if (from == to || done()) {
+			return;
+		}
+		Map<String, SignalSnapshot> toIndex = byName(to);
+		for (SignalSnapshot s : from) {
+			SignalSnapshot other = toIndex.get(s.getName());
+			if (other == null) {
+				add(ChangeType.REMOVED, path(path, prefix + s.getName()), s);
+			} else {
+				compareSignal(path(path, prefix + s.getName()), s, other);
+			}
+		}
+		Map<String, SignalSnapshot> fromIndex = byName(from);
+		for (SignalSnapshot s : to) {
+			if (!fromIndex.containsKey(s.getName())) {
+				add(ChangeType.ADDED, path(path, prefix + s.getName()), s);
+			}
+		}
+	}
+
+	private void compareSignal(String path, SignalSnapshot from, SignalSnapshot to) {
+		if (from == to) {
+			return;
+		}
+		SignalSchema schema = from.getSchema();
+		if (schema == to.getSchema()) {
+			// Schemas are shared, so the same schema means the values are in the same order
+			for (int i = 0; i < schema.size(); i++) {
+				compareAttribute(path, schema.getKey(i), from.getParameter(i), to.getParameter(i), to);
+			}
+			return;
+		}
+
+		for (int i = 0; i < schema.size(); i++) {
+			compareAttribute(path, schema.getKey(i), from.getParameter(i), to.getParameter(schema.getKey(i)), to);
+		}
+		SignalSchema toSchema = to.getSchema();
+		for (int i = 0; i < toSchema.size(); i++) {
+			if (schema.indexOf(toSchema.getKey(i)) == -1) {
+				compareAttribute(path, toSchema.getKey(i), null, to.getParameter(i), to);
+			}
+		}
+	}
+
+	/**
+	 * Output Channels are matched by their name and compared by the end they lead to, input Channels by their name
+	 * on the destination and compared by the end they come from
+	 */
+	private void compareChannels(String path, boolean output, List<ChannelSnapshot> from, List<ChannelSnapshot> to) {
+		if (from == to || done()) {
+			return;
+		}
+		String prefix = output ? OUTPUT_CHANNEL : INPUT_CHANNEL;
+		String attribute = output ? TO_ATTRIBUTE : FROM_ATTRIBUTE;
+
+		Map<String, ChannelSnapshot> toIndex = byChannelName(to, output);
+		for (ChannelSnapshot ch : from) {
+			String name = channelName(ch, output);
+			ChannelSnapshot other = toIndex.get(name);
+			if (other == null) {
+				add(ChangeType.REMOVED, path(path, prefix + name), ch);
+			} else {
+				compareAttribute(path(path, prefix + name), attribute, channelEnd(ch, output),
+						channelEnd(other, output), other);
+			}
+		}
+		Map<String, ChannelSnapshot> fromIndex = byChannelName(from, output);
+		for (ChannelSnapshot ch : to) {
+			String name = channelName(ch, output);
+			if (!fromIndex.containsKey(name)) {
+				add(ChangeType.ADDED, path(path, prefix + name), ch);
+			}
+		}
+	}
+
+	private void compareLinkGroups(List<LinkGroupSnapshot> from, List<LinkGroupSnapshot> to) {
+		Map<String, LinkGroupSnapshot> toIndex = byGroupKey(to);
+		for (LinkGroupSnapshot group : from) {
+			String path = LINK_GROUP + groupKey(group);
+			LinkGroupSnapshot other = toIndex.get(groupKey(group));
+			if (other == null) {
+				add(ChangeType.REMOVED, path, group);
+			} else {
+				compareLinkGroup(path, group, other);
+			}
+		}
+		Map<String, LinkGroupSnapshot> fromIndex = byGroupKey(from);
+		for (LinkGroupSnapshot group : to) {
+			if (!fromIndex.containsKey(groupKey(group))) {
+				add(ChangeType.ADDED, LINK_GROUP + groupKey(group), group);
+			}
+		}
+	}
+
+	/**
+	 * The groups are matched by the interfaces in them, so only the details of each interface can differ
+	 */
+	private void compareLinkGroup(String path, LinkGroupSnapshot from, LinkGroupSnapshot to) {
+		if (from == to) {
+			return;
+		}
+		if (!groupKey(from).equals(groupKey(to))) {
+			compareAttribute(path, "Interfaces", groupKey(from), groupKey(to), to);
+			return;
+		}
+		List<LinkSnapshot> fromLinks = sortedLinks(from);
+		List<LinkSnapshot> toLinks = sortedLinks(to);
+		for (int i = 0; i < fromLinks.size(); i++) {
+			LinkSnapshot l = fromLinks.get(i);
+			compareLink(path(path, linkKey(l)), l, toLinks.get(i));
+		}
+	}
+
+	private void compareLink(String path, LinkSnapshot from, LinkSnapshot to) {
+		compareAttribute(path, CLASS_ATTRIBUTE, from.getClassName(), to.getClassName(), to);
+		compareAttribute(path, ARGS_ATTRIBUTE, from.getArguments(), to.getArguments(), to);
+	}
+
+	private void compareAttribute(String path, String attribute, String from, String to, ComponentSnapshot element) {
+		if (!equal(from, to)) {
+			edits.add(new ModelEdit(ChangeType.CHANGED, path, attribute, from, to, element));
+		}
+	}
+
+	private void add(ChangeType type, String path, ComponentSnapshot element) {
+		edits.add(new ModelEdit(type, path, null, null, null, element));
+	}
+
+	private boolean done() {
+		return firstOnly && !edits.isEmpty();
+	}
+
+	// KEYS AND PATHS, ALSO USED BY ModelMerge
+
+	static String path(String parent, String name) {
+		return parent.length() == 0 ? name : parent + "/" + name;
+	}
+
+	static boolean equal(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+	/**
+	 * @return the name of an output Channel on its source, or of an input Channel on its destination
+	 */
+	static String channelName(ChannelSnapshot ch, boolean output) {
+		return output ? ch.getName() : ch.getToName();
+	}
+
+	/**
+	 * @return the other end of a Channel, written as ClockDomain.name
+	 */
+	static String channelEnd(ChannelSnapshot ch, boolean output) {
+		if (output) {
+			return ch.getToClockDomain() + "." + ch.getToName();
+		}
+		return ch.getFromClockDomain() + "." + ch.getName();
+	}
+
+	/**
+	 * @return the type of the group and the interfaces in it, which identifies the group. The interfaces are sorted,
+	 *         so the order they are listed in makes no difference
+	 */
+	static String groupKey(LinkGroupSnapshot group) {
+		StringBuilder key = new StringBuilder(group.getLinkType().getCode());
+		key.append('[');
+		List<LinkSnapshot> links = sortedLinks(group);
+		for (int i = 0; i < links.size(); i++) {
+			if (i > 0) {
+				key.append(',');
+			}
+			key.append(linkKey(links.get(i)));
+		}
+		return key.append(']').toString();
+	}
+
+	/**
+	 * @return the interfaces of the group sorted by their keys, so the interfaces of two groups with the same key
+	 *         line up
+	 */
+	static List<LinkSnapshot> sortedLinks(LinkGroupSnapshot group) {
+		List<LinkSnapshot> links = new ArrayList<LinkSnapshot>(group.getLinks());
+		Collections.sort(links, new Comparator<LinkSnapshot>() {
+			@Override
+			public int compare(LinkSnapshot a, LinkSnapshot b) {
+				return linkKey(a).compareTo(linkKey(b));
+			}
+		});
+		return links;
+	}
+
+	static String linkKey(LinkSnapshot link) {
+		return link.getSubSystem() + "." + link.getLinkInterface();
+	}
+
+	/**
+	 * @return the elements by name. If names are repeated, the first element with the name is kept
+	 */
+	static <T extends ComponentSnapshot> Map<String, T> byName(List<T> elements) {
+		Map<String, T> index = new HashMap<String, T>(elements.size() * 2);
+		for (T element : elements) {
+			if (!index.containsKey(element.getName())) {
+				index.put(element.getName(), element);
+			}
+		}
+		return index;
+	}
+
+	static Map<String, ChannelSnapshot> byChannelName(List<ChannelSnapshot> channels, boolean output) {
+		Map<String, ChannelSnapshot> index = new HashMap<String, ChannelSnapshot>(channels.size() * 2);
+		for (ChannelSnapshot ch : channels) {
+			String name = channelName(ch, output);
+			if (!index.containsKey(name)) {
+				index.put(name, ch);
+			}
+		}
+		return index;
+	}
+
+	static Map<String, LinkGroupSnapshot> byGroupKey(List<LinkGroupSnapshot> groups) {
+		Map<String, LinkGroupSnapshot> index = new HashMap<String, LinkGroupSnapshot>(groups.size() * 2);
+		for (LinkGroupSnapshot group : groups) {
+			String key = groupKey(group);
+			if (!index.containsKey(key)) {
+				index.put(key, group);
+			}
+		}
+		return index;
+	}
+
+}
@@ -0,0 +1,84 @@
+package graphmodel;
+
+/**
+ * This class is a single step of the edit script found by ModelDiff: an element that was added or removed, or an
+ * attribute of an element that changed.
+ *
+ * Elements are identified by their path, the names of the elements containing them and their own name joined with
+ * "/", as described in ModelDiff.
+ *
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public final class ModelEdit {
+
+	private final ChangeType type;
+	private final String path;
+	private final String attribute;
+	private final String oldValue;
+	private final String newValue;
+	private final ComponentSnapshot element;
+
+	ModelEdit(ChangeType type, String path, String attribute, String oldValue, String newValue,
+			ComponentSnapshot element) {
+		this.type = type;
+		this.path = path;
+		this.attribute = attribute;
+		this.oldValue = oldValue;
+		this.newValue = newValue;
+		this.element = element;
+	}
+
+	/**
+	 * @return ADDED or REMOVED for a whole element, CHANGED for one of its attributes
+	 */
+	public ChangeType getType() {
+		return type;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * @return the attribute that changed, null if a whole element was added or removed
+	 */
+	public String getAttribute() {
+		return attribute;
+	}
+
+	/**
+	 * @return the value of the attribute before the change, null if it did not have one
+	 */
+	public String getOldValue() {
+		return oldValue;
+	}
+
+	/**
+	 * @return the value of the attribute after the change, null if it no longer has one
+	 */
+	public String getNewValue() {
+		return newValue;
+	}
+
+	/**
+	 * @return copy of the element added, removed or changed. For a removed element this is the old copy, otherwise
+	 *         the new one
+	 */
+	public ComponentSnapshot getElement() {
+		return element;
+	}
+
+	@Override
+	public String toString() {
+		switch (type) {
+		case ADDED:
+			return "+ " + path;
+		case REMOVED:
+			return "- " + path;
+		default:
+			return "~ " + path + " " + attribute + ": " + oldValue + " -> " + newValue;
+		}
+	}
+
+}
@@ -0,0 +1,408 @@
+package graphmodel;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class keeps the undo history of a GlobalSystem as a list of model versions.
+ *
+ * Each version is a SystemSnapshot taken after an edit (or a batch of edits made between beginUpdate() and
+ * endUpdate()). Snapshots share the copies of the Components that did not change, so each version only costs the
+ * memory of the Components its edit touched, the lists holding them and the chunks of the Clock Domain lists they
+ * are in. Undo, redo and jumping to any other version look the version up by
+ * position and restore it with GlobalSystem.restoreSnapshot(), which only rebuilds what differs from the current
+ * model.
+ *
+ * The memory used by the history is estimated from the Components each version does not share with the one before
+ * it. When the estimate goes over the memory budget, the oldest versions are dropped until it fits again, each
+ * freeing the Components it does not share with the version after it. Both estimates are made when a version is
+ * recorded, and only look into what the edit changed. Loading or clearing the model starts a new history.
+ *
+ * Listeners are sent a VERSION_RESTORED_EVENT after the model is moved to another version, and a
+ * HISTORY_CHANGED_EVENT whenever the versions or the current position change.
+ *
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public class ModelHistory implements ActionListener {
+
+	public static final String VERSION_RESTORED_EVENT = "Version Restored";
+	public static final String HISTORY_CHANGED_EVENT = "History Changed";
+
+	public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+	// Rough sizes in bytes of the copies of each kind of Component, not counting the lists they hold
+	private static final int SYSTEM_COST = 64;
+	private static final int SUB_SYSTEM_COST = 64;
+	private static final int CLOCK_DOMAIN_COST = 64;
+	private static final int SIGNAL_COST = 48;
+	private static final int VALUE_COST = 8;
+	private static final int CHANNEL_COST = 56;
+	private static final int LINK_GROUP_COST = 48;
+	private static final int LINK_COST = 56;
+	// Rough sizes in bytes of a list or array, and of each element in it
+	private static final int LIST_COST = 32;
+	private static final int SLOT_COST = 8;
+	// Rough size in bytes of each chunk of a Clock Domain list, in the array of chunks and the array of their starts
+	private static final int CHUNK_COST = SLOT_COST + 4;
+
+	private GlobalSystem system;
+
+	// Versions from oldest to newest, the estimated bytes each does not share with the one before, the estimated
+	// bytes each does not share with the one after, and the position of the version the model is at
+	private List<SystemSnapshot> versions;
+	private List<Long> costs;
+	private List<Long> dropCosts;
+	private int current;
+
+	private long memoryUsed;
+	private long memoryBudget;
+
+	// Set while a version is being restored, so the changes it makes are not recorded as a new version
+	private boolean restoring;
+
+	private List<ActionListener> listeners;
+
+	/**
+	 * Creates a history of the given system with the default memory budget, starting at its current model
+	 * @param system - system to record
+	 */
+	public ModelHistory(GlobalSystem system) {
+		this(system, DEFAULT_MEMORY_BUDGET);
+	}
+
+	/**
+	 * Creates a history of the given system, starting at its current model
+	 * @param system - system to record
+	 * @param memoryBudget - estimated bytes the history may use before the oldest versions are dropped
+	 */
+	public ModelHistory(GlobalSystem system, long memoryBudget) {
+		this.system = system;
+		this.memoryBudget = memoryBudget;
+		versions = new ArrayList<SystemSnapshot>();
+		costs = new ArrayList<Long>();
+		dropCosts = new ArrayList<Long>();
+		listeners = new ArrayList<ActionListener>();
+
+		reset();
+		system.addListener(this);
+	}
+
+	/**
+	 * Add an ActionListener that is sent a VERSION_RESTORED_EVENT or HISTORY_CHANGED_EVENT
+	 * @param l - ActionListener object to add
+	 */
+	public void addListener(ActionListener l) {
+		listeners.add(l);
+	}
+
+	/**
+	 * Records the model as a new version when it changes
+	 */
+	@Override
+	public void actionPerformed(ActionEvent event) {
+		if (restoring) {
+			return;
+		}
+
+		String command = event.getActionCommand();
+		if (command.equals(GlobalSystem.MODEL_CREATED_EVENT) || command.equals(GlobalSystem.MODEL_CLEARED_EVENT)) {
+			reset();
+			fireEvent(HISTORY_CHANGED_EVENT);
+		} else if (command.equals(GlobalSystem.MODEL_CHANGED_EVENT)) {
+			record();
+		}
+	}
+
+	public boolean canUndo() {
+		return current > 0;
+	}
+
+	public boolean canRedo() {
+		return current < versions.size() - 1;
+	}
+
+	/**
+	 * Moves the model back to the version before the current one
+	 */
+	public void undo() {
+		if (!canUndo()) {
+			throw new RuntimeException("Undo: there is nothing to undo");
+		}
+		goTo(current - 1);
+	}
+
+	/**
+	 * Moves the model forward to the version after the current one
+	 */
+	public void redo() {
+		if (!canRedo()) {
+			throw new RuntimeException("Redo: there is nothing to redo");
+		}
+		goTo(current + 1);
+	}
+
+	/**
+	 * Moves the model to any version in the history. Versions after the given one are kept, so they can be returned
+	 * to until the next edit.
+	 * @param index - position of the version, from 0 for the oldest kept
+	 */
+	public void goTo(int index) {
+		if (index < 0 || index >= versions.size()) {
+			throw new RuntimeException("Go To Version: there is no version " + index + " in the history");
+		}
+		if (index == current) {
+			return;
+		}
+
+		restoring = true;
+		try {
+			system.restoreSnapshot(versions.get(index));
+		} finally {
+			restoring = false;
+		}
+		current = index;
+		fireEvent(VERSION_RESTORED_EVENT);
+		fireEvent(HISTORY_CHANGED_EVENT);
+	}
+
+	/**
+	 * @return the number of versions in the history
+	 */
+	public int getNumVersions() {
+		return versions.size();
+	}
+
+	/**
+	 * @return position of the version the model is at
+	 */
+	public int getCurrentIndex() {
+		return current;
+	}
+
+	/**
+	 * @param index - position of the version
+	 * @return the version at the given position
+	 */
+	public SystemSnapshot getVersion(int index) {
+		return versions.get(index);
+	}
+
+	/**
+	 * @return estimated bytes used by the versions in the history
+	 */
+	public long getMemoryUsed() {
+		return memoryUsed;
+	}
+
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	/**
+	 * Sets the estimated bytes the history may use, dropping the oldest versions if it is already over
+	 * @param memoryBudget - new budget in bytes
+	 */
+	public void setMemoryBudget(long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+		if (trim()) {
+			fireEvent(HISTORY_CHANGED_EVENT);
+		}
+	}
+
+	/**
+	 * Starts a new history at the current model
+	 */
+	private void reset() {
+		versions.clear();
+		costs.clear();
+		dropCosts.clear();
+		SystemSnapshot first = system.getSnapshot();
+		long cost = estimateCost(first, null);
+		versions.add(first);
+		costs.add(cost);
+		dropCosts.add(cost);
+		current = 0;
+		memoryUsed = cost;
+	}
+
+	private void record() {
+		SystemSnapshot version = system.getSnapshot();
+		SystemSnapshot previous = versions.get(current);
+		if (version == previous) {
+			return;
+		}
+
+		// An edit after an undo replaces the versions that could have been redone
+		while (versions.size() > current + 1) {
+			versions.remove(versions.size() - 1);
+			memoryUsed -= costs.remove(costs.size() - 1);
+			dropCosts.remove(dropCosts.size() - 1);
+		}
+
+		long cost = estimateCost(version, previous);
+		versions.add(version);
+		costs.add(cost);
+		// The previous version now has one after it, which holds on to what they share. Until the new version has
+		// one after it too, dropping it would free all it added
+		dropCosts.set(current, estimateCost(previous, version));
+		dropCosts.add(cost);
+		memoryUsed += cost;
+		current++;
+
+		trim();
+		fireEvent(HISTORY_CHANGED_EVENT);
+	}
+
+	/**
+	 * Drops the oldest versions while the history is over its budget, each freeing what it does not share with the
+	 * version after it. The current version is always kept
+	 * @return true if any versions were dropped
+	 */
+	private boolean trim() {
+		boolean trimmed = false;
+		while (memoryUsed > memoryBudget && current > 0) {
+			versions.remove(0);
+			memoryUsed -= dropCosts.remove(0);
+			// What the new oldest version shared with the one dropped is still counted in memoryUsed, so its own
+			// cost is left as it was
+			costs.remove(0);
+			current--;
+			trimmed = true;
+		}
+		return trimmed;
+	}
+
+	/**
+	 * Only the Sub Systems that changed are looked into, and in them only the chunks of their Clock Domain lists that
+	 * are not shared with the previous version, so the estimate takes time in proportion to what the edit copied and
+	 * does not add to the memory held by the versions.
+	 * @param version - version to estimate
+	 * @param previous - version before it, or null to count the whole model
+	 * @return estimated bytes of the copies in the version that are not shared with the previous version
+	 */
+	private static long estimateCost(SystemSnapshot version, SystemSnapshot previous) {
+		// Every version has its own lists of Sub Systems and Link groups
+		long cost = SYSTEM_COST + 2 * LIST_COST
+				+ SLOT_COST * (version.getSubSystems().size() + version.getLinkGroups().size());
+
+		Map<String, SubSystemSnapshot> oldSubs = new HashMap<String, SubSystemSnapshot>();
+		if (previous != null) {
+			for (SubSystemSnapshot sub : previous.getSubSystems()) {
+				oldSubs.put(sub.getName(), sub);
+			}
+		}
+		for (SubSystemSnapshot sub : version.getSubSystems()) {
+			SubSystemSnapshot old = oldSubs.get(sub.getName());
+			if (sub != old) {
+				cost += SUB_SYSTEM_COST + estimateClockDomainsCost(sub, old);
+			}
+		}
+
+		List<LinkGroupSnapshot> oldGroups = previous == null ? null : previous.getLinkGroups();
+		for (int i = 0; i < version.getLinkGroups().size(); i++) {
+			LinkGroupSnapshot group = version.getLinkGroups().get(i);
+			if (oldGroups != null && i < oldGroups.size() && oldGroups.get(i) == group) {
+				continue;
+			}
+			cost += LINK_GROUP_COST + LIST_COST + (LINK_COST + SLOT_COST) * group.getLinks().size();
+		}
+		return cost;
+	}
+
+	/**
+	 * @param old - copy of the Sub System in the previous version, or null if it is new
+	 * @return estimated bytes of the Clock Domain list of the Sub System, and of the Clock Domains in it, that are not
+	 *         shared with the old copy
+	 */
+	private static long estimateClockDomainsCost(SubSystemSnapshot sub, SubSystemSnapshot old) {
+		ChunkedList<ClockDomainSnapshot> cds = ChunkedList.of(sub.getClockDomains());
+		// The arrays of chunks are copied whenever the list changes
+		long cost = 2 * LIST_COST + CHUNK_COST * cds.getNumChunks();
+
+		Set<Object[]> chunks = newIdentitySet();
+		for (int c = 0; c < cds.getNumChunks(); c++) {
+			chunks.add(cds.getChunk(c));
+		}
+		// The Clock Domains in the old chunks that are not shared, which are the only ones the edit can have replaced
+		Set<Object[]> oldChunks = newIdentitySet();
+		Set<Object> oldCds = newIdentitySet();
+		Map<String, ClockDomainSnapshot> oldByName = new HashMap<String, ClockDomainSnapshot>();
+		if (old != null) {
+			ChunkedList<ClockDomainSnapshot> oldList = ChunkedList.of(old.getClockDomains());
+			for (int c = 0; c < oldList.getNumChunks(); c++) {
+				Object[] chunk = oldList.getChunk(c);
+				oldChunks.add(chunk);
+				if (!chunks.contains(chunk)) {
+					for (Object cd : chunk) {
+						oldCds.add(cd);
+						oldByName.put(((ClockDomainSnapshot) cd).getName(), (ClockDomainSnapshot) cd);
+					}
+				}
+			}
+		}
+
+		for (int c = 0; c < cds.getNumChunks(); c++) {
+			Object[] chunk = cds.getChunk(c);
+			if (oldChunks.contains(chunk)) {
+				continue;
+			}
+			cost += LIST_COST + SLOT_COST * chunk.length;
+			for (Object element : chunk) {
+				if (!oldCds.contains(element)) {
+					ClockDomainSnapshot cd = (ClockDomainSnapshot) element;
+					cost += estimateCost(cd, oldByName.get(cd.getName()));
+				}
+			}
+		}
+		return cost;
+	}
+
+	/**
+	 * @param old - copy of the Clock Domain in the previous version, or null if it is new
+	 * @return estimated bytes of the copy of the Clock Domain, with its own lists, and of the Signals in it that are
+	 *         not shared with the old copy
+	 */
+	private static long estimateCost(ClockDomainSnapshot cd, ClockDomainSnapshot old) {
+		int numChannels = cd.getInputChannels().size() + cd.getOutputChannels().size();
+		return CLOCK_DOMAIN_COST + 4 * LIST_COST
+				+ estimateCost(cd.getInputSignals(), old == null ? null : old.getInputSignals())
+				+ estimateCost(cd.getOutputSignals(), old == null ? null : old.getOutputSignals())
+				+ (CHANNEL_COST + SLOT_COST) * numChannels;
+	}
+
+	/**
+	 * @return estimated bytes of the list of Signals, and of the Signals that are not shared with the same position
+	 *         in the old list
+	 */
+	private static long estimateCost(List<SignalSnapshot> signals, List<SignalSnapshot> oldSignals) {
+		long cost = SLOT_COST * signals.size();
+		for (int i = 0; i < signals.size(); i++) {
+			SignalSnapshot s = signals.get(i);
+			if (oldSignals != null && i < oldSignals.size() && oldSignals.get(i) == s) {
+				continue;
+			}
+			cost += SIGNAL_COST + VALUE_COST * s.getSchema().size();
+		}
+		return cost;
+	}
+
+	private static <T> Set<T> newIdentitySet() {
+		return Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+	}
+
+	private void fireEvent(String command) {
+		ActionEvent event = new ActionEvent(this, ActionEvent.ACTION_PERFORMED, command);
+		for (ActionListener l : listeners) {
+			l.actionPerformed(event);
+		}
+	}
+
+}
@@ -0,0 +1,547 @@
+package graphmodel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class merges two models that were both changed from a common base, such as two variants of the same
+ * deployment, keeping the changes made on both sides.
+ *
+ * Elements are matched by their path, as in ModelDiff. Where only one side changed an element, that side's element is
+ * taken. Where both sides changed it, the elements inside it are merged in the same way, down to single attributes
+ * and Signal parameters. Where both sides changed the same attribute differently, or one side removed an element the
+ * other changed, a MergeConflict is reported and our side is kept.
+ *
+ * Clock Domains and their Channels are merged separately, so one side can add a Channel to a Clock Domain the other
+ * side removed. Such a Channel is left out of the merged model, which could not be loaded with it, and is reported as
+ * a conflict over the whole Channel.
+ *
+ * The merged model is a SystemSnapshot sharing every unchanged copy with the inputs, with the version MERGED_VERSION.
+ * It can be put into a system with GlobalSystem.restoreSnapshot().
+ *
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public class ModelMerge {
+
+	public static final long MERGED_VERSION = -1;
+
+	private SystemSnapshot result;
+	private List<MergeConflict> conflicts;
+	// The Channel ends of each model looked at for dangling Channels, built the first time the model is looked at
+	private Map<SystemSnapshot, ChannelEnds> channelEnds = new IdentityHashMap<SystemSnapshot, ChannelEnds>();
+
+	/**
+	 * Merges the current models of three systems. Must be called on the thread that edits them
+	 * @param base - system holding the model both sides started from
+	 * @param ours - system holding our changes, kept where there is a conflict
+	 * @param theirs - system holding their changes
+	 */
+	public ModelMerge(GlobalSystem base, GlobalSystem ours, GlobalSystem theirs) {
+		this(base.getSnapshot(), ours.getSnapshot(), theirs.getSnapshot());
+	}
+
+	/**
+	 * Merges three snapshots, which can be of different systems
+	 * @param base - model both sides started from
+	 * @param ours - model with our changes, kept where there is a conflict
+	 * @param theirs - model with their changes
+	 */
+	public ModelMerge(SystemSnapshot base, SystemSnapshot ours, SystemSnapshot theirs) {
+		conflicts = new ArrayList<MergeConflict>();
+
+		if (ours == theirs || base == theirs) {
+			result = ours;
+		} else if (base == ours) {
+			result = theirs;
+		} else {
+			List<SubSystemSnapshot> subSystems = new SubSystemMerger().merge("", base.getSubSystems(),
+					ours.getSubSystems(), theirs.getSubSystems());
+			List<LinkGroupSnapshot> linkGroups = new LinkGroupMerger().merge("", base.getLinkGroups(),
+					ours.getLinkGroups(), theirs.getLinkGroups());
+			if (subSystems == ours.getSubSystems() && linkGroups == ours.getLinkGroups()) {
+				result = ours;
+			} else {
+				result = new SystemSnapshot(MERGED_VERSION, subSystems, linkGroups);
+				List<SubSystemSnapshot> connected = dropDanglingChannels(base, ours, theirs);
+				if (connected != subSystems) {
+					result = new SystemSnapshot(MERGED_VERSION, connected, linkGroups);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the merged model
+	 */
+	public SystemSnapshot getResult() {
+		return result;
+	}
+
+	/**
+	 * @return the conflicts found, in the order of the elements in our model
+	 */
+	public List<MergeConflict> getConflicts() {
+		return Collections.unmodifiableList(conflicts);
+	}
+
+	public boolean hasConflicts() {
+		return !conflicts.isEmpty();
+	}
+
+	/**
+	 * Merges a single attribute
+	 * @return the merged value, null if the attribute was removed
+	 */
+	private String pick(String path, String attribute, String base, String ours, String theirs) {
+		if (ModelDiff.equal(ours, theirs) || ModelDiff.equal(base, theirs)) {
+			return ours;
+		}
+		if (ModelDiff.equal(base, ours)) {
+			return theirs;
+		}
+		conflicts.add(new MergeConflict(path, attribute, base, ours, theirs));
+		return ours;
+	}
+
+	/**
+	 * Leaves out the Channels of the merged result that no longer have their other end, as the Clock Domain at that
+	 * end was removed, and reports each as a conflict. Channels that already had no other end in the side they were
+	 * taken from are kept as they were.
+	 * @return the merged Sub Systems, the same list as in the result if no Channel was left out
+	 */
+	private List<SubSystemSnapshot> dropDanglingChannels(SystemSnapshot base, SystemSnapshot ours,
+			SystemSnapshot theirs) {
+		List<SubSystemSnapshot> subSystems = new ArrayList<SubSystemSnapshot>(result.getSubSystems().size());
+		boolean changed = false;
+		for (SubSystemSnapshot sub : result.getSubSystems()) {
+			List<ClockDomainSnapshot> clockDomains = new ArrayList<ClockDomainSnapshot>(sub.getClockDomains().size());
+			boolean subChanged = false;
+			for (ClockDomainSnapshot cd : sub.getClockDomains()) {
+				String path = ModelDiff.path(sub.getName(), cd.getName());
+				List<ChannelSnapshot> outputs = keepConnected(path, cd, true, base, ours, theirs);
+				List<ChannelSnapshot> inputs = keepConnected(path, cd, false, base, ours, theirs);
+				if (outputs == cd.getOutputChannels() && inputs == cd.getInputChannels()) {
+					clockDomains.add(cd);
+				} else {
+					clockDomains.add(new ClockDomainSnapshot(cd.getName(), cd.getClassName(), cd.getInputSignals(),
+							cd.getOutputSignals(), inputs, outputs));
+					subChanged = true;
+				}
+			}
+			if (subChanged) {
+				subSystems.add(new SubSystemSnapshot(sub.getName(), sub.getSchedulerClass(), sub.isLocal(),
+						SystemSnapshot.freeze(clockDomains)));
+				changed = true;
+			} else {
+				subSystems.add(sub);
+			}
+		}
+		return changed ? SystemSnapshot.freeze(subSystems) : result.getSubSystems();
+	}
+
+	/**
+	 * @return the output or input Channels of the merged Clock Domain that still have their other end, the same list
+	 *         if they all do
+	 */
+	private List<ChannelSnapshot> keepConnected(String parent, ClockDomainSnapshot cd, boolean output,
+			SystemSnapshot base, SystemSnapshot ours, SystemSnapshot theirs) {
+		List<ChannelSnapshot> channels = output ? cd.getOutputChannels() : cd.getInputChannels();
+		List<ChannelSnapshot> kept = new ArrayList<ChannelSnapshot>(channels.size());
+		for (ChannelSnapshot ch : channels) {
+			if (isConnected(result, cd.getName(), ch, output)) {
+				kept.add(ch);
+				continue;
+			}
+			String key = ModelDiff.channelName(ch, output);
+			ChannelSnapshot oursCh = findChannel(ours, cd.getName(), key, output);
+			ChannelSnapshot theirsCh = findChannel(theirs, cd.getName(), key, output);
+			ChannelSnapshot from = oursCh != null ? oursCh : theirsCh;
+			SystemSnapshot side = oursCh != null ? ours : theirs;
+			if (from != null && !isConnected(side, cd.getName(), from, output)) {
+				kept.add(ch);
+				continue;
+			}
+			ChannelSnapshot baseCh = findChannel(base, cd.getName(), key, output);
+			conflicts.add(new MergeConflict(ModelDiff.path(parent, (output ? ModelDiff.OUTPUT_CHANNEL
+					: ModelDiff.INPUT_CHANNEL) + key), null, baseCh == null ? null : "present",
+					describe(baseCh, oursCh), describe(baseCh, theirsCh)));
+		}
+		return kept.size() == channels.size() ? channels : SystemSnapshot.freeze(kept);
+	}
+
+	/**
+	 * @return true if the Clock Domain at the other end of the Channel is in the model, and has the other end of it
+	 */
+	private boolean isConnected(SystemSnapshot model, String clockDomain, ChannelSnapshot ch, boolean output) {
+		ChannelEnds ends = channelEnds.get(model);
+		if (ends == null) {
+			ends = new ChannelEnds(model);
+			channelEnds.put(model, ends);
+		}
+		if (output) {
+			return ends.inputs.contains(ChannelEnds.key(clockDomain, ch.getName(), ch.getToClockDomain(),
+					ch.getToName()));
+		}
+		return ends.outputs.contains(ChannelEnds.key(ch.getFromClockDomain(), ch.getName(), clockDomain,
+				ch.getToName()));
+	}
+
+	/**
+	 * @return the output or input Channel of the Clock Domain with the given key, or null if the model has none
+	 */
+	private static ChannelSnapshot findChannel(SystemSnapshot model, String clockDomain, String key, boolean output) {
+		ClockDomainSnapshot cd = model.getClockDomain(clockDomain);
+		if (cd == null) {
+			return null;
+		}
+		for (ChannelSnapshot ch : output ? cd.getOutputChannels() : cd.getInputChannels()) {
+			if (ModelDiff.channelName(ch, output).equals(key)) {
+				return ch;
+			}
+		}
+		return null;
+	}
+
+	private static String describe(ComponentSnapshot base, ComponentSnapshot side) {
+		if (side == null) {
+			return "removed";
+		}
+		return base == null ? "added" : "changed";
+	}
+
+	/**
+	 * This class merges one of the lists of elements in a model, matching the elements by a key
+	 */
+	private abstract class Merger<T extends ComponentSnapshot> {
+
+		/**
+		 * @return the key the element is matched by
+		 */
+		abstract String key(T element);
+
+		/**
+		 * @return the part of the path naming the element
+		 */
+		String segment(T element) {
+			return key(element);
+		}
+
+		/**
+		 * Merges an element that both sides changed, and both still have
+		 * @param base - element in the base, null if both sides added it
+		 */
+		abstract T mergeChanged(String path, T base, T ours, T theirs);
+
+		/**
+		 * @return the merged list. Our list is returned if the merge leaves it as it was
+		 */
+		List<T> merge(String parent, List<T> base, List<T> ours, List<T> theirs) {
+			if (ours == theirs || base == theirs) {
+				return ours;
+			}
+			if (base == ours) {
+				return theirs;
+			}
+
+			Map<String, T> baseIndex = index(base);
+			Map<String, T> oursIndex = index(ours);
+			Map<String, T> theirsIndex = index(theirs);
+
+			List<T> merged = new ArrayList<T>(ours.size());
+			boolean changed = false;
+			for (T element : ours) {
+				String key = key(element);
+				T result = mergeElement(ModelDiff.path(parent, segment(element)), baseIndex.get(key), element,
+						theirsIndex.get(key));
+				if (result != null) {
+					merged.add(result);
+				}
+				changed |= result != element;
+			}
+			// Their new elements go after ours
+			for (T element : theirs) {
+				String key = key(element);
+				if (!oursIndex.containsKey(key)) {
+					T result = mergeElement(ModelDiff.path(parent, segment(element)), baseIndex.get(key), null,
+							element);
+					if (result != null) {
+						merged.add(result);
+						changed = true;
+					}
+				}
+			}
+			return changed ? SystemSnapshot.freeze(merged) : ours;
+		}
+
+		/**
+		 * @return the merged element, null if it was removed
+		 */
+		private T mergeElement(String path, T base, T ours, T theirs) {
+			if (ModelDiff.sameContent(ours, theirs) || ModelDiff.sameContent(base, theirs)) {
+				return ours;
+			}
+			if (ModelDiff.sameContent(base, ours)) {
+				return theirs;
+			}
+			if (ours == null || theirs == null) {
+				conflicts.add(new MergeConflict(path, null, base == null ? null : "present", describe(base, ours),
+						describe(base, theirs)));
+				return ours;
+			}
+			return mergeChanged(path, base, ours, theirs);
+		}
+
+		private Map<String, T> index(List<T> elements) {
+			Map<String, T> index = new HashMap<String, T>(elements.size() * 2);
+			for (T element : elements) {
+				String key = key(element);
+				if (!index.containsKey(key)) {
+					index.put(key, element);
+				}
+			}
+			return index;
+		}
+
+	}
+
+	private class SubSystemMerger extends Merger<SubSystemSnapshot> {
+
+		@Override
+		String key(SubSystemSnapshot element) {
+			return element.getName();
+		}
+
+		@Override
+		SubSystemSnapshot mergeChanged(String path, SubSystemSnapshot base, SubSystemSnapshot ours,
+				SubSystemSnapshot theirs) {
+			String scheduler = pick(path, ModelDiff.SCHEDULER_ATTRIBUTE, base == null ? null
+					: base.getSchedulerClass(), ours.getSchedulerClass(), theirs.getSchedulerClass());
+			String local = pick(path, ModelDiff.LOCAL_ATTRIBUTE, base == null ? null : Boolean.toString(base
+					.isLocal()), Boolean.toString(ours.isLocal()), Boolean.toString(theirs.isLocal()));
+			List<ClockDomainSnapshot> clockDomains = new ClockDomainMerger().merge(path,
+					base == null ? Collections.<ClockDomainSnapshot> emptyList() : base.getClockDomains(),
+					ours.getClockDomains(), theirs.getClockDomains());
+
+			if (ModelDiff.equal(scheduler, ours.getSchedulerClass())
+					&& Boolean.parseBoolean(local) == ours.isLocal() && clockDomains == ours.getClockDomains()) {
+				return ours;
+			}
+			return new SubSystemSnapshot(ours.getName(), scheduler, Boolean.parseBoolean(local), clockDomains);
+		}
+
+	}
+
+	private class ClockDomainMerger extends Merger<ClockDomainSnapshot> {
+
+		@Override
+		String key(ClockDomainSnapshot element) {
+			return element.getName();
+		}
+
+		@Override
+		ClockDomainSnapshot mergeChanged(String path, ClockDomainSnapshot base, ClockDomainSnapshot ours,
+				ClockDomainSnapshot theirs) {
+			String className = pick(path, ModelDiff.CLASS_ATTRIBUTE, base == null ? null : base.getClassName(),
+					ours.getClassName(), theirs.getClassName());
+			List<SignalSnapshot> inputs = new SignalMerger(ModelDiff.INPUT_SIGNAL).merge(path,
+					base == null ? Collections.<SignalSnapshot> emptyList() : base.getInputSignals(),
+					ours.getInputSignals(), theirs.getInputSignals());
+			List<SignalSnapshot> outputs = new SignalMerger(ModelDiff.OUTPUT_SIGNAL).merge(path,
+					base == null ? Collections.<SignalSnapshot> emptyList() : base.getOutputSignals(),
+					ours.getOutputSignals(), theirs.getOutputSignals());
+			List<ChannelSnapshot> outputChannels = new ChannelMerger(true).merge(path,
+					base == null ? Collections.<ChannelSnapshot> emptyList() : base.getOutputChannels(),
+					ours.getOutputChannels(), theirs.getOutputChannels());
+			List<ChannelSnapshot> inputChannels = new ChannelMerger(false).merge(path,
+					base == null ? Collections.<ChannelSnapshot> emptyList() : base.getInputChannels(),
+					ours.getInputChannels(), theirs.getInputChannels());
+
+			if (ModelDiff.equal(className, ours.getClassName()) && inputs == ours.getInputSignals()
+					&& outputs == ours.getOutputSignals() && outputChannels == ours.getOutputChannels()
+					&& inputChannels == ours.getInputChannels()) {
+				return ours;
+			}
+			return new ClockDomainSnapshot(ours.getName(), className, inputs, outputs, inputChannels,
+					outputChannels);
+		}
+
+	}
+
+	private class SignalMerger extends Merger<SignalSnapshot> {
+
+		private String prefix;
+
+		SignalMerger(String prefix) {
+			this.prefix = prefix;
+		}
+
+		@Override
+		String key(SignalSnapshot element) {
+			return element.getName();
+		}
+
+		@Override
+		String segment(SignalSnapshot element) {
+			return prefix + element.getName();
+		}
+
+		/**
+		 * Merges the parameters one at a time. Parameters keep our order, followed by any only they have
+		 */
+		@Override
+		SignalSnapshot mergeChanged(String path, SignalSnapshot base, SignalSnapshot ours, SignalSnapshot theirs) {
+			List<String> keys = new ArrayList<String>();
+			List<String> values = new ArrayList<String>();
+			boolean changed = false;
+
+			SignalSchema schema = ours.getSchema();
+			for (int i = 0; i < schema.size(); i++) {
+				String key = schema.getKey(i);
+				String value = pick(path, key, base == null ? null : base.getParameter(key), ours.getParameter(i),
+						theirs.getParameter(key));
+				if (value != null) {
+					keys.add(key);
+					values.add(value);
+				}
+				changed |= !ModelDiff.equal(value, ours.getParameter(i));
+			}
+			SignalSchema theirSchema = theirs.getSchema();
+			for (int i = 0; i < theirSchema.size(); i++) {
+				String key = theirSchema.getKey(i);
+				if (schema.indexOf(key) == -1) {
+					String value = pick(path, key, base == null ? null : base.getParameter(key), null,
+							theirs.getParameter(i));
+					if (value != null) {
+						keys.add(key);
+						values.add(value);
+						changed = true;
+					}
+				}
+			}
+
+			if (!changed) {
+				return ours;
+			}
+			return new SignalSnapshot(ours.getName(), ours.getType(),
+					SignalSchema.of(keys.toArray(new String[keys.size()])), values.toArray(new String[values.size()]));
+		}
+
+	}
+
+	private class ChannelMerger extends Merger<ChannelSnapshot> {
+
+		private boolean output;
+
+		ChannelMerger(boolean output) {
+			this.output = output;
+		}
+
+		@Override
+		String key(ChannelSnapshot element) {
+			return ModelDiff.channelName(element, output);
+		}
+
+		@Override
+		String segment(ChannelSnapshot element) {
+			return (output ? ModelDiff.OUTPUT_CHANNEL : ModelDiff.INPUT_CHANNEL) + key(element);
+		}
+
+		/**
+		 * A Channel only has its other end to merge, so both sides changing it is always a conflict
+		 */
+		@Override
+		ChannelSnapshot mergeChanged(String path, ChannelSnapshot base, ChannelSnapshot ours,
+				ChannelSnapshot theirs) {
+			conflicts.add(new MergeConflict(path, output ? ModelDiff.TO_ATTRIBUTE : ModelDiff.FROM_ATTRIBUTE,
+					base == null ? null : ModelDiff.channelEnd(base, output), ModelDiff.channelEnd(ours, output),
+					ModelDiff.channelEnd(theirs, output)));
+			return ours;
+		}
+
+	}
+
+	private class LinkGroupMerger extends Merger<LinkGroupSnapshot> {
+
+		@Override
+		String key(LinkGroupSnapshot element) {
+			return ModelDiff.groupKey(element);
+		}
+
+		@Override
+		String segment(LinkGroupSnapshot element) {
+			return ModelDiff.LINK_GROUP + key(element);
+		}
+
+		/**
+		 * Groups are matched by the interfaces in them, so the interfaces line up and only their details are merged
+		 */
+		@Override
+		LinkGroupSnapshot mergeChanged(String path, LinkGroupSnapshot base, LinkGroupSnapshot ours,
+				LinkGroupSnapshot theirs) {
+			// The interfaces are lined up by their keys, and the merged ones kept in the order of ours
+			List<LinkSnapshot> baseLinks = base == null ? null : ModelDiff.sortedLinks(base);
+			List<LinkSnapshot> ourLinks = ModelDiff.sortedLinks(ours);
+			List<LinkSnapshot> theirLinks = ModelDiff.sortedLinks(theirs);
+			Map<LinkSnapshot, LinkSnapshot> merged = new IdentityHashMap<LinkSnapshot, LinkSnapshot>();
+			for (int i = 0; i < ourLinks.size(); i++) {
+				LinkSnapshot b = baseLinks == null ? null : baseLinks.get(i);
+				LinkSnapshot o = ourLinks.get(i);
+				LinkSnapshot t = theirLinks.get(i);
+				String linkPath = ModelDiff.path(path, ModelDiff.linkKey(o));
+				String className = pick(linkPath, ModelDiff.CLASS_ATTRIBUTE, b == null ? null : b.getClassName(),
+						o.getClassName(), t.getClassName());
+				String args = pick(linkPath, ModelDiff.ARGS_ATTRIBUTE, b == null ? null : b.getArguments(),
+						o.getArguments(), t.getArguments());
+				if (ModelDiff.equal(className, o.getClassName()) && ModelDiff.equal(args, o.getArguments())) {
+					merged.put(o, o);
+				} else {
+					merged.put(o, new LinkSnapshot(o.getSubSystem(), className, o.getLinkInterface(), args));
+				}
+			}
+			List<LinkSnapshot> links = new ArrayList<LinkSnapshot>(ours.getLinks().size());
+			for (LinkSnapshot o : ours.getLinks()) {
+				links.add(merged.get(o));
+			}
+			return new LinkGroupSnapshot(ours.getLinkType(), SystemSnapshot.freeze(links));
+		}
+
+	}
+
+	/**
+	 * The ends of every Channel in a model, each written as the source Clock Domain, the name on the source, the
+	 * destination Clock Domain and the name on the destination, so a Channel's other end is found without scanning
+	 * the Channels of the Clock Domain at that end
+	 */
+	private static class ChannelEnds {
+
+		private Set<List<String>> outputs = new HashSet<List<String>>();
+		private Set<List<String>> inputs = new HashSet<List<String>>();
+
+		ChannelEnds(SystemSnapshot model) {
+			for (SubSystemSnapshot sub : model.getSubSystems()) {
+				for (ClockDomainSnapshot cd : sub.getClockDomains()) {
+					for (ChannelSnapshot ch : cd.getOutputChannels()) {
+						outputs.add(key(cd.getName(), ch.getName(), ch.getToClockDomain(), ch.getToName()));
+					}
+					for (ChannelSnapshot ch : cd.getInputChannels()) {
+						inputs.add(key(ch.getFromClockDomain(), ch.getName(), cd.getName(), ch.getToName()));
+					}
+				}
+			}
+		}
+
+		static List<String> key(String from, String name, String to, String toName) {
+			return Arrays.asList(from, name, to, toName);
+		}
+
+	}
+
+}
@@ -2,7 +2,11 @@ package graphmodel;
 
 import graphelements.jgraphx.DrawComponent;
 
-import java.util.Hashtable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * This class represents the Signal construct in the SystemJ language.
@@ -10,7 +14,12 @@ import java.util.Hashtable;
  * - the name of the Signal
  * - the class that houses its implementation
  * - the type of Signal (input or output)
- * - a Hashtable containing all the parameters for this Signal
+ * - all the parameters for this Signal, in the order they are written in the XML
+ * 
+ * The class is stored as one of the parameters, under "Class", so it keeps its position among them.
+ * The keys of the parameters are held in a SignalSchema shared with every other Signal that has the same keys, and
+ * the values in an array in the same order. Values are interned, as the same ones tend to appear on many Signals.
+ * The array is replaced rather than changed when a parameter changes, so it can be handed out without copying.
  * 
  * TODO: Add a error checking for empty fields, and maybe even possibly checking if the fields entered are correct
  * 
@@ -19,14 +28,53 @@ import java.util.Hashtable;
  */
 public class Signal extends Component {
 
-	private Hashtable<String, String> parameters;
+	private static final String CLASS_KEY = "Class";
+
+	private IOType type;
+	private SignalSchema schema;
+	private String[] values;
 	
-	public Signal (String name, String className, IOType type,Hashtable<String, String> params) {
+	/**
+	 * Creates a Signal with the given class followed by the given parameters, in the order the Map lists them
+	 */
+	public Signal (String name, String className, IOType type, Map<String, String> params) {
+		super(name);
+		this.type = type;
+		
+		String[] keys = new String[params.size() + 1];
+		String[] vals = new String[params.size() + 1];
+		keys[0] = CLASS_KEY;
+		vals[0] = className;
+		int n = 1;
+		for (Map.Entry<String, String> param : params.entrySet()) {
+			// The class is given separately, and the type is a field of its own
+			if (!param.getKey().equals(CLASS_KEY) && !param.getKey().equals("Type")) {
+				keys[n] = param.getKey();
+				vals[n] = param.getValue();
+				n++;
+			}
+		}
+		this.schema = SignalSchema.of(Arrays.copyOf(keys, n));
+		this.values = intern(Arrays.copyOf(vals, n));
+	}
+	
+	/**
+	 * Creates a Signal whose parameters are already laid out against a shared schema, as done when reading a file
+	 * @param schema - keys of the parameters, which should include "Class"
+	 * @param values - values of the parameters, in the same order as the keys. The array is kept by the Signal
+	 */
+	protected Signal(String name, IOType type, SignalSchema schema, String[] values) {
 		super(name);
-		parameters = params;
-		// TODO: Is it necessary putting these fields in the hashtable? Or better to have them as separate fields?
-		parameters.put("Class", className);
-		parameters.put("Type", type.getCode());
+		this.type = type;
+		this.schema = schema;
+		this.values = intern(values);
+	}
+	
+	private static String[] intern(String[] values) {
+		for (int i = 0; i < values.length; i++) {
+			values[i] = values[i] == null ? "" : values[i].intern();
+		}
+		return values;
 	}
 	
 	/**
@@ -34,72 +82,118 @@ public class Signal extends Component {
 	 * @return
 	 */
 	public IOType getType() {
-		String code = parameters.get("Type");
-		// As the type is saved as a String, can't return directly
-		if (code.equals("i")) {
-			return IOType.INPUT;
-		} else {
-			return IOType.OUTPUT;
-		}
+		return type;
 	}
 	
 	/**
-	 * Add in another parameter to the signal, given its key and value
+	 * Add in another parameter to the signal, given its key and value. If the Signal already has a parameter with
+	 * this key, its value is changed instead
 	 * @param key 
 	 * @param value
 	 */
 	public void addParameter(String key, String value) {
-		parameters.put(key, value);
+		int index = schema.indexOf(key);
+		if (index == -1) {
+			String[] newValues = Arrays.copyOf(values, values.length + 1);
+			newValues[values.length] = value == null ? "" : value.intern();
+			schema = schema.with(key);
+			values = newValues;
+			invalidateCaches();
+		} else {
+			changeExistingParameter(key, value);
+		}
 	}
 	
 	/**
 	 * Change an existing parameter contained within the Signal. It will replace the value currently stored under the
-	 * given key with the new value provided
+	 * given key with the new value provided, keeping its position
 	 * 
 	 * @param key - the key of the value that is wanting to be changed
 	 * @param value - the new value to store in the given key
 	 */
 	public void changeExistingParameter(String key, String value) {
-		// remove existing value
-		parameters.remove(key);
-		//replace with new value
-		parameters.put(key, value);
+		int index = schema.indexOf(key);
+		if (index == -1) {
+			addParameter(key, value);
+		} else {
+			String[] newValues = values.clone();
+			newValues[index] = value == null ? "" : value.intern();
+			values = newValues;
+			invalidateCaches();
+		}
 	}
 	
 	public String getClassName() {
-		return parameters.get("Class");
+		String className = getParameter(CLASS_KEY);
+		return className == null ? "" : className;
+	}
+	
+	/**
+	 * @return the value of the parameter with the given key, null if this Signal does not have it
+	 */
+	public String getParameter(String key) {
+		int index = schema.indexOf(key);
+		return index == -1 ? null : values[index];
+	}
+	
+	/**
+	 * @return the value of the parameter at the given position of this Signal's schema
+	 */
+	protected String getParameter(int index) {
+		return values[index];
+	}
+	
+	/**
+	 * @return the shared schema holding the keys of this Signal's parameters
+	 */
+	public SignalSchema getSchema() {
+		return schema;
 	}
 	
 	/**
 	 * 
-	 * @return a Hashtable containing all the parameters of the Signal.
+	 * @return all the parameters of the Signal, including its Class, in the order they are written in the XML.
+	 * The Map is a copy that cannot be changed; use addParameter() or changeExistingParameter() instead
 	 */
-	public Hashtable<String, String> getParameters() {
-		return parameters;
+	public Map<String, String> getParameters() {
+		Map<String, String> params = new LinkedHashMap<String, String>();
+		for (int i = 0; i < values.length; i++) {
+			params.put(schema.getKey(i), values[i]);
+		}
+		return Collections.unmodifiableMap(params);
 	}
 
 	/**
 	 * Method inherited from Component. This method implements the XML generation per Clock Domain
 	 * The fields are ordered:
 	 * - name of the Signal
-	 * - name of the class with the implementation
-	 * - all the parameters of the Signal
+	 * - all the parameters of the Signal, including the name of the class with the implementation
 	 * 
 	 * The input/output type is declared by the prefix of the <Signal> tag. It can be <oSignal> or <iSignal>
 	 */
 	@Override
-	public String generateXML() {
-		StringBuilder result = new StringBuilder("<" + parameters.get("Type") + "Signal ");
-		result.append("Name=\"" + this.name + "\" ");
-		for (String key : parameters.keySet()) {
-			if (!key.equals("Type")) {
-				result.append(" " + key + "=" + "\"" + parameters.get(key) + "\"");
-			}
+	public void writeXML(Appendable out) throws IOException {
+		out.append("<").append(type.getCode()).append("Signal ");
+		out.append("Name=\"");
+		writeAttributeValue(out, this.name);
+		out.append("\" ");
+		for (int i = 0; i < values.length; i++) {
+			out.append(" ").append(schema.getKey(i)).append("=\"");
+			writeAttributeValue(out, values[i]);
+			out.append("\"");
 		}
-		result.append("/>");
-		
-		return result.toString();
-		
+		out.append("/>");
+	}
+	
+	@Override
+	public SignalSnapshot getSnapshot() {
+		return (SignalSnapshot) super.getSnapshot();
+	}
+	
+	@Override
+	protected SignalSnapshot createSnapshot() {
+		// The values array is replaced rather than changed, so the copy can share it
+		return new SignalSnapshot(name, type, schema, values);
 	}
 	
 	@Override
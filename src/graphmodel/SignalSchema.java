@@ -0,0 +1,118 @@
+package graphmodel;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class holds the ordered list of parameter keys of a Signal, such as Class, IP and Port.
+ * In a configuration, most Signals have the same keys in the same order, so each distinct list of keys is only kept
+ * once and shared by every Signal that uses it. The Signals themselves then only hold an array of values, in the
+ * same order as the keys.
+ *
+ * Schemas are never changed once created. Adding or removing a key gives a different schema.
+ *
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public final class SignalSchema implements Serializable {
+
+	// Every schema created so far, keyed by its list of keys, so equal schemas are the same object
+	private static final Map<List<String>, SignalSchema> SCHEMAS = new HashMap<List<String>, SignalSchema>();
+
+	private final String[] keys;
+
+	private SignalSchema(String[] keys) {
+		this.keys = keys;
+	}
+
+	/**
+	 * Returns the shared schema with the given keys, in the given order
+	 *
+	 * @param keys
+	 *            - parameter keys in the order they are written in the XML. The array is not kept
+	 * @return the schema for these keys
+	 */
+	public static SignalSchema of(String[] keys) {
+		List<String> key = Arrays.asList(keys);
+		synchronized (SCHEMAS) {
+			SignalSchema schema = SCHEMAS.get(key);
+			if (schema == null) {
+				String[] copy = new String[keys.length];
+				for (int i = 0; i < keys.length; i++) {
+					copy[i] = keys[i].intern();
+				}
+				schema = new SignalSchema(copy);
+				SCHEMAS.put(Arrays.asList(copy), schema);
+			}
+			return schema;
+		}
+	}
+
+	/**
+	 * @return true if this schema has exactly the first count keys of the given array, in the same order.
+	 *         Lets readers reuse the previous schema without building a lookup key for every Signal
+	 */
+	public boolean matches(String[] otherKeys, int count) {
+		if (count != keys.length) {
+			return false;
+		}
+		for (int i = 0; i < count; i++) {
+			if (!keys[i].equals(otherKeys[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of keys in this schema
+	 */
+	public int size() {
+		return keys.length;
+	}
+
+	/**
+	 * @return the key at the given position
+	 */
+	public String getKey(int index) {
+		return keys[index];
+	}
+
+	/**
+	 * @return the position of the given key, or -1 if it is not in this schema
+	 */
+	public int indexOf(String key) {
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i].equals(key)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the schema with the given key added after the keys of this one
+	 */
+	public SignalSchema with(String key) {
+		String[] newKeys = Arrays.copyOf(keys, keys.length + 1);
+		newKeys[keys.length] = key;
+		return of(newKeys);
+	}
+
+	/**
+	 * Schemas read back from a serialized model are swapped for the shared instance
+	 */
+	private Object readResolve() throws ObjectStreamException {
+		return of(keys);
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(keys);
+	}
+
+}
@@ -0,0 +1,63 @@
+package graphmodel;
+
+/**
+ * This class is an immutable copy of a Signal.
+ *
+ * The parameter values are held in the same array as the Signal held them when the copy was taken. Signals replace
+ * that array rather than change it, so it can be shared without copying.
+ *
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public final class SignalSnapshot extends ComponentSnapshot {
+
+	private final IOType type;
+	private final SignalSchema schema;
+	private final String[] values;
+
+	SignalSnapshot(String name, IOType type, SignalSchema schema, String[] values) {
+		super(name);
+		this.type = type;
+		this.schema = schema;
+		this.values = values;
+	}
+
+	public IOType getType() {
+		return type;
+	}
+
+	/**
+	 * @return the shared schema holding the keys of this Signal's parameters
+	 */
+	public SignalSchema getSchema() {
+		return schema;
+	}
+
+	/**
+	 * @return the value of the parameter with the given key, null if this Signal does not have it
+	 */
+	public String getParameter(String key) {
+		int index = schema.indexOf(key);
+		return index == -1 ? null : values[index];
+	}
+
+	/**
+	 * @return the value of the parameter at the given position of this Signal's schema
+	 */
+	public String getParameter(int index) {
+		return values[index];
+	}
+
+	/**
+	 * @return the values of the parameters in the order of the schema. The array is shared, so must not be changed
+	 */
+	String[] getValues() {
+		return values;
+	}
+
+	public String getClassName() {
+		String className = getParameter("Class");
+		return className == null ? "" : className;
+	}
+
+}
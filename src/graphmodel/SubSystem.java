@@ -1,8 +1,15 @@
 package graphmodel;
 
 import graphelements.jgraphx.DrawComponent;
+
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * This class represents the Sub System construct in the SystemJ language. It logically partitions the Clock Domains 
@@ -15,22 +22,49 @@ import java.util.List;
 public class SubSystem extends Component {
 	
   private List<ClockDomain> clockDomains;
+  // Clock Domains keyed by name, kept in step with the list above so name lookups do not scan it
+  private Map<String, ClockDomain> clockDomainIndex;
   private String schedulerClass;
   private boolean local=false;
+  
+  // The parts of the XML around the Clock Domains
+  private static final String CLOCK_DOMAIN_INDENT = "        ";
+  private static final String LINE_END = "\n";
+  private static final String SCHEDULER_END = "    </Scheduler>\n    </SubSystem>\n";
+  private static final String SUBSYSTEM_END = "    </SubSystem>\n";
+  // The XML in front of the Clock Domains, kept so the same String is given each time, as it never changes
+  private transient String xmlStart;
+  
+  // Copies of the Clock Domains as of the last snapshot, or null if the next one has to copy them all, and the Clock
+  // Domains changed since, so the next snapshot only replaces their copies and shares the rest of the list
+  private transient ChunkedList<ClockDomainSnapshot> clockDomainCopies;
+  private transient Set<ClockDomain> changedClockDomains;
+  // Position of each Clock Domain in the list, or null until it is next needed after a Clock Domain is removed
+  private transient Map<ClockDomain, Integer> positions;
 	
   public SubSystem(String name, String schedulerClass, String local) {
     super(name);
     clockDomains = new ArrayList<ClockDomain>();
+    clockDomainIndex = new HashMap<String, ClockDomain>();
     this.schedulerClass = schedulerClass;
     this.local = (Boolean.valueOf(local)).booleanValue();
   }
 	
   /**
-   * Add a Clock Domain to this Sub System
+   * Add a Clock Domain to this Sub System.
+   * Throws a RuntimeException if a Clock Domain with the same name is already in this Sub System
    * @param c
    */
   protected void addClockDomain(ClockDomain c) {
+    if (clockDomainIndex.containsKey(c.name)) {
+      throw new RuntimeException("Add Clock Domain: Sub System " + this.name + " already contains a Clock Domain named " + c.name);
+    }
     clockDomains.add(c);
+    clockDomainIndex.put(c.name, c);
+    if (positions != null) {
+      positions.put(c, clockDomains.size() - 1);
+    }
+    c.setOwner(this);
   }
 	
   /**
@@ -38,7 +72,18 @@ public class SubSystem extends Component {
    * @param c
    */
   protected void removeClockDomain(ClockDomain c) {
-    clockDomains.remove(c);
+    if (clockDomainIndex.get(c.name) == c) {
+      int index = getPosition(c);
+      clockDomains.remove(index);
+      clockDomainIndex.remove(c.name);
+      // The Clock Domains after it have moved up
+      positions = null;
+      if (clockDomainCopies != null && index < clockDomainCopies.size()) {
+        clockDomainCopies = clockDomainCopies.without(index);
+      }
+      getChangedClockDomains().remove(c);
+      c.releaseOwner(this);
+    }
   }
 	
   /**
@@ -47,22 +92,73 @@ public class SubSystem extends Component {
    * @return true if it is, false if not
    */
   public boolean containsClockDomain(ClockDomain cd) {
-    return clockDomains.contains(cd);
+    return cd != null && clockDomainIndex.get(cd.name) == cd;
   }
-	
+
+  /**
+   * @param cd
+   * @return the position of the given Clock Domain in this Sub System, or -1 if it is not in this Sub System
+   */
+  public int indexOfClockDomain(ClockDomain cd) {
+    return containsClockDomain(cd) ? getPosition(cd) : -1;
+  }
+
   /**
    * If a ClockDomain object has been edited, then a new object will be created representing a new ClockDomain.
-   * In order to preserve that change, replace the old Clock Domain with the new one
+   * In order to preserve that change, replace the old Clock Domain with the new one, keeping its position in the list.
+   * Throws a RuntimeException if the new name is already taken by another Clock Domain in this Sub System
    * @param oldCD
    * @param newCD
    */
   protected void replaceClockDomain(ClockDomain oldCD, ClockDomain newCD) {
     if (containsClockDomain(oldCD)) {
-      clockDomains.remove(oldCD);
-      clockDomains.add(newCD);
+      ClockDomain existing = clockDomainIndex.get(newCD.name);
+      if (existing != null && existing != oldCD) {
+        throw new RuntimeException("Change Component: Sub System " + this.name + " already contains a Clock Domain named " + newCD.name);
+      }
+      int index = getPosition(oldCD);
+      clockDomains.set(index, newCD);
+      clockDomainIndex.remove(oldCD.name);
+      clockDomainIndex.put(newCD.name, newCD);
+      positions.remove(oldCD);
+      positions.put(newCD, index);
+      getChangedClockDomains().remove(oldCD);
+      getChangedClockDomains().add(newCD);
+      oldCD.releaseOwner(this);
+      newCD.setOwner(this);
     }
   }
 	
+  /**
+   * @return the position of the given Clock Domain in this Sub System, which must contain it
+   */
+  private int getPosition(ClockDomain cd) {
+    if (positions == null) {
+      positions = new IdentityHashMap<ClockDomain, Integer>();
+      for (int i = 0; i < clockDomains.size(); i++) {
+        positions.put(clockDomains.get(i), i);
+      }
+    }
+    return positions.get(cd);
+  }
+  
+  private Set<ClockDomain> getChangedClockDomains() {
+    if (changedClockDomains == null) {
+      changedClockDomains = Collections.newSetFromMap(new IdentityHashMap<ClockDomain, Boolean>());
+    }
+    return changedClockDomains;
+  }
+  
+  /**
+   * Notes which Clock Domain changed, so only its copy is replaced in the next snapshot
+   */
+  @Override
+  protected void contentsChanged(Component child) {
+    if (child instanceof ClockDomain) {
+      getChangedClockDomains().add((ClockDomain) child);
+    }
+  }
+  
   /**
    * @return the number of Clock Domains in this SubSystem
    */
@@ -76,13 +172,7 @@ public class SubSystem extends Component {
    * @return
    */
   public ClockDomain getClockDomain(String name) {
-    for (ClockDomain cd : clockDomains) {
-      if (name.equals(cd.name)) {
-	return cd;
-      }
-    }
-		
-    return null;
+    return clockDomainIndex.get(name);
   }
 	
   /**
@@ -108,28 +198,111 @@ public class SubSystem extends Component {
    * It then iterates through all the ClockDomain objects in its list and appends that to its XML
    */
   @Override
-  public String generateXML() {
-    StringBuilder result;
-    if (local)
-      result = new StringBuilder("<SubSystem Name=\"" + this.name + "\" Local=\"" + this.local + "\">\n");
-    else result = new StringBuilder("<SubSystem Name=\"" + this.name + "\">\n");
-    // If a scheduler class has been specified, then include its tag. Else, do not.
-    if (!this.schedulerClass.equals("")) {
-      result.append("    <Scheduler Class=\"" + this.schedulerClass + "\">\n");
+  public void writeXML(Appendable out) throws IOException {
+    out.append(getXMLStart());
+    // Iterate through all the CLock Domains and write their XML
+    for (Component c : clockDomains) {
+      out.append(CLOCK_DOMAIN_INDENT);
+      c.writeXML(out);
+      out.append(LINE_END);
     }
-    // Iterate through all the CLock Domains and append their generated XML
+    out.append(getXMLEnd());
+  }
+  
+  /**
+   * Adds the XML of this Sub System to the given list in parts, as GlobalSystem.getXMLParts() returns it: the tags
+   * in front of the Clock Domains, the cached XML of each Clock Domain with the indentation around it, and the
+   * closing tags. Each part is the same String object as last time unless it changed.
+   */
+  void addXMLParts(List<String> parts) {
+    parts.add(getXMLStart());
     for (Component c : clockDomains) {
-      result.append("        " + c.generateXML() + "\n");
+      parts.add(CLOCK_DOMAIN_INDENT);
+      parts.add(c.getXML());
+      parts.add(LINE_END);
     }
-    // If there is a scheduler, then add its closing tag
-    if (!this.schedulerClass.equals("")) {
-      result.append("    </Scheduler>\n");
+    parts.add(getXMLEnd());
+  }
+  
+  /**
+   * @return the Sub System tag, and the Scheduler tag if a scheduler class has been specified
+   */
+  private String getXMLStart() {
+    if (xmlStart == null) {
+      StringBuilder out = new StringBuilder("<SubSystem Name=\"");
+      try {
+        writeAttributeValue(out, this.name);
+        if (local)
+          out.append("\" Local=\"").append(Boolean.toString(this.local));
+        out.append("\">\n");
+        // If a scheduler class has been specified, then include its tag. Else, do not.
+        if (!this.schedulerClass.equals("")) {
+          out.append("    <Scheduler Class=\"");
+          writeAttributeValue(out, this.schedulerClass);
+          out.append("\">\n");
+        }
+      } catch (IOException e) {
+        // StringBuilder never throws IOException
+        throw new RuntimeException(e);
+      }
+      xmlStart = out.toString();
     }
-    result.append("    </SubSystem>\n");
-		
-    return result.toString();
+    return xmlStart;
+  }
+  
+  /**
+   * @return the closing tags, including the Scheduler tag if there is a scheduler
+   */
+  private String getXMLEnd() {
+    return schedulerClass.equals("") ? SUBSYSTEM_END : SCHEDULER_END;
   }
 	
+  @Override
+  public SubSystemSnapshot getSnapshot() {
+    return (SubSystemSnapshot) super.getSnapshot();
+  }
+
+  /**
+   * Copies this Sub System, sharing the copies of its Clock Domains that have not changed. Only the copies of the
+   * Clock Domains changed or added since the last snapshot are put into its list, so the rest of the list is shared
+   * with it too and the cost follows the number of Clock Domains changed rather than the size of this Sub System.
+   */
+  @Override
+  protected SubSystemSnapshot createSnapshot() {
+    ChunkedList<ClockDomainSnapshot> copies = clockDomainCopies;
+    if (copies == null) {
+      List<ClockDomainSnapshot> all = new ArrayList<ClockDomainSnapshot>(clockDomains.size());
+      for (ClockDomain cd : clockDomains) {
+        all.add(cd.getSnapshot());
+      }
+      copies = ChunkedList.of(all);
+    } else {
+      for (ClockDomain cd : getChangedClockDomains()) {
+        // Clock Domains added since are copied onto the end below
+        int index = getPosition(cd);
+        if (index < copies.size()) {
+          copies = copies.with(index, cd.getSnapshot());
+        }
+      }
+      for (int i = copies.size(); i < clockDomains.size(); i++) {
+        copies = copies.withAdded(clockDomains.get(i).getSnapshot());
+      }
+    }
+    clockDomainCopies = copies;
+    getChangedClockDomains().clear();
+    return new SubSystemSnapshot(name, schedulerClass, local, copies);
+  }
+  
+  /**
+   * Takes the list of Clock Domain copies from the given copy as well, as this Sub System has just been rebuilt from it
+   */
+  @Override
+  void setSnapshot(ComponentSnapshot copy) {
+    super.setSnapshot(copy);
+    clockDomainCopies = ChunkedList.of(((SubSystemSnapshot) copy).getClockDomains());
+    getChangedClockDomains().clear();
+  }
+
   @Override
   public String getTypeAsString() {
     return DrawComponent.SUBSYSTEM_NAME;
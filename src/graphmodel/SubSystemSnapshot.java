@@ -0,0 +1,42 @@
+package graphmodel;
+
+import java.util.List;
+
+/**
+ * This class is an immutable copy of a Sub System and the Clock Domains in it.
+ *
+ * The Clock Domains are held in a ChunkedList, so the copy taken after an edit to one Clock Domain shares all the
+ * chunks of the list that the edit did not touch with the copy before it.
+ *
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public final class SubSystemSnapshot extends ComponentSnapshot {
+
+	private final String schedulerClass;
+	private final boolean local;
+	private final ChunkedList<ClockDomainSnapshot> clockDomains;
+
+	SubSystemSnapshot(String name, String schedulerClass, boolean local, List<ClockDomainSnapshot> clockDomains) {
+		super(name);
+		this.schedulerClass = schedulerClass;
+		this.local = local;
+		this.clockDomains = ChunkedList.of(clockDomains);
+	}
+
+	/**
+	 * @return String of the class name of the scheduler. "" if no scheduler class was specified
+	 */
+	public String getSchedulerClass() {
+		return schedulerClass;
+	}
+
+	public boolean isLocal() {
+		return local;
+	}
+
+	public List<ClockDomainSnapshot> getClockDomains() {
+		return clockDomains;
+	}
+
+}
@@ -0,0 +1,145 @@
+package graphmodel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class is an immutable copy of a whole GlobalSystem, taken with GlobalSystem.getSnapshot(). It lets
+ * validation, exporting, statistics and other analysis run on a worker thread against a consistent model while the
+ * user carries on editing the live one.
+ *
+ * Taking a snapshot only copies the Components that changed since the last one, along with the Components
+ * containing them. Everything else is shared with the previous snapshot, so the cost of a snapshot follows the size
+ * of the edit rather than the size of the model. The Clock Domains of a Sub System are kept in a ChunkedList, so even
+ * the list of a large Sub System is only copied in the chunk that changed.
+ *
+ * Each snapshot of a system has a version number, and a new number is given whenever the model has changed between
+ * two snapshots. After GlobalSystem.restoreSnapshot() the system's snapshot is the one it was restored to, with its
+ * earlier version. Two snapshots with the same version are the same object.
+ *
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public final class SystemSnapshot {
+
+	private final long version;
+	private final List<SubSystemSnapshot> subSystems;
+	private final List<LinkGroupSnapshot> linkGroups;
+
+	// Lookups by name, built the first time one is needed. Guarded by this snapshot
+	private Map<String, SubSystemSnapshot> subSystemIndex;
+	private Map<String, ClockDomainSnapshot> clockDomainIndex;
+	private Map<String, SubSystemSnapshot> clockDomainParents;
+
+	SystemSnapshot(long version, List<SubSystemSnapshot> subSystems, List<LinkGroupSnapshot> linkGroups) {
+		this.version = version;
+		this.subSystems = subSystems;
+		this.linkGroups = linkGroups;
+	}
+
+	/**
+	 * @return the version of the model this is a copy of
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	public List<SubSystemSnapshot> getSubSystems() {
+		return subSystems;
+	}
+
+	public List<LinkGroupSnapshot> getLinkGroups() {
+		return linkGroups;
+	}
+
+	/**
+	 * @return the Sub System with the given name, or null if there is none
+	 */
+	public SubSystemSnapshot getSubSystem(String name) {
+		buildIndexes();
+		return subSystemIndex.get(name);
+	}
+
+	/**
+	 * @return the Clock Domain with the given name, or null if there is none
+	 */
+	public ClockDomainSnapshot getClockDomain(String name) {
+		buildIndexes();
+		return clockDomainIndex.get(name);
+	}
+
+	/**
+	 * @return the Sub System containing the Clock Domain with the given name, or null if there is none
+	 */
+	public SubSystemSnapshot getSubSystemOf(String clockDomainName) {
+		buildIndexes();
+		return clockDomainParents.get(clockDomainName);
+	}
+
+	/**
+	 * @return every Clock Domain in the system, in the order of their Sub Systems
+	 */
+	public List<ClockDomainSnapshot> getAllClockDomains() {
+		List<ClockDomainSnapshot> all = new ArrayList<ClockDomainSnapshot>();
+		for (SubSystemSnapshot sub : subSystems) {
+			all.addAll(sub.getClockDomains());
+		}
+		return all;
+	}
+
+	/**
+	 * @return the number of Signals in the system
+	 */
+	public int getNumSignals() {
+		int count = 0;
+		for (SubSystemSnapshot sub : subSystems) {
+			for (ClockDomainSnapshot cd : sub.getClockDomains()) {
+				count += cd.getInputSignals().size() + cd.getOutputSignals().size();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return the number of Channels in the system, counted once each at their source
+	 */
+	public int getNumChannels() {
+		int count = 0;
+		for (SubSystemSnapshot sub : subSystems) {
+			for (ClockDomainSnapshot cd : sub.getClockDomains()) {
+				count += cd.getOutputChannels().size();
+			}
+		}
+		return count;
+	}
+
+	private synchronized void buildIndexes() {
+		if (subSystemIndex != null) {
+			return;
+		}
+		Map<String, SubSystemSnapshot> subs = new HashMap<String, SubSystemSnapshot>();
+		Map<String, ClockDomainSnapshot> cds = new HashMap<String, ClockDomainSnapshot>();
+		Map<String, SubSystemSnapshot> parents = new HashMap<String, SubSystemSnapshot>();
+		for (SubSystemSnapshot sub : subSystems) {
+			subs.put(sub.getName(), sub);
+			for (ClockDomainSnapshot cd : sub.getClockDomains()) {
+				cds.put(cd.getName(), cd);
+				parents.put(cd.getName(), sub);
+			}
+		}
+		clockDomainIndex = cds;
+		clockDomainParents = parents;
+		subSystemIndex = subs;
+	}
+
+	/**
+	 * Wraps the given list so it cannot be changed. Used for every list held by a snapshot
+	 */
+	static <T> List<T> freeze(List<T> list) {
+		return Collections.unmodifiableList(list);
+	}
+
+}
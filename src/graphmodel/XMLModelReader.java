@@ -0,0 +1,342 @@
+package graphmodel;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * This class reads a SystemJ XML configuration file into the object model in a
+ * single pass. It uses a StAX stream reader, so the file is never held in
+ * memory as a DOM tree; the Sub Systems, Clock Domains, Signals, Channels and
+ * Link groups are created directly as their tags are read.
+ *
+ * Channels and Link interfaces refer to Clock Domains and Sub Systems by name,
+ * and those may appear later in the file. So they are recorded as they are
+ * read, and resolved once the whole file has been read.
+ *
+ * The objects read are not added to any GlobalSystem. Once read() returns,
+ * they can be retrieved with getSubSystems() and getLinkGroups().
+ *
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public class XMLModelReader {
+
+	private List<SubSystem> subSystems;
+	private List<LinkGroup> linkGroups;
+
+	// Lookups for resolving the names used by Channels and Link interfaces
+	private Map<String, SubSystem> subSystemsByName;
+	private Map<String, ClockDomain> clockDomainsByName;
+
+	// Output Channels waiting to be resolved, in the order they were read:
+	// {source Clock Domain, name on source side, "ClockDomain.ChannelName",
+	// line number of the tag}
+	private List<String[]> pendingChannels;
+
+	// Link interfaces waiting for their Sub System to be resolved
+	private List<Link> pendingInterfaces;
+	private List<String> pendingInterfaceSubSystems;
+
+	// Schema of the last Signal read
+	private SignalSchema lastSchema;
+
+	public XMLModelReader() {
+		subSystems = new ArrayList<SubSystem>();
+		linkGroups = new ArrayList<LinkGroup>();
+		subSystemsByName = new HashMap<String, SubSystem>();
+		clockDomainsByName = new HashMap<String, ClockDomain>();
+		pendingChannels = new ArrayList<String[]>();
+		pendingInterfaces = new ArrayList<Link>();
+		pendingInterfaceSubSystems = new ArrayList<String>();
+	}
+
+	/**
+	 * Reads the given SystemJ XML configuration file
+	 *
+	 * @param file
+	 *            - the SystemJ XML configuration file
+	 */
+	public void read(File file) throws IOException, XMLStreamException {
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		try {
+			read(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads a SystemJ XML configuration from the given stream. The stream is
+	 * not closed. An IOException is thrown if two Sub Systems, two Clock
+	 * Domains, or two Channels on the same side of a Clock Domain have the
+	 * same name, as the model cannot hold them.
+	 *
+	 * @param in
+	 *            - stream containing the XML configuration
+	 */
+	public void read(InputStream in) throws IOException, XMLStreamException {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		// Configuration files have no need for DTDs or external entities
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,
+				false);
+
+		XMLStreamReader reader = factory.createXMLStreamReader(in);
+		try {
+			while (reader.hasNext()) {
+				if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+					String tag = reader.getLocalName();
+					if (tag.equals("SubSystem")) {
+						readSubSystem(reader);
+					} else if (tag.equals("Link")) {
+						readLinkGroup(reader);
+					}
+				}
+			}
+		} finally {
+			reader.close();
+		}
+
+		resolveChannels();
+		resolveInterfaces();
+	}
+
+	/**
+	 * @return the Sub Systems read, in the order they appear in the file
+	 */
+	public List<SubSystem> getSubSystems() {
+		return subSystems;
+	}
+
+	/**
+	 * @return the Link groups read, in the order they appear in the file
+	 */
+	public List<LinkGroup> getLinkGroups() {
+		return linkGroups;
+	}
+
+	/**
+	 * Reads a <SubSystem> tag, with the reader positioned on its start tag. All
+	 * Clock Domains are read first, as the optional <Scheduler> tag enclosing
+	 * them is needed to create the SubSystem object.
+	 */
+	private void readSubSystem(XMLStreamReader reader)
+			throws IOException, XMLStreamException {
+		String name = getAttribute(reader, "Name");
+		if (subSystemsByName.containsKey(name)) {
+			throw new IOException("Read Model: a Sub System named " + name
+					+ " appears more than once, at line "
+					+ reader.getLocation().getLineNumber());
+		}
+		String local = getAttribute(reader, "Local");
+		String schedulerClass = "";
+		List<ClockDomain> clockDomains = new ArrayList<ClockDomain>();
+
+		int depth = 1;
+		while (depth > 0) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				String tag = reader.getLocalName();
+				if (tag.equals("Scheduler")) {
+					// The Clock Domains are enclosed in this tag, so carry on
+					// reading inside it
+					schedulerClass = getAttribute(reader, "Class");
+					depth++;
+				} else {
+					// Any other tag in a Sub System is a Clock Domain
+					clockDomains.add(readClockDomain(reader));
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
+
+		SubSystem sub = new SubSystem(name, schedulerClass, local);
+		for (ClockDomain cd : clockDomains) {
+			sub.addClockDomain(cd);
+		}
+		subSystems.add(sub);
+		subSystemsByName.put(name, sub);
+	}
+
+	/**
+	 * Reads a <ClockDomain> tag along with its Signals, with the reader
+	 * positioned on its start tag. Output Channels are recorded to be resolved
+	 * later, and input Channels are skipped as their output side holds all the
+	 * information about them.
+	 */
+	private ClockDomain readClockDomain(XMLStreamReader reader)
+			throws IOException, XMLStreamException {
+		ClockDomain cd = new ClockDomain(getAttribute(reader, "Name"),
+				getAttribute(reader, "Class"));
+		if (clockDomainsByName.containsKey(cd.name)) {
+			throw new IOException("Read Model: a Clock Domain named "
+					+ cd.name + " appears more than once, at line "
+					+ reader.getLocation().getLineNumber());
+		}
+		clockDomainsByName.put(cd.name, cd);
+
+		int depth = 1;
+		while (depth > 0) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+				String tag = reader.getLocalName();
+				if (tag.equals("iSignal")) {
+					cd.addInputSignal(readSignal(reader, IOType.INPUT));
+				} else if (tag.equals("oSignal")) {
+					cd.addOutputSignal(readSignal(reader, IOType.OUTPUT));
+				} else if (tag.equals("oChannel")) {
+					pendingChannels.add(new String[] { cd.name,
+							getAttribute(reader, "Name"),
+							getAttribute(reader, "To"),
+							Integer.toString(reader.getLocation()
+									.getLineNumber()) });
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
+		return cd;
+	}
+
+	/**
+	 * Creates a Signal from the attributes of the current tag. Every attribute
+	 * other than Name is a parameter of the Signal, kept in the order they
+	 * appear in the file. A Signal without a Class is given an empty one.
+	 */
+	private Signal readSignal(XMLStreamReader reader, IOType type) {
+		String name = "";
+		int count = reader.getAttributeCount();
+		String[] keys = new String[count + 1];
+		String[] values = new String[count + 1];
+		int n = 0;
+		boolean hasClass = false;
+
+		for (int i = 0; i < count; i++) {
+			String key = reader.getAttributeLocalName(i);
+			String value = reader.getAttributeValue(i);
+			if (key.equals("Name")) {
+				name = value;
+			} else {
+				hasClass |= key.equals("Class");
+				keys[n] = key;
+				values[n] = value;
+				n++;
+			}
+		}
+		if (!hasClass) {
+			keys[n] = "Class";
+			values[n] = "";
+			n++;
+		}
+
+		// Signals next to each other almost always have the same keys, so
+		// try the last schema before looking it up
+		if (lastSchema == null || !lastSchema.matches(keys, n)) {
+			lastSchema = SignalSchema.of(Arrays.copyOf(keys, n));
+		}
+		return new Signal(name, type, lastSchema, Arrays.copyOf(values, n));
+	}
+
+	/**
+	 * Reads a <Link> tag and its <Interface> tags, with the reader positioned
+	 * on its start tag.
+	 */
+	private void readLinkGroup(XMLStreamReader reader)
+			throws XMLStreamException {
+		LinkGroup link = new LinkGroup(LinkType.getLinkType(getAttribute(
+				reader, "Type")));
+
+		int depth = 1;
+		while (depth > 0) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+				if (reader.getLocalName().equals("Interface")) {
+					// The Sub System is filled in once all Sub Systems are read
+					Link linkInterface = new Link(null, getAttribute(reader,
+							"Class"), getAttribute(reader, "Interface"),
+							getAttribute(reader, "Args"));
+					link.addLink(linkInterface);
+					pendingInterfaces.add(linkInterface);
+					pendingInterfaceSubSystems.add(getAttribute(reader,
+							"SubSystem"));
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
+		linkGroups.add(link);
+	}
+
+	/**
+	 * Creates the Channels recorded while reading. Channels that refer to a
+	 * Clock Domain that does not exist are left out. An IOException is thrown
+	 * if a Channel's name is already taken on either of its Clock Domains.
+	 */
+	private void resolveChannels() throws IOException {
+		for (String[] pending : pendingChannels) {
+			ClockDomain fromCD = clockDomainsByName.get(pending[0]);
+
+			// Destination clock domain and Channel name are in the format
+			// ClockDomain.ChannelName, so split into two to get info
+			String[] to = pending[2].split("\\.");
+			ClockDomain toCD = clockDomainsByName.get(to[0]);
+
+			if (fromCD != null && toCD != null && to.length > 1) {
+				if (fromCD.getOutputChannel(pending[1]) != null) {
+					throw new IOException("Read Model: Clock Domain "
+							+ fromCD.name
+							+ " has more than one output Channel named "
+							+ pending[1] + ", at line " + pending[3]);
+				}
+				if (toCD.getInputChannel(to[1]) != null) {
+					throw new IOException("Read Model: Clock Domain "
+							+ toCD.name
+							+ " has more than one input Channel named "
+							+ to[1] + ", at line " + pending[3]);
+				}
+				Channel ch = new Channel(pending[1], to[1], fromCD, toCD);
+				fromCD.addOutputChannel(ch);
+				toCD.addInputChannel(ch);
+			}
+		}
+		pendingChannels.clear();
+	}
+
+	/**
+	 * Sets the Sub System of every Link interface recorded while reading
+	 */
+	private void resolveInterfaces() {
+		for (int i = 0; i < pendingInterfaces.size(); i++) {
+			pendingInterfaces.get(i).setSubSystem(
+					subSystemsByName.get(pendingInterfaceSubSystems.get(i)));
+		}
+		pendingInterfaces.clear();
+		pendingInterfaceSubSystems.clear();
+	}
+
+	/**
+	 * @return the value of the attribute on the current tag, or "" if the tag
+	 *         does not have it
+	 */
+	private static String getAttribute(XMLStreamReader reader, String name) {
+		String value = reader.getAttributeValue(null, name);
+		return value == null ? "" : value;
+	}
+
+}
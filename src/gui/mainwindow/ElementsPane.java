@@ -26,7 +26,7 @@ import javax.swing.event.ChangeListener;
 public class ElementsPane extends JPanel implements ChangeListener {
 	
 	private JPanel buttonPanel;
-	private static ButtonGroup buttonGroup;
+	private ButtonGroup buttonGroup;
 	
 	
 	public ElementsPane(ActionListener[] canvas) {
@@ -149,7 +149,7 @@ public class ElementsPane extends JPanel implements ChangeListener {
 	/**
 	 * Clears the current selection in the buttons.
 	 */
-	public static void deselectButtons() {
+	public void deselectButtons() {
 		buttonGroup.clearSelection();
 	}
 
@@ -1,6 +1,16 @@
 package gui.mainwindow;
 
+import analysis.LoadEstimator;
+import analysis.RoutingTable;
+import analysis.Validator;
+import graphelements.jgraphx.ClockDomainGraph;
+import graphelements.jgraphx.ComponentGraph;
+import graphelements.jgraphx.DiagnosticOverlays;
+import graphelements.jgraphx.SubSystemGraph;
+import graphmodel.GlobalSystem;
+import graphmodel.ModelHistory;
 import gui.tabs.ClockDomainViewCanvas;
+import gui.tabs.ProblemsView;
 import gui.tabs.SubSystemViewCanvas;
 import gui.tabs.XMLView;
 
@@ -37,12 +47,20 @@ import java.util.List;
 public class MainApplication extends JFrame {
 
   private JPanel contentPane;
+  // The object model shown and edited in this window
+  private GlobalSystem system;
+  // Undo history of the model
+  private ModelHistory history;
   private PropertiesPanel propertiesPanel;
 
   private TopMenuBar menuBar;
   private ClockDomainViewCanvas clockDomainCanvas;
   private SubSystemViewCanvas subSystemCanvas;
   private XMLView xmlView;
+  private Validator validator;
+  private RoutingTable routingTable;
+  private LoadEstimator loadEstimator;
+  private ProblemsView problemsView;
 
   /**
    * Launch the application.
@@ -61,15 +79,28 @@ public class MainApplication extends JFrame {
   }
 
   /**
-   * Create the frame, and arrange all the components.
+   * Create the frame for the default system, and arrange all the components.
+   */
+  public MainApplication() {
+    this(GlobalSystem.getInstance());
+  }
+
+  /**
+   * Create the frame, and arrange all the components. Every view in the window is bound to the given system, so
+   * several windows can each work on their own model.
+   * @param system - the object model to show and edit in this window
    */
   //@SuppressWarnings("deprecation")
-public MainApplication() {
+public MainApplication(GlobalSystem system) {
+    this.system = system;
     setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
     setBounds(100, 100, 900, 600);
 
+    // Record the changes made to the model, so they can be undone
+    history = new ModelHistory(system);
+
     // Add the menu bar at the top. All options and fields can be specified in the TopMenuBar class
-    menuBar = new TopMenuBar();
+    menuBar = new TopMenuBar(system, history);
     setJMenuBar(menuBar);
     
     // Set the main content pane of the window.Gridbag Layout used, but for ease of placing components, use the Design view
@@ -83,8 +114,27 @@ public MainApplication() {
     contentPane.setLayout(gbl_contentPane);
 //gbl_contentPane.
     // Create the canvases for the Clock Domain and Sub System views.
-    clockDomainCanvas = new ClockDomainViewCanvas();
-    subSystemCanvas = new SubSystemViewCanvas();
+    clockDomainCanvas = new ClockDomainViewCanvas(system);
+    subSystemCanvas = new SubSystemViewCanvas(system);
+    // Partitions chosen from the menu are previewed on the Sub System view
+    menuBar.setSubSystemGraph((SubSystemGraph) subSystemCanvas.getGraph());
+    // The layout of both canvases is saved along with the model, and restored when it is loaded
+    menuBar.addGraph((ComponentGraph) clockDomainCanvas.getGraph());
+    menuBar.addGraph((ComponentGraph) subSystemCanvas.getGraph());
+
+    // Validate the model as it changes, and mark the cells with problems on both canvases.
+    // Created after the canvases, so their graphs are rebuilt for a new model before it is validated
+    validator = new Validator(system);
+    new DiagnosticOverlays(clockDomainCanvas, validator);
+    new DiagnosticOverlays(subSystemCanvas, validator);
+
+    // Work out the Link groups each Channel between Sub Systems crosses, shown in the Channel tooltips
+    routingTable = new RoutingTable(system);
+    ((ClockDomainGraph) clockDomainCanvas.getGraph()).setRoutingTable(routingTable);
+
+    // Estimate the traffic over each Link, and mark the hot spots on the Sub System view
+    loadEstimator = new LoadEstimator(system, routingTable);
+    ((SubSystemGraph) subSystemCanvas.getGraph()).setLoadEstimator(loadEstimator);
 
     // Create list of panels to be used in the tabs, so they can be passed into the TabPanel object
 
@@ -109,6 +159,8 @@ public MainApplication() {
     // Create ElementsPane and add
     ActionListener[] canvases = {clockDomainCanvas, subSystemCanvas};
     ElementsPane elements = new ElementsPane(canvases);
+    clockDomainCanvas.setElementsPane(elements);
+    subSystemCanvas.setElementsPane(elements);
     // Place ElementsPane on the window
     GridBagConstraints gbc_elements = new GridBagConstraints();
     gbc_elements.gridheight = 2;
@@ -137,19 +189,24 @@ public MainApplication() {
 
 
     // XML view
-    xmlView = new XMLView();
+    xmlView = new XMLView(system);
+    
+    // List of problems found in the model
+    problemsView = new ProblemsView(validator);
 
     // Tab names for the TabPanel
     List<String> tabNames = new ArrayList<String>();
     tabNames.add("Clock Domain View");
     tabNames.add("Sub System View");
     tabNames.add("XML View");
+    tabNames.add("Problems");
 
     // Initialise the TabPanel with all the intended tabs and their names
     List<JComponent> tabs = new ArrayList<JComponent>();
     tabs.add(clockDomainCanvas);
     tabs.add(subSystemCanvas);
     tabs.add(xmlView);
+    tabs.add(problemsView);
     TabPanel tabPanel = new TabPanel(tabs, tabNames);
     tabPanel.addListener(elements);
 
@@ -171,7 +228,10 @@ public MainApplication() {
     contentPane.add(structureLabel, gbc_structureLabel);
 
     // Initialise and place structure tree panel
-    StructurePanel structurePanel = new StructurePanel();
+    StructurePanel structurePanel = new StructurePanel(system);
+    // Selecting a Component in the tree selects it on the canvases
+    structurePanel.addCanvas(clockDomainCanvas);
+    structurePanel.addCanvas(subSystemCanvas);
     GridBagConstraints gbc_structurePanel = new GridBagConstraints();
     gbc_structurePanel.insets = new Insets(0, 0, 5, 5);
     gbc_structurePanel.fill = GridBagConstraints.BOTH;
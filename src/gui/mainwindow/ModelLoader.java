@@ -0,0 +1,242 @@
+package gui.mainwindow;
+
+import graphelements.jgraphx.ComponentGraph;
+import graphelements.jgraphx.DiagramLayout;
+import graphmodel.GlobalSystem;
+import graphmodel.XMLModelReader;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.JOptionPane;
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingWorker;
+
+/**
+ * This class loads a SystemJ XML configuration file on a background thread, so the window stays responsive while
+ * large files are read.
+ * 
+ * Progress is shown in a ProgressMonitor, driven by how much of the file the parser has read so far. The user can
+ * cancel the load from the monitor, in which case the existing model is left as it was. Once the whole file has been
+ * read, the new model is swapped into the GlobalSystem in one go on the event dispatch thread.
+ * 
+ * If the layout of the graphs was saved next to the file, it is read as well, and the graphs put their cells back
+ * where they were rather than laying them out again. If the layout cannot be read, the model is still loaded and
+ * laid out again, and the user is warned which layout file could not be read.
+ * 
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public class ModelLoader extends SwingWorker<XMLModelReader, Void> implements PropertyChangeListener {
+
+	private static final String LOAD_TITLE = "Load Existing File";
+
+	private File file;
+	private GlobalSystem system;
+	private java.awt.Component parent;
+	private ProgressMonitor monitor;
+
+	// The graphs to restore the saved layout to, and the layout read
+	private List<ComponentGraph> graphs;
+	private DiagramLayout layout;
+	// Why the saved layout could not be read, if it could not
+	private IOException layoutError;
+
+	/**
+	 * @param parent - component to show the progress monitor and any error messages over
+	 * @param file - the SystemJ XML configuration file to load
+	 * @param system - the model to replace once the file has been read
+	 */
+	public ModelLoader(java.awt.Component parent, File file, GlobalSystem system) {
+		this(parent, file, system, Collections.<ComponentGraph> emptyList());
+	}
+
+	/**
+	 * @param parent - component to show the progress monitor and any error messages over
+	 * @param file - the SystemJ XML configuration file to load
+	 * @param system - the model to replace once the file has been read
+	 * @param graphs - graphs of the model, to restore the layout saved next to the file to
+	 */
+	public ModelLoader(java.awt.Component parent, File file, GlobalSystem system, List<ComponentGraph> graphs) {
+		this.parent = parent;
+		this.file = file;
+		this.system = system;
+		this.graphs = graphs;
+
+		monitor = new ProgressMonitor(parent, "Loading " + file.getName(), null, 0, 100);
+		addPropertyChangeListener(this);
+	}
+
+	/**
+	 * Reads the file, and its saved layout, on the background thread. The model is not touched here.
+	 */
+	@Override
+	protected XMLModelReader doInBackground() throws Exception {
+		XMLModelReader reader = new XMLModelReader();
+		InputStream in = new ProgressInputStream(new BufferedInputStream(new FileInputStream(file)), file.length());
+		try {
+			reader.read(in);
+		} finally {
+			in.close();
+		}
+		if (!graphs.isEmpty()) {
+			try {
+				layout = readLayout(file);
+			} catch (IOException e) {
+				layoutError = e;
+			}
+		}
+		return reader;
+	}
+
+	/**
+	 * Reads the layout saved next to a model file
+	 * 
+	 * @param modelFile - XML configuration or snapshot file
+	 * @return the layout read, or null if there is none
+	 */
+	public static DiagramLayout readLayout(File modelFile) throws IOException {
+		DiagramLayout layout = DiagramLayout.read(DiagramLayout.getLayoutFile(modelFile));
+		return layout.isEmpty() ? null : layout;
+	}
+
+	/**
+	 * Tells the user the layout saved next to a model file could not be read. The model is still loaded, and just
+	 * laid out again.
+	 * 
+	 * @param parent - component to show the message over
+	 * @param modelFile - XML configuration or snapshot file
+	 * @param e - why the layout could not be read
+	 * @param title - title of the message
+	 */
+	public static void showLayoutWarning(java.awt.Component parent, File modelFile, IOException e, String title) {
+		e.printStackTrace();
+		JOptionPane.showMessageDialog(parent, "Could not read the diagram layout saved in "
+				+ DiagramLayout.getLayoutFile(modelFile).getName() + ", so the diagram has been laid out again:\n"
+				+ e.getMessage(), title, JOptionPane.WARNING_MESSAGE);
+	}
+
+	/**
+	 * Runs on the event dispatch thread once reading has finished, been cancelled or failed.
+	 * If the file was read, the model is replaced with what was read.
+	 */
+	@Override
+	protected void done() {
+		monitor.close();
+		if (isCancelled()) {
+			return;
+		}
+
+		try {
+			XMLModelReader reader = get();
+			for (ComponentGraph graph : graphs) {
+				graph.setSavedLayout(layout);
+			}
+			try {
+				system.constructModel(reader);
+			} finally {
+				for (ComponentGraph graph : graphs) {
+					graph.setSavedLayout(null);
+				}
+			}
+			if (layoutError != null) {
+				showLayoutWarning(parent, file, layoutError, LOAD_TITLE);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			showError(e.getCause());
+		} catch (IOException e) {
+			showError(e);
+		} catch (RuntimeException e) {
+			showError(e);
+		}
+	}
+
+	/**
+	 * Tells the user the file could not be loaded. The existing model is left as it was.
+	 */
+	private void showError(Throwable e) {
+		e.printStackTrace();
+		JOptionPane.showMessageDialog(parent, "Could not load " + file.getName() + ":\n" + e.getMessage(),
+				LOAD_TITLE, JOptionPane.ERROR_MESSAGE);
+	}
+
+	/**
+	 * Passes the progress of the load on to the monitor, and cancels the load if the user has cancelled the monitor.
+	 */
+	@Override
+	public void propertyChange(PropertyChangeEvent event) {
+		if (event.getPropertyName().equals("progress")) {
+			monitor.setProgress((Integer) event.getNewValue());
+			if (monitor.isCanceled()) {
+				cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * This stream counts the bytes the parser reads from the file and reports them as the progress of the load.
+	 * It stops the parser by failing the next read once the load has been cancelled.
+	 */
+	private class ProgressInputStream extends FilterInputStream {
+
+		private long length;
+		private long bytesRead = 0;
+
+		public ProgressInputStream(InputStream in, long length) {
+			super(in);
+			this.length = Math.max(length, 1);
+		}
+
+		@Override
+		public int read() throws IOException {
+			checkCancelled();
+			int b = super.read();
+			if (b != -1) {
+				update(1);
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			checkCancelled();
+			int n = super.read(b, off, len);
+			if (n > 0) {
+				update(n);
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			checkCancelled();
+			long skipped = super.skip(n);
+			update(skipped);
+			return skipped;
+		}
+
+		private void update(long n) {
+			bytesRead += n;
+			setProgress((int) Math.min(100, bytesRead * 100 / length));
+		}
+
+		private void checkCancelled() throws InterruptedIOException {
+			if (isCancelled()) {
+				throw new InterruptedIOException("Loading of " + file.getName() + " was cancelled");
+			}
+		}
+	}
+
+}
@@ -0,0 +1,198 @@
+package gui.mainwindow;
+
+import analysis.Partition;
+import analysis.Partitioner;
+import graphelements.jgraphx.SubSystemGraph;
+import graphmodel.GlobalSystem;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.Window;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.BorderFactory;
+import javax.swing.DefaultListModel;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.SwingWorker;
+
+/**
+ * This dialog proposes a new assignment of Clock Domains to Sub Systems that leaves fewer Channels between Sub
+ * Systems, using a Partitioner.
+ *
+ * The Partitioner runs on a background thread, and the result is previewed on the Sub System view while the dialog is
+ * open. It lists the Clock Domains that would move, and the Channels between Sub Systems before and after. "Apply"
+ * moves the Clock Domains in a single change, so it can be undone in one step. Closing the dialog leaves the model as
+ * it was.
+ *
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public class PartitionDialog extends JDialog implements ActionListener {
+
+	private static final String TITLE = "Partition Clock Domains";
+	private static final String APPLY_OPTION = "Apply";
+	private static final String CANCEL_OPTION = "Cancel";
+
+	private GlobalSystem system;
+	// Graph to preview the Partition on, may be null
+	private SubSystemGraph graph;
+
+	private JLabel summary;
+	private DefaultListModel<String> moves;
+	private JButton applyButton;
+
+	private PartitionWorker worker;
+	private Partition partition;
+
+	/**
+	 * Opens the dialog and starts partitioning the current model
+	 * @param owner - window to show the dialog over
+	 * @param system - the model to partition
+	 * @param graph - the Sub System graph to preview the result on, or null for no preview
+	 */
+	public PartitionDialog(Window owner, GlobalSystem system, SubSystemGraph graph) {
+		super(owner, TITLE);
+		this.system = system;
+		this.graph = graph;
+		setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+
+		JPanel content = new JPanel(new BorderLayout(5, 5));
+		content.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+		setContentPane(content);
+
+		summary = new JLabel("Partitioning...");
+		content.add(summary, BorderLayout.NORTH);
+
+		moves = new DefaultListModel<String>();
+		content.add(new JScrollPane(new JList<String>(moves)), BorderLayout.CENTER);
+
+		JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+		applyButton = new JButton(APPLY_OPTION);
+		applyButton.setActionCommand(APPLY_OPTION);
+		applyButton.addActionListener(this);
+		applyButton.setEnabled(false);
+		buttons.add(applyButton);
+		JButton cancelButton = new JButton(CANCEL_OPTION);
+		cancelButton.setActionCommand(CANCEL_OPTION);
+		cancelButton.addActionListener(this);
+		buttons.add(cancelButton);
+		content.add(buttons, BorderLayout.SOUTH);
+
+		setSize(400, 400);
+		setLocationRelativeTo(owner);
+
+		worker = new PartitionWorker();
+		worker.execute();
+	}
+
+	/**
+	 * Stops the Partitioner if it is still running and removes the preview
+	 */
+	@Override
+	public void dispose() {
+		worker.cancel(true);
+		if (graph != null) {
+			graph.clearPartitionPreview();
+		}
+		super.dispose();
+	}
+
+	@Override
+	public void actionPerformed(ActionEvent event) {
+		if (event.getActionCommand().equals(APPLY_OPTION)) {
+			apply();
+		} else {
+			dispose();
+		}
+	}
+
+	/**
+	 * Applies the Partition, unless the model has been edited since it was made, in which case the model is
+	 * partitioned again
+	 */
+	private void apply() {
+		if (system.getSnapshot() != partition.getModel()) {
+			JOptionPane.showMessageDialog(this, "The model has changed, so it will be partitioned again.", TITLE,
+					JOptionPane.INFORMATION_MESSAGE);
+			restart();
+			return;
+		}
+		// Remove the preview first, the graphs redraw themselves as the Clock Domains move
+		if (graph != null) {
+			graph.clearPartitionPreview();
+		}
+		partition.apply(system);
+		dispose();
+	}
+
+	private void restart() {
+		if (graph != null) {
+			graph.clearPartitionPreview();
+		}
+		partition = null;
+		applyButton.setEnabled(false);
+		moves.clear();
+		summary.setText("Partitioning...");
+		worker = new PartitionWorker();
+		worker.execute();
+	}
+
+	/**
+	 * Shows the Partition found in the dialog and on the graph
+	 */
+	private void showPartition(Partition result) {
+		partition = result;
+		summary.setText("<html>Channels between Sub Systems: " + result.getOriginalCutWeight() + " -> "
+				+ result.getCutWeight() + "<br>Clock Domains to move: " + result.getNumMoves()
+				+ (result.isFeasible() ? "" : "<br>Some Sub Systems are over capacity") + "</html>");
+		for (Map.Entry<String, String> move : result.getMoves().entrySet()) {
+			moves.addElement(move.getKey() + " -> " + move.getValue());
+		}
+		applyButton.setEnabled(result.getNumMoves() > 0);
+		if (graph != null) {
+			graph.previewPartition(result);
+		}
+	}
+
+	/**
+	 * Runs the Partitioner on a snapshot of the model, so the model can still be used while it runs
+	 */
+	private class PartitionWorker extends SwingWorker<Partition, Void> {
+
+		private Partitioner partitioner = new Partitioner(system.getSnapshot());
+
+		@Override
+		protected Partition doInBackground() throws Exception {
+			return partitioner.run();
+		}
+
+		@Override
+		protected void done() {
+			if (isCancelled() || !isDisplayable()) {
+				return;
+			}
+			try {
+				showPartition(get());
+			} catch (CancellationException e) {
+				// Closed while partitioning
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				e.getCause().printStackTrace();
+				summary.setText("Could not partition: " + e.getCause().getMessage());
+			}
+		}
+
+	}
+
+}
@@ -2,7 +2,6 @@ package gui.mainwindow;
 
 import graphmodel.ClockDomain;
 import graphmodel.Component;
-import graphmodel.IOType;
 import graphmodel.Link;
 import graphmodel.LinkGroup;
 import graphmodel.Signal;
@@ -11,7 +10,6 @@ import graphmodel.SubSystem;
 import java.awt.BorderLayout;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Hashtable;
 import java.util.Map;
 import java.util.Vector;
 
@@ -98,22 +96,13 @@ public class PropertiesPanel extends JPanel implements mxIEventListener {
 						tableModel.addRow(new Vector(Arrays.asList("Class", cd.getClassName())));
 					} else if (selectedComponent instanceof Signal) {
 						Signal s = (Signal)selectedComponent;
-						Hashtable<String, String> params = s.getParameters();
+						Map<String, String> params = s.getParameters();
 						
 						// Signals can have a variable number of parameters, so loop through all its parameters and add it to the table
-						for (String key : params.keySet()) {
-							if (key.equals("Type")) {
-								IOType type;
-								if (params.get(key).equals("i")) {
-									type = IOType.INPUT;
-								} else {
-									type = IOType.OUTPUT;
-								}
-								tableModel.addRow(new Vector(Arrays.asList(key, type)));
-							} else {
-								tableModel.addRow(new Vector(Arrays.asList(key, params.get(key))));
-							}
-						}	
+						for (Map.Entry<String, String> param : params.entrySet()) {
+							tableModel.addRow(new Vector(Arrays.asList(param.getKey(), param.getValue())));
+						}
+						tableModel.addRow(new Vector(Arrays.asList("Type", s.getType())));
 						
 					// If an individual Link is selected, the Link interfaces at both ends of the selection are displayed in the table.
 					} else if (selectedComponent instanceof LinkGroup) {
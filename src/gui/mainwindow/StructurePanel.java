@@ -1,124 +1,208 @@
 package gui.mainwindow;
 
-import graphmodel.Channel;
-import graphmodel.ClockDomain;
+import graphelements.jgraphx.ComponentGraph;
+import graphmodel.Component;
 import graphmodel.GlobalSystem;
-import graphmodel.Link;
-import graphmodel.LinkGroup;
-import graphmodel.Signal;
-import graphmodel.SubSystem;
 
 import java.awt.BorderLayout;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTree;
-import javax.swing.tree.DefaultMutableTreeNode;
-import javax.swing.tree.DefaultTreeModel;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.event.TreeSelectionEvent;
+import javax.swing.event.TreeSelectionListener;
 import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+
+import com.mxgraph.swing.mxGraphComponent;
 
 /**
  * This class encapsulates the JPanel that contains the tree object representing the current structure of the created system.
  * It provides a view of the entire system so far.
- * For every change that is made in the object model, the change is reflected in this tree.
+ * The tree is backed directly by the object model through a SystemTreeModel, so every change that is made in the
+ * object model is reflected in this tree without rebuilding it, and expanded nodes stay expanded.
  * It displays Signals within Clock Domain nodes, and CLock Domain nodes within their Sub System nodes.
  * Links and Channels are displayed in separate nodes, as they represent connections between objects and are not objects themselves.
  * NOTE: Channels will be displayed according to their name, which is their name in the source Clock Domain
+ * Selecting a Component in the tree selects its cells on the canvases it is drawn on.
  * 
  * @author Chanisha Somatilaka, rsom024
  *
  */
-public class StructurePanel extends JPanel implements ActionListener {
+public class StructurePanel extends JPanel {
 	
-	private JTree structureTree;
-	private TreeModel structureModel;
+	private StructureTree structureTree;
+	private SystemTreeModel structureModel;
+	// Canvases whose selection follows the tree
+	private List<mxGraphComponent> canvases = new ArrayList<mxGraphComponent>();
 	
+	/**
+	 * Creates a panel showing the structure of the default system
+	 */
 	public StructurePanel() {
+		this(GlobalSystem.getInstance());
+	}
+	
+	/**
+	 * @param system - the object model whose structure is shown
+	 */
+	public StructurePanel(GlobalSystem system) {
 		super();
 		setLayout(new BorderLayout(0,0));
 		
-		structureModel = createTree();
-		structureTree = new JTree(structureModel);
+		// The tree model listens to the system itself, so it is notified of changes
+		structureModel = new SystemTreeModel(system);
+		structureTree = new StructureTree(structureModel);
 		JScrollPane treeView = new JScrollPane(structureTree);
 		add(treeView, BorderLayout.CENTER);
-		
-		// Add this tree as a listener so it is notified of changes
-		GlobalSystem.getInstance().addListener(this);
+
+		structureTree.addTreeSelectionListener(new TreeSelectionListener() {
+			@Override
+			public void valueChanged(TreeSelectionEvent event) {
+				TreePath path = event.getNewLeadSelectionPath();
+				if (path != null && path.getLastPathComponent() instanceof Component) {
+					select((Component) path.getLastPathComponent());
+				}
+			}
+		});
+
+		// Added after the tree's own listeners, so the tree has already been updated when this is told of a change
+		structureModel.addTreeModelListener(new TreeModelListener() {
+			@Override
+			public void treeNodesChanged(TreeModelEvent event) {
+				if (event instanceof SystemTreeModel.ReplacedNodesEvent) {
+					structureTree.nodesReplaced((SystemTreeModel.ReplacedNodesEvent) event);
+				}
+			}
+
+			@Override
+			public void treeNodesInserted(TreeModelEvent event) {
+			}
+
+			@Override
+			public void treeNodesRemoved(TreeModelEvent event) {
+			}
+
+			@Override
+			public void treeStructureChanged(TreeModelEvent event) {
+			}
+		});
 	}
-	
+
 	/**
-	 * This method builds a new tree from scratch depending on the current state of the object model.
-	 * @return TreeModel representing the current object model structure
+	 * @param canvas - a canvas drawing a ComponentGraph, whose selection should follow the Component selected in
+	 *            the tree
 	 */
-	public TreeModel createTree() {
-		// top level node
-		DefaultMutableTreeNode top = new DefaultMutableTreeNode("Global Configuration");
-		GlobalSystem system = GlobalSystem.getInstance();
-		
-		// Iterate through all Sub Systems and add them to the tree.
-		for (SubSystem s : system.getSubSystems()) {
-			DefaultMutableTreeNode sub = new DefaultMutableTreeNode(s);
-			// Add all Clock Domains to the tree
-			for (ClockDomain cd : s.getClockDomains()) {
-				DefaultMutableTreeNode clockDomain = new DefaultMutableTreeNode(cd);
-				
-				//Add both input and output Signals onto te tree, as they apply to a single Clock Domain, so can be nested in the tree structure
-				for (Signal input : cd.getInputSignals()) {
-					DefaultMutableTreeNode in = new DefaultMutableTreeNode(input);
-					clockDomain.add(in);
+	public void addCanvas(mxGraphComponent canvas) {
+		canvases.add(canvas);
+	}
+
+	/**
+	 * Selects the cells of the Component on every canvas it is drawn on, and clears the selection on the others.
+	 * The others are cleared first, so the Component's cells are the last selected
+	 */
+	private void select(Component comp) {
+		List<mxGraphComponent> drawn = new ArrayList<mxGraphComponent>();
+		for (mxGraphComponent canvas : canvases) {
+			ComponentGraph graph = (ComponentGraph) canvas.getGraph();
+			if (graph.getCell(comp) == null) {
+				graph.clearSelection();
+			} else {
+				drawn.add(canvas);
+			}
+		}
+		for (mxGraphComponent canvas : drawn) {
+			ComponentGraph graph = (ComponentGraph) canvas.getGraph();
+			graph.selectComponent(comp);
+			canvas.scrollCellToVisible(graph.getCell(comp));
+		}
+	}
+
+	/**
+	 * The JTree showing the structure, which keeps the nodes that were expanded through a replaced Component expanded
+	 * through the Component that replaced it
+	 */
+	private static class StructureTree extends JTree {
+
+		private static final long serialVersionUID = 1L;
+
+		StructureTree(TreeModel model) {
+			super(model);
+		}
+
+		/**
+		 * A replaced node stays expanded on screen, but the JTree records expanded paths by the Components in them, so
+		 * the paths through the old Component are moved over to the new one
+		 */
+		void nodesReplaced(SystemTreeModel.ReplacedNodesEvent event) {
+			TreePath parentPath = event.getTreePath();
+			Object[] oldChildren = event.getOldChildren();
+			Object[] children = event.getChildren();
+
+			for (int i = 0; i < children.length; i++) {
+				TreePath oldPath = parentPath.pathByAddingChild(oldChildren[i]);
+				if (oldChildren[i] == children[i] || !isExpanded(oldPath)) {
+					continue;
 				}
-				
-				for (Signal output : cd.getOutputSignals()) {
-					DefaultMutableTreeNode out = new DefaultMutableTreeNode(output);
-					clockDomain.add(out);
+
+				List<TreePath> expanded = Collections.list(getExpandedDescendants(oldPath));
+				removeDescendantToggledPaths(Collections.enumeration(Collections.singletonList(oldPath)));
+
+				// Shorter paths first, so each path is expanded after the one above it
+				Collections.sort(expanded, new Comparator<TreePath>() {
+					@Override
+					public int compare(TreePath a, TreePath b) {
+						return a.getPathCount() - b.getPathCount();
+					}
+				});
+				TreePath newPath = parentPath.pathByAddingChild(children[i]);
+				for (TreePath path : expanded) {
+					TreePath moved = movePath(path, oldPath, newPath);
+					if (moved != null) {
+						expandPath(moved);
+					}
 				}
-				sub.add(clockDomain);
 			}
-			top.add(sub);
 		}
-		
-		// Add Links and Channels separately, as they concern connections between Sub Systems
-		// TODO: if there was a way to add different symbols in a tree, then can add them into the hierarchical structure with symbols differentiating them from Clock Domains and Signals
-		
-		// Add all Links. Nest the Link interfaces inside the Link groups
-		DefaultMutableTreeNode linkGroups = new DefaultMutableTreeNode("Links");
-		for (LinkGroup l : system.getLinks()) {
-			DefaultMutableTreeNode lg = new DefaultMutableTreeNode(l);
-			for (Link link : l.getLinks()) {
-				DefaultMutableTreeNode linkNode = new DefaultMutableTreeNode(link);
-				lg.add(linkNode);
+
+		/**
+		 * @return the path below newPath through the same Components as the given path is below oldPath, or through the
+		 *         ones with the same names where they were replaced, or null if the new node has no such children
+		 */
+		private TreePath movePath(TreePath path, TreePath oldPath, TreePath newPath) {
+			TreeModel model = getModel();
+			TreePath moved = newPath;
+			for (int i = oldPath.getPathCount(); i < path.getPathCount(); i++) {
+				Object parent = moved.getLastPathComponent();
+				Object child = path.getPathComponent(i);
+				if (model.getIndexOfChild(parent, child) < 0) {
+					child = getChildNamed(parent, ((Component) child).getName());
+					if (child == null) {
+						return null;
+					}
+				}
+				moved = moved.pathByAddingChild(child);
 			}
-			linkGroups.add(lg);
+			return moved;
 		}
-		top.add(linkGroups);
-		
-		// Add Channels
-		DefaultMutableTreeNode channels = new DefaultMutableTreeNode("Channels");
-		for (ClockDomain cd : system.getAllClockDomains()) {
-			for (Channel ch : cd.getOutputChannels()) {
-				DefaultMutableTreeNode chNode = new DefaultMutableTreeNode(ch);
-				channels.add(chNode);
+
+		private Object getChildNamed(Object parent, String name) {
+			TreeModel model = getModel();
+			for (int i = 0; i < model.getChildCount(parent); i++) {
+				Object child = model.getChild(parent, i);
+				if (((Component) child).getName().equals(name)) {
+					return child;
+				}
 			}
+			return null;
 		}
-		top.add(channels);
-		
-		TreeModel model = new DefaultTreeModel(top);
-		return model;
-		
-		
-	}
-
 
-	/**
-	 * This method is fired every time there is a change in the object model.
-	 * TODO: currently, this reconstructs the whole tree for every change made in the model. Maybe implement a more efficient method?
-	 */
-	@Override
-	public void actionPerformed(ActionEvent event) {
-		structureTree.setModel(createTree());
-		
 	}
 
 }
@@ -0,0 +1,725 @@
+package gui.mainwindow;
+
+import graphmodel.ChangeType;
+import graphmodel.Channel;
+import graphmodel.ClockDomain;
+import graphmodel.Component;
+import graphmodel.GlobalSystem;
+import graphmodel.IOType;
+import graphmodel.Link;
+import graphmodel.LinkGroup;
+import graphmodel.ModelChange;
+import graphmodel.ModelChangeEvent;
+import graphmodel.Signal;
+import graphmodel.SubSystem;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.swing.event.EventListenerList;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+
+/**
+ * This TreeModel presents the structure of a GlobalSystem directly, without copying it into tree nodes.
+ * The nodes of the tree are the Components of the model themselves, so the JTree only asks for the children of
+ * the nodes it is showing, and nothing is built for the parts of the model that are collapsed.
+ *
+ * The tree is laid out as:
+ * - Global Configuration
+ *   - Sub Systems, containing their Clock Domains, containing their input then output Signals
+ *   - Links, containing the Link groups, containing their Link interfaces
+ *   - Channels, containing every Channel in the system. They are grouped by the Clock Domain they come from when
+ *     the model is loaded, and Channels added after that are listed at the end
+ *
+ * It listens to the GlobalSystem and passes each change on to the JTree as an insert, remove or change of just the
+ * nodes concerned, so the nodes the user has expanded stay expanded. An edited Component replaces the old one in
+ * the same place, so it is passed on as a changed node, in a ReplacedNodesEvent that also holds the Component it
+ * replaced.
+ *
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public class SystemTreeModel implements TreeModel, ActionListener {
+
+	private static final String ROOT = "Global Configuration";
+	private static final String LINKS = "Links";
+	private static final String CHANNELS = "Channels";
+
+	private GlobalSystem system;
+	private EventListenerList listeners = new EventListenerList();
+
+	// Every Channel in the system in the order shown, and the position of each, built when the Channels node is first
+	// looked at after the model is loaded and kept up to date from then on
+	private List<Channel> channels;
+	private Map<Channel, Integer> channelPositions;
+
+	public SystemTreeModel(GlobalSystem system) {
+		this.system = system;
+		system.addListener(this);
+	}
+
+	@Override
+	public Object getRoot() {
+		return ROOT;
+	}
+
+	@Override
+	public Object getChild(Object parent, int index) {
+		if (parent == ROOT) {
+			List<SubSystem> subSystems = system.getSubSystems();
+			if (index < subSystems.size()) {
+				return subSystems.get(index);
+			}
+			return index == subSystems.size() ? LINKS : CHANNELS;
+		} else if (parent == LINKS) {
+			return system.getLinks().get(index);
+		} else if (parent == CHANNELS) {
+			return getChannels().get(index);
+		} else if (parent instanceof SubSystem) {
+			return ((SubSystem) parent).getClockDomains().get(index);
+		} else if (parent instanceof ClockDomain) {
+			ClockDomain cd = (ClockDomain) parent;
+			int inputs = cd.getNumInputSignals();
+			return index < inputs ? cd.getInputSignals().get(index) : cd.getOutputSignals().get(index - inputs);
+		} else if (parent instanceof LinkGroup) {
+			return ((LinkGroup) parent).getLinks().get(index);
+		}
+		return null;
+	}
+
+	@Override
+	public int getChildCount(Object parent) {
+		if (parent == ROOT) {
+			// Sub Systems, then the Links and Channels nodes
+			return system.getSubSystems().size() + 2;
+		} else if (parent == LINKS) {
+			return system.getLinks().size();
+		} else if (parent == CHANNELS) {
+			return getChannels().size();
+		} else if (parent instanceof SubSystem) {
+			return ((SubSystem) parent).getNumClockDomains();
+		} else if (parent instanceof ClockDomain) {
+			ClockDomain cd = (ClockDomain) parent;
+			return cd.getNumInputSignals() + cd.getNumOutputSignals();
+		} else if (parent instanceof LinkGroup) {
+			return ((LinkGroup) parent).getLinks().size();
+		}
+		return 0;
+	}
+
+	@Override
+	public boolean isLeaf(Object node) {
+		return node instanceof Signal || node instanceof Link || node instanceof Channel;
+	}
+
+	@Override
+	public int getIndexOfChild(Object parent, Object child) {
+		if (parent == null || child == null) {
+			return -1;
+		}
+		if (parent == ROOT) {
+			int subSystems = system.getSubSystems().size();
+			if (child == LINKS) {
+				return subSystems;
+			} else if (child == CHANNELS) {
+				return subSystems + 1;
+			}
+			return system.getSubSystems().indexOf(child);
+		} else if (parent == LINKS) {
+			return system.getLinks().indexOf(child);
+		} else if (parent == CHANNELS) {
+			Integer index = getChannelPositions().get(child);
+			return index == null ? -1 : index;
+		} else if (parent instanceof SubSystem) {
+			return child instanceof ClockDomain ? ((SubSystem) parent).indexOfClockDomain((ClockDomain) child) : -1;
+		} else if (parent instanceof ClockDomain && child instanceof Signal) {
+			ClockDomain cd = (ClockDomain) parent;
+			if (((Signal) child).getType().equals(IOType.INPUT)) {
+				return cd.getInputSignals().indexOf(child);
+			}
+			int index = cd.getOutputSignals().indexOf(child);
+			return index == -1 ? -1 : cd.getNumInputSignals() + index;
+		} else if (parent instanceof LinkGroup) {
+			return ((LinkGroup) parent).getLinks().indexOf(child);
+		}
+		return -1;
+	}
+
+	@Override
+	public void valueForPathChanged(TreePath path, Object newValue) {
+		// The tree is not editable, so changes only come from the model
+	}
+
+	@Override
+	public void addTreeModelListener(TreeModelListener l) {
+		listeners.add(TreeModelListener.class, l);
+	}
+
+	@Override
+	public void removeTreeModelListener(TreeModelListener l) {
+		listeners.remove(TreeModelListener.class, l);
+	}
+
+	/**
+	 * @return every Channel in the system, in the order shown
+	 */
+	private List<Channel> getChannels() {
+		if (channels == null) {
+			channels = new ArrayList<Channel>();
+			for (SubSystem s : system.getSubSystems()) {
+				for (ClockDomain cd : s.getClockDomains()) {
+					channels.addAll(cd.getOutputChannels());
+				}
+			}
+			channelPositions = null;
+		}
+		return channels;
+	}
+
+	private Map<Channel, Integer> getChannelPositions() {
+		if (channelPositions == null) {
+			List<Channel> shown = getChannels();
+			channelPositions = new IdentityHashMap<Channel, Integer>();
+			for (int i = 0; i < shown.size(); i++) {
+				channelPositions.put(shown.get(i), i);
+			}
+		}
+		return channelPositions;
+	}
+
+	/**
+	 * This method is fired every time there is a change in the object model.
+	 * The changes are grouped by the node they are listed under, and each group is passed on as inserts, removes and
+	 * changes of just the nodes concerned. Changes under a node that is itself added, removed or replaced in the same
+	 * batch are covered by the change to that node. The Channels node is kept up to date from the Components that
+	 * changed. A new or cleared model is a structure change of the whole tree.
+	 */
+	@Override
+	public void actionPerformed(ActionEvent event) {
+		if (!(event instanceof ModelChangeEvent) || ((ModelChangeEvent) event).getChanges().isEmpty()) {
+			channels = null;
+			channelPositions = null;
+			fireStructureChanged(new TreePath(ROOT));
+			return;
+		}
+
+		List<ModelChange> changes = ((ModelChangeEvent) event).getChanges();
+
+		// Changes keyed by the node they are listed under, and every Component they add, remove or replace
+		Map<Object, List<ModelChange>> byParent = new LinkedHashMap<Object, List<ModelChange>>();
+		Set<Component> changed = newIdentitySet();
+		for (ModelChange change : changes) {
+			changed.add(change.getComponent());
+			if (change.getOldComponent() != null) {
+				changed.add(change.getOldComponent());
+			}
+
+			Object parent = getParentNode(change);
+			if (parent != CHANNELS) {
+				List<ModelChange> group = byParent.get(parent);
+				if (group == null) {
+					group = new ArrayList<ModelChange>();
+					byParent.put(parent, group);
+				}
+				group.add(change);
+			}
+		}
+
+		for (Map.Entry<Object, List<ModelChange>> group : byParent.entrySet()) {
+			TreePath path = getPath(group.getKey(), changed);
+			if (path != null) {
+				applyChanges(path, group.getValue(), byParent);
+			}
+		}
+
+		if (channels != null) {
+			updateChannels(changes);
+		}
+	}
+
+	/**
+	 * @return the node the changed Component is listed under
+	 */
+	private Object getParentNode(ModelChange change) {
+		Component comp = change.getComponent();
+		if (comp instanceof SubSystem) {
+			return ROOT;
+		} else if (comp instanceof LinkGroup) {
+			return LINKS;
+		} else if (comp instanceof Channel) {
+			return CHANNELS;
+		}
+		return change.getParent();
+	}
+
+	/**
+	 * @return the path to the given node, or null if it is not in the tree or is itself changed by the same batch
+	 */
+	private TreePath getPath(Object node, Set<Component> changed) {
+		if (node == ROOT) {
+			return new TreePath(ROOT);
+		} else if (node == LINKS) {
+			return new TreePath(new Object[] { ROOT, LINKS });
+		} else if (node instanceof SubSystem) {
+			SubSystem sub = (SubSystem) node;
+			if (!changed.contains(sub) && system.getSubSystem(sub.getName()) == sub) {
+				return new TreePath(new Object[] { ROOT, sub });
+			}
+		} else if (node instanceof ClockDomain) {
+			ClockDomain cd = (ClockDomain) node;
+			SubSystem sub = system.getSubSystem(cd);
+			if (sub != null && !changed.contains(cd) && !changed.contains(sub)) {
+				return new TreePath(new Object[] { ROOT, sub, cd });
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Passes the changes made under one node on to the tree listeners. A single change is passed on as it is. The
+	 * JTree looks up inserted nodes in the model as it is after all of the changes, so several changes under one node
+	 * are worked back to find the children the node had before them, and passed on as the difference between the two
+	 */
+	private void applyChanges(TreePath path, List<ModelChange> changes, Map<Object, List<ModelChange>> byParent) {
+		Object parent = path.getLastPathComponent();
+
+		if (changes.size() == 1) {
+			ModelChange change = changes.get(0);
+			int index = change.getIndex();
+			Component comp = change.getComponent();
+			if (comp instanceof Signal && ((Signal) comp).getType().equals(IOType.OUTPUT)) {
+				// Output Signals are listed after the input Signals
+				index += ((ClockDomain) parent).getNumInputSignals();
+			}
+
+			switch (change.getType()) {
+			case ADDED:
+				fireNodesInserted(path, new int[] { index }, new Object[] { comp });
+				break;
+			case REMOVED:
+				fireNodesRemoved(path, new int[] { index }, new Object[] { comp });
+				break;
+			case CHANGED:
+				replaceNode(path, index, change.getOldComponent(), comp, byParent);
+				break;
+			}
+			return;
+		}
+
+		List<Object> before;
+		List<Object> after;
+		if (parent instanceof ClockDomain) {
+			// Input and output Signals are indexed within their own lists
+			ClockDomain cd = (ClockDomain) parent;
+			List<ModelChange> inputChanges = new ArrayList<ModelChange>();
+			List<ModelChange> outputChanges = new ArrayList<ModelChange>();
+			for (ModelChange change : changes) {
+				if (((Signal) change.getComponent()).getType().equals(IOType.INPUT)) {
+					inputChanges.add(change);
+				} else {
+					outputChanges.add(change);
+				}
+			}
+			before = getChildrenBefore(cd.getInputSignals(), inputChanges);
+			List<Object> outputsBefore = getChildrenBefore(cd.getOutputSignals(), outputChanges);
+			if (before != null && outputsBefore != null) {
+				before.addAll(outputsBefore);
+			} else {
+				before = null;
+			}
+		} else {
+			before = getChildrenBefore(getChildren(parent), changes);
+		}
+		after = getChildren(parent);
+
+		// Replaced Components take the place of the ones they replace
+		Map<Object, Object> replacements = new IdentityHashMap<Object, Object>();
+		for (ModelChange change : changes) {
+			if (change.getType() == ChangeType.CHANGED) {
+				replacements.put(change.getOldComponent(), change.getComponent());
+			}
+		}
+
+		if (before == null || !fireDifference(path, before, after, replacements, false, byParent)) {
+			// The changes do not add up to the children the node has now, so the node is refreshed as a whole
+			fireStructureChanged(path);
+		}
+	}
+
+	/**
+	 * @return the children the node had before the given changes, worked back from the ones it has now, or null if
+	 *         the changes do not match them
+	 */
+	private List<Object> getChildrenBefore(List<?> children, List<ModelChange> changes) {
+		List<Object> before = new ArrayList<Object>(children);
+		for (int i = changes.size() - 1; i >= 0; i--) {
+			ModelChange change = changes.get(i);
+			int index = change.getIndex();
+			if (index < 0 || index > before.size()) {
+				return null;
+			}
+			if (change.getType() == ChangeType.REMOVED) {
+				before.add(index, change.getComponent());
+			} else if (index == before.size() || before.get(index) != change.getComponent()) {
+				return null;
+			} else if (change.getType() == ChangeType.ADDED) {
+				before.remove(index);
+			} else {
+				before.set(index, change.getOldComponent());
+			}
+		}
+		return before;
+	}
+
+	/**
+	 * Passes the difference between the children a node had and the ones it has now on to the tree listeners, as the
+	 * removed children, the inserted children, and then the replaced ones
+	 * @param replacements - the Components that took the place of some of the old children, keyed by the old child
+	 * @param below - true if the node is below a replaced node, whose expanded paths are carried over as a whole, so
+	 *            the replaced children are passed on as plain changed nodes
+	 * @return false if the children kept do not stay in the same order, so cannot be passed on this way
+	 */
+	private boolean fireDifference(TreePath path, List<Object> before, List<Object> after,
+			Map<Object, Object> replacements, boolean below, Map<Object, List<ModelChange>> byParent) {
+		Map<Object, Object> replaced = new IdentityHashMap<Object, Object>();
+		for (Map.Entry<Object, Object> replacement : replacements.entrySet()) {
+			replaced.put(replacement.getValue(), replacement.getKey());
+		}
+		Set<Object> inAfter = newIdentitySet();
+		inAfter.addAll(after);
+
+		List<Object> kept = new ArrayList<Object>();
+		List<Integer> removed = new ArrayList<Integer>();
+		for (int i = 0; i < before.size(); i++) {
+			Object child = replacements.containsKey(before.get(i)) ? replacements.get(before.get(i)) : before.get(i);
+			if (inAfter.contains(child)) {
+				kept.add(child);
+			} else {
+				removed.add(i);
+			}
+		}
+
+		Set<Object> inKept = newIdentitySet();
+		inKept.addAll(kept);
+		List<Integer> inserted = new ArrayList<Integer>();
+		List<Integer> changedIndices = new ArrayList<Integer>();
+		int next = 0;
+		for (int i = 0; i < after.size(); i++) {
+			Object child = after.get(i);
+			if (!inKept.contains(child)) {
+				inserted.add(i);
+			} else if (next == kept.size() || kept.get(next++) != child) {
+				return false;
+			} else if (replaced.containsKey(child) && replaced.get(child) != child) {
+				changedIndices.add(i);
+			}
+		}
+
+		if (!removed.isEmpty()) {
+			fireNodesRemoved(path, toArray(removed), select(before, removed));
+		}
+		if (!inserted.isEmpty()) {
+			fireNodesInserted(path, toArray(inserted), select(after, inserted));
+		}
+		if (below && !changedIndices.isEmpty()) {
+			fireNodesChanged(path, toArray(changedIndices), select(after, changedIndices));
+			for (int index : changedIndices) {
+				Object child = after.get(index);
+				refreshChildren(path.pathByAddingChild(child), replaced.get(child), byParent);
+			}
+		} else {
+			for (int index : changedIndices) {
+				Object child = after.get(index);
+				replaceNode(path, index, replaced.get(child), child, byParent);
+			}
+		}
+		// Components changed in place keep their node, but what is below them is not known
+		for (int i = 0; i < after.size(); i++) {
+			if (replacements.get(after.get(i)) == after.get(i) && !isLeaf(after.get(i))) {
+				fireStructureChanged(path.pathByAddingChild(after.get(i)));
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Passes on a Component replaced in place as a changed node, so it stays expanded, and then brings the nodes
+	 * below it up to date. The ReplacedNodesEvent is sent last, so its listeners find the tree already showing the
+	 * new Components
+	 */
+	private void replaceNode(TreePath parentPath, int index, Object oldChild, Object child,
+			Map<Object, List<ModelChange>> byParent) {
+		fireNodesChanged(parentPath, new int[] { index }, new Object[] { child });
+		if (oldChild == child) {
+			// Changed in place, so what was below it is not known
+			if (!isLeaf(child)) {
+				fireStructureChanged(parentPath.pathByAddingChild(child));
+			}
+		} else {
+			refreshChildren(parentPath.pathByAddingChild(child), oldChild, byParent);
+			fireNodesReplaced(parentPath, new int[] { index }, new Object[] { oldChild }, new Object[] { child });
+		}
+	}
+
+	/**
+	 * Passes on the differences between the children of a replaced node and the children of the node that replaced
+	 * it. A child with the same name as an old child that is not kept takes its place, so is passed on as a changed
+	 * node, and the ones below it are compared in turn. These are plain changed nodes rather than a
+	 * ReplacedNodesEvent, as the paths expanded below the replaced node are carried over with it.
+	 * If the old node's children are not known because they also changed in the same batch, or the children kept are
+	 * not in the same order, the node is refreshed as a whole instead, which keeps it expanded but collapses the
+	 * nodes below it
+	 */
+	private void refreshChildren(TreePath path, Object oldNode, Map<Object, List<ModelChange>> byParent) {
+		Object node = path.getLastPathComponent();
+		if (isLeaf(node)) {
+			return;
+		}
+		if (byParent.containsKey(oldNode) || byParent.containsKey(node)) {
+			fireStructureChanged(path);
+			return;
+		}
+
+		List<Object> before = getChildren(oldNode);
+		List<Object> after = getChildren(node);
+		if (!fireDifference(path, before, after, matchByName(before, after), true, byParent)) {
+			fireStructureChanged(path);
+		}
+	}
+
+	/**
+	 * @return the children in the new list that take the place of a child in the old list, keyed by the old child.
+	 *         Children in both lists are kept rather than replaced, and names that are not unique are not matched
+	 */
+	private static Map<Object, Object> matchByName(List<Object> before, List<Object> after) {
+		Set<Object> inBefore = newIdentitySet();
+		inBefore.addAll(before);
+		Set<Object> inAfter = newIdentitySet();
+		inAfter.addAll(after);
+
+		Map<String, Object> oldByName = new HashMap<String, Object>();
+		Set<String> repeated = new HashSet<String>();
+		for (Object child : before) {
+			if (!inAfter.contains(child) && oldByName.put(((Component) child).getName(), child) != null) {
+				repeated.add(((Component) child).getName());
+			}
+		}
+
+		Map<Object, Object> replacements = new IdentityHashMap<Object, Object>();
+		Set<String> matched = new HashSet<String>();
+		for (Object child : after) {
+			String name = ((Component) child).getName();
+			if (!inBefore.contains(child) && oldByName.containsKey(name) && !repeated.contains(name)
+					&& matched.add(name)) {
+				replacements.put(oldByName.get(name), child);
+			}
+		}
+		return replacements;
+	}
+
+	/**
+	 * Brings the Channels node up to date. Only the Channels of the changed Components, and of the ones they replaced,
+	 * can have been added or removed, so only those are looked at. A replaced Channel takes the place of the old one,
+	 * and new Channels are added at the end
+	 */
+	private void updateChannels(List<ModelChange> changes) {
+		TreePath path = new TreePath(new Object[] { ROOT, CHANNELS });
+		Map<Channel, Integer> positions = getChannelPositions();
+
+		List<Channel> candidates = new ArrayList<Channel>();
+		Set<Channel> seen = newIdentitySet();
+		for (ModelChange change : changes) {
+			addChannels(change.getComponent(), candidates, seen);
+			addChannels(change.getOldComponent(), candidates, seen);
+
+			if (change.getType() == ChangeType.CHANGED && change.getComponent() instanceof Channel) {
+				Channel oldCh = (Channel) change.getOldComponent();
+				Channel newCh = (Channel) change.getComponent();
+				Integer index = positions.get(oldCh);
+				if (oldCh != newCh && index != null && !positions.containsKey(newCh) && isShown(newCh)
+						&& !isShown(oldCh)) {
+					channels.set(index, newCh);
+					positions.remove(oldCh);
+					positions.put(newCh, index);
+					fireNodesReplaced(path, new int[] { index }, new Object[] { oldCh }, new Object[] { newCh });
+				}
+			}
+		}
+
+		List<Integer> removed = new ArrayList<Integer>();
+		List<Channel> added = new ArrayList<Channel>();
+		for (Channel ch : candidates) {
+			Integer index = positions.get(ch);
+			boolean shown = isShown(ch);
+			if (index != null && !shown) {
+				removed.add(index);
+			} else if (index == null && shown) {
+				added.add(ch);
+			}
+		}
+
+		if (!removed.isEmpty()) {
+			Collections.sort(removed);
+			Object[] removedChannels = select(channels, removed);
+			for (int i = removed.size() - 1; i >= 0; i--) {
+				channels.remove((int) removed.get(i));
+			}
+			// The Channels after the removed ones have moved up
+			channelPositions = null;
+			fireNodesRemoved(path, toArray(removed), removedChannels);
+		}
+		if (!added.isEmpty()) {
+			int[] indices = new int[added.size()];
+			positions = getChannelPositions();
+			for (int i = 0; i < added.size(); i++) {
+				indices[i] = channels.size();
+				positions.put(added.get(i), channels.size());
+				channels.add(added.get(i));
+			}
+			fireNodesInserted(path, indices, added.toArray());
+		}
+	}
+
+	/**
+	 * Adds the Channels that lead to or from the given Component, if it is a Channel, Clock Domain or Sub System
+	 */
+	private static void addChannels(Component comp, List<Channel> candidates, Set<Channel> seen) {
+		if (comp instanceof Channel) {
+			if (seen.add((Channel) comp)) {
+				candidates.add((Channel) comp);
+			}
+		} else if (comp instanceof ClockDomain) {
+			ClockDomain cd = (ClockDomain) comp;
+			for (Channel ch : cd.getOutputChannels()) {
+				if (seen.add(ch)) {
+					candidates.add(ch);
+				}
+			}
+			for (Channel ch : cd.getInputChannels()) {
+				if (seen.add(ch)) {
+					candidates.add(ch);
+				}
+			}
+		} else if (comp instanceof SubSystem) {
+			for (ClockDomain cd : ((SubSystem) comp).getClockDomains()) {
+				addChannels(cd, candidates, seen);
+			}
+		}
+	}
+
+	/**
+	 * @return true if the Channel belongs in the Channels node, which lists the output Channels of the Clock Domains
+	 *         in the system
+	 */
+	private boolean isShown(Channel ch) {
+		ClockDomain from = ch.getFromClockDomain();
+		return from != null && system.getSubSystem(from) != null && from.getOutputChannel(ch.getName()) == ch;
+	}
+
+	/**
+	 * @return the children of a Sub System, Clock Domain or Link group in the order shown
+	 */
+	private List<Object> getChildren(Object node) {
+		int count = getChildCount(node);
+		List<Object> children = new ArrayList<Object>(count);
+		for (int i = 0; i < count; i++) {
+			children.add(getChild(node, i));
+		}
+		return children;
+	}
+
+	private static Object[] select(List<?> list, List<Integer> indices) {
+		Object[] selected = new Object[indices.size()];
+		for (int i = 0; i < selected.length; i++) {
+			selected[i] = list.get(indices.get(i));
+		}
+		return selected;
+	}
+
+	private static int[] toArray(List<Integer> indices) {
+		int[] array = new int[indices.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = indices.get(i);
+		}
+		return array;
+	}
+
+	private static <T> Set<T> newIdentitySet() {
+		return Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+	}
+
+	private void fireNodesInserted(TreePath parentPath, int[] indices, Object[] children) {
+		TreeModelEvent e = new TreeModelEvent(this, parentPath, indices, children);
+		for (TreeModelListener l : listeners.getListeners(TreeModelListener.class)) {
+			l.treeNodesInserted(e);
+		}
+	}
+
+	private void fireNodesRemoved(TreePath parentPath, int[] indices, Object[] children) {
+		TreeModelEvent e = new TreeModelEvent(this, parentPath, indices, children);
+		for (TreeModelListener l : listeners.getListeners(TreeModelListener.class)) {
+			l.treeNodesRemoved(e);
+		}
+	}
+
+	private void fireNodesChanged(TreePath parentPath, int[] indices, Object[] children) {
+		TreeModelEvent e = new TreeModelEvent(this, parentPath, indices, children);
+		for (TreeModelListener l : listeners.getListeners(TreeModelListener.class)) {
+			l.treeNodesChanged(e);
+		}
+	}
+
+	private void fireNodesReplaced(TreePath parentPath, int[] indices, Object[] oldChildren, Object[] children) {
+		TreeModelEvent e = new ReplacedNodesEvent(this, parentPath, indices, oldChildren, children);
+		for (TreeModelListener l : listeners.getListeners(TreeModelListener.class)) {
+			l.treeNodesChanged(e);
+		}
+	}
+
+	private void fireStructureChanged(TreePath path) {
+		TreeModelEvent e = new TreeModelEvent(this, path);
+		for (TreeModelListener l : listeners.getListeners(TreeModelListener.class)) {
+			l.treeStructureChanged(e);
+		}
+	}
+
+	/**
+	 * A treeNodesChanged event for nodes whose Components were replaced by edited ones in the same place. The JTree
+	 * keeps such nodes, and the nodes in the same places below them, expanded on screen, but records which paths are
+	 * expanded by the Components in them, so this event also holds the replaced Components, for the listeners to
+	 * carry that record over. It follows the plain changed node events for the same nodes and the nodes below them
+	 */
+	public static class ReplacedNodesEvent extends TreeModelEvent {
+
+		private static final long serialVersionUID = 1L;
+
+		private Object[] oldChildren;
+
+		public ReplacedNodesEvent(Object source, TreePath path, int[] childIndices, Object[] oldChildren,
+				Object[] children) {
+			super(source, path, childIndices, children);
+			this.oldChildren = oldChildren;
+		}
+
+		/**
+		 * @return the Components that were replaced, in the same order as getChildren()
+		 */
+		public Object[] getOldChildren() {
+			return oldChildren;
+		}
+
+	}
+
+}
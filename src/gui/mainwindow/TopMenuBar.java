@@ -1,26 +1,46 @@
 package gui.mainwindow;
 
+import graphelements.jgraphx.ComponentGraph;
+import graphelements.jgraphx.DiagramLayout;
+import graphelements.jgraphx.SubSystemGraph;
 import graphmodel.GlobalSystem;
+import graphmodel.ModelHistory;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.io.BufferedWriter;
+import java.awt.event.KeyEvent;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.swing.JFileChooser;
+import javax.swing.JFrame;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
+import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
 import javax.swing.filechooser.FileFilter;
 
 /**
  * This class encapsulates the menu bar that is placed at the very top of the window.
- * Currently, there is only one option, and that is "File", which contains:
+ * It has three options. "File" contains:
  * - "New" - (yet to be implemented)
+ * - "New Window", which opens another window with its own, independent model
  * - "Load existing file"
  * - "Generate XML file"
+ * - "Save Snapshot" and "Load Snapshot", which save and load the model in a binary form that loads much faster than XML
+ * Saving the model also saves the layout of the graphs in a DiagramLayout file next to it, which is restored when the
+ * model is loaded again, so it does not need laying out again.
+ * "Edit" contains "Undo" and "Redo", which move through the ModelHistory of the model. They are only enabled when
+ * there is something to undo or redo.
+ * "Tools" contains "Partition Clock Domains", which proposes moving Clock Domains between Sub Systems to cut down the
+ * Channels between them, previewed on the Sub System view before it is applied.
  * 
  * 
  * @author Chanisha Somatilaka, rsom024
@@ -29,13 +49,61 @@ import javax.swing.filechooser.FileFilter;
 public class TopMenuBar extends JMenuBar implements ActionListener {
 	
 	private JMenu fileMenu;
+	private JMenu editMenu;
+	private JMenu toolsMenu;
+	private JMenuItem menuOptionUndo;
+	private JMenuItem menuOptionRedo;
+	
+	// The object model the menu options act on, and its undo history
+	private GlobalSystem system;
+	private ModelHistory history;
+	
+	// The Sub System view, to preview partitions on. May be null
+	private SubSystemGraph subSystemGraph;
+	
+	// The graphs whose layout is saved and loaded along with the model
+	private List<ComponentGraph> graphs = new ArrayList<ComponentGraph>();
+	
+	// The load currently running in the background, if any
+	private ModelLoader loader;
 	
 	private static final String NEW_OPTION = "New";
+	private static final String NEW_WINDOW_OPTION = "New Window";
 	private static final String LOAD_OPTION = "Load Existing File";
 	private static final String SAVE_OPTION = "Save XML File";
+	private static final String SAVE_SNAPSHOT_OPTION = "Save Snapshot";
+	private static final String LOAD_SNAPSHOT_OPTION = "Load Snapshot";
+	private static final String UNDO_OPTION = "Undo";
+	private static final String REDO_OPTION = "Redo";
+	private static final String PARTITION_OPTION = "Partition Clock Domains...";
 	
+	// Extension given to binary snapshot files
+	private static final String SNAPSHOT_EXTENSION = ".sjsnap";
 	
+	
+	/**
+	 * Creates a menu bar acting on the default system
+	 */
 	public TopMenuBar() {
+		this(GlobalSystem.getInstance());
+	}
+	
+	/**
+	 * Creates a menu bar acting on the given system, with an undo history of its own
+	 * @param system - the object model the menu options act on
+	 */
+	public TopMenuBar(GlobalSystem system) {
+		this(system, new ModelHistory(system));
+	}
+	
+	/**
+	 * @param system - the object model the menu options act on
+	 * @param history - undo history of the system, used by "Undo" and "Redo"
+	 */
+	public TopMenuBar(GlobalSystem system, ModelHistory history) {
+		this.system = system;
+		this.history = history;
+		
 		// Add file option to the Menu Bar
 		fileMenu = new JMenu("File");
 		add(fileMenu);
@@ -46,6 +114,11 @@ public class TopMenuBar extends JMenuBar implements ActionListener {
 		menuOptionNew.addActionListener(this);
 		fileMenu.add(menuOptionNew);
 		
+		JMenuItem menuOptionNewWindow = new JMenuItem(NEW_WINDOW_OPTION);
+		menuOptionNewWindow.setActionCommand(NEW_WINDOW_OPTION);
+		menuOptionNewWindow.addActionListener(this);
+		fileMenu.add(menuOptionNewWindow);
+		
 		JMenuItem menuOptionLoad = new JMenuItem(LOAD_OPTION);
 		menuOptionLoad.setActionCommand(LOAD_OPTION);
 		menuOptionLoad.addActionListener(this);
@@ -55,12 +128,75 @@ public class TopMenuBar extends JMenuBar implements ActionListener {
 		menuOptionSave.addActionListener(this);
 		menuOptionSave.setActionCommand(SAVE_OPTION);
 		fileMenu.add(menuOptionSave);
+		
+		fileMenu.addSeparator();
+		
+		JMenuItem menuOptionSaveSnapshot = new JMenuItem(SAVE_SNAPSHOT_OPTION);
+		menuOptionSaveSnapshot.setActionCommand(SAVE_SNAPSHOT_OPTION);
+		menuOptionSaveSnapshot.addActionListener(this);
+		fileMenu.add(menuOptionSaveSnapshot);
+		
+		JMenuItem menuOptionLoadSnapshot = new JMenuItem(LOAD_SNAPSHOT_OPTION);
+		menuOptionLoadSnapshot.setActionCommand(LOAD_SNAPSHOT_OPTION);
+		menuOptionLoadSnapshot.addActionListener(this);
+		fileMenu.add(menuOptionLoadSnapshot);
+		
+		// Add edit option to the Menu Bar
+		editMenu = new JMenu("Edit");
+		add(editMenu);
+		
+		menuOptionUndo = new JMenuItem(UNDO_OPTION);
+		menuOptionUndo.setActionCommand(UNDO_OPTION);
+		menuOptionUndo.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z, ActionEvent.CTRL_MASK));
+		menuOptionUndo.addActionListener(this);
+		editMenu.add(menuOptionUndo);
+		
+		menuOptionRedo = new JMenuItem(REDO_OPTION);
+		menuOptionRedo.setActionCommand(REDO_OPTION);
+		menuOptionRedo.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Y, ActionEvent.CTRL_MASK));
+		menuOptionRedo.addActionListener(this);
+		editMenu.add(menuOptionRedo);
+		
+		// Add tools option to the Menu Bar
+		toolsMenu = new JMenu("Tools");
+		add(toolsMenu);
+		
+		JMenuItem menuOptionPartition = new JMenuItem(PARTITION_OPTION);
+		menuOptionPartition.setActionCommand(PARTITION_OPTION);
+		menuOptionPartition.addActionListener(this);
+		toolsMenu.add(menuOptionPartition);
+		
+		// Keep Undo and Redo enabled only when there is something to undo or redo
+		history.addListener(this);
+		updateEditOptions();
+	}
+	
+	/**
+	 * @param subSystemGraph - the Sub System view to preview partitions on
+	 */
+	public void setSubSystemGraph(SubSystemGraph subSystemGraph) {
+		this.subSystemGraph = subSystemGraph;
+	}
+	
+	/**
+	 * @param graph - a graph of the model, whose layout is saved along with the model and restored when it is loaded
+	 */
+	public void addGraph(ComponentGraph graph) {
+		graphs.add(graph);
+	}
+	
+	/**
+	 * Enables "Undo" and "Redo" according to the current position in the history
+	 */
+	private void updateEditOptions() {
+		menuOptionUndo.setEnabled(history.canUndo());
+		menuOptionRedo.setEnabled(history.canRedo());
 	}
 	
 	/**
 	 * This method is executed when the "Save" option has been selected. It opens the standard "Save As" dialog box and prompts the user to choose a location and name for this file.
 	 * The "Save As" dialog uses a filter so that only XML files can be displayed and saved.
-	 * Once a location is obtained, then the full XML String generated from the object model will be written to file.
+	 * Once a location is obtained, then the XML generated from the object model will be streamed straight to the file.
 	 */
 	public void saveAsXML() {
 		// Open the "Save As" dialog box
@@ -76,16 +212,17 @@ public class TopMenuBar extends JMenuBar implements ActionListener {
 				File f2 = new File(file.getAbsolutePath() + ".xml");
 				file = f2;
 			}
-			GlobalSystem system = GlobalSystem.getInstance();
 			try{
 				  // Create file 
-				  FileWriter fstream = new FileWriter(file);
-				  BufferedWriter out = new BufferedWriter(fstream);
-				  // Write the generated XML to the file
-				  out.write(system.createXMLFile());
-				  
-				  //Close the output stream
-				  out.close();
+				  Writer out = Files.newBufferedWriter(file.toPath(), Charset.forName("UTF-8"));
+				  try {
+					  // Write the generated XML to the file
+					  system.writeXMLFile(out);
+				  } finally {
+					  //Close the output stream
+					  out.close();
+				  }
+				  saveLayout(file);
 			} catch (IOException e) {
 				e.printStackTrace();
 			}
@@ -96,7 +233,8 @@ public class TopMenuBar extends JMenuBar implements ActionListener {
 	/**
 	 * This method is called when the "Load from existing file" option is selected. It opens a dialog box for the user to load an existing file, with a filter so that it only
 	 * shows XML files.
-	 * Once a file is selected, a model is then constructed from this XML file, and then displayed.
+	 * Once a file is selected, a model is then constructed from this XML file in the background, and then displayed.
+	 * Starting another load cancels one that is still running.
 	 */
 	public void loadXMLFile() {
 		JFileChooser fc = new JFileChooser();
@@ -108,15 +246,116 @@ public class TopMenuBar extends JMenuBar implements ActionListener {
 		if (returnVal == JFileChooser.APPROVE_OPTION) {
 			File file = fc.getSelectedFile();
 			
-			GlobalSystem system = GlobalSystem.getInstance();
-			system.constructModel(file);
+			if (loader != null && !loader.isDone()) {
+				loader.cancel(true);
+			}
+			
+			loader = new ModelLoader(this.getParent(), file, system, graphs);
+			loader.execute();
+
+		}
+	}
 
+	/**
+	 * This method is executed when the "Save Snapshot" option has been selected. It prompts the user for a location,
+	 * and saves the model there as a binary snapshot.
+	 */
+	public void saveSnapshot() {
+		JFileChooser fc = new JFileChooser();
+		fc.setFileFilter(new SnapshotFilter());
+		int returnVal = fc.showSaveDialog(this.getParent());
+		
+		if (returnVal == JFileChooser.APPROVE_OPTION) {
+			File file = fc.getSelectedFile();
+			if (!file.getName().endsWith(SNAPSHOT_EXTENSION)) {
+				file = new File(file.getAbsolutePath() + SNAPSHOT_EXTENSION);
+			}
+			try {
+				system.saveSnapshot(file);
+				saveLayout(file);
+			} catch (IOException e) {
+				e.printStackTrace();
+				JOptionPane.showMessageDialog(this.getParent(), "Could not save " + file.getName() + ":\n" + e.getMessage(),
+						SAVE_SNAPSHOT_OPTION, JOptionPane.ERROR_MESSAGE);
+			}
+		}
+	}
+	
+	/**
+	 * This method is executed when the "Load Snapshot" option has been selected. It prompts the user for a snapshot
+	 * file and replaces the model with the one saved in it. Snapshots load quickly, so this is done straight away.
+	 */
+	public void loadSnapshot() {
+		JFileChooser fc = new JFileChooser();
+		fc.setFileFilter(new SnapshotFilter());
+		int returnVal = fc.showOpenDialog(this.getParent());
+		
+		if (returnVal == JFileChooser.APPROVE_OPTION) {
+			File file = fc.getSelectedFile();
+			IOException layoutError = null;
+			try {
+				try {
+					setSavedLayout(ModelLoader.readLayout(file));
+				} catch (IOException e) {
+					layoutError = e;
+				}
+				system.loadSnapshot(file);
+				if (layoutError != null) {
+					ModelLoader.showLayoutWarning(this.getParent(), file, layoutError, LOAD_SNAPSHOT_OPTION);
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+				JOptionPane.showMessageDialog(this.getParent(), "Could not load " + file.getName() + ":\n" + e.getMessage(),
+						LOAD_SNAPSHOT_OPTION, JOptionPane.ERROR_MESSAGE);
+			} finally {
+				setSavedLayout(null);
+			}
+		}
+	}
+	
+	/**
+	 * Saves the layout of the graphs next to the model file just saved
+	 */
+	private void saveLayout(File modelFile) throws IOException {
+		DiagramLayout layout = new DiagramLayout();
+		for (ComponentGraph graph : graphs) {
+			layout.save(graph);
+		}
+		layout.write(DiagramLayout.getLayoutFile(modelFile));
+	}
+	
+	/**
+	 * Sets the layout each graph restores when it is next created, or null for them to be laid out as usual
+	 */
+	private void setSavedLayout(DiagramLayout layout) {
+		for (ComponentGraph graph : graphs) {
+			graph.setSavedLayout(layout);
 		}
 	}
 
+	/**
+	 * This method is executed when the "New Window" option has been selected. It opens another window with a new,
+	 * empty model of its own, so another configuration can be worked on alongside this one. Closing that window
+	 * only closes it, not the whole application.
+	 */
+	public void openNewWindow() {
+		MainApplication frame = new MainApplication(new GlobalSystem());
+		frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+		frame.setVisible(true);
+	}
+
+	/**
+	 * This method is executed when the "Partition Clock Domains" option has been selected. It opens a dialog that
+	 * partitions the model in the background and previews the result.
+	 */
+	public void partitionClockDomains() {
+		new PartitionDialog(SwingUtilities.getWindowAncestor(this), system, subSystemGraph).setVisible(true);
+	}
+
 	/**
 	 * This method is called when an option in the menu is selected.
-	 * It executes the corresponding action, whether it is New (yet to be implemented), Save or Load.
+	 * It executes the corresponding action, whether it is New (yet to be implemented), Save, Load, Undo or Redo.
+	 * It is also called when the history changes, to update which of Undo and Redo are enabled.
 	 */
 	@Override
 	public void actionPerformed(ActionEvent event) {
@@ -127,9 +366,29 @@ public class TopMenuBar extends JMenuBar implements ActionListener {
 			saveAsXML();
 		} else if (command.equals(LOAD_OPTION)) {
 			loadXMLFile();
+		} else if (command.equals(SAVE_SNAPSHOT_OPTION)) {
+			saveSnapshot();
+		} else if (command.equals(LOAD_SNAPSHOT_OPTION)) {
+			loadSnapshot();
+		} else if (command.equals(NEW_WINDOW_OPTION)) {
+			openNewWindow();
+		} else if (command.equals(PARTITION_OPTION)) {
+			partitionClockDomains();
+		} else if (command.equals(UNDO_OPTION)) {
+			if (history.canUndo()) {
+				history.undo();
+			}
+		} else if (command.equals(REDO_OPTION)) {
+			if (history.canRedo()) {
+				history.redo();
+			}
+		} else if (command.equals(ModelHistory.HISTORY_CHANGED_EVENT)) {
+			updateEditOptions();
+		} else if (command.equals(ModelHistory.VERSION_RESTORED_EVENT)) {
+			// Nothing to do, the history sends HISTORY_CHANGED_EVENT as well
 		} else {
 			//TODO: implement correctly. This is supposed to be the "New" option
-			GlobalSystem.getInstance().clearModel();
+			system.clearModel();
 		}
 		
 	}
@@ -157,6 +416,23 @@ public class TopMenuBar extends JMenuBar implements ActionListener {
 		}
 		
 	}
+	
+	/**
+	 * This class is a filter to ensure that only binary snapshot files are displayed when opening/saving snapshots.
+	 */
+	private class SnapshotFilter extends FileFilter {
+
+		@Override
+		public boolean accept(File f) {
+			return f.isDirectory() || f.getName().endsWith(SNAPSHOT_EXTENSION);
+		}
+
+		@Override
+		public String getDescription() {
+			return "Model snapshots";
+		}
+		
+	}
 
 }
 
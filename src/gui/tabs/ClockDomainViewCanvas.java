@@ -1,6 +1,7 @@
 package gui.tabs;
 
 import graphelements.jgraphx.ClockDomainGraph;
+import graphelements.jgraphx.ComponentGraph;
 import graphelements.jgraphx.DrawComponent;
 import graphmodel.*;
 import gui.mainwindow.ElementsPane;
@@ -15,6 +16,7 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 
 import javax.swing.JFrame;
+import javax.swing.JOptionPane;
 import javax.swing.SwingUtilities;
 
 import com.mxgraph.model.mxCell;
@@ -39,13 +41,35 @@ public class ClockDomainViewCanvas extends mxGraphComponent implements
 	private mxCell selectedComponent;
 	private String selectedMode;
 
+	// The object model drawn on this canvas
+	private GlobalSystem system;
+	// The buttons used to choose what to draw on this canvas
+	private ElementsPane elementsPane;
+
+	/**
+	 * Creates a canvas for the default system
+	 */
 	public ClockDomainViewCanvas() {
-		super(new ClockDomainGraph());
+		this(GlobalSystem.getInstance());
+	}
+
+	/**
+	 * @param system
+	 *            - the object model to draw on this canvas
+	 */
+	public ClockDomainViewCanvas(GlobalSystem system) {
+		super(new ClockDomainGraph(system));
+		this.system = system;
+		// Layouts of the graph are animated on this canvas
+		((ComponentGraph) getGraph()).setGraphComponent(this);
 
 		// Set the background of the canvas to white
 		this.getViewport().setOpaque(true);
 		this.getViewport().setBackground(Color.WHITE);
 
+		// Show tooltips, used for the routes of Channels
+		this.setToolTips(true);
+
 		// Handle mouse events
 		this.getGraphControl().addMouseListener(new MouseAdapter() {
 
@@ -105,7 +129,7 @@ public class ClockDomainViewCanvas extends mxGraphComponent implements
 	protected void handleDeletefunction(KeyEvent e) {
 		// TODO Auto-generated method stub
 		System.out.println(getSelectedComponent());
-		graphelements.jgraphx.DrawComponent.remvoeClockDomain(getGraph(), getSelectedComponent());
+		graphelements.jgraphx.DrawComponent.removeSelectedClockDomains(getGraph(), system);
 		
 	}
 
@@ -135,7 +159,7 @@ public class ClockDomainViewCanvas extends mxGraphComponent implements
 			if (selectedMode.equals(DrawComponent.CLOCK_DOMAIN_NAME)) {
 				// Display the popup for Clock Domain creation
 				ComponentPopup popup = new ComponentPopup(
-						(JFrame) SwingUtilities.getWindowAncestor(this),
+						(JFrame) SwingUtilities.getWindowAncestor(this), system,
 						selectedMode, event.getX(), event.getY());
 
 				// Create a new ClockDomain object
@@ -166,7 +190,7 @@ public class ClockDomainViewCanvas extends mxGraphComponent implements
 					if (c != null && c.getValue() instanceof ClockDomain
 							&& !c.equals(selectedComponent)) {
 						ComponentPopup popup = new ComponentPopup(
-								(JFrame) SwingUtilities.getWindowAncestor(this),
+								(JFrame) SwingUtilities.getWindowAncestor(this), system,
 								selectedMode, event.getX(), event.getY());
 						Channel ch = (Channel) popup.getComponent();
 
@@ -199,7 +223,7 @@ public class ClockDomainViewCanvas extends mxGraphComponent implements
 						&& selectedComponent.getValue() instanceof ClockDomain) {
 					// Display Signal creation popup window
 					ComponentPopup popup = new ComponentPopup(
-							(JFrame) SwingUtilities.getWindowAncestor(this),
+							(JFrame) SwingUtilities.getWindowAncestor(this), system,
 							selectedMode, event.getX(), event.getY());
 					Signal s = (Signal) popup.getComponent();
 
@@ -217,10 +241,8 @@ public class ClockDomainViewCanvas extends mxGraphComponent implements
 	}
 
 	/**
-	 * This method adds the Signal to the model and renders it on the canvas. It
-	 * calculates the position of where the Signal should be drawn, and then
-	 * passes itself to the DrawComponent class, which handles all the
-	 * rendering.
+	 * This method adds the Signal to the model. The graph follows the model,
+	 * so it is then drawn on the canvas.
 	 * 
 	 * @param s
 	 * @param clockDomain
@@ -228,25 +250,8 @@ public class ClockDomainViewCanvas extends mxGraphComponent implements
 	public void addSignal(Signal s, mxCell clockDomain) {
 		ClockDomain cd = (ClockDomain) clockDomain.getValue();
 
-		IOType type = s.getType();
-		int index;
 		// Add the Signal to the global object model
-		GlobalSystem.getInstance().addSignal(s, cd);
-
-		// Index the Signal so that it is rendered in a place that will not
-		// overlap the other Signals
-		if (type == IOType.INPUT) {
-			index = cd.getNumInputSignals();
-		} else {
-			index = cd.getNumOutputSignals();
-		}
-
-		// After adding the Signal to the ClockDomain object, set it back as the
-		// Clock Domain cell's value
-		clockDomain.setValue(cd);
-
-		// Draw the Signal onto the canvas
-		DrawComponent.drawSignal(graph, s, clockDomain, index);
+		system.addSignal(s, cd);
 
 		// Reset the selection on ElementsPane after the object has been drawn
 		resetCompSelection();
@@ -267,8 +272,8 @@ public class ClockDomainViewCanvas extends mxGraphComponent implements
 	}
 
 	/**
-	 * This method adds the given Clock Domain to the given Sub System. It
-	 * renders the Clock Domain at the given coordinates
+	 * This method adds the given Clock Domain to the given Sub System. Once
+	 * the graph has drawn it, it is moved to the given coordinates
 	 * 
 	 * @param cd
 	 *            - Clock Domain to add to the model
@@ -280,15 +285,34 @@ public class ClockDomainViewCanvas extends mxGraphComponent implements
 	 *            - Sub System to add the Clock Domain to
 	 */
 	public void addClockDomain(ClockDomain cd, int x, int y, SubSystem sub) {
-		// Add the Clock Domain to the object model
-		GlobalSystem.getInstance().addClockDomain(cd, sub);
+		// Add the Clock Domain to the object model, which rejects it if its
+		// name is already taken
+		try {
+			system.addClockDomain(cd, sub);
+		} catch (RuntimeException e) {
+			showError("Add Clock Domain", e);
+			return;
+		}
 
-		// Draw it onto the canvas
-		DrawComponent.drawClockDomain(this.graph,
-				(mxCell) this.graph.getDefaultParent(), cd, x, y);
+		// Place it where the user clicked
+		((ClockDomainGraph) this.graph).setPosition(cd, x, y);
 		resetCompSelection();
 	}
 
+	/**
+	 * @param elementsPane - the buttons used to choose what to draw on this canvas, which are deselected once a
+	 *            Component has been drawn
+	 */
+	public void setElementsPane(ElementsPane elementsPane) {
+		this.elementsPane = elementsPane;
+	}
+
+	private void deselectButtons() {
+		if (elementsPane != null) {
+			elementsPane.deselectButtons();
+		}
+	}
+
 	/**
 	 * Whenever a button is selected in the ElementsPane, the selected button's
 	 * action command is saved. This is how the canvas knows which component to
@@ -302,7 +326,8 @@ public class ClockDomainViewCanvas extends mxGraphComponent implements
 	}
 
 	/**
-	 * This method adds a new Channel to the object model and the canvas.
+	 * This method adds a new Channel to the object model, which the graph
+	 * then draws on the canvas.
 	 * 
 	 * @param ch
 	 *            - Channel object to add
@@ -319,16 +344,15 @@ public class ClockDomainViewCanvas extends mxGraphComponent implements
 			String fromName, String toName) {
 		// add the Channel in between the two Clock Domain objects
 		ClockDomain cd1 = (ClockDomain) cdFrom.getValue();
-		cdFrom.setValue(cd1);
-
 		ClockDomain cd2 = (ClockDomain) cdTo.getValue();
-		cdTo.setValue(cd2);
-
-		// Add the Channel to the model, and sraw it onto the canvas
-		GlobalSystem.getInstance().addChannel(ch, cd1, cd2, fromName, toName);
-		DrawComponent.drawChannel(this.graph, ch, cdFrom, cdTo,
-				cd1.getNumOutputChannels(), cd2.getNumInputChannels());
 
+		// Add the Channel to the model, which rejects it if its name is
+		// already taken on either Clock Domain
+		try {
+			system.addChannel(ch, cd1, cd2, fromName, toName);
+		} catch (RuntimeException e) {
+			showError("Add Channel", e);
+		}
 	}
 
 	/**
@@ -336,7 +360,7 @@ public class ClockDomainViewCanvas extends mxGraphComponent implements
 	 * mode.
 	 */
 	public void resetCompSelection() {
-		ElementsPane.deselectButtons();
+		deselectButtons();
 		selectedMode = null;
 	}
 
@@ -369,7 +393,7 @@ public class ClockDomainViewCanvas extends mxGraphComponent implements
 		// Open popup passing in the Component that is selected. This will
 		// populate the fields with its existing values.
 		ComponentPopup popup = new ComponentPopup(
-				(JFrame) SwingUtilities.getWindowAncestor(this), comp,
+				(JFrame) SwingUtilities.getWindowAncestor(this), system, comp,
 				(int) selectedComponent.getGeometry().getCenterX(),
 				(int) selectedComponent.getGeometry().getCenterY());
 		// Once popup is closed, retrieve the created Component object
@@ -380,20 +404,27 @@ public class ClockDomainViewCanvas extends mxGraphComponent implements
 		Component newComp = popup.getComponent();
 
 		if (newComp != null) {
-			// If the object is a Channel, then need to modify the label cell on
-			// the destination Clock Domain side.
-			if (newComp instanceof Channel) {
-				mxCell label = (mxCell) selectedComponent.getChildAt(0);
-				label.setValue(popup.getChannelToName());
+			// Replace the old Component with the new Component in the object
+			// model. The graph follows it, relabelling the cells. The model is
+			// left as it was if the new name is already taken
+			try {
+				system.changeComponent(comp, newComp);
+			} catch (RuntimeException e) {
+				showError("Edit " + comp.getTypeAsString(), e);
 			}
-
-			// Replace the old Component with the new Component in both the
-			// object model and the graph object
-			GlobalSystem system = GlobalSystem.getInstance();
-			system.changeComponent(comp, newComp);
-
-			ClockDomainGraph g = (ClockDomainGraph) this.graph;
-			g.changeComponent(selectedComponent, newComp);
 		}
 	}
+
+	/**
+	 * Tells the user why the model rejected a change
+	 * 
+	 * @param title
+	 *            - title of the message window
+	 * @param e
+	 *            - exception thrown by the model
+	 */
+	private void showError(String title, RuntimeException e) {
+		JOptionPane.showMessageDialog(this, e.getMessage(), title,
+				JOptionPane.ERROR_MESSAGE);
+	}
 }
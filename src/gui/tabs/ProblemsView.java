@@ -0,0 +1,172 @@
+package gui.tabs;
+
+import analysis.Diagnostic;
+import analysis.DiagnosticsEvent;
+import analysis.Validator;
+import graphmodel.Component;
+
+import java.awt.BorderLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.swing.DefaultListModel;
+import javax.swing.JList;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+
+/**
+ * This panel lists every problem the Validator has found in the current model, kept up to date as the model changes.
+ * When the Validator reports which Components' Diagnostics changed, only their rows in the list are replaced.
+ * 
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
+public class ProblemsView extends JPanel implements ActionListener {
+	
+	private Validator validator;
+	private DefaultListModel<Diagnostic> problems;
+	
+	// The rows of each Component's problems are kept together in the list, in a group of rows with a fixed place among
+	// the other groups, so the rows of a Component can be found without looking through the list
+	private Map<Component, Integer> groups = new IdentityHashMap<Component, Integer>();
+	private RowGroups rows = new RowGroups();
+	
+	public ProblemsView(Validator validator) {
+		super();
+		this.setLayout(new BorderLayout());
+		this.validator = validator;
+		
+		problems = new DefaultListModel<Diagnostic>();
+		JList<Diagnostic> problemList = new JList<Diagnostic>(problems);
+		this.add(new JScrollPane(problemList), BorderLayout.CENTER);
+		
+		validator.addListener(this);
+		setProblems();
+	}
+	
+	/**
+	 * Lists every problem the Validator has found, replacing the whole list
+	 */
+	public void setProblems() {
+		problems.clear();
+		groups.clear();
+		rows = new RowGroups();
+		for (Diagnostic d : validator.getDiagnostics()) {
+			Integer group = groups.get(d.getComponent());
+			if (group == null) {
+				group = rows.addGroup();
+				groups.put(d.getComponent(), group);
+			}
+			rows.setSize(group, rows.getSize(group) + 1);
+			problems.addElement(d);
+		}
+	}
+	
+	/**
+	 * Replaces only the problems listed for the given Components, keeping the rest of the list as it is. The rows of
+	 * each Component are replaced where they are, so only those rows are looked at.
+	 * @param components - Components whose Diagnostics changed
+	 */
+	private void updateProblems(Set<Component> components) {
+		for (Component comp : components) {
+			List<Diagnostic> now = validator.getDiagnostics(comp);
+			Integer group = groups.get(comp);
+			if (group == null) {
+				if (now.isEmpty()) {
+					continue;
+				}
+				group = rows.addGroup();
+				groups.put(comp, group);
+			}
+			
+			int start = rows.getStart(group);
+			int old = rows.getSize(group);
+			int kept = Math.min(old, now.size());
+			for (int i = 0; i < kept; i++) {
+				if (problems.get(start + i) != now.get(i)) {
+					problems.set(start + i, now.get(i));
+				}
+			}
+			if (old > kept) {
+				problems.removeRange(start + kept, start + old - 1);
+			}
+			for (int i = kept; i < now.size(); i++) {
+				problems.add(start + i, now.get(i));
+			}
+			rows.setSize(group, now.size());
+		}
+	}
+
+	/**
+	 * Called by the Validator when the Diagnostics change. Only the problems of the Components listed in the event
+	 * are updated, unless the whole system was validated again
+	 */
+	@Override
+	public void actionPerformed(ActionEvent event) {
+		if (event instanceof DiagnosticsEvent && ((DiagnosticsEvent) event).getComponents() != null) {
+			updateProblems(((DiagnosticsEvent) event).getComponents());
+		} else {
+			setProblems();
+		}
+	}
+
+	/**
+	 * The number of rows in each group, in the order the groups appear in the list. The counts are held in a Fenwick
+	 * tree, so the first row of a group is found, and the size of a group changed, without adding up the groups in
+	 * front of it one by one.
+	 */
+	private static class RowGroups {
+		
+		private int[] sizes = new int[16];
+		// tree[i] holds the total size of the groups from i - (i & -i) up to i - 1
+		private int[] tree = new int[17];
+		private int numGroups = 0;
+		
+		/**
+		 * @return the number of a new empty group, placed after every other group
+		 */
+		int addGroup() {
+			if (numGroups == sizes.length) {
+				sizes = Arrays.copyOf(sizes, sizes.length * 2);
+				tree = new int[sizes.length + 1];
+				for (int i = 1; i <= numGroups; i++) {
+					tree[i] += sizes[i - 1];
+					int parent = i + (i & -i);
+					if (parent < tree.length) {
+						tree[parent] += tree[i];
+					}
+				}
+			}
+			return numGroups++;
+		}
+		
+		int getSize(int group) {
+			return sizes[group];
+		}
+		
+		void setSize(int group, int size) {
+			int change = size - sizes[group];
+			sizes[group] = size;
+			for (int i = group + 1; i < tree.length; i += i & -i) {
+				tree[i] += change;
+			}
+		}
+		
+		/**
+		 * @return the row of the first problem in the given group, which is the number of rows in the groups before it
+		 */
+		int getStart(int group) {
+			int start = 0;
+			for (int i = group; i > 0; i -= i & -i) {
+				start += tree[i];
+			}
+			return start;
+		}
+	}
+
+}
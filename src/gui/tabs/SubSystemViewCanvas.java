@@ -1,5 +1,6 @@
 package gui.tabs;
 
+import graphelements.jgraphx.ComponentGraph;
 import graphelements.jgraphx.DrawComponent;
 import graphelements.jgraphx.SubSystemGraph;
 import graphmodel.*;
@@ -11,9 +12,9 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.util.ArrayList;
 
 import javax.swing.JFrame;
+import javax.swing.JOptionPane;
 
 import javax.swing.SwingUtilities;
 
@@ -38,13 +39,34 @@ public class SubSystemViewCanvas extends mxGraphComponent implements ActionListe
 	private mxCell selectedComponent;
 	private String selectedMode;
 
+	// The object model drawn on this canvas
+	private GlobalSystem system;
+	// The buttons used to choose what to draw on this canvas
+	private ElementsPane elementsPane;
+
+	/**
+	 * Creates a canvas for the default system
+	 */
 	public SubSystemViewCanvas() {
-		super(new SubSystemGraph());	
+		this(GlobalSystem.getInstance());
+	}
+
+	/**
+	 * @param system - the object model to draw on this canvas
+	 */
+	public SubSystemViewCanvas(GlobalSystem system) {
+		super(new SubSystemGraph(system));
+		this.system = system;
+		// Layouts of the graph are animated on this canvas
+		((ComponentGraph) getGraph()).setGraphComponent(this);
 
 		// Set the background of the canvas to white
 		this.getViewport().setOpaque(true);
 		this.getViewport().setBackground(Color.WHITE);
 
+		// Show tooltips, used by the Partition preview
+		this.setToolTips(true);
+
 		// Handle mouse events
 		this.getGraphControl().addMouseListener(new MouseAdapter() {
 
@@ -90,7 +112,7 @@ public class SubSystemViewCanvas extends mxGraphComponent implements ActionListe
 				// If there is no Component selected, it is on a blank space, so it safe to draw a new one there
 				if (c == null) {
 					// Open the SubSystem creation popup
-					ComponentPopup popup = new ComponentPopup((JFrame) SwingUtilities.getWindowAncestor(this), selectedMode, event.getX(), event.getY());
+					ComponentPopup popup = new ComponentPopup((JFrame) SwingUtilities.getWindowAncestor(this), system, selectedMode, event.getX(), event.getY());
 					SubSystem ss = (SubSystem)popup.getComponent();
 
 					// If a SubSystem object was actually created, then add it at the position of the user's mouse coordinates
@@ -106,7 +128,7 @@ public class SubSystemViewCanvas extends mxGraphComponent implements ActionListe
 
 				// If a Sub System is selected, display the Link group creation popup.
 				if (selectedComponent != null && selectedComponent.getValue() instanceof SubSystem) {
-					ComponentPopup popup = new ComponentPopup((JFrame) SwingUtilities.getWindowAncestor(this), selectedMode, event.getX(), event.getY());
+					ComponentPopup popup = new ComponentPopup((JFrame) SwingUtilities.getWindowAncestor(this), system, selectedMode, event.getX(), event.getY());
 					LinkGroup l = (LinkGroup)popup.getComponent();
 					if (l !=null){
 					// Add the links
@@ -140,21 +162,40 @@ public class SubSystemViewCanvas extends mxGraphComponent implements ActionListe
 	}
 
 	/**
-	 * This method adds the given Sub System. It renders the Sub System at the given coordinates
+	 * This method adds the given Sub System. Once the graph has drawn it, it is moved to the given coordinates
 	 * 
 	 * @param ss - SubSystem object to add to the model
 	 * @param x - x coordinate of where to draw the Sub System
 	 * @param y - y coordinate of where to draw the Sub System
 	 */
 	public void addSubSystem(SubSystem ss, int x, int y) {
-		// Add the Sub System to the object model
-		GlobalSystem system = GlobalSystem.getInstance();
-		system.addSubSystem(ss);
+		// Add the Sub System to the object model, which rejects it if its name, or the name of one of its Clock
+		// Domains, is already taken
+		try {
+			system.addSubSystem(ss);
+		} catch (RuntimeException e) {
+			showError("Add Sub System", e);
+			return;
+		}
+
+		// The graph has drawn it, so place it where the user clicked
+		((SubSystemGraph)graph).setPosition(ss, x, y);
+		deselectButtons();
+
+	}
 
-		// Draw it on the Canvas
-		graph.insertVertex(graph.getDefaultParent(), ss.toString(), ss, x, y, DrawComponent.SUBSYSTEM_WIDTH, DrawComponent.SUBSYSTEM_HEIGHT, DrawComponent.SUBSYSTEM_NAME);
-		ElementsPane.deselectButtons();
+	/**
+	 * @param elementsPane - the buttons used to choose what to draw on this canvas, which are deselected once a
+	 *            Component has been drawn
+	 */
+	public void setElementsPane(ElementsPane elementsPane) {
+		this.elementsPane = elementsPane;
+	}
 
+	private void deselectButtons() {
+		if (elementsPane != null) {
+			elementsPane.deselectButtons();
+		}
 	}
 
 	/**
@@ -168,31 +209,14 @@ public class SubSystemViewCanvas extends mxGraphComponent implements ActionListe
 	}
 
 	/**
-	 * This method adds this group of Links to the object model and draws it onto the canvas.
+	 * This method adds this group of Links to the object model. The graph follows the model, so the Links are drawn
+	 * onto the canvas along with it.
 	 * @param l
 	 */
 	public void addLinkGroup(LinkGroup l) {
-		// Add links to the object model
-		GlobalSystem.getInstance().addLinkGroup(l);
-
-		// get the cells of the corresponding Sub Systems used in the link
-		ArrayList<mxCell> subSystems = new ArrayList<mxCell>();
-		for (Object cell : graph.getChildVertices(graph.getDefaultParent())) {
-			mxCell sub = (mxCell)cell;
-			SubSystem s = (SubSystem)sub.getValue();
-
-			if (l.containsSubSystem(s)) {
-				subSystems.add(sub);
-			}
-
-		}
-
-		// Draw the Links onto the canvas
-		DrawComponent.drawLinkGroup(this.graph, l, subSystems);
-
-		ElementsPane.deselectButtons();
-
+		system.addLinkGroup(l);
 
+		deselectButtons();
 	}
 
 	/**
@@ -201,12 +225,7 @@ public class SubSystemViewCanvas extends mxGraphComponent implements ActionListe
 	 * Upon selecting OK, a new Component will be created using those configurations and it will replace the old Component.
 	 * 
 	 * 
-	 * TODO: COMPLETE IMPLEMENTATION. Not quite complete with LinkGroups, as have to update the display. Underlying object is changing, but the display is not updating
-	 * This is because when doubling clicking a Link, double click one particular connection. But the popup corresponds to all connections. 
-	 * Either: Create another popup for editing one part of the Link
-	 * 		   Find a way to update all the other connections, even though you only have access to one of the cells. Can do this by iterating through the edges and putting the
-	 * 		   related edges in a list??
-	 * 
+	 * The graph follows the change, so every cell of the old Component, such as each connection of a Link group, shows the new one.
 	 * 
 	 * @param selectedComponent - Component selected for editing.
 	 */
@@ -214,23 +233,30 @@ public class SubSystemViewCanvas extends mxGraphComponent implements ActionListe
 		Component comp = (Component) selectedComponent.getValue();
 
 		// Open popup passing in the Component that is selected. This will populate the fields with its existing values.
-		ComponentPopup popup = new ComponentPopup((JFrame) SwingUtilities.getWindowAncestor(this), comp, (int)selectedComponent.getGeometry().getCenterX(), (int)selectedComponent.getGeometry().getCenterY());
+		ComponentPopup popup = new ComponentPopup((JFrame) SwingUtilities.getWindowAncestor(this), system, comp, (int)selectedComponent.getGeometry().getCenterX(), (int)selectedComponent.getGeometry().getCenterY());
 		// Once popup is closed, retrieve the created Component object
 		Component newComp = popup.getComponent();
 
 		
 		if (newComp != null) {
-			if (newComp instanceof LinkGroup) {
-				// TODO: implement refreshing of Link labels
+			// Replace component in the model, which the graph follows. The model is left as it was if the new name is
+			// already taken
+			try {
+				system.changeComponent(comp, newComp);
+			} catch (RuntimeException e) {
+				showError("Edit " + comp.getTypeAsString(), e);
 			}
-
-			// Replace component in model and on the graph
-			GlobalSystem system = GlobalSystem.getInstance();
-			system.changeComponent(comp, newComp);
-
-			SubSystemGraph g = (SubSystemGraph)graph;
-			g.changeComponent(selectedComponent, newComp);
 		}
 
 	}
+
+	/**
+	 * Tells the user why the model rejected a change
+	 * 
+	 * @param title - title of the message window
+	 * @param e - exception thrown by the model
+	 */
+	private void showError(String title, RuntimeException e) {
+		JOptionPane.showMessageDialog(this, e.getMessage(), title, JOptionPane.ERROR_MESSAGE);
+	}
 }
@@ -3,30 +3,48 @@ package gui.tabs;
 import java.awt.BorderLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import graphmodel.GlobalSystem;
-import graphmodel.SubSystem;
 
-import javax.swing.JComponent;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
-import javax.swing.event.ChangeEvent;
-import javax.swing.event.ChangeListener;
-
-import com.mxgraph.model.mxCell;
-import com.mxgraph.util.mxEventObject;
-import com.mxgraph.util.mxEventSource.mxIEventListener;
-import com.mxgraph.view.mxGraph;
 
+/**
+ * This panel shows the XML of the current model, kept up to date as the model changes.
+ * 
+ * The XML is kept as the parts given by GlobalSystem.getXMLParts(), the cached XML of each Clock Domain and Link group
+ * and the tags around them. When the model changes, only the Components that changed are serialized again, and only
+ * the ranges of the Document their parts took up are replaced, so editing a Signal replaces the XML of its Clock
+ * Domain rather than of the whole Sub System.
+ * 
+ * @author Chanisha Somatilaka, rsom024
+ *
+ */
 public class XMLView extends JPanel implements ActionListener{
 	private JTextArea xmlArea;
 	
+	// The parts of the XML currently shown in the text area, as given by GlobalSystem.getXMLParts()
+	private List<String> shownParts = Collections.emptyList();
 	
+	// The object model whose XML is shown
+	private GlobalSystem system;
 	
+	/**
+	 * Creates a view of the XML of the default system
+	 */
 	public XMLView() {
+		this(GlobalSystem.getInstance());
+	}
+	
+	/**
+	 * @param system - the object model whose XML is shown
+	 */
+	public XMLView(GlobalSystem system) {
 		super();
+		this.system = system;
 		this.setLayout(new BorderLayout());
 		xmlArea = new JTextArea();
 		xmlArea.setEditable(false);
@@ -34,13 +52,58 @@ public class XMLView extends JPanel implements ActionListener{
 		
 		JScrollPane xmlView = new JScrollPane(xmlArea);
 		this.add(xmlView, BorderLayout.CENTER);
-		GlobalSystem.getInstance().addListener(this);
+		system.addListener(this);
 	}
 	
+	/**
+	 * Brings the text area up to date with the model. Only the parts of the XML of the Components that changed are
+	 * put into its Document, at the range the old parts took up.
+	 */
 	public void setXML() {
-		GlobalSystem system = GlobalSystem.getInstance();
+		List<String> parts = system.getXMLParts();
+		
+		// Skip the parts common to the start and end of both. An unchanged Component gives the same String object
+		// as before, so the parts are compared by identity rather than by their text
+		int start = 0;
+		int maxStart = Math.min(parts.size(), shownParts.size());
+		while (start < maxStart && parts.get(start) == shownParts.get(start)) {
+			start++;
+		}
+		int oldEnd = shownParts.size();
+		int newEnd = parts.size();
+		while (oldEnd > start && newEnd > start && parts.get(newEnd - 1) == shownParts.get(oldEnd - 1)) {
+			oldEnd--;
+			newEnd--;
+		}
+		
+		int offset = 0;
+		for (int i = 0; i < start; i++) {
+			offset += shownParts.get(i).length();
+		}
 		
-		xmlArea.replaceRange(system.createXMLFile(), 0, xmlArea.getSelectionEnd());
+		if (oldEnd - start == newEnd - start) {
+			// Components were changed in place, so replace each changed part on its own
+			for (int i = start; i < newEnd; i++) {
+				String old = shownParts.get(i);
+				String part = parts.get(i);
+				if (part != old) {
+					xmlArea.replaceRange(part, offset, offset + old.length());
+				}
+				offset += part.length();
+			}
+		} else {
+			// Components were added or removed, so replace the whole range between the unchanged parts
+			int oldLength = 0;
+			for (int i = start; i < oldEnd; i++) {
+				oldLength += shownParts.get(i).length();
+			}
+			StringBuilder text = new StringBuilder();
+			for (int i = start; i < newEnd; i++) {
+				text.append(parts.get(i));
+			}
+			xmlArea.replaceRange(text.toString(), offset, offset + oldLength);
+		}
+		shownParts = parts;
 	}
 
 	@Override
@@ -30,8 +30,9 @@ import java.awt.Insets;
 import javax.swing.JTextField;
 import javax.swing.SwingConstants;
 import java.util.ArrayList;
-import java.util.Hashtable;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.swing.JComboBox;
 import javax.swing.JSeparator;
@@ -54,6 +55,9 @@ public class ComponentPopup extends JDialog implements ActionListener {
   private String componentType;
   private Component componentCreated;
 
+  // The object model the Component is for, which the drop down menus list the existing Components of
+  private GlobalSystem system;
+
   private JPanel contentPanel;
 	
   // For all constructs
@@ -141,31 +145,57 @@ public class ComponentPopup extends JDialog implements ActionListener {
   }
 	
 	
+  /**
+   * This constructor is for creating a new Component in the default system
+   * @param jFrame - parent window, which should be MainApplication
+   * @param componentType - String representing the type of Component that is being generated
+   * @param x - x coordinate to place popup
+   * @param y - y coordinate to place popup
+   */
+  public ComponentPopup(JFrame jFrame, String componentType, int x, int y) {
+    this(jFrame, GlobalSystem.getInstance(), componentType, x, y);
+  }
+
   /**
    * @wbp.parser.constructor
    * This constructor is for creating a new Component
    * @param jFrame - parent window, which should be MainApplication
+   * @param system - the object model the Component will be added to
    * @param componentType - String representing the type of Component that is being generated
    * @param x - x coordinate to place popup
    * @param y - y coordinate to place popup
    * 
    */
-  public ComponentPopup(JFrame jFrame, String componentType, int x, int y) {
+  public ComponentPopup(JFrame jFrame, GlobalSystem system, String componentType, int x, int y) {
     super(jFrame, true);
+    this.system = system;
     this.constructPopup(componentType, x, y);
     this.setTitle(CREATE_TITLE + componentType);
     setVisible(true);
   }
 	
   /**
-   * This constructor is for editing an existing Component.
+   * This constructor is for editing an existing Component of the default system.
    * @param jFrame - the parent window, which should be MainApplication
    * @param comp - the Component object that will be edited
    * @param x - x coordinate to place popup
    * @param y - y coordinate to place popup
    */
   public ComponentPopup(JFrame jFrame, Component comp, int x, int y) {
+    this(jFrame, GlobalSystem.getInstance(), comp, x, y);
+  }
+
+  /**
+   * This constructor is for editing an existing Component.
+   * @param jFrame - the parent window, which should be MainApplication
+   * @param system - the object model the Component belongs to
+   * @param comp - the Component object that will be edited
+   * @param x - x coordinate to place popup
+   * @param y - y coordinate to place popup
+   */
+  public ComponentPopup(JFrame jFrame, GlobalSystem system, Component comp, int x, int y) {
     super(jFrame, true);
+    this.system = system;
     this.constructPopup(comp.getTypeAsString(), x, y);
     this.setTitle(EDIT_TITLE + comp.getTypeAsString());
     populateFields(comp);
@@ -192,8 +222,8 @@ public class ComponentPopup extends JDialog implements ActionListener {
 				
 	// Signal
       } else if (componentType.equals(DrawComponent.SIGNAL_NAME)) {
-	// put parameters into a hashtable
-		Hashtable<String, String> params = new Hashtable<String, String>();
+	// put parameters into a map, keeping the order they were entered in
+		Map<String, String> params = new LinkedHashMap<String, String>();
 		for (int i = 0; i < keys.size(); i++) {
 		  // Both fields in a parameter must be filled in order to be added
 		  if (keys.get(i) != null) {
@@ -352,7 +382,7 @@ public class ComponentPopup extends JDialog implements ActionListener {
     gbc_subSystemLabel.gridy = 2;
     clockDomainPanel.add(subSystemLabel, gbc_subSystemLabel);
 		
-    subSystemBox = new JComboBox(GlobalSystem.getInstance().getSubSystems().toArray());
+    subSystemBox = new JComboBox(system.getSubSystems().toArray());
     GridBagConstraints gbc_subSystemBox = new GridBagConstraints();
     gbc_subSystemBox.fill = GridBagConstraints.HORIZONTAL;
     gbc_subSystemBox.gridx = 1;
@@ -384,7 +414,6 @@ public class ComponentPopup extends JDialog implements ActionListener {
     gbl_clockDomainPanel.rowWeights = new double[]{0.0, 0.0, 0.0, 0.0, 0.0, Double.MIN_VALUE};
     channelPanel.setLayout(gbl_clockDomainPanel);
 		
-    GlobalSystem system = GlobalSystem.getInstance();
     clockDomainFrom = new JComboBox<Object>(system.getAllClockDomains().toArray()); // UNUSED NOW
 		
     channelFromName = new JTextField();
@@ -560,7 +589,6 @@ public class ComponentPopup extends JDialog implements ActionListener {
    */
   public JPanel addNewInterface(JPanel linkPanel) {
 
-    GlobalSystem system = GlobalSystem.getInstance();
 		
     // "Sub System" label and combo box
     JLabel subSystemLabel = new JLabel("Sub System");
@@ -875,11 +903,11 @@ public class ComponentPopup extends JDialog implements ActionListener {
       classTextField.setText(s.getClassName());
       ioTypes.setSelectedItem(s.getType());
 			
-      for (String key : s.getParameters().keySet()) {
+      for (Map.Entry<String, String> param : s.getParameters().entrySet()) {
 	// Class and Name get filled in special fields. The rest get filled in the parameter fields
-	if (!key.equals("Class") && !key.equals("Name")) {
-	  keys.get(keys.size() - 1).setText(key);
-	  values.get(keys.size() - 1).setText(s.getParameters().get(key));
+	if (!param.getKey().equals("Class") && !param.getKey().equals("Name")) {
+	  keys.get(keys.size() - 1).setText(param.getKey());
+	  values.get(keys.size() - 1).setText(param.getValue());
 	  addAnotherSignalParameter();
 	}
       }